@@ -17,6 +17,7 @@ public class ConnectionInformation {
 	private String serveralias = "";
 	private Vector<String> channels = new Vector<String>();
     private Boolean isIpv6 = false; // defaults to false if not set in config.
+    private long connectDelayMillis = -1; // -1 staggers by position in settings.conf.
 
     public boolean isValid() {
 		if (!serveralias.isEmpty() && !hostname.isEmpty() && !port.isEmpty() && profile != null) {
@@ -94,4 +95,16 @@ public class ConnectionInformation {
 	public Vector<String> getChannels() {
 		return channels;
 	}
+
+    public boolean hasConnectDelay() {
+        return connectDelayMillis >= 0;
+    }
+
+    public long getConnectDelayMillis() {
+        return connectDelayMillis;
+    }
+
+    public void setConnectDelayMillis(long connectDelayMillis) {
+        this.connectDelayMillis = connectDelayMillis;
+    }
 }
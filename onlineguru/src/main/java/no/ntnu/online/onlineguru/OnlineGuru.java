@@ -4,19 +4,38 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.JoinEvent;
+import no.fictive.irclib.event.container.command.NumericEvent;
 import no.fictive.irclib.model.listener.IRCEventListener;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.exceptions.MissingSettingsException;
+import no.ntnu.online.onlineguru.plugin.control.DispatchSettings;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.control.PluginManager;
+import no.ntnu.online.onlineguru.plugin.control.PluginWatchdog;
 import no.ntnu.online.onlineguru.service.OnlineGuruServices;
+import no.ntnu.online.onlineguru.service.services.outbound.Outbound;
+import no.ntnu.online.onlineguru.service.services.outbound.OutboundWriter;
+import no.ntnu.online.onlineguru.service.services.who.Who;
+import no.ntnu.online.onlineguru.utils.CapabilityNegotiation;
+import no.ntnu.online.onlineguru.utils.IrcLine;
+import no.ntnu.online.onlineguru.utils.JoinBatcher;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+import no.ntnu.online.onlineguru.utils.journal.JournalReader;
+import no.ntnu.online.onlineguru.utils.journal.JournalReplay;
+import no.ntnu.online.onlineguru.utils.journal.JournalSettings;
+import no.ntnu.online.onlineguru.utils.journal.JournalWriter;
+import no.ntnu.online.onlineguru.utils.rawlog.RawLogSettings;
+import no.ntnu.online.onlineguru.utils.rawlog.RawTrafficLog;
 import org.apache.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class OnlineGuru implements IRCEventListener, Runnable {
@@ -24,26 +43,79 @@ public class OnlineGuru implements IRCEventListener, Runnable {
     private static Logger logger = Logger.getLogger(OnlineGuru.class);
     public static Injector serviceLocator;
 
+    private static final long CONNECT_STAGGER_MILLIS = 2000;
+
 
     private ConcurrentHashMap<String, Network> networks = new ConcurrentHashMap<String, Network>();
     private Hashtable<Network, Vector<String>> channelsOnConnect = new Hashtable<Network, Vector<String>>();
+    private ConcurrentHashMap<Network, ServerSupport> serverSupport = new ConcurrentHashMap<Network, ServerSupport>();
     private EventDistributor eventDistributor;
+    private RawTrafficLog rawTrafficLog;
+    private Outbound outbound;
+    private Who who;
+    private volatile JournalWriter journal;
     private Thread thread = null;
 
+    /**
+     * When replaying a journal nothing is sent anywhere, the lines are only counted.
+     */
+    private final boolean replaying;
+    private final AtomicLong suppressedLines = new AtomicLong();
+
     ArrayList<ConnectionInformation> information;
 
     public OnlineGuru() {
+        this(false);
+    }
+
+    private OnlineGuru(boolean replaying) {
+        this.replaying = replaying;
         verifySettings();
-        addShutdownHook();
         configureServiceLocator();
 
-        eventDistributor = new EventDistributor();
-        initiate();
+        rawTrafficLog = new RawTrafficLog(RawLogSettings.load());
+        outbound = serviceLocator.getInstance(Outbound.class);
+        outbound.setWriter(new OutboundWriter() {
+            public void write(Network network, String line) {
+                rawTrafficLog.outbound(network.getServerAlias(), line);
+                network.sendToServer(line);
+            }
+        });
+        who = serviceLocator.getInstance(Who.class);
+        who.setWriter(new OutboundWriter() {
+            public void write(Network network, String line) {
+                sendToServer(network, line);
+            }
+        });
+        eventDistributor = new EventDistributor(DispatchSettings.load());
+
+        if (!replaying) {
+            addShutdownHook();
+            openJournal();
+            initiate();
+        }
         new PluginManager(eventDistributor, this);
 
-        thread = new Thread(this);
-        thread.setName("OnlineGuru");
-        thread.start();
+        if (!replaying) {
+            thread = new Thread(this);
+            thread.setName("OnlineGuru");
+            thread.start();
+        }
+    }
+
+    /**
+     * Starts capturing every inbound line to the journal, if enabled in settings/journal.conf.
+     */
+    private void openJournal() {
+        JournalSettings settings = JournalSettings.load();
+        if (settings.isEnabled()) {
+            try {
+                journal = new JournalWriter(settings);
+                logger.info("Capturing inbound lines to the journal in " + settings.getDirectory());
+            } catch (IOException e) {
+                logger.error("Failed to open the journal, not capturing", e);
+            }
+        }
     }
 
     public void run() {
@@ -89,6 +161,12 @@ public class OnlineGuru implements IRCEventListener, Runnable {
     protected void stopThread() {
         rudeDisconnect();
         thread.interrupt();
+        who.shutdown();
+        outbound.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+        rawTrafficLog.shutdown();
     }
 
     protected void rudeDisconnect() {
@@ -100,20 +178,56 @@ public class OnlineGuru implements IRCEventListener, Runnable {
         }
     }
 
+    /**
+     * Connects to all networks at once, each on its own thread. Unless connect_delay_ms is set for a network,
+     * each one waits {@link #CONNECT_STAGGER_MILLIS} longer than the one before, so they don't all register
+     * and join at the very same moment.
+     */
     private void initiate() {
-        for (ConnectionInformation c : information) {
-            Network network = new Network(c.getHostname(), Integer.parseInt(c.getPort()), c.getBindAddress(), c.getServeralias(), c.getProfile());
+        for (int i = 0; i < information.size(); i++) {
+            ConnectionInformation c = information.get(i);
+            final Network network = new Network(c.getHostname(), Integer.parseInt(c.getPort()), c.getBindAddress(), c.getServeralias(), c.getProfile());
             network.addListener(this);
 
             channelsOnConnect.put(network, c.getChannels());
-
-            network.connect();
             networks.put(c.getServeralias(), network);
+
+            final long delay = c.hasConnectDelay() ? c.getConnectDelayMillis() : i * CONNECT_STAGGER_MILLIS;
+            Thread connector = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    network.connect();
+                }
+            });
+            connector.setName("Connect-" + c.getServeralias());
+            // Waiting to connect shouldn't keep the bot from shutting down.
+            connector.setDaemon(true);
+            connector.start();
         }
     }
 
     public void receiveEvent(Event event) {
-        logger.info(String.format("<- %s: %s", event.getNetwork().getServerAlias(), event.getRawData()));
+        rawTrafficLog.inbound(event.getNetwork().getServerAlias(), event.getRawData());
+        JournalWriter journal = this.journal;
+        if (journal != null && event.getRawData() != null) {
+            try {
+                journal.append(event.getNetwork().getServerAlias(), System.nanoTime(), event.getRawData());
+            } catch (IOException e) {
+                logger.error("Failed to write to the journal, no longer capturing", e);
+                journal.close();
+                this.journal = null;
+            }
+        }
+        if (event.getEventType() == null) {
+            handleUnknown(event);
+            eventDistributor.handleEvent(event);
+            return;
+        }
         switch (event.getEventType()) {
             case JOIN:
                 handleJoin(event);
@@ -121,6 +235,9 @@ public class OnlineGuru implements IRCEventListener, Runnable {
             case CONNECT:
                 handleConnect(event);
                 break;
+            case NUMERIC:
+                handleNumeric((NumericEvent) event);
+                break;
         }
         eventDistributor.handleEvent(event);
     }
@@ -129,29 +246,68 @@ public class OnlineGuru implements IRCEventListener, Runnable {
         JoinEvent joinEvent = (JoinEvent) event;
         Network network = joinEvent.getNetwork();
         if (network.getProfile().equals(joinEvent.getNick())) {
-            if (!network.getNetworkSettings().isNAMESX() && network.getNetworkSettings().isWHOX()) {
-                sendWhoX(joinEvent.getChannel(), network);
-            }
-            else {
-                sendWho(joinEvent.getChannel(), network);
+            // NickServPlugin asks for the same fields, so the channel is only asked for once.
+            who.query(network, getServerSupport(network), joinEvent.getChannel(), Who.MEMBER_FIELDS, null);
+        }
+    }
+
+    /**
+     * irclib doesn't know CAP, so the answers to {@link CapabilityNegotiation} arrive here.
+     */
+    private void handleUnknown(Event event) {
+        IrcLine line = IrcLine.parse(event.getRawData());
+        if (line != null && line.getCommand().equals("CAP")) {
+            Network network = event.getNetwork();
+            for (String answer : CapabilityNegotiation.handle(line, getServerSupport(network))) {
+                sendToServer(network, answer);
             }
         }
     }
 
+    /**
+     * irclib has registered by now, so capabilities are negotiated after the fact, which servers allow.
+     */
     private void handleConnect(Event event) {
         Network network = event.getNetwork();
-        Vector<String> channels = channelsOnConnect.get(network);
-        for (String channel : channels) {
-            sendToServer(network, "JOIN " + channel);
+        outbound.reset(network);
+        who.reset(network);
+        sendToServer(network, CapabilityNegotiation.start());
+        JoinBatcher joins = new JoinBatcher();
+        for (String channel : channelsOnConnect.get(network)) {
+            joins.add(channel);
+        }
+        for (String line : joins.getLines()) {
+            sendToServer(network, line);
         }
     }
 
-    private void sendWho(String channelname, Network network) {
-        sendToServer(network, "WHO " + channelname);
+    /**
+     * 001 (RPL_WELCOME) starts a new connection, and 005 (RPL_ISUPPORT) tells what the server supports.
+     * 263 (RPL_TRYAGAIN) and 439 (ERR_TARGETTOOFAST) mean the server wants us to slow down.
+     * WHO replies go to the {@link Who} service.
+     */
+    private void handleNumeric(NumericEvent event) {
+        who.handleReply(event);
+        if (event.getNumeric() == 1) {
+            // A new connection, the server will tell us again.
+            getServerSupport(event.getNetwork()).reset();
+        }
+        else if (event.getNumeric() == 5) {
+            getServerSupport(event.getNetwork()).parse(event.getParamaters());
+        }
+        else if (event.getNumeric() == 263 || event.getNumeric() == 439) {
+            outbound.penalize(event.getNetwork());
+        }
     }
 
-    private void sendWhoX(String channelname, Network network) {
-        sendToServer(network, "WHOX " + channelname);
+    /**
+     * Lets the lines still queued for the network go out before disconnecting, as irclib sends QUIT itself.
+     */
+    public void quit(Network network) {
+        if (!outbound.drain(network)) {
+            logger.warn("Disconnecting from " + network.getServerAlias() + " with lines still queued");
+        }
+        network.disconnect();
     }
 
     public void sendMessageToServer(Network network, String message) {
@@ -159,8 +315,11 @@ public class OnlineGuru implements IRCEventListener, Runnable {
     }
 
     private void sendToServer(Network network, String text) {
-        logger.info(String.format("-> %s: %s", network.getServerAlias(), text));
-        network.sendToServer(text);
+        if (replaying) {
+            suppressedLines.incrementAndGet();
+            return;
+        }
+        outbound.send(network, getServerSupport(network), text, PluginWatchdog.isDeliveringEvent());
     }
 
     public void receiveText(Network network, String text) {
@@ -175,8 +334,53 @@ public class OnlineGuru implements IRCEventListener, Runnable {
         return networks.elements();
     }
 
+    /**
+     * @param network Network to look up.
+     * @return What the server on the network has told us it supports.
+     */
+    public ServerSupport getServerSupport(Network network) {
+        ServerSupport support = serverSupport.get(network);
+        if (support == null) {
+            serverSupport.putIfAbsent(network, new ServerSupport());
+            support = serverSupport.get(network);
+        }
+        return support;
+    }
+
+    /**
+     * Replays a captured journal through the plugins, then exits.
+     *
+     * @param directory Journal directory.
+     * @param maxSpeed  Ignore the recorded delays between lines.
+     */
+    private static void replay(File directory, boolean maxSpeed) {
+        OnlineGuru onlineGuru = new OnlineGuru(true);
+        try {
+            new JournalReplay(new JournalReader(directory), onlineGuru.eventDistributor, onlineGuru.networks, maxSpeed).run();
+            logger.info(String.format("Suppressed %d lines the plugins tried to send", onlineGuru.suppressedLines.get()));
+        } catch (IOException e) {
+            logger.error("Failed to read the journal in " + directory, e);
+        } catch (InterruptedException e) {
+            logger.warn("Replay interrupted");
+        }
+        onlineGuru.rawTrafficLog.shutdown();
+        System.exit(0);
+    }
+
+    /**
+     * Run with "--replay &lt;journal directory&gt; [max]" to replay a journal instead of connecting.
+     */
     public static void main(String[] args) {
-        new OnlineGuru();
+        if (args.length > 0 && args[0].equals("--replay")) {
+            if (args.length < 2) {
+                System.err.println("Usage: --replay <journal directory> [max]");
+                System.exit(1);
+            }
+            replay(new File(args[1]), args.length > 2 && args[2].equalsIgnoreCase("max"));
+        }
+        else {
+            new OnlineGuru();
+        }
     }
 
 }
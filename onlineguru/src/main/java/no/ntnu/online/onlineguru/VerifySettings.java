@@ -65,6 +65,15 @@ public class VerifySettings {
                     connectionInformation.setBindAddress(bindAddress);
                 }
 
+                String connectDelay = settings.getSetting("connect_delay_ms");
+                if (connectDelay != null && !connectDelay.isEmpty()) {
+                    try {
+                        connectionInformation.setConnectDelayMillis(Math.max(0, Long.parseLong(connectDelay.trim())));
+                    } catch (NumberFormatException e) {
+                        logger.warn(String.format("connect_delay_ms '%s' is not a number, ignoring it", connectDelay));
+                    }
+                }
+
 
                 String channels = settings.getSetting("channels");
                 if (channels != null) {
@@ -115,6 +124,8 @@ public class VerifySettings {
         writer.write("port=\n");
         writer.write("ipv6=false\n");
         writer.write("#bind_address=\n");
+        writer.write("# Milliseconds to wait before connecting, by default 2000 per network above this one.\n");
+        writer.write("#connect_delay_ms=0\n");
         writer.write("nickname=\n");
         writer.write("alt_nickname=\n");
         writer.write("ident=\n");
@@ -0,0 +1,32 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+/**
+ * How the {@link EventDistributor} hands events to plugins.
+ */
+public enum DispatchMode {
+
+    /**
+     * Every plugin is called in turn on the thread that received the event.
+     */
+    SYNCHRONOUS,
+
+    /**
+     * Every plugin has its own bounded queue and worker thread.
+     */
+    MAILBOX,
+
+    /**
+     * Every network has its own worker thread, optionally split further by channel.
+     * Events from one network never wait for another network to be processed.
+     */
+    PARTITIONED;
+
+    public static DispatchMode fromString(String mode) {
+        for (DispatchMode dispatchMode : values()) {
+            if (dispatchMode.name().equalsIgnoreCase(mode)) {
+                return dispatchMode;
+            }
+        }
+        return SYNCHRONOUS;
+    }
+}
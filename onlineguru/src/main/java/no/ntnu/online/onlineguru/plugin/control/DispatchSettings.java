@@ -0,0 +1,146 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.ntnu.online.onlineguru.utils.settingsreader.KeyValueSettings;
+
+/**
+ * Settings for the {@link EventDistributor}, read from settings/dispatch.conf.
+ *
+ * Example:
+ * mode=mailbox
+ * mailbox_capacity=1000
+ * channel_partitions=1
+ * time_budget_ms=5000
+ * error_threshold=10
+ * overrun_threshold=3
+ * strike_window_ms=600000
+ * shed_threshold=200
+ * reply_batch_limit=1000
+ */
+public class DispatchSettings {
+
+    public static final String SETTINGS_FILE = "settings/dispatch.conf";
+
+    private DispatchMode mode = DispatchMode.SYNCHRONOUS;
+    private int mailboxCapacity = 1000;
+    private int channelPartitions = 1;
+    private long timeBudgetMillis = 5000;
+    private int errorThreshold = 10;
+    private int overrunThreshold = 3;
+    private long strikeWindowMillis = 600000;
+    private int shedThreshold = 200;
+    private int replyBatchLimit = 1000;
+
+    public static DispatchSettings load() {
+        KeyValueSettings settings = KeyValueSettings.load(SETTINGS_FILE);
+        DispatchSettings dispatchSettings = new DispatchSettings();
+
+        dispatchSettings.setMode(DispatchMode.fromString(settings.getString("mode", "synchronous")));
+        dispatchSettings.setMailboxCapacity(settings.getInt("mailbox_capacity", 1000));
+        dispatchSettings.setChannelPartitions(settings.getInt("channel_partitions", 1));
+        dispatchSettings.setTimeBudgetMillis(settings.getLong("time_budget_ms", 5000));
+        dispatchSettings.setErrorThreshold(settings.getInt("error_threshold", 10));
+        dispatchSettings.setOverrunThreshold(settings.getInt("overrun_threshold", 3));
+        dispatchSettings.setStrikeWindowMillis(settings.getLong("strike_window_ms", 600000));
+        dispatchSettings.setShedThreshold(settings.getInt("shed_threshold", 200));
+        dispatchSettings.setReplyBatchLimit(settings.getInt("reply_batch_limit", 1000));
+
+        return dispatchSettings;
+    }
+
+    public DispatchMode getMode() {
+        return mode;
+    }
+
+    public void setMode(DispatchMode mode) {
+        this.mode = mode;
+    }
+
+    public int getMailboxCapacity() {
+        return mailboxCapacity;
+    }
+
+    public void setMailboxCapacity(int mailboxCapacity) {
+        this.mailboxCapacity = Math.max(1, mailboxCapacity);
+    }
+
+    /**
+     * @return Number of worker threads per network in {@link DispatchMode#PARTITIONED} mode. With more than one,
+     * channels are spread over the workers so a busy channel doesn't hold up the rest of the network.
+     */
+    public int getChannelPartitions() {
+        return channelPartitions;
+    }
+
+    public void setChannelPartitions(int channelPartitions) {
+        this.channelPartitions = Math.max(1, channelPartitions);
+    }
+
+    /**
+     * @return How long a plugin may spend on a single event before the {@link PluginWatchdog} steps in.
+     */
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = Math.max(1, timeBudgetMillis);
+    }
+
+    /**
+     * @return Number of exceptions within the strike window after which a plugin that isn't critical is quarantined.
+     * 0 never quarantines.
+     */
+    public int getErrorThreshold() {
+        return errorThreshold;
+    }
+
+    public void setErrorThreshold(int errorThreshold) {
+        this.errorThreshold = Math.max(0, errorThreshold);
+    }
+
+    /**
+     * @return Number of exceeded time budgets within the strike window after which a plugin that isn't critical is
+     * quarantined. 0 never quarantines.
+     */
+    public int getOverrunThreshold() {
+        return overrunThreshold;
+    }
+
+    public void setOverrunThreshold(int overrunThreshold) {
+        this.overrunThreshold = Math.max(0, overrunThreshold);
+    }
+
+    /**
+     * @return How long errors and overruns count towards the thresholds, from the first one. 0 counts them until
+     * the plugin is released.
+     */
+    public long getStrikeWindowMillis() {
+        return strikeWindowMillis;
+    }
+
+    public void setStrikeWindowMillis(long strikeWindowMillis) {
+        this.strikeWindowMillis = Math.max(0, strikeWindowMillis);
+    }
+
+    /**
+     * @return Backlog, in queued events, above which events for best effort plugins are shed.
+     */
+    public int getShedThreshold() {
+        return shedThreshold;
+    }
+
+    public void setShedThreshold(int shedThreshold) {
+        this.shedThreshold = Math.max(1, shedThreshold);
+    }
+
+    /**
+     * @return Most replies held in one {@link no.ntnu.online.onlineguru.plugin.model.ReplyBatch} before it is handed out.
+     */
+    public int getReplyBatchLimit() {
+        return replyBatchLimit;
+    }
+
+    public void setReplyBatchLimit(int replyBatchLimit) {
+        this.replyBatchLimit = Math.max(1, replyBatchLimit);
+    }
+}
@@ -0,0 +1,52 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithReplyBatches;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+
+/**
+ * An event on its way through the {@link EventDistributor}, along with what is shared between its listeners.
+ * For a PRIVMSG that is the {@link MessageContext}, so the message is only parsed once however many plugins get it.
+ * It may also carry a whole {@link ReplyBatch}, in which case the event is the last one in the batch.
+ */
+class DispatchedEvent {
+
+    private final Event event;
+    private final MessageContext context;
+    private final ReplyBatch batch;
+
+    DispatchedEvent(Event event) {
+        this.event = event;
+        this.context = event instanceof PrivMsgEvent ? new MessageContext((PrivMsgEvent) event) : null;
+        this.batch = null;
+    }
+
+    DispatchedEvent(ReplyBatch batch) {
+        this.event = batch.isComplete() ? batch.getEnd() : batch.getReplies().get(batch.getReplies().size() - 1);
+        this.context = null;
+        this.batch = batch;
+    }
+
+    Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Hands the event to a plugin, as a {@link MessageContext} or {@link ReplyBatch} if the plugin wants one.
+     */
+    void deliverTo(Plugin plugin) {
+        if (batch != null) {
+            ((PluginWithReplyBatches) plugin).incomingReplyBatch(batch);
+        }
+        else if (context != null && plugin instanceof PluginWithMessageContext) {
+            ((PluginWithMessageContext) plugin).incomingMessage(context);
+        }
+        else {
+            plugin.incomingEvent(event);
+        }
+    }
+}
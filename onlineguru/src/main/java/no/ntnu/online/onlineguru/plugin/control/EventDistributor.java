@@ -1,154 +1,513 @@
 package no.ntnu.online.onlineguru.plugin.control;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
 import no.fictive.irclib.event.container.Event;
-import no.fictive.irclib.event.container.RPL.RPL_NAMREPLY;
-import no.fictive.irclib.event.container.RPL.RPL_WHOREPLY;
-import no.fictive.irclib.event.container.command.CTCPEvent;
-import no.fictive.irclib.event.container.command.ConnectEvent;
-import no.fictive.irclib.event.container.command.ErrorEvent;
-import no.fictive.irclib.event.container.command.InviteEvent;
-import no.fictive.irclib.event.container.command.JoinEvent;
-import no.fictive.irclib.event.container.command.KickEvent;
-import no.fictive.irclib.event.container.command.KillEvent;
-import no.fictive.irclib.event.container.command.ModeEvent;
-import no.fictive.irclib.event.container.command.NickEvent;
-import no.fictive.irclib.event.container.command.NoticeEvent;
-import no.fictive.irclib.event.container.command.NumericEvent;
-import no.fictive.irclib.event.container.command.PartEvent;
-import no.fictive.irclib.event.container.command.PingEvent;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.container.command.QuitEvent;
-import no.fictive.irclib.event.container.command.TopicEvent;
 import no.fictive.irclib.event.model.EventType;
+import no.ntnu.online.onlineguru.plugin.model.ConcurrentPlugin;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithReplyBatches;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+import no.ntnu.online.onlineguru.utils.Functions;
+import no.ntnu.online.onlineguru.utils.IrcLine;
 
+/**
+ * Hands incoming events to the plugins that listen for them.
+ *
+ * The listeners are kept in an {@link EnumMap} of plain arrays which is never changed once published.
+ * Subscribing or unsubscribing copies the affected array and publishes a new map, so plugins can be
+ * added or removed at runtime while events are being dispatched, without the dispatch ever waiting on it.
+ *
+ * In {@link DispatchMode#PARTITIONED} mode several threads dispatch at once, see {@link EventPartitions}.
+ * A plugin is still only called with one event at a time, unless it is a {@link ConcurrentPlugin}.
+ * Plugins whose state is read by other plugins, like FlagsPlugin and NickServPlugin, must keep that
+ * state in thread safe structures, since the readers run on other threads.
+ *
+ * Listeners are called in order of their {@link PluginPriority}. When the mailboxes or partitions are
+ * backlogged past the shed threshold, best effort plugins have their events shed. Synchronous mode
+ * has no backlog to measure, so it only orders the listeners.
+ *
+ * WHO and NAMES replies are also collected into {@link ReplyBatch}es for plugins registered with
+ * {@link #addReplyBatchListener}, which then get a whole reply list at once. The replies are still
+ * dispatched one by one to plugins listening for the event types.
+ *
+ * Lines irclib has no event type for, like ACCOUNT, only reach plugins registered for the command
+ * with {@link #addCommandListener}.
+ */
 public class EventDistributor {
 
 	static Logger logger = Logger.getLogger(EventDistributor.class);
-	
-	private HashMap<EventType, ArrayList<Plugin>> listCollection = new HashMap<EventType, ArrayList<Plugin>>(); 
-	
-	private ArrayList<Plugin> connectListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> ctcpListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> errorListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> inviteListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> joinListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> kickListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> killListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> modeListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> namesReplyListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> nickListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> noticeListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> numericListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> partListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> pingListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> privMsgListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> quitListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> topicListeners = new ArrayList<Plugin>();
-	private ArrayList<Plugin> whoReplyListeners = new ArrayList<Plugin>();
-	
-	public EventDistributor() {		
-		listCollection.put(EventType.CONNECT, connectListeners);
-		listCollection.put(EventType.CTCP, ctcpListeners);
-		listCollection.put(EventType.ERROR, errorListeners);
-		listCollection.put(EventType.INVITE, inviteListeners);
-		listCollection.put(EventType.JOIN, joinListeners);
-		listCollection.put(EventType.KICK, kickListeners);
-		listCollection.put(EventType.KILL, kickListeners);
-		listCollection.put(EventType.MODE, modeListeners);
-		listCollection.put(EventType.RPL_NAMREPLY, namesReplyListeners);
-		listCollection.put(EventType.NICK, nickListeners);
-		listCollection.put(EventType.NOTICE, noticeListeners);
-		listCollection.put(EventType.NUMERIC, numericListeners);
-		listCollection.put(EventType.PART, partListeners);
-		listCollection.put(EventType.PING, pingListeners);
-		listCollection.put(EventType.PRIVMSG, privMsgListeners);
-		listCollection.put(EventType.QUIT, quitListeners);
-		listCollection.put(EventType.TOPIC, topicListeners);
-		listCollection.put(EventType.RPL_WHOREPLY, whoReplyListeners);		
-	}
-	
+
+	/**
+	 * Critical plugins first. The sort is stable, so plugins of the same priority keep their order.
+	 */
+	private static final Comparator<Plugin> BY_PRIORITY = new Comparator<Plugin>() {
+		public int compare(Plugin a, Plugin b) {
+			return PluginPriority.of(a).compareTo(PluginPriority.of(b));
+		}
+	};
+
+	private final DispatchSettings settings;
+	private ConcurrentHashMap<Plugin, PluginStats> pluginStats = new ConcurrentHashMap<Plugin, PluginStats>();
+	private ConcurrentHashMap<Plugin, PluginMailbox> mailboxes = new ConcurrentHashMap<Plugin, PluginMailbox>();
+	private ConcurrentHashMap<Plugin, Object> pluginLocks = new ConcurrentHashMap<Plugin, Object>();
+	private final EventPartitions partitions;
+	private final PluginWatchdog watchdog;
+
+	/**
+	 * Guards every change to the listeners and triggers. Dispatch never takes it.
+	 */
+	private final Object registryLock = new Object();
+
+	private volatile EnumMap<EventType, Plugin[]> listeners;
+	private volatile EnumMap<ReplyBatch.Type, Plugin[]> batchListeners;
+	private final ReplyBatcher replyBatcher;
+
+	private final LinkedHashMap<String, Set<Plugin>> triggers = new LinkedHashMap<String, Set<Plugin>>();
+	private volatile TriggerIndex triggerIndex = new TriggerIndex();
+	private volatile Map<String, Plugin[]> commandListeners = new HashMap<String, Plugin[]>();
+
+	public EventDistributor() {
+		this(new DispatchSettings());
+	}
+
+	public EventDistributor(DispatchSettings settings) {
+		this.settings = settings;
+		logger.info("Dispatching events in " + settings.getMode() + " mode");
+		this.watchdog = new PluginWatchdog(settings);
+
+		EnumMap<EventType, Plugin[]> empty = new EnumMap<EventType, Plugin[]>(EventType.class);
+		for (EventType eventType : EventType.values()) {
+			empty.put(eventType, TriggerIndex.NO_PLUGINS);
+		}
+		listeners = empty;
+
+		EnumMap<ReplyBatch.Type, Plugin[]> noBatchListeners = new EnumMap<ReplyBatch.Type, Plugin[]>(ReplyBatch.Type.class);
+		for (ReplyBatch.Type type : ReplyBatch.Type.values()) {
+			noBatchListeners.put(type, TriggerIndex.NO_PLUGINS);
+		}
+		batchListeners = noBatchListeners;
+		replyBatcher = new ReplyBatcher(settings.getReplyBatchLimit());
+
+		if (settings.getMode() == DispatchMode.PARTITIONED) {
+			partitions = new EventPartitions(this, settings.getChannelPartitions(), settings.getShedThreshold());
+		}
+		else {
+			partitions = null;
+		}
+	}
+
 	public void addListener(Plugin plugin, EventType eventType) {
-		this.listCollection.get(eventType).add(plugin);
+		registerPlugin(plugin);
+		synchronized (registryLock) {
+			Plugin[] current = listeners.get(eventType);
+			for (Plugin listener : current) {
+				if (listener == plugin) {
+					return;
+				}
+			}
+
+			Plugin[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = plugin;
+			Arrays.sort(updated, BY_PRIORITY);
+			publish(eventType, updated);
+		}
 	}
-	
+
 	public void removeListener(Plugin plugin, EventType eventType) {
-		this.listCollection.get(eventType).remove(plugin);
-	}
-	
-	public synchronized void handleEvent(Event event) {
-		switch (event.getEventType()) {
-			case CONNECT:
-	        	fireEvent((ConnectEvent) event, connectListeners);
-	        	break;
-	        case CTCP:
-		    	fireEvent((CTCPEvent) event, ctcpListeners);
-		    	break;
-	        case ERROR:
-	        	fireEvent((ErrorEvent) event, errorListeners);
-	        	break;
-	        case INVITE:
-            	fireEvent((InviteEvent) event, inviteListeners);
-            	break;
-            case JOIN:
-            	fireEvent((JoinEvent) event, joinListeners);
-            	break;
-            case KICK:
-            	fireEvent((KickEvent) event, kickListeners);
-            	break;
-            case KILL:
-            	fireEvent((KillEvent) event, killListeners);
-            	break;
-            case MODE:
-            	fireEvent((ModeEvent) event, modeListeners);
-            	break;
-            case NICK:
-            	fireEvent((NickEvent) event, nickListeners);
-            	break;
-            case NOTICE:
-            	fireEvent((NoticeEvent) event, noticeListeners);
-            	break;
-            case NUMERIC:
-            	fireEvent((NumericEvent) event, numericListeners);
-            	break;
-            case PART:
-            	fireEvent((PartEvent) event, partListeners);
-            	break;
-            case PING:
-            	fireEvent((PingEvent) event, pingListeners);
-            	break;
-            case PRIVMSG:
-	        	fireEvent((PrivMsgEvent) event, privMsgListeners);
-	        	break;
-            case QUIT:
-            	fireEvent((QuitEvent) event, quitListeners);
-            	break;
-            case TOPIC:
-            	fireEvent((TopicEvent) event, topicListeners);
-            	break;
-            case RPL_NAMREPLY:
-            	fireEvent((RPL_NAMREPLY) event, namesReplyListeners);
-            	break;
-            case RPL_WHOREPLY:
-            	fireEvent((RPL_WHOREPLY) event, whoReplyListeners);
-            	break;
-            default: {
-                logger.error("Registered unknown event: " + event.getRawData());
-                return;
-            }
-        }
-	}
-	
-	synchronized void fireEvent(Event e, ArrayList<Plugin> listeners) {
-		if (!listeners.isEmpty()) { 
-			for(Plugin plugin : listeners) {
-				plugin.incomingEvent(e);
+		synchronized (registryLock) {
+			Plugin[] current = listeners.get(eventType);
+			Plugin[] updated = without(current, plugin);
+			if (updated != current) {
+				publish(eventType, updated);
+			}
+		}
+	}
+
+	/**
+	 * Removes a plugin from every event type and trigger it listens to, and stops its mailbox if it has one.
+	 *
+	 * @param plugin Plugin to unsubscribe.
+	 */
+	public void removeAllListeners(Plugin plugin) {
+		synchronized (registryLock) {
+			EnumMap<EventType, Plugin[]> copy = new EnumMap<EventType, Plugin[]>(listeners);
+			for (Map.Entry<EventType, Plugin[]> entry : copy.entrySet()) {
+				entry.setValue(without(entry.getValue(), plugin));
+			}
+			listeners = copy;
+
+			EnumMap<ReplyBatch.Type, Plugin[]> batchCopy = new EnumMap<ReplyBatch.Type, Plugin[]>(batchListeners);
+			for (Map.Entry<ReplyBatch.Type, Plugin[]> entry : batchCopy.entrySet()) {
+				entry.setValue(without(entry.getValue(), plugin));
+			}
+			batchListeners = batchCopy;
+
+			for (Set<Plugin> plugins : triggers.values()) {
+				plugins.remove(plugin);
+			}
+			rebuildTriggerIndex();
+
+			Map<String, Plugin[]> commandCopy = new HashMap<String, Plugin[]>(commandListeners);
+			for (Map.Entry<String, Plugin[]> entry : commandCopy.entrySet()) {
+				entry.setValue(without(entry.getValue(), plugin));
+			}
+			commandListeners = commandCopy;
+		}
+
+		PluginMailbox mailbox = mailboxes.remove(plugin);
+		if (mailbox != null) {
+			mailbox.shutdown();
+		}
+		pluginStats.remove(plugin);
+		pluginLocks.remove(plugin);
+	}
+
+	/**
+	 * Registers a plugin for the PRIVMSG events that start with one of the given triggers, case insensitive.
+	 * Use this instead of {@link #addListener(Plugin, EventType)} with {@link EventType#PRIVMSG} for plugins that
+	 * only react to commands; they are then skipped for all the chatter that isn't meant for them.
+	 *
+	 * @param plugin   Plugin to receive the matching messages.
+	 * @param triggers Prefixes the messages must start with, like "!peak" or "s/".
+	 */
+	public void addTriggerListener(Plugin plugin, String... triggers) {
+		registerPlugin(plugin);
+		synchronized (registryLock) {
+			for (String trigger : triggers) {
+				String key = trigger.toLowerCase();
+				Set<Plugin> plugins = this.triggers.get(key);
+				if (plugins == null) {
+					plugins = new LinkedHashSet<Plugin>();
+					this.triggers.put(key, plugins);
+				}
+				plugins.add(plugin);
+			}
+			rebuildTriggerIndex();
+		}
+	}
+
+	public void removeTriggerListener(Plugin plugin, String... triggers) {
+		synchronized (registryLock) {
+			for (String trigger : triggers) {
+				Set<Plugin> plugins = this.triggers.get(trigger.toLowerCase());
+				if (plugins != null) {
+					plugins.remove(plugin);
+				}
+			}
+			rebuildTriggerIndex();
+		}
+	}
+
+	/**
+	 * Registers a plugin for lines irclib doesn't know, by command. The plugin gets an {@link Event} without
+	 * an event type; use {@link IrcLine#parse(String)} on its raw data.
+	 *
+	 * @param plugin   Plugin to receive the lines.
+	 * @param commands Commands like "ACCOUNT", case insensitive.
+	 */
+	public void addCommandListener(Plugin plugin, String... commands) {
+		registerPlugin(plugin);
+		synchronized (registryLock) {
+			Map<String, Plugin[]> copy = new HashMap<String, Plugin[]>(commandListeners);
+			for (String command : commands) {
+				String key = command.toUpperCase();
+				Plugin[] current = copy.get(key);
+				if (current == null) {
+					current = TriggerIndex.NO_PLUGINS;
+				}
+				if (without(current, plugin) != current) {
+					continue;
+				}
+				Plugin[] updated = Arrays.copyOf(current, current.length + 1);
+				updated[current.length] = plugin;
+				Arrays.sort(updated, BY_PRIORITY);
+				copy.put(key, updated);
+			}
+			commandListeners = copy;
+		}
+	}
+
+	public void removeCommandListener(Plugin plugin, String... commands) {
+		synchronized (registryLock) {
+			Map<String, Plugin[]> copy = new HashMap<String, Plugin[]>(commandListeners);
+			for (String command : commands) {
+				Plugin[] current = copy.get(command.toUpperCase());
+				if (current != null) {
+					copy.put(command.toUpperCase(), without(current, plugin));
+				}
+			}
+			commandListeners = copy;
+		}
+	}
+
+	/**
+	 * Registers a plugin for whole WHO or NAMES reply lists, see {@link ReplyBatch}.
+	 *
+	 * @param plugin Plugin to receive the batches.
+	 * @param type   Kind of reply list.
+	 */
+	public void addReplyBatchListener(PluginWithReplyBatches plugin, ReplyBatch.Type type) {
+		registerPlugin(plugin);
+		synchronized (registryLock) {
+			Plugin[] current = batchListeners.get(type);
+			for (Plugin listener : current) {
+				if (listener == plugin) {
+					return;
+				}
+			}
+
+			Plugin[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = plugin;
+			Arrays.sort(updated, BY_PRIORITY);
+			EnumMap<ReplyBatch.Type, Plugin[]> copy = new EnumMap<ReplyBatch.Type, Plugin[]>(batchListeners);
+			copy.put(type, updated);
+			batchListeners = copy;
+		}
+	}
+
+	public void removeReplyBatchListener(PluginWithReplyBatches plugin, ReplyBatch.Type type) {
+		synchronized (registryLock) {
+			Plugin[] current = batchListeners.get(type);
+			Plugin[] updated = without(current, plugin);
+			if (updated != current) {
+				EnumMap<ReplyBatch.Type, Plugin[]> copy = new EnumMap<ReplyBatch.Type, Plugin[]>(batchListeners);
+				copy.put(type, updated);
+				batchListeners = copy;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the listeners for one event type. Must hold the registry lock.
+	 */
+	private void publish(EventType eventType, Plugin[] plugins) {
+		EnumMap<EventType, Plugin[]> copy = new EnumMap<EventType, Plugin[]>(listeners);
+		copy.put(eventType, plugins);
+		listeners = copy;
+	}
+
+	/**
+	 * Drops empty triggers and publishes a new index. Must hold the registry lock.
+	 */
+	private void rebuildTriggerIndex() {
+		Iterator<Set<Plugin>> iterator = triggers.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isEmpty()) {
+				iterator.remove();
+			}
+		}
+		triggerIndex = new TriggerIndex(triggers);
+	}
+
+	private static Plugin[] without(Plugin[] plugins, Plugin plugin) {
+		for (int i = 0; i < plugins.length; i++) {
+			if (plugins[i] == plugin) {
+				Plugin[] updated = new Plugin[plugins.length - 1];
+				System.arraycopy(plugins, 0, updated, 0, i);
+				System.arraycopy(plugins, i + 1, updated, i, plugins.length - i - 1);
+				return updated;
+			}
+		}
+		return plugins;
+	}
+
+	/**
+	 * Sets up stats, and a mailbox when running in {@link DispatchMode#MAILBOX}, the first time a plugin registers.
+	 *
+	 * @param plugin Plugin that is registering as a listener.
+	 */
+	private void registerPlugin(Plugin plugin) {
+		pluginLocks.putIfAbsent(plugin, new Object());
+
+		PluginStats stats = new PluginStats(Functions.getClassName(plugin));
+		if (pluginStats.putIfAbsent(plugin, stats) != null) {
+			return;
+		}
+
+		if (settings.getMode() == DispatchMode.MAILBOX) {
+			mailboxes.put(plugin, new PluginMailbox(plugin, stats, watchdog, settings.getMailboxCapacity(), settings.getShedThreshold()));
+		}
+	}
+
+	public DispatchMode getMode() {
+		return settings.getMode();
+	}
+
+	/**
+	 * @return Dispatch counters for every plugin that has registered as a listener.
+	 */
+	public Collection<PluginStats> getPluginStats() {
+		return pluginStats.values();
+	}
+
+	/**
+	 * Lets a quarantined plugin receive events again.
+	 *
+	 * @param pluginName Class name of the plugin, as shown in its {@link PluginStats}.
+	 * @return false if no plugin by that name has registered.
+	 */
+	public boolean releasePlugin(String pluginName) {
+		for (PluginStats stats : pluginStats.values()) {
+			if (stats.getPluginName().equalsIgnoreCase(pluginName)) {
+				stats.setQuarantined(false);
+				logger.info(stats.getPluginName() + " was released from quarantine");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The partitions events are queued on, empty unless running in {@link DispatchMode#PARTITIONED} mode.
+	 */
+	public Collection<EventPartition> getPartitions() {
+		if (partitions == null) {
+			return Collections.emptyList();
+		}
+		return partitions.getPartitions();
+	}
+
+	/**
+	 * @param eventType Type of event.
+	 * @return The plugins currently listening for the event type. Do not modify the array.
+	 */
+	public Plugin[] getListeners(EventType eventType) {
+		return listeners.get(eventType);
+	}
+
+	public void handleEvent(Event event) {
+		if (event.getEventType() == null) {
+			IrcLine line = IrcLine.parse(event.getRawData());
+			Plugin[] plugins = line == null ? null : commandListeners.get(line.getCommand());
+			if (plugins == null || plugins.length == 0) {
+				// CAP is handled by OnlineGuru itself, and ACCOUNT is sent to everyone whether anyone listens or not.
+				logger.debug("Registered unknown event: " + event.getRawData());
+				return;
+			}
+			dispatch(new DispatchedEvent(event), plugins);
+			return;
+		}
+
+		dispatch(new DispatchedEvent(event), listenersFor(event));
+
+		if (event.getEventType() == EventType.CONNECT) {
+			replyBatcher.reset(event.getNetwork());
+			return;
+		}
+		ReplyBatch.Type type = ReplyBatcher.typeOf(event);
+		if (type != null) {
+			Plugin[] plugins = batchListeners.get(type);
+			// Nothing is collected until someone wants the batches.
+			if (plugins.length > 0) {
+				ReplyBatch batch = replyBatcher.collect(type, event);
+				if (batch != null) {
+					dispatch(new DispatchedEvent(batch), plugins);
+				}
 			}
 		}
 	}
+
+	private void dispatch(DispatchedEvent e, Plugin[] listeners) {
+		switch (settings.getMode()) {
+			case PARTITIONED:
+				partitions.submit(e, listeners);
+				break;
+			case MAILBOX:
+				// Handing over to the mailboxes never blocks, and they keep their own order.
+				fireEvent(e, listeners);
+				break;
+			default:
+				synchronized (this) {
+					fireEvent(e, listeners);
+				}
+				break;
+		}
+	}
+
+	/**
+	 * @return Every plugin that should get the event, sorted by priority.
+	 */
+	private Plugin[] listenersFor(Event event) {
+		Plugin[] plugins = listeners.get(event.getEventType());
+		if (event.getEventType() != EventType.PRIVMSG) {
+			return plugins;
+		}
+
+		Plugin[] matches = triggerIndex.match(((PrivMsgEvent) event).getMessage());
+		if (matches.length == 0) {
+			return plugins;
+		}
+		Plugin[] all = Arrays.copyOf(plugins, plugins.length + matches.length);
+		System.arraycopy(matches, 0, all, plugins.length, matches.length);
+		Arrays.sort(all, BY_PRIORITY);
+		return all;
+	}
+
+	void fireEvent(DispatchedEvent e, Plugin[] listeners) {
+		for (int i = 0; i < listeners.length; i++) {
+			deliver(listeners[i], e);
+		}
+	}
+
+	void deliver(Plugin plugin, DispatchedEvent e) {
+		PluginStats stats = pluginStats.get(plugin);
+		if (stats == null) {
+			// Removed while the event was on its way.
+			return;
+		}
+		if (stats.isQuarantined()) {
+			stats.recordDrop();
+			return;
+		}
+
+		PluginMailbox mailbox = mailboxes.get(plugin);
+		if (mailbox != null) {
+			// Never blocks; a full mailbox drops the event and counts it.
+			mailbox.offer(e);
+		}
+		else if (partitions != null && plugin instanceof ConcurrentPlugin) {
+			invoke(plugin, stats, e, true);
+		}
+		else if (partitions != null) {
+			Object lock = pluginLocks.get(plugin);
+			if (lock == null) {
+				return;
+			}
+			synchronized (lock) {
+				invoke(plugin, stats, e, true);
+			}
+		}
+		else {
+			// Running on the connection thread, which must never be interrupted.
+			invoke(plugin, stats, e, false);
+		}
+	}
+
+	void recordShed(Plugin plugin) {
+		PluginStats stats = pluginStats.get(plugin);
+		if (stats != null) {
+			stats.recordShed();
+		}
+	}
+
+	private void invoke(Plugin plugin, PluginStats stats, DispatchedEvent e, boolean interruptible) {
+		stats.recordDelivery(0);
+		watchdog.invoke(plugin, stats, e, interruptible);
+	}
 }
@@ -0,0 +1,135 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A queue of events drained by a worker thread of its own.
+ * Used in {@link DispatchMode#PARTITIONED} mode, where every network gets one or more of these.
+ *
+ * Each event is split into one delivery per {@link PluginPriority} among its listeners. Critical
+ * deliveries are always handled before normal ones, and normal before best effort, while deliveries
+ * of the same priority keep their order. Every plugin has a single priority, so each plugin still
+ * sees the events in the order they arrived. When the backlog passes the shed threshold, best effort
+ * deliveries are shed instead of queued.
+ */
+public class EventPartition implements Runnable {
+
+    static Logger logger = Logger.getLogger(EventPartition.class);
+
+    private final String name;
+    private final EventDistributor eventDistributor;
+    private final int shedThreshold;
+    private final BlockingQueue<Delivery> queue = new PriorityBlockingQueue<Delivery>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    public EventPartition(String name, EventDistributor eventDistributor, int shedThreshold) {
+        this.name = name;
+        this.eventDistributor = eventDistributor;
+        this.shedThreshold = shedThreshold;
+
+        worker = new Thread(this);
+        worker.setName("Partition-" + name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues an event for its listeners.
+     *
+     * @param event     Event to deliver.
+     * @param listeners Listeners for the event, sorted by priority.
+     */
+    void offer(DispatchedEvent event, Plugin[] listeners) {
+        int from = 0;
+        while (from < listeners.length) {
+            PluginPriority priority = PluginPriority.of(listeners[from]);
+            int to = from + 1;
+            while (to < listeners.length && PluginPriority.of(listeners[to]) == priority) {
+                to++;
+            }
+
+            if (priority == PluginPriority.BEST_EFFORT && queue.size() >= shedThreshold) {
+                for (int i = from; i < to; i++) {
+                    eventDistributor.recordShed(listeners[i]);
+                }
+            }
+            else {
+                queue.offer(new Delivery(event, listeners, from, to, priority, sequence.getAndIncrement()));
+            }
+            from = to;
+        }
+    }
+
+    public void run() {
+        while (running) {
+            Delivery delivery;
+            try {
+                delivery = queue.take();
+            } catch (InterruptedException e) {
+                // The watchdog may interrupt a slow plugin just as it returns; only stop when asked to.
+                continue;
+            }
+
+            for (int i = delivery.from; i < delivery.to; i++) {
+                try {
+                    eventDistributor.deliver(delivery.listeners[i], delivery.event);
+                } catch (Throwable t) {
+                    // Keep the partition alive, or the whole network goes silent.
+                    logger.error(String.format("Partition %s failed to dispatch %s", name, delivery.event.getEvent().getRawData()), t);
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: depth=%d", name, getQueueDepth());
+    }
+
+    private static class Delivery implements Comparable<Delivery> {
+        private final DispatchedEvent event;
+        private final Plugin[] listeners;
+        private final int from;
+        private final int to;
+        private final PluginPriority priority;
+        private final long sequence;
+
+        private Delivery(DispatchedEvent event, Plugin[] listeners, int from, int to, PluginPriority priority, long sequence) {
+            this.event = event;
+            this.listeners = listeners;
+            this.from = from;
+            this.to = to;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Delivery other) {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
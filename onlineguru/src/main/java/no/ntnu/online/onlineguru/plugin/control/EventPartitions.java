@@ -0,0 +1,122 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.JoinEvent;
+import no.fictive.irclib.event.container.command.KickEvent;
+import no.fictive.irclib.event.container.command.ModeEvent;
+import no.fictive.irclib.event.container.command.PartEvent;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.fictive.irclib.event.container.command.TopicEvent;
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spreads events over {@link EventPartition}s by network, and optionally by channel.
+ *
+ * Every network, identified by its server alias, gets its own set of partitions, so a flood
+ * on one network never delays another. Events for the same channel always land on the same
+ * partition and are handled in the order they arrived. Events without a channel, like NICK,
+ * QUIT and numerics, go to the network's first partition. With more than one partition per
+ * network there is no ordering between those and the channel events on other partitions;
+ * a NICK may be handled after a later message in a channel. With one partition per network,
+ * everything from a network is handled in order.
+ */
+public class EventPartitions {
+
+    private final EventDistributor eventDistributor;
+    private final int channelPartitions;
+    private final int shedThreshold;
+    private final ConcurrentHashMap<String, EventPartition[]> networks = new ConcurrentHashMap<String, EventPartition[]>();
+
+    public EventPartitions(EventDistributor eventDistributor, int channelPartitions, int shedThreshold) {
+        this.eventDistributor = eventDistributor;
+        this.channelPartitions = Math.max(1, channelPartitions);
+        this.shedThreshold = shedThreshold;
+    }
+
+    /**
+     * @param event     Event to queue.
+     * @param listeners Listeners for the event, sorted by priority.
+     */
+    void submit(DispatchedEvent event, Plugin[] listeners) {
+        if (listeners.length == 0) {
+            return;
+        }
+        Event e = event.getEvent();
+        EventPartition[] partitions = getNetworkPartitions(String.valueOf(e.getNetwork().getServerAlias()));
+        partitions[partitionIndex(getChannel(e), partitions.length)].offer(event, listeners);
+    }
+
+    private EventPartition[] getNetworkPartitions(String serverAlias) {
+        EventPartition[] partitions = networks.get(serverAlias);
+        if (partitions != null) {
+            return partitions;
+        }
+
+        // New networks are rare, so simply make sure only one set of threads is started for each.
+        synchronized (networks) {
+            partitions = networks.get(serverAlias);
+            if (partitions == null) {
+                partitions = new EventPartition[channelPartitions];
+                for (int i = 0; i < partitions.length; i++) {
+                    partitions[i] = new EventPartition(serverAlias + "-" + i, eventDistributor, shedThreshold);
+                }
+                networks.put(serverAlias, partitions);
+            }
+            return partitions;
+        }
+    }
+
+    static int partitionIndex(String channel, int partitions) {
+        if (channel == null || partitions == 1) {
+            return 0;
+        }
+        return (channel.toLowerCase().hashCode() & Integer.MAX_VALUE) % partitions;
+    }
+
+    /**
+     * @param event Event to look at.
+     * @return The channel the event happened in, or null if it isn't tied to a channel.
+     */
+    static String getChannel(Event event) {
+        if (event instanceof PrivMsgEvent) {
+            PrivMsgEvent privMsgEvent = (PrivMsgEvent) event;
+            return privMsgEvent.isChannelMessage() ? privMsgEvent.getChannel() : null;
+        }
+        if (event instanceof JoinEvent) {
+            return ((JoinEvent) event).getChannel();
+        }
+        if (event instanceof PartEvent) {
+            return ((PartEvent) event).getChannel();
+        }
+        if (event instanceof KickEvent) {
+            return ((KickEvent) event).getChannel();
+        }
+        if (event instanceof TopicEvent) {
+            return ((TopicEvent) event).getChannel();
+        }
+        if (event instanceof ModeEvent) {
+            return ((ModeEvent) event).getChannel();
+        }
+        return null;
+    }
+
+    public Collection<EventPartition> getPartitions() {
+        List<EventPartition> all = new ArrayList<EventPartition>();
+        for (EventPartition[] partitions : networks.values()) {
+            all.addAll(Arrays.asList(partitions));
+        }
+        return all;
+    }
+
+    public void shutdown() {
+        for (EventPartition partition : getPartitions()) {
+            partition.shutdown();
+        }
+    }
+}
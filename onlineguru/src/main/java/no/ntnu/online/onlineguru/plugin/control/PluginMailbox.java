@@ -0,0 +1,121 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A bounded queue of events for one plugin, drained by a worker thread of its own.
+ * Events are handed to the plugin in the order they were offered. If the plugin falls
+ * so far behind that the queue is full, new events are dropped and counted instead of
+ * blocking the thread that offered them.
+ *
+ * The {@link PluginPriority} of the plugin decides how a backlog is handled. Critical plugins have
+ * an unbounded mailbox and never lose an event. Best effort plugins shed events as soon as the
+ * backlog passes the shed threshold, long before the mailbox is full.
+ */
+public class PluginMailbox implements Runnable {
+
+    static Logger logger = Logger.getLogger(PluginMailbox.class);
+
+    private final Plugin plugin;
+    private final PluginStats stats;
+    private final PluginWatchdog watchdog;
+    private final PluginPriority priority;
+    private final int shedThreshold;
+    private final BlockingQueue<Envelope> queue;
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    public PluginMailbox(Plugin plugin, PluginStats stats, PluginWatchdog watchdog, int capacity, int shedThreshold) {
+        this.plugin = plugin;
+        this.stats = stats;
+        this.watchdog = watchdog;
+        this.priority = PluginPriority.of(plugin);
+        this.shedThreshold = shedThreshold;
+
+        if (priority == PluginPriority.CRITICAL) {
+            this.queue = new LinkedBlockingQueue<Envelope>();
+        }
+        else {
+            this.queue = new ArrayBlockingQueue<Envelope>(capacity);
+        }
+
+        worker = new Thread(this);
+        worker.setName("Mailbox-" + stats.getPluginName());
+        worker.setDaemon(true);
+        if (priority == PluginPriority.CRITICAL) {
+            worker.setPriority(Thread.NORM_PRIORITY + 2);
+        }
+        else if (priority == PluginPriority.BEST_EFFORT) {
+            worker.setPriority(Thread.MIN_PRIORITY);
+        }
+        worker.start();
+    }
+
+    /**
+     * Queues an event for the plugin without blocking.
+     *
+     * @param event Event to deliver.
+     * @return false if the mailbox was full and the event was dropped, or shed.
+     */
+    boolean offer(DispatchedEvent event) {
+        if (priority == PluginPriority.BEST_EFFORT && queue.size() >= shedThreshold) {
+            stats.recordShed();
+            return false;
+        }
+
+        boolean accepted = queue.offer(new Envelope(event, System.nanoTime()));
+        stats.setQueueDepth(queue.size());
+
+        if (!accepted) {
+            long dropped = stats.recordDrop();
+            // Don't flood the log when a plugin is stuck, once in a while is enough.
+            if (dropped == 1 || dropped % 100 == 0) {
+                logger.warn(String.format("Mailbox for %s is full, %d events dropped so far.", stats.getPluginName(), dropped));
+            }
+        }
+        return accepted;
+    }
+
+    public void run() {
+        while (running) {
+            Envelope envelope;
+            try {
+                envelope = queue.take();
+            } catch (InterruptedException e) {
+                // The watchdog may interrupt a slow plugin just as it returns; only stop when asked to.
+                continue;
+            }
+            stats.setQueueDepth(queue.size());
+            stats.recordDelivery(System.nanoTime() - envelope.enqueued);
+
+            // The watchdog catches whatever the plugin throws, so the worker survives it.
+            watchdog.invoke(plugin, stats, envelope.event, true);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    public PluginStats getStats() {
+        return stats;
+    }
+
+    private static class Envelope {
+        private final DispatchedEvent event;
+        private final long enqueued;
+
+        private Envelope(DispatchedEvent event, long enqueued) {
+            this.event = event;
+            this.enqueued = enqueued;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatch counters for a single plugin. All counters are safe to update from any thread.
+ */
+public class PluginStats {
+
+    private final String pluginName;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+
+    // Strikes count towards quarantine. They are forgotten when a strike window ends, and when the plugin is released.
+    private final Strikes errorStrikes = new Strikes();
+    private final Strikes overrunStrikes = new Strikes();
+
+    private volatile int queueDepth;
+    private volatile boolean quarantined;
+
+    public PluginStats(String pluginName) {
+        this.pluginName = pluginName;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    /**
+     * Records that an event was handed to the plugin.
+     *
+     * @param latencyNanos Time the event spent queued before the plugin got it.
+     */
+    protected void recordDelivery(long latencyNanos) {
+        delivered.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+
+        long max = maxLatencyNanos.get();
+        while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+            max = maxLatencyNanos.get();
+        }
+    }
+
+    protected long recordDrop() {
+        return dropped.incrementAndGet();
+    }
+
+    /**
+     * Records an event that was skipped on purpose because the dispatch was backlogged.
+     */
+    protected long recordShed() {
+        return shed.incrementAndGet();
+    }
+
+    /**
+     * @param windowNanos How long strikes count from the first one, 0 until the plugin is released.
+     * @return Errors within the current strike window.
+     */
+    protected long recordError(long windowNanos) {
+        errors.incrementAndGet();
+        return errorStrikes.add(windowNanos);
+    }
+
+    /**
+     * @param windowNanos How long strikes count from the first one, 0 until the plugin is released.
+     * @return Overruns within the current strike window.
+     */
+    protected long recordOverrun(long windowNanos) {
+        overruns.incrementAndGet();
+        return overrunStrikes.add(windowNanos);
+    }
+
+    protected void setQuarantined(boolean quarantined) {
+        if (!quarantined) {
+            errorStrikes.clear();
+            overrunStrikes.clear();
+        }
+        this.quarantined = quarantined;
+    }
+
+    protected void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getShed() {
+        return shed.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getAverageLatencyMillis() {
+        long count = delivered.get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count);
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: depth=%d delivered=%d dropped=%d shed=%d errors=%d overruns=%d latency avg=%dms max=%dms%s",
+                pluginName,
+                getQueueDepth(),
+                getDelivered(),
+                getDropped(),
+                getShed(),
+                getErrors(),
+                getOverruns(),
+                getAverageLatencyMillis(),
+                getMaxLatencyMillis(),
+                isQuarantined() ? " QUARANTINED" : ""
+        );
+    }
+
+    private static class Strikes {
+        private long count;
+        private long windowStart;
+
+        private synchronized long add(long windowNanos) {
+            long now = System.nanoTime();
+            if (count == 0 || (windowNanos > 0 && now - windowStart > windowNanos)) {
+                count = 0;
+                windowStart = now;
+            }
+            return ++count;
+        }
+
+        private synchronized void clear() {
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Calls plugins on behalf of the {@link EventDistributor} and keeps an eye on them.
+ *
+ * Exceptions thrown by a plugin are caught and counted, so the other listeners still get the event.
+ * A monitor thread looks for calls that have run longer than the time budget. These are counted as
+ * overruns, and if the call runs on one of our own worker threads, that thread is interrupted. Calls
+ * made on the connection thread are never interrupted, only reported.
+ *
+ * A plugin that reaches the error or overrun threshold within the strike window is quarantined and gets
+ * no more events until it is released again, see {@link EventDistributor#releasePlugin(String)}.
+ * {@link PluginPriority#CRITICAL} plugins are never quarantined, since other plugins depend on them;
+ * reaching a threshold is only logged.
+ */
+public class PluginWatchdog implements Runnable {
+
+    static Logger logger = Logger.getLogger(PluginWatchdog.class);
+
+    private final long budgetNanos;
+    private final int errorThreshold;
+    private final int overrunThreshold;
+    private final long strikeWindowNanos;
+
+    private static final ThreadLocal<Boolean> delivering = new ThreadLocal<Boolean>();
+
+    private final ConcurrentHashMap<Thread, Call> calls = new ConcurrentHashMap<Thread, Call>();
+    private final Thread monitor;
+
+    public PluginWatchdog(DispatchSettings settings) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(settings.getTimeBudgetMillis());
+        this.errorThreshold = settings.getErrorThreshold();
+        this.overrunThreshold = settings.getOverrunThreshold();
+        this.strikeWindowNanos = TimeUnit.MILLISECONDS.toNanos(settings.getStrikeWindowMillis());
+
+        monitor = new Thread(this);
+        monitor.setName("PluginWatchdog");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    /**
+     * Hands an event to a plugin, unless it is quarantined.
+     *
+     * @param plugin        Plugin to call.
+     * @param stats         Counters for the plugin.
+     * @param event         Event to deliver.
+     * @param interruptible Whether the calling thread may be interrupted if the plugin runs over its budget.
+     */
+    void invoke(Plugin plugin, PluginStats stats, DispatchedEvent event, boolean interruptible) {
+        if (stats.isQuarantined()) {
+            stats.recordDrop();
+            return;
+        }
+
+        Thread thread = Thread.currentThread();
+        Call call = new Call(stats, thread, interruptible, PluginPriority.of(plugin) == PluginPriority.CRITICAL);
+        calls.put(thread, call);
+        delivering.set(Boolean.TRUE);
+
+        try {
+            event.deliverTo(plugin);
+        } catch (Throwable t) {
+            logger.error(String.format("%s failed to handle %s", stats.getPluginName(), event.getEvent().getRawData()), t);
+            strike(call, stats.recordError(strikeWindowNanos), errorThreshold, "errors");
+        } finally {
+            call.finish();
+            delivering.remove();
+            calls.remove(thread);
+            if (System.nanoTime() - call.started > budgetNanos) {
+                overrun(call);
+            }
+            if (interruptible) {
+                // Don't let an interrupt meant for the plugin stop the worker itself.
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * @return true if the current thread is handing an event to a plugin, meaning whatever it sends is a reply.
+     */
+    public static boolean isDeliveringEvent() {
+        return delivering.get() != null;
+    }
+
+    /**
+     * Lets work a plugin hands to a thread of its own while handling an event keep answering, so what it
+     * sends is still treated as a reply, see {@link #isDeliveringEvent()}.
+     *
+     * @param task Work to run later on another thread.
+     * @return The task, made to send replies if this is called while an event is being handled.
+     */
+    public static Runnable asReply(final Runnable task) {
+        if (!isDeliveringEvent()) {
+            return task;
+        }
+        return new Runnable() {
+            public void run() {
+                boolean nested = isDeliveringEvent();
+                delivering.set(Boolean.TRUE);
+                try {
+                    task.run();
+                } finally {
+                    if (!nested) {
+                        delivering.remove();
+                    }
+                }
+            }
+        };
+    }
+
+    public void run() {
+        long sleepMillis = Math.max(50, TimeUnit.NANOSECONDS.toMillis(budgetNanos) / 4);
+
+        while (true) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            for (Call call : calls.values()) {
+                if (now - call.started > budgetNanos && overrun(call) && call.interruptible) {
+                    call.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts an overrun, once per call.
+     *
+     * @return false if the overrun was already counted.
+     */
+    private boolean overrun(Call call) {
+        if (!call.reported.compareAndSet(false, true)) {
+            return false;
+        }
+        long overruns = call.stats.recordOverrun(strikeWindowNanos);
+        logger.warn(String.format("%s has used more than %dms on one event, on %s",
+                call.stats.getPluginName(), TimeUnit.NANOSECONDS.toMillis(budgetNanos), call.thread.getName()));
+
+        strike(call, overruns, overrunThreshold, "overruns");
+        return true;
+    }
+
+    /**
+     * Quarantines the plugin of a call if it has reached a threshold, unless it is critical.
+     */
+    private void strike(Call call, long strikes, int threshold, String what) {
+        if (threshold <= 0 || strikes < threshold) {
+            return;
+        }
+        PluginStats stats = call.stats;
+        if (call.critical) {
+            if (strikes == threshold) {
+                logger.error(String.format("%s has had %d %s, but is critical and keeps getting events.",
+                        stats.getPluginName(), strikes, what));
+            }
+            return;
+        }
+        if (!stats.isQuarantined()) {
+            stats.setQuarantined(true);
+            logger.error(String.format("%s is quarantined after %d %s. Use !dispatch release %s to enable it again.",
+                    stats.getPluginName(), strikes, what, stats.getPluginName()));
+        }
+    }
+
+    public void shutdown() {
+        monitor.interrupt();
+    }
+
+    private static class Call {
+        private final PluginStats stats;
+        private final Thread thread;
+        private final boolean interruptible;
+        private final boolean critical;
+        private final long started = System.nanoTime();
+        private final AtomicBoolean reported = new AtomicBoolean();
+        private boolean finished = false;
+
+        private Call(PluginStats stats, Thread thread, boolean interruptible, boolean critical) {
+            this.stats = stats;
+            this.thread = thread;
+            this.interruptible = interruptible;
+            this.critical = critical;
+        }
+
+        /**
+         * Interrupts the thread, unless the call has finished and the thread may have moved on to another plugin.
+         */
+        private synchronized void interrupt() {
+            if (!finished) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Called by the thread making the call when the plugin returns. Any interrupt for the call has
+         * been made once this returns, so the thread can clear it.
+         */
+        private synchronized void finish() {
+            finished = true;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects WHO and NAMES replies per network until the numeric that ends the list, for the
+ * {@link EventDistributor} to hand over as one {@link ReplyBatch}.
+ *
+ * Replies of both types may be collected at the same time, since a server can answer a WHO
+ * while a NAMES list is still coming in. When a list grows past the limit, what has been
+ * collected so far is handed out as an incomplete batch and collecting starts over.
+ */
+class ReplyBatcher {
+
+    private final int limit;
+    private final ConcurrentHashMap<Network, EnumMap<ReplyBatch.Type, List<Event>>> networks =
+            new ConcurrentHashMap<Network, EnumMap<ReplyBatch.Type, List<Event>>>();
+
+    ReplyBatcher(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * @param event Event to look at.
+     * @return The kind of list the event is part of, or null if it isn't a WHO or NAMES reply.
+     */
+    static ReplyBatch.Type typeOf(Event event) {
+        switch (event.getEventType()) {
+            case RPL_WHOREPLY:
+                return ReplyBatch.Type.WHO;
+            case RPL_NAMREPLY:
+                return ReplyBatch.Type.NAMES;
+            case NUMERIC:
+                switch (((NumericEvent) event).getNumeric()) {
+                    case 315:
+                    case 352:
+                    case 354:
+                        return ReplyBatch.Type.WHO;
+                    case 353:
+                    case 366:
+                        return ReplyBatch.Type.NAMES;
+                }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a reply to the list it belongs to.
+     *
+     * @param type  The kind of list, see {@link #typeOf(Event)}.
+     * @param event The reply, or the numeric ending the list.
+     * @return A batch if the list is complete or has reached the limit, otherwise null.
+     */
+    ReplyBatch collect(ReplyBatch.Type type, Event event) {
+        Network network = event.getNetwork();
+        EnumMap<ReplyBatch.Type, List<Event>> open = networks.get(network);
+        if (open == null) {
+            networks.putIfAbsent(network, new EnumMap<ReplyBatch.Type, List<Event>>(ReplyBatch.Type.class));
+            open = networks.get(network);
+        }
+
+        // Each network has a single connection thread, so this is hardly ever contended.
+        synchronized (open) {
+            List<Event> replies = open.get(type);
+            boolean end = event instanceof NumericEvent && ((NumericEvent) event).getNumeric() == type.getEndNumeric();
+
+            if (end) {
+                open.remove(type);
+                return new ReplyBatch(type, network, replies == null ? new ArrayList<Event>(0) : replies, (NumericEvent) event);
+            }
+
+            if (replies == null) {
+                replies = new ArrayList<Event>();
+                open.put(type, replies);
+            }
+            replies.add(event);
+
+            if (replies.size() >= limit) {
+                open.remove(type);
+                return new ReplyBatch(type, network, replies, null);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Throws away the lists that were being collected for a network, like when it reconnects.
+     */
+    void reset(Network network) {
+        networks.remove(network);
+    }
+}
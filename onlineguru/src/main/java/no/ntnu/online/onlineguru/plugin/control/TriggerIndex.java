@@ -0,0 +1,137 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+
+/**
+ * Case insensitive prefix tree from command triggers to the plugins that registered them.
+ * A message is matched by walking its first characters down the tree once, so a message
+ * without any trigger costs a single short walk no matter how many plugins are loaded.
+ *
+ * A trigger matches every message that starts with it, "!np" matches both "!np" and "!nprefix".
+ * Plugins still do their own parsing, the index only decides who gets to look at the message.
+ *
+ * Instances are immutable and safe to share between threads; build a new one when the triggers change.
+ */
+public class TriggerIndex {
+
+    static final Plugin[] NO_PLUGINS = new Plugin[0];
+
+    private final Node root = new Node();
+    private final int size;
+
+    public TriggerIndex() {
+        this.size = 0;
+    }
+
+    /**
+     * @param triggers Plugins registered per trigger.
+     */
+    public TriggerIndex(Map<String, ? extends Collection<Plugin>> triggers) {
+        int count = 0;
+        for (Map.Entry<String, ? extends Collection<Plugin>> entry : triggers.entrySet()) {
+            if (entry.getKey() == null || entry.getKey().length() == 0 || entry.getValue().isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            String trigger = entry.getKey();
+            for (int i = 0; i < trigger.length(); i++) {
+                node = node.child(Character.toLowerCase(trigger.charAt(i)), true);
+            }
+            for (Plugin plugin : entry.getValue()) {
+                node.add(plugin);
+            }
+            count++;
+        }
+        this.size = count;
+    }
+
+    /**
+     * Finds every plugin with a trigger that the message starts with.
+     *
+     * @param message Message to look up.
+     * @return Matching plugins without duplicates, in order of trigger length.
+     */
+    public Plugin[] match(String message) {
+        if (message == null || size == 0) {
+            return NO_PLUGINS;
+        }
+
+        List<Plugin> matches = null;
+        Node node = root;
+        for (int i = 0; i < message.length(); i++) {
+            node = node.child(Character.toLowerCase(message.charAt(i)), false);
+            if (node == null) {
+                break;
+            }
+            for (Plugin plugin : node.plugins) {
+                if (matches == null) {
+                    matches = new ArrayList<Plugin>(2);
+                }
+                if (!matches.contains(plugin)) {
+                    matches.add(plugin);
+                }
+            }
+        }
+
+        if (matches == null) {
+            return NO_PLUGINS;
+        }
+        return matches.toArray(new Plugin[matches.size()]);
+    }
+
+    /**
+     * @return Number of distinct triggers in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Plugin[] plugins = NO_PLUGINS;
+
+        private Node child(char key, boolean create) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            if (!create) {
+                return null;
+            }
+
+            // Only done while building, keeps the keys sorted for the binary search above.
+            int insert = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+
+            Node node = new Node();
+            newKeys[insert] = key;
+            newChildren[insert] = node;
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+
+        private void add(Plugin plugin) {
+            for (Plugin existing : plugins) {
+                if (existing == plugin) {
+                    return;
+                }
+            }
+            Plugin[] newPlugins = Arrays.copyOf(plugins, plugins.length + 1);
+            newPlugins[plugins.length] = plugin;
+            plugins = newPlugins;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+/**
+ * Marks a plugin that handles being called from several threads at once.
+ *
+ * When events are dispatched in parallel, plugins are otherwise called one event at a time,
+ * so they can keep state in plain collections. A plugin implementing this interface is called
+ * without that lock, and must keep all its state in thread safe structures.
+ */
+public interface ConcurrentPlugin extends Plugin {
+}
@@ -0,0 +1,219 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.fictive.irclib.model.network.Network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A PRIVMSG together with the things plugins commonly derive from it; the tokens, the trigger,
+ * the lower case message, the URLs and whether the message is meant for the bot.
+ *
+ * One context is made per message and shared by every plugin that gets it, see {@link PluginWithMessageContext}.
+ * Everything is worked out the first time it is asked for and kept. Threads asking at the same time
+ * may each work it out, but they get equal results and the context never changes otherwise, so it is
+ * safe to share between threads.
+ */
+public class MessageContext {
+
+    private final PrivMsgEvent event;
+    private final String message;
+
+    private volatile List<String> tokens;
+    private volatile int[] tokenStarts;
+    private volatile String lowerCaseMessage;
+    private volatile List<Span> urls;
+    private volatile Boolean addressedToBot;
+
+    public MessageContext(PrivMsgEvent event) {
+        this.event = event;
+        this.message = event.getMessage() == null ? "" : event.getMessage();
+    }
+
+    public PrivMsgEvent getEvent() {
+        return event;
+    }
+
+    public Network getNetwork() {
+        return event.getNetwork();
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The message split on whitespace, without empty tokens. Cannot be modified.
+     */
+    public List<String> getTokens() {
+        List<String> result = tokens;
+        if (result == null) {
+            tokenize();
+            result = tokens;
+        }
+        return result;
+    }
+
+    /**
+     * @param index Index of the token.
+     * @return The token, or null if the message has fewer tokens.
+     */
+    public String getToken(int index) {
+        List<String> result = getTokens();
+        return index < result.size() ? result.get(index) : null;
+    }
+
+    public int getTokenCount() {
+        return getTokens().size();
+    }
+
+    /**
+     * @return The first token, which is where commands like "!peak" are, or an empty string for an empty message.
+     */
+    public String getTrigger() {
+        List<String> result = getTokens();
+        return result.isEmpty() ? "" : result.get(0);
+    }
+
+    /**
+     * @return Everything after the trigger, trimmed.
+     */
+    public String getArguments() {
+        getTokens();
+        if (tokenStarts.length < 2) {
+            return "";
+        }
+        return message.substring(tokenStarts[1]).trim();
+    }
+
+    public String getLowerCaseMessage() {
+        String result = lowerCaseMessage;
+        if (result == null) {
+            result = message.toLowerCase();
+            lowerCaseMessage = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return Every token that looks like a URL, starting with "http" or "www", in the order they appear. Cannot be modified.
+     */
+    public List<Span> getUrls() {
+        List<Span> result = urls;
+        if (result == null) {
+            List<String> words = getTokens();
+            int[] starts = tokenStarts;
+            List<Span> found = null;
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                if (word.startsWith("http") || word.startsWith("www")) {
+                    if (found == null) {
+                        found = new ArrayList<Span>(2);
+                    }
+                    found.add(new Span(starts[i], starts[i] + word.length(), word));
+                }
+            }
+            result = found == null ? Collections.<Span>emptyList() : Collections.unmodifiableList(found);
+            urls = result;
+        }
+        return result;
+    }
+
+    /**
+     * A message is addressed to the bot if it is sent in private, or if it starts with the bot's nick,
+     * like "OnlineGuru: hi" or "onlineguru, hi".
+     *
+     * @return Whether the message is meant for the bot.
+     */
+    public boolean isAddressedToBot() {
+        Boolean result = addressedToBot;
+        if (result == null) {
+            result = event.isPrivateMessage() || startsWithNick(getMyNick());
+            addressedToBot = result;
+        }
+        return result;
+    }
+
+    private String getMyNick() {
+        Network network = event.getNetwork();
+        if (network == null || network.getProfile() == null) {
+            return null;
+        }
+        return network.getProfile().getNickname();
+    }
+
+    private boolean startsWithNick(String nick) {
+        if (nick == null || !message.regionMatches(true, 0, nick, 0, nick.length())) {
+            return false;
+        }
+        if (message.length() == nick.length()) {
+            return true;
+        }
+        char next = message.charAt(nick.length());
+        return next == ':' || next == ',' || Character.isWhitespace(next);
+    }
+
+    private void tokenize() {
+        List<String> words = new ArrayList<String>();
+        int[] starts = new int[8];
+
+        int i = 0;
+        int length = message.length();
+        while (i < length) {
+            while (i < length && Character.isWhitespace(message.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(message.charAt(i))) {
+                i++;
+            }
+            if (words.size() == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[words.size()] = start;
+            words.add(message.substring(start, i));
+        }
+
+        // Starts first, tokens last; tokens being set is what tells other threads both are ready.
+        tokenStarts = Arrays.copyOf(starts, words.size());
+        tokens = Collections.unmodifiableList(words);
+    }
+
+    /**
+     * A part of the message, from start inclusive to end exclusive.
+     */
+    public static class Span {
+        private final int start;
+        private final int end;
+        private final String text;
+
+        public Span(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
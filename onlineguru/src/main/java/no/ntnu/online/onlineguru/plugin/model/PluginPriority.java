@@ -0,0 +1,36 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+/**
+ * How important it is that a plugin keeps up with events, see {@link PluginWithPriority}.
+ */
+public enum PluginPriority {
+
+    /**
+     * Bookkeeping other plugins depend on, like who is logged in. Handled first and never shed.
+     */
+    CRITICAL,
+
+    /**
+     * The default for plugins that don't declare a priority.
+     */
+    NORMAL,
+
+    /**
+     * Cosmetic work that can be skipped when the bot is overloaded.
+     */
+    BEST_EFFORT;
+
+    /**
+     * @param plugin Plugin to look up.
+     * @return The priority the plugin declares, or {@link #NORMAL}.
+     */
+    public static PluginPriority of(Plugin plugin) {
+        if (plugin instanceof PluginWithPriority) {
+            PluginPriority priority = ((PluginWithPriority) plugin).getPriority();
+            if (priority != null) {
+                return priority;
+            }
+        }
+        return NORMAL;
+    }
+}
@@ -0,0 +1,9 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+/**
+ * A plugin that gets PRIVMSG events as a shared {@link MessageContext} instead of through incomingEvent.
+ * Other event types are still delivered to incomingEvent.
+ */
+public interface PluginWithMessageContext extends Plugin {
+	public void incomingMessage(MessageContext context);
+}
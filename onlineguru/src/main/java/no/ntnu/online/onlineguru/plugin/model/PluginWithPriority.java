@@ -0,0 +1,5 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+public interface PluginWithPriority extends Plugin {
+	public PluginPriority getPriority();
+}
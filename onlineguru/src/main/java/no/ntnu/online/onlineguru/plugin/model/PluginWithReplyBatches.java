@@ -0,0 +1,9 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+/**
+ * A plugin that gets WHO and NAMES replies as one {@link ReplyBatch} per reply list, instead of one event per line.
+ * Register with {@link no.ntnu.online.onlineguru.plugin.control.EventDistributor#addReplyBatchListener}.
+ */
+public interface PluginWithReplyBatches extends Plugin {
+	public void incomingReplyBatch(ReplyBatch batch);
+}
@@ -0,0 +1,87 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.model.network.Network;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The replies to one WHO or NAMES request, collected up to the numeric that ends the list.
+ *
+ * A very long list is split into several batches so it never has to be held in memory all at once.
+ * Only the last of those has the end numeric, see {@link #isComplete()}.
+ */
+public class ReplyBatch {
+
+    public enum Type {
+        /**
+         * 352 RPL_WHOREPLY and 354 RPL_WHOSPCRPL, ended by 315 RPL_ENDOFWHO.
+         */
+        WHO(315),
+
+        /**
+         * 353 RPL_NAMREPLY, ended by 366 RPL_ENDOFNAMES.
+         */
+        NAMES(366);
+
+        private final int endNumeric;
+
+        private Type(int endNumeric) {
+            this.endNumeric = endNumeric;
+        }
+
+        public int getEndNumeric() {
+            return endNumeric;
+        }
+    }
+
+    private final Type type;
+    private final Network network;
+    private final List<Event> replies;
+    private final NumericEvent end;
+
+    public ReplyBatch(Type type, Network network, List<Event> replies, NumericEvent end) {
+        this.type = type;
+        this.network = network;
+        this.replies = Collections.unmodifiableList(replies);
+        this.end = end;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return The replies in the order they arrived. Cannot be modified.
+     */
+    public List<Event> getReplies() {
+        return replies;
+    }
+
+    /**
+     * @return The numeric that ended the list, or null if the batch was cut off at the size limit.
+     */
+    public NumericEvent getEnd() {
+        return end;
+    }
+
+    public boolean isComplete() {
+        return end != null;
+    }
+
+    /**
+     * @return The channel or mask the list was for, as given by the end numeric, or null if the batch isn't complete.
+     */
+    public String getTarget() {
+        if (end == null || end.getParamaters() == null || end.getParamaters().size() < 2) {
+            return null;
+        }
+        return end.getParamaters().get(1);
+    }
+}
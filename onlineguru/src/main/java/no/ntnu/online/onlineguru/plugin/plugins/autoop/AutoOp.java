@@ -12,8 +12,10 @@ import no.fictive.irclib.event.container.command.JoinEvent;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
 import no.ntnu.online.onlineguru.plugin.plugins.chanserv.control.ChanServ;
 import no.ntnu.online.onlineguru.utils.SimpleIO;
 import no.ntnu.online.onlineguru.utils.Wand;
@@ -22,7 +24,7 @@ import no.ntnu.online.onlineguru.utils.Wand;
  *
  * @author Roy Sindre Norangshol
  */
-public class AutoOp implements Plugin, PluginWithDependencies {
+public class AutoOp implements Plugin, PluginWithDependencies, PluginWithMessageContext {
 
     private final String DB_FOLDER = "database/";
     private final String DB_FILE = DB_FOLDER + "autoop.db";
@@ -57,15 +59,19 @@ public class AutoOp implements Plugin, PluginWithDependencies {
                 break;
             }
             case PRIVMSG: {
-                handleMsg((PrivMsgEvent) e);
+                incomingMessage(new MessageContext((PrivMsgEvent) e));
                 break;
             }
         }
     }
 
+    public void incomingMessage(MessageContext context) {
+        handleMsg(context);
+    }
+
     public void addEventDistributor(EventDistributor eventDistributor) {
         eventDistributor.addListener(this, EventType.JOIN);
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, TRIGGER);
     }
 
     public void addWand(Wand wand) {
@@ -82,10 +88,11 @@ public class AutoOp implements Plugin, PluginWithDependencies {
         }
     }
 
-    private void handleMsg(PrivMsgEvent pme) {
+    private void handleMsg(MessageContext context) {
+        PrivMsgEvent pme = context.getEvent();
     	if(pme.isPrivateMessage()) {
-	        if (pme.getMessage().toLowerCase().startsWith(TRIGGER) && chanServ.isNickLoggedIn(pme.getSender())) {
-	            String[] message = pme.getMessage().split("\\s+");
+	        if (context.getLowerCaseMessage().startsWith(TRIGGER) && chanServ.isNickLoggedIn(pme.getSender())) {
+	            String[] message = context.getTokens().toArray(new String[context.getTokenCount()]);
 	            if (message.length > 2) {
 	                if ("add".equalsIgnoreCase(message[1]) && message.length == 6) {
 	                    addToAutoOpList(message[2], message[3], message[4], message[5]);
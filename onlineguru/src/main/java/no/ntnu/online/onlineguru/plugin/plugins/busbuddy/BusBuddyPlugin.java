@@ -2,11 +2,12 @@ package no.ntnu.online.onlineguru.plugin.plugins.busbuddy;
 
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
 import no.norrs.busbuddy.pub.api.BusBuddyAPIServiceController;
 import no.norrs.busbuddy.pub.api.model.*;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
-import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.control.PluginWatchdog;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
 import no.ntnu.online.onlineguru.utils.SimpleIO;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.commons.httpclient.NameValuePair;
@@ -21,23 +22,33 @@ import org.joda.time.format.PeriodFormatterBuilder;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
  * @author Roy Sindre Norangshol
  */
-public class BusBuddyPlugin implements Plugin {
+public class BusBuddyPlugin implements PluginWithMessageContext {
     private static final String DESCRIPTION = "BusBuddy (Public transportation plugin for users in Trondheim, Norway)";
     private final String TRIGGER_BB = "!bb";
     private final String TRIGGER_BUSS = "!buss";
     private final String TRIGGER_SANNTID = "!sanntid";
     private final String SETTINGS_FOLDER = "settings/";
     private final String SETTINGS_FILE = SETTINGS_FOLDER + "busbuddy.conf";
+    // Lookups are slow web requests, so a few run at once and a few more may wait. The rest are turned away.
+    private static final int LOOKUP_THREADS = 2;
+    private static final int LOOKUP_QUEUE = 10;
     private Wand wand;
     BusBuddyAPIServiceController busBuddyAPIServiceController;
     static Logger logger = Logger.getLogger(BusBuddyPlugin.class);
     private Pattern pattern1;
-    private List<BusStop> searchStops;
+    private volatile List<BusStop> searchStops;
+    private ExecutorService lookups;
 
 
     public BusBuddyPlugin() {
@@ -59,6 +70,15 @@ public class BusBuddyPlugin implements Plugin {
 
     private void init(String apiKey) {
         busBuddyAPIServiceController = new BusBuddyAPIServiceController(apiKey);
+        lookups = new ThreadPoolExecutor(LOOKUP_THREADS, LOOKUP_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(LOOKUP_QUEUE), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setName("BusBuddy");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
         pattern1 = Pattern.compile("(?:Holdeplassen nærmest (?:\\w.+?) er|Buss? \\d+ (?:passerer|går fra|goes from)) (\\w.+?)(?:\\.| (?:kl|at))");
     }
 
@@ -69,17 +89,22 @@ public class BusBuddyPlugin implements Plugin {
     public void incomingEvent(Event e) {
         switch (e.getEventType()) {
             case PRIVMSG: {
-                PrivMsgEvent privMsgEvent = (PrivMsgEvent) e;
-                if (privMsgEvent.getMessage().toLowerCase().startsWith(TRIGGER_BB))
-                    handleOracleRequest(privMsgEvent, TRIGGER_BB.length());
-                else if (privMsgEvent.getMessage().toLowerCase().startsWith(TRIGGER_BUSS))
-                    handleOracleRequest(privMsgEvent, TRIGGER_BUSS.length());
-                else if (privMsgEvent.getMessage().toLowerCase().startsWith(TRIGGER_SANNTID))
-                    handleRealTimeRequest(privMsgEvent, TRIGGER_SANNTID.length());
+                incomingMessage(new MessageContext((PrivMsgEvent) e));
             }
         }
     }
 
+    public void incomingMessage(MessageContext context) {
+        PrivMsgEvent privMsgEvent = context.getEvent();
+        String message = context.getLowerCaseMessage();
+        if (message.startsWith(TRIGGER_BB))
+            handleOracleRequest(privMsgEvent, TRIGGER_BB.length());
+        else if (message.startsWith(TRIGGER_BUSS))
+            handleOracleRequest(privMsgEvent, TRIGGER_BUSS.length());
+        else if (message.startsWith(TRIGGER_SANNTID))
+            handleRealTimeRequest(privMsgEvent, TRIGGER_SANNTID.length());
+    }
+
     private void handleRealTimeRequest(final PrivMsgEvent privMsgEvent, final int triggerLength) {
         Runnable newAsyncQuery = new Runnable() {
             public void run() {
@@ -118,7 +143,16 @@ public class BusBuddyPlugin implements Plugin {
                 }
             }
         };
-        newAsyncQuery.run();
+        lookup(privMsgEvent, newAsyncQuery);
+    }
+
+    private void lookup(PrivMsgEvent privMsgEvent, Runnable query) {
+        try {
+            lookups.execute(PluginWatchdog.asReply(query));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Too many BusBuddy lookups waiting, turned one away");
+            wand.sendMessageToTarget(privMsgEvent.getNetwork(), privMsgEvent.getTarget(), "[BusBuddy-ERR] For mange oppslag på en gang, prøv igjen om litt.");
+        }
     }
 
     private void announceRealTime(PrivMsgEvent privMsgEvent, BusStop busStop, int direction) throws IOException {
@@ -189,7 +223,7 @@ public class BusBuddyPlugin implements Plugin {
 
             }
         };
-        newAsyncQuery.run();
+        lookup(privMsgEvent, newAsyncQuery);
     }
 
     private void announceRealtimeAd(final PrivMsgEvent privMsgEvent, final String travelDestinationFrom) {
@@ -237,7 +271,7 @@ public class BusBuddyPlugin implements Plugin {
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, TRIGGER_BB, TRIGGER_BUSS, TRIGGER_SANNTID);
     }
 
     public void addWand(Wand wand) {
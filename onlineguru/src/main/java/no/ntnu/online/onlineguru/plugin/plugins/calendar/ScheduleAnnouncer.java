@@ -1,6 +1,7 @@
 package no.ntnu.online.onlineguru.plugin.plugins.calendar;
 
 
+import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
@@ -265,8 +266,9 @@ public class ScheduleAnnouncer {
 
     private void sendMessageToOnline(String message) {
         logger.debug(message);
-        if (wand.amIOnChannel(wand.getNetworkByAlias("freenode"), "#online"))
-            wand.sendMessageToTarget(wand.getNetworkByAlias("freenode"), "#online", message);
+        Network network = wand.getNetworkByAlias("freenode");
+        if (network != null && wand.amIOnChannel(network, "#online"))
+            wand.sendMessageToTarget(network, "#online", message);
     }
 
     public static void main(String[] args) {
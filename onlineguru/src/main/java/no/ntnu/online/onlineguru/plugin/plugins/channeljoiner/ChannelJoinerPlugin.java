@@ -9,8 +9,12 @@ import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.FlagsPlugin;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.plugin.plugins.help.HelpPlugin;
+import no.ntnu.online.onlineguru.utils.JoinBatcher;
 import no.ntnu.online.onlineguru.utils.Wand;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * @author Håvard Slettvold
  */
@@ -30,30 +34,79 @@ public class ChannelJoinerPlugin implements PluginWithDependencies {
             PrivMsgEvent pme = (PrivMsgEvent) e;
             if (pme.isPrivateMessage()) {
                 String[] parts = pme.getMessage().split("\\s");
-                if (parts.length == 2 && parts[0].equalsIgnoreCase("join")) {
+                if (parts.length >= 2 && parts[0].equalsIgnoreCase("join")) {
+                    handleJoin(pme, parts);
+                }
+                if (parts.length == 2 && parts[0].equalsIgnoreCase("part")) {
                     String channel = parts[1];
                     if (flagsPlugin.getFlags(pme.getNetwork(), channel, pme.getSender()).contains(controlFlag)) {
-                        wand.join(e.getNetwork(), channel);
+                        wand.part(e.getNetwork(), channel);
                     }
                     else {
                         wand.sendMessageToTarget(e.getNetwork(), pme.getSender(), "You have insufficient access to use this command. +a required.");
                     }
                 }
-                if (parts.length == 2 && parts[0].equalsIgnoreCase("part")) {
-                    String channel = parts[1];
-                    if (flagsPlugin.getFlags(pme.getNetwork(), channel, pme.getSender()).contains(controlFlag)) {
-                        wand.part(e.getNetwork(), channel);
+            }
+        }
+    }
+
+    /**
+     * Joins every channel the sender has access to in as few lines as possible, and tells the sender which
+     * channels were left out. Channels can be separated by spaces or commas, and a word that isn't a channel
+     * is the key of the channel before it.
+     */
+    private void handleJoin(PrivMsgEvent pme, String[] parts) {
+        JoinBatcher joins = new JoinBatcher();
+        Set<String> refused = new LinkedHashSet<String>();
+        String channel = null;
+
+        for (int i = 1; i < parts.length; i++) {
+            for (String word : parts[i].split(",")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                if (isChannel(word)) {
+                    channel = word;
+                    if (hasAccess(pme, channel)) {
+                        joins.add(channel, null);
                     }
                     else {
-                        wand.sendMessageToTarget(e.getNetwork(), pme.getSender(), "You have insufficient access to use this command. +a required.");
+                        refused.add(channel);
                     }
                 }
+                else if (channel != null && hasAccess(pme, channel)) {
+                    joins.add(channel, word);
+                }
+            }
+        }
+
+        if (joins.isEmpty() && refused.isEmpty()) {
+            wand.sendMessageToTarget(pme.getNetwork(), pme.getSender(), "No channels given. Usage: join <channel> [key]");
+            return;
+        }
+        if (!refused.isEmpty()) {
+            StringBuilder channels = new StringBuilder();
+            for (String name : refused) {
+                channels.append(channels.length() == 0 ? "" : ", ").append(name);
             }
+            wand.sendMessageToTarget(pme.getNetwork(), pme.getSender(), "You have insufficient access to join " + channels + ". +a required.");
+        }
+        for (String line : joins.getLines()) {
+            wand.sendServerMessage(pme.getNetwork(), line);
         }
     }
 
+    private boolean hasAccess(PrivMsgEvent pme, String channel) {
+        return flagsPlugin.getFlags(pme.getNetwork(), channel, pme.getSender()).contains(controlFlag);
+    }
+
+    private static boolean isChannel(String word) {
+        char first = word.charAt(0);
+        return first == '#' || first == '&' || first == '!' || first == '+';
+    }
+
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, "join", "part");
     }
 
     public void addWand(Wand wand) {
@@ -70,7 +123,7 @@ public class ChannelJoinerPlugin implements PluginWithDependencies {
         }
         if (plugin instanceof HelpPlugin) {
             HelpPlugin helpPlugin = (HelpPlugin) plugin;
-            helpPlugin.addHelp("join|part", controlFlag, "<join|part> <channel> - Tells the bot to join or part a channel. Only work in private messages.");
+            helpPlugin.addHelp("join|part", controlFlag, "<join|part> <channel> - Tells the bot to join or part a channel. join takes several channels, each followed by its key if it has one. Only work in private messages.");
         }
     }
 }
@@ -8,12 +8,13 @@ import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.fictive.irclib.event.container.command.QuitEvent;
 import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
-import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
 import no.ntnu.online.onlineguru.plugin.plugins.chanserv.handlers.AuthorizedUserHandler;
 import no.ntnu.online.onlineguru.plugin.plugins.chanserv.handlers.RequestHandler;
 import no.ntnu.online.onlineguru.utils.Wand;
 
-public class ChanServ implements Plugin {
+public class ChanServ implements PluginWithPriority {
 	
 	private RequestHandler requestHandler;
 	private AuthorizedUserHandler userHandler;
@@ -40,6 +41,10 @@ public class ChanServ implements Plugin {
 		return "Keeps a record over authorized bot users.";
 	}
 
+	public PluginPriority getPriority() {
+		return PluginPriority.CRITICAL;
+	}
+
 	public void incomingEvent(Event e) {
 		switch(e.getEventType()) {
 			case PRIVMSG:
@@ -2,7 +2,6 @@ package no.ntnu.online.onlineguru.plugin.plugins.dict;
 
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.utils.Wand;
@@ -55,7 +54,7 @@ public class Dict implements Plugin {
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, PLUGIN_KEYWORD);
     }
 
     public void addWand(Wand wand) {
@@ -37,7 +37,7 @@ public class DiePlugin implements PluginWithDependencies {
 	}
 
 	public void addEventDistributor(EventDistributor eventDistributor) {
-		eventDistributor.addListener(this, EventType.PRIVMSG);
+		eventDistributor.addTriggerListener(this, "die");
 	}
 
 	public void addWand(Wand wand) {
@@ -0,0 +1,111 @@
+package no.ntnu.online.onlineguru.plugin.plugins.dispatch;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.fictive.irclib.event.model.EventType;
+import no.ntnu.online.onlineguru.OnlineGuru;
+import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.control.EventPartition;
+import no.ntnu.online.onlineguru.plugin.control.PluginStats;
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
+import no.ntnu.online.onlineguru.plugin.plugins.flags.FlagsPlugin;
+import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
+import no.ntnu.online.onlineguru.plugin.plugins.help.HelpPlugin;
+import no.ntnu.online.onlineguru.service.services.outbound.Outbound;
+import no.ntnu.online.onlineguru.service.services.outbound.OutboundQueue;
+import no.ntnu.online.onlineguru.service.services.history.History;
+import no.ntnu.online.onlineguru.service.services.who.Who;
+import no.ntnu.online.onlineguru.utils.Wand;
+
+/**
+ * Reports how the {@link EventDistributor} is keeping up; queue depth, dropped events and latency per plugin,
+ * the queue depth of every partition when dispatching in parallel, and how long lines wait to be sent.
+ */
+public class DispatchPlugin implements PluginWithDependencies {
+
+    private static final String TRIGGER = "!dispatch";
+
+    private Wand wand;
+    private EventDistributor eventDistributor;
+    private FlagsPlugin flagsPlugin;
+
+    public String getDescription() {
+        return "Shows event dispatch statistics for the loaded plugins.";
+    }
+
+    public void incomingEvent(Event e) {
+        if (e.getEventType() == EventType.PRIVMSG) {
+            handlePrivMsgEvent((PrivMsgEvent) e);
+        }
+    }
+
+    private void handlePrivMsgEvent(PrivMsgEvent e) {
+        String[] message = e.getMessage().split("\\s+");
+        if (!message[0].equals(TRIGGER)) {
+            return;
+        }
+
+        String sender = e.getSender();
+        if (!flagsPlugin.isSuperuser(e.getNetwork(), sender)) {
+            wand.sendMessageToTarget(e.getNetwork(), sender, "This feature requires superuser status.");
+            return;
+        }
+
+        if (message.length == 3 && message[1].equals("release")) {
+            if (eventDistributor.releasePlugin(message[2])) {
+                wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] " + message[2] + " was released.");
+            }
+            else {
+                wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] No plugin named " + message[2] + ".");
+            }
+            return;
+        }
+
+        wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] Mode: " + eventDistributor.getMode());
+        for (PluginStats stats : eventDistributor.getPluginStats()) {
+            wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] " + stats);
+        }
+        for (EventPartition partition : eventDistributor.getPartitions()) {
+            wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] Partition " + partition);
+        }
+        Outbound outbound = OnlineGuru.serviceLocator.getInstance(Outbound.class);
+        for (OutboundQueue queue : outbound.getQueues()) {
+            wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] Outbound " + queue);
+        }
+        if (outbound.getDuplicateFilter() != null) {
+            wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] Outbound " + outbound.getDuplicateFilter());
+        }
+        wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] " + OnlineGuru.serviceLocator.getInstance(Who.class));
+        wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] " + OnlineGuru.serviceLocator.getInstance(History.class));
+        wand.sendMessageToTarget(e.getNetwork(), sender, "[dispatch] " + flagsPlugin.getFlagCache());
+    }
+
+    public void addEventDistributor(EventDistributor eventDistributor) {
+        this.eventDistributor = eventDistributor;
+        eventDistributor.addTriggerListener(this, TRIGGER);
+    }
+
+    public void addWand(Wand wand) {
+        this.wand = wand;
+    }
+
+    public String[] getDependencies() {
+        return new String[]{"FlagsPlugin", "HelpPlugin",};
+    }
+
+    public void loadDependency(Plugin plugin) {
+        if (plugin instanceof FlagsPlugin) {
+            flagsPlugin = (FlagsPlugin) plugin;
+        }
+        if (plugin instanceof HelpPlugin) {
+            HelpPlugin help = (HelpPlugin) plugin;
+            help.addHelp(
+                    TRIGGER,
+                    Flag.A,
+                    "!dispatch - Shows queue depth, dropped events, errors and latency for every plugin, and the outbound queues. Superusers only.",
+                    "!dispatch release <plugin> - Lets a quarantined plugin receive events again."
+            );
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package no.ntnu.online.onlineguru.plugin.plugins.flags;
+
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolved flags by network, username and channel, so asking for flags on every message doesn't
+ * parse them again. The sets must never be changed.
+ *
+ * Entries are keyed by username rather than nick, so a nick logging in or out of an account looks up
+ * another entry and never sees a stale one. Saving flags or changing superusers drops the entries it
+ * affects. Lookups never lock. A lookup that started before a change doesn't store what it found.
+ */
+public class FlagCache {
+
+    /**
+     * Key for flags that aren't for a channel.
+     */
+    static final String NO_CHANNEL = "";
+
+    /**
+     * Most entries per network before they are all dropped. Only usernames that ever asked for flags are kept.
+     */
+    private static final int MAX_ENTRIES = 4096;
+
+    private final ConcurrentHashMap<Network, ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>>> networks =
+            new ConcurrentHashMap<Network, ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>>>();
+
+    private volatile long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @return The flags, or null if they have to be resolved and {@link #put}.
+     */
+    Set<Flag> get(Network network, String channel, String username) {
+        ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>> users = networks.get(network);
+        if (users != null) {
+            ConcurrentHashMap<String, Set<Flag>> channels = users.get(username);
+            if (channels != null) {
+                Set<Flag> flags = channels.get(channel);
+                if (flags != null) {
+                    hits.incrementAndGet();
+                    return flags;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return Pass to {@link #put}, read before resolving the flags.
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stores resolved flags, unless something changed since they were read.
+     *
+     * @param generation What {@link #getGeneration()} said before the flags were read.
+     */
+    synchronized void put(Network network, String channel, String username, Set<Flag> flags, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>> users = networks.get(network);
+        if (users == null) {
+            users = new ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>>();
+            networks.put(network, users);
+        }
+        if (users.size() >= MAX_ENTRIES) {
+            users.clear();
+        }
+        ConcurrentHashMap<String, Set<Flag>> channels = users.get(username);
+        if (channels == null) {
+            channels = new ConcurrentHashMap<String, Set<Flag>>();
+            users.put(username, channels);
+        }
+        channels.put(channel, flags);
+    }
+
+    /**
+     * Flags for a username in a channel were saved.
+     */
+    synchronized void invalidate(Network network, String channel, String username) {
+        generation++;
+        invalidations.incrementAndGet();
+        ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>> users = networks.get(network);
+        if (users != null && username != null) {
+            ConcurrentHashMap<String, Set<Flag>> channels = users.get(username);
+            if (channels != null) {
+                channels.remove(channel);
+            }
+        }
+    }
+
+    /**
+     * A username became or stopped being superuser, which counts in every channel.
+     */
+    synchronized void invalidate(Network network, String username) {
+        generation++;
+        invalidations.incrementAndGet();
+        ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>> users = networks.get(network);
+        if (users != null && username != null) {
+            users.remove(username);
+        }
+    }
+
+    /**
+     * Everything about the network was read again.
+     */
+    synchronized void invalidate(Network network) {
+        generation++;
+        invalidations.incrementAndGet();
+        networks.remove(network);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        int entries = 0;
+        for (ConcurrentHashMap<String, ConcurrentHashMap<String, Set<Flag>>> users : networks.values()) {
+            for (ConcurrentHashMap<String, Set<Flag>> channels : users.values()) {
+                entries += channels.size();
+            }
+        }
+        return String.format("flags cache: hits=%d misses=%d invalidations=%d entries=%d",
+                hits.get(), misses.get(), invalidations.get(), entries);
+    }
+}
@@ -8,6 +8,8 @@ import no.fictive.irclib.event.model.EventType;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.storage.NetworkFlags;
@@ -19,13 +21,14 @@ import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages flags and superusers for the bot.
  *
  * @author Håvard Slettvold
  */
-public class FlagsPlugin implements PluginWithDependencies {
+public class FlagsPlugin implements PluginWithDependencies, PluginWithPriority {
     static Logger logger = Logger.getLogger(FlagsPlugin.class);
 
     private Wand wand;
@@ -33,6 +36,11 @@ public class FlagsPlugin implements PluginWithDependencies {
 
     private Map<Network, NetworkFlags> networks;
     private CommandHandler commandHandler;
+    private final FlagCache cache = new FlagCache();
+
+    private static final Set<Flag> NO_FLAGS = Collections.unmodifiableSet(EnumSet.noneOf(Flag.class));
+    private static final Set<Flag> ANYONE_FLAGS = Collections.unmodifiableSet(EnumSet.of(Flag.ANYONE));
+    private static final Set<Flag> ALL_FLAGS = Collections.unmodifiableSet(EnumSet.allOf(Flag.class));
 
     private static final String database_folder = "database/";
     private static final String flags_database_folder = database_folder + "flags/";
@@ -42,7 +50,8 @@ public class FlagsPlugin implements PluginWithDependencies {
     private String root_username = null;
 
     public FlagsPlugin() {
-        networks = new HashMap<Network, NetworkFlags>();
+        // Read by other plugins from their own threads when events are dispatched in parallel.
+        networks = new ConcurrentHashMap<Network, NetworkFlags>();
         commandHandler = new CommandHandler(this);
 
         verifySettings();
@@ -102,6 +111,10 @@ public class FlagsPlugin implements PluginWithDependencies {
         return "Keeps track of flags used to restrict access to commands on OnlineGuru.";
     }
 
+    public PluginPriority getPriority() {
+        return PluginPriority.CRITICAL;
+    }
+
     public void incomingEvent(Event e) {
         switch (e.getEventType()) {
             case CONNECT:
@@ -140,6 +153,7 @@ public class FlagsPlugin implements PluginWithDependencies {
                         root_username
                 )
         );
+        cache.invalidate(e.getNetwork());
     }
 
     private void handleJoinEvent(JoinEvent e) {
@@ -157,25 +171,26 @@ public class FlagsPlugin implements PluginWithDependencies {
      */
 
     protected String serializeFlags(Set<Flag> flags) {
-        String result = "";
+        StringBuilder result = new StringBuilder(flags.size());
         for (Flag f : flags) {
             if (f == Flag.ANYONE) {
                 continue;
             }
-            result += f;
+            result.append(f);
         }
-        return result;
+        return result.toString();
     }
 
     protected Set<Flag> deserializeFlags(String flags) {
-        Set<Flag> result = new HashSet<Flag>();
+        Set<Flag> result = EnumSet.noneOf(Flag.class);
         if (flags != null) {
-            for (char c : flags.toCharArray()) {
-                try {
-                    Flag f = Flag.valueOf("" + c);
+            for (int i = 0; i < flags.length(); i++) {
+                Flag f = Flag.fromChar(flags.charAt(i));
+                if (f != null && f != Flag.ANYONE) {
                     result.add(f);
-                } catch (IllegalArgumentException e) {
-                    logger.error("Invalid flag recorded: " + c);
+                }
+                else {
+                    logger.error("Invalid flag recorded: " + flags.charAt(i));
                 }
             }
         }
@@ -197,9 +212,8 @@ public class FlagsPlugin implements PluginWithDependencies {
                     action = c;
                     break;
                 default:
-                    try {
-                        currentFlag = Flag.valueOf("" + c);
-                    } catch (IllegalArgumentException e) {
+                    currentFlag = Flag.fromChar(c);
+                    if (currentFlag == null) {
                         logger.debug("Illegal flag '" + c + "'.");
                     }
             }
@@ -222,8 +236,10 @@ public class FlagsPlugin implements PluginWithDependencies {
     protected boolean saveFlags(Network network, String channel, String nick, Set<Flag> flags) {
         String username = nickserv.getUsername(network, nick);
 
-        return networks.get(network).
-                saveFlags(channel, username, serializeFlags(flags));
+        boolean saved = networks.get(network).
+                saveFlags(channel, username, Flag.toMask(flags));
+        cache.invalidate(network, channel, username);
+        return saved;
     }
 
     public boolean isUser(Network network, String username) {
@@ -242,13 +258,56 @@ public class FlagsPlugin implements PluginWithDependencies {
     protected boolean addSuperuser(Network network, String nick) {
         String username = nickserv.getUsername(network, nick);
 
-        return networks.get(network).addSuperuser(username);
+        boolean added = networks.get(network).addSuperuser(username);
+        cache.invalidate(network, username);
+        return added;
     }
 
     protected boolean removeSuperuser(Network network, String nick) {
         String username = nickserv.getUsername(network, nick);
 
-        return networks.get(network).removeSuperuser(username);
+        boolean removed = networks.get(network).removeSuperuser(username);
+        cache.invalidate(network, username);
+        return removed;
+    }
+
+    /**
+     * Looks up the flags of a username, from the cache if they were looked up before.
+     *
+     * @param channel Channel, or {@link FlagCache#NO_CHANNEL} for flags on the network.
+     */
+    private Set<Flag> resolveFlags(Network network, String channel, String username) {
+        Set<Flag> flags = cache.get(network, channel, username);
+        if (flags != null) {
+            return flags;
+        }
+
+        NetworkFlags networkFlags = networks.get(network);
+        if (networkFlags == null) {
+            // Not connected yet, nothing to cache.
+            return channel.equals(FlagCache.NO_CHANNEL) ? ANYONE_FLAGS : NO_FLAGS;
+        }
+
+        long generation = cache.getGeneration();
+        if (networkFlags.isSuperuser(username)) {
+            flags = ALL_FLAGS;
+        }
+        else if (channel.equals(FlagCache.NO_CHANNEL)) {
+            flags = ANYONE_FLAGS;
+        }
+        else {
+            long mask = networkFlags.getFlags(channel, username);
+            flags = mask == 0L ? NO_FLAGS : Collections.unmodifiableSet(Flag.fromMask(mask));
+        }
+        cache.put(network, channel, username, flags, generation);
+        return flags;
+    }
+
+    /**
+     * @return Counters for the cache of resolved flags.
+     */
+    public FlagCache getFlagCache() {
+        return cache;
     }
 
     /*
@@ -263,31 +322,15 @@ public class FlagsPlugin implements PluginWithDependencies {
      * @param network Network to check.
      * @param channel Channel to check.
      * @param nick Nick to check.
-     * @return Set of flags belonging to Nick in Channel on Network.
+     * @return Set of flags belonging to Nick in Channel on Network. Cannot be modified.
      */
     public Set<Flag> getFlags(Network network, String channel, String nick) {
         String username = nickserv.getUsername(network, nick);
 
-        Set<Flag> flags = new HashSet<Flag>();
-
         if (username == null) {
-            flags.add(Flag.ANYONE);
-        }
-        else {
-            if (channel == null) {
-                flags = getFlags(network, username);
-            }
-            else {
-                if (isSuperuser(network, username)) {
-                    flags.addAll(EnumSet.allOf(Flag.class));
-                }
-                else {
-                    String f = networks.get(network).getFlags(channel, nick);
-                    flags.addAll(deserializeFlags(f));
-                }
-            }
+            return ANYONE_FLAGS;
         }
-        return flags;
+        return resolveFlags(network, channel == null ? FlagCache.NO_CHANNEL : channel, username);
     }
 
     /**
@@ -295,23 +338,15 @@ public class FlagsPlugin implements PluginWithDependencies {
      *
      * @param network Network to check.
      * @param nick Nick to check.
-     * @return Set of flags the nick has.
+     * @return Set of flags the nick has. Cannot be modified.
      */
     public Set<Flag> getFlags(Network network, String nick) {
         String username = nickserv.getUsername(network, nick);
 
-        Set<Flag> flags = new HashSet<Flag>();
-
-        if (username != null) {
-
-            if (isSuperuser(network, username)) {
-                flags.addAll(EnumSet.allOf(Flag.class));
-            }
-            else {
-                flags.add(Flag.ANYONE);
-            }
+        if (username == null) {
+            return NO_FLAGS;
         }
-        return flags;
+        return resolveFlags(network, FlagCache.NO_CHANNEL, username);
     }
 
     /**
@@ -1,12 +1,17 @@
 package no.ntnu.online.onlineguru.plugin.plugins.flags.model;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * This enum is the collection of all flags that are available.
  *
  * If a new flag is needed, all you have to do is add it to the list. Superusers will
  * automatically have all flags, but you can start using the new flag immediately.
  *
- * Flags need to consist of one character.
+ * Flags need to consist of one character. Stored flags are kept as a bitmask of {@link #getMask()},
+ * so there can be at most 64 of them.
  *
  * @author Håvard Slettvold
  */
@@ -28,12 +33,68 @@ public enum Flag {
     v ("v"),  // can voice
     V ("V");  // can unvoice
 
+    private static final Flag[] BY_CHARACTER = new Flag[128];
+
+    static {
+        for (Flag flag : values()) {
+            if (flag.value.length() == 1) {
+                BY_CHARACTER[flag.value.charAt(0)] = flag;
+            }
+        }
+    }
+
     private final String value;
 
     Flag(String value) {
         this.value = value;
     }
 
+    /**
+     * @param c Character of a flag.
+     * @return The flag, or null if there is no flag for the character.
+     */
+    public static Flag fromChar(char c) {
+        return c < BY_CHARACTER.length ? BY_CHARACTER[c] : null;
+    }
+
+    /**
+     * @return The bit for this flag in a bitmask. {@link #ANYONE} has no bit, since it is never stored.
+     */
+    public long getMask() {
+        return this == ANYONE ? 0L : 1L << ordinal();
+    }
+
+    public static long toMask(Collection<Flag> flags) {
+        long mask = 0L;
+        for (Flag flag : flags) {
+            mask |= flag.getMask();
+        }
+        return mask;
+    }
+
+    public static Set<Flag> fromMask(long mask) {
+        Set<Flag> flags = EnumSet.noneOf(Flag.class);
+        for (Flag flag : values()) {
+            if ((mask & flag.getMask()) != 0) {
+                flags.add(flag);
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * @return The characters of the flags in the bitmask, like "Kov".
+     */
+    public static String toString(long mask) {
+        StringBuilder result = new StringBuilder();
+        for (Flag flag : values()) {
+            if ((mask & flag.getMask()) != 0) {
+                result.append(flag.value);
+            }
+        }
+        return result.toString();
+    }
+
     public String toString() {
         return this.value;
     }
@@ -1,27 +1,28 @@
 package no.ntnu.online.onlineguru.plugin.plugins.flags.storage;
 
+import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
+
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Flags for the usernames of one channel, as bitmasks of {@link Flag#getMask()}.
+ * Usernames without flags aren't kept.
+ *
  * @author Håvard Slettvold
  */
 public class ChannelFlags {
 
-    private Map<String, String> flags = new HashMap<String, String>();
+    private final Map<String, Long> flags;
 
     public ChannelFlags() {
-        this.flags = new HashMap<String, String>();
-    }
-
-    public ChannelFlags(Map<String, String> flags) {
-        this.flags = flags;
+        this.flags = new HashMap<String, Long>();
     }
 
-    public boolean saveFlags(String username, String flags) {
-        if (flags.isEmpty()) {
+    public boolean saveFlags(String username, long flags) {
+        if (flags == 0L) {
             this.flags.remove(username);
         }
         else {
@@ -30,8 +31,16 @@ public class ChannelFlags {
         return true;
     }
 
-    public String getFlags(String username) {
-        return this.flags.get(username);
+    /**
+     * @return Bitmask of the flags, 0 if the username has none.
+     */
+    public long getFlags(String username) {
+        Long mask = this.flags.get(username);
+        return mask == null ? 0L : mask;
+    }
+
+    public boolean hasFlag(String username, Flag flag) {
+        return (getFlags(username) & flag.getMask()) != 0L;
     }
 
     public boolean hasFlags() {
@@ -39,14 +48,9 @@ public class ChannelFlags {
     }
 
     protected void serializeToFile(BufferedWriter writer) throws IOException {
-        for (Map.Entry<String, String> entry : flags.entrySet()) {
-            if (entry.getValue().isEmpty()) {
-                flags.remove(entry.getKey());
-            }
-            else {
-                writer.write(entry.getKey()+"="+entry.getValue());
-                writer.newLine();
-            }
+        for (Map.Entry<String, Long> entry : flags.entrySet()) {
+            writer.write(entry.getKey() + "=" + Flag.toString(entry.getValue()));
+            writer.newLine();
         }
     }
 
@@ -3,6 +3,7 @@ package no.ntnu.online.onlineguru.plugin.plugins.flags.storage;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.exceptions.MalformedSettingsException;
 import no.ntnu.online.onlineguru.exceptions.MissingSettingsException;
+import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.utils.SimpleIO;
 import no.ntnu.online.onlineguru.utils.settingsreader.Settings;
 import no.ntnu.online.onlineguru.utils.settingsreader.SettingsReader;
@@ -12,25 +13,58 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 /**
+ * Flags for one network. Methods are synchronized, since other plugins look up flags from their own threads.
+ *
+ * The database file is a snapshot, and every change after it is appended to a journal next to it,
+ * "&lt;network&gt;.db.journal", one line per change:
+ * <pre>
+ * +superuser username
+ * -superuser username
+ * flags #channel username Kov
+ * </pre>
+ * When the journal grows long, and when the network is loaded, the journal is folded into a new snapshot.
+ * The snapshot is written to a temporary file first and then atomically moved over the old one, so the
+ * database file is always whole. Replaying a change twice does no harm, so a journal left behind by a
+ * crash during compaction is simply read again. Only journal lines that end in a newline are replayed,
+ * as a line cut short by a crash can still look like a valid change.
+ *
  * @author Håvard Slettvold
  */
 public class NetworkFlags {
     static Logger logger = Logger.getLogger(NetworkFlags.class);
 
+    /**
+     * Journal lines written before the snapshot is written again.
+     */
+    static final int COMPACT_AFTER = 1000;
+
+    static final String JOURNAL_SUFFIX = ".journal";
+    static final String SNAPSHOT_SUFFIX = ".tmp";
+
     private Set<String> superUsers;
     private Map<String, ChannelFlags> channels;
     private final String networkFlagsFile;
+    private final String journalFile;
+    private int journalLines = 0;
 
     public NetworkFlags(Network network, String networkFlagsFile, String superuser) {
         this.superUsers = new HashSet<String>();
         this.channels = new HashMap<String, ChannelFlags>();
         this.networkFlagsFile = networkFlagsFile;
+        this.journalFile = networkFlagsFile + JOURNAL_SUFFIX;
 
         initiate(network, networkFlagsFile);
+        boolean unfinished = replayJournal();
         superUsers.add(superuser);
+        if (journalLines > 0 || unfinished) {
+            compact();
+        }
     }
 
     private void initiate(Network network, String networkFlagsFile) {
@@ -42,7 +76,11 @@ public class NetworkFlags {
                     superUsers.addAll(settings.getSettings().keySet());
                 }
                 else {
-                    channels.put(settings.getBlockName(), new ChannelFlags(settings.getSettings()));
+                    ChannelFlags cf = new ChannelFlags();
+                    for (Map.Entry<String, String> entry : settings.getSettings().entrySet()) {
+                        cf.saveFlags(entry.getKey(), parseFlags(entry.getValue()));
+                    }
+                    channels.put(settings.getBlockName(), cf);
                 }
             }
         } catch (MalformedSettingsException mse) {
@@ -57,36 +95,98 @@ public class NetworkFlags {
         }
     }
 
-    public void addChannel(String channel) {
+    /**
+     * @return true if the journal ended in a line cut short, which has to be compacted away before anything
+     * is appended after it.
+     */
+    private boolean replayJournal() {
+        if (!new File(journalFile).exists()) {
+            return false;
+        }
+        try {
+            String[] lines = new String(Files.readAllBytes(Paths.get(journalFile))).split("\n", -1);
+            // The last piece follows the last newline, so it is empty unless a crash cut the line short.
+            String unfinished = lines[lines.length - 1].trim();
+            if (!unfinished.isEmpty()) {
+                logger.warn("Skipping unfinished line at the end of " + journalFile + ": " + unfinished);
+            }
+
+            for (int i = 0; i < lines.length - 1; i++) {
+                String line = lines[i].trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                journalLines++;
+                String[] parts = line.split(" ");
+
+                if (parts[0].equals("+superuser") && parts.length == 2) {
+                    superUsers.add(parts[1]);
+                }
+                else if (parts[0].equals("-superuser") && parts.length == 2) {
+                    superUsers.remove(parts[1]);
+                }
+                else if (parts[0].equals("flags") && (parts.length == 3 || parts.length == 4)) {
+                    ChannelFlags cf = channels.get(parts[1]);
+                    if (cf == null) {
+                        cf = new ChannelFlags();
+                        channels.put(parts[1], cf);
+                    }
+                    cf.saveFlags(parts[2], parts.length == 4 ? parseFlags(parts[3]) : 0L);
+                }
+                else {
+                    logger.warn("Skipping malformed line in " + journalFile + ": " + line);
+                }
+            }
+            return !unfinished.isEmpty();
+        } catch (IOException e) {
+            logger.error("Failed to read flags journal: " + journalFile, e);
+            return false;
+        }
+    }
+
+    public synchronized void addChannel(String channel) {
         ChannelFlags cf = channels.get(channel);
         if (cf == null) {
             channels.put(channel, new ChannelFlags());
         }
     }
 
-    public boolean saveFlags(String channel, String username, String flags) {
+    /**
+     * @param flags Bitmask of the flags, 0 to remove them all.
+     */
+    public synchronized boolean saveFlags(String channel, String username, long flags) {
         ChannelFlags cf = channels.get(channel);
-        if (cf != null) {
+        if (cf != null && username != null) {
+            if (cf.getFlags(username) == flags) {
+                return true;
+            }
             boolean success = cf.saveFlags(username, flags);
-            serializeToFile();
+            appendToJournal(String.format("flags %s %s %s", channel, username, Flag.toString(flags)));
             return success;
         }
         return false;
     }
 
-    public String getFlags(String channel, String username) {
+    /**
+     * @return Bitmask of the flags, 0 if there are none.
+     */
+    public synchronized long getFlags(String channel, String username) {
         ChannelFlags cf = channels.get(channel);
         if (cf != null) {
             return cf.getFlags(username);
         }
-        return "";
+        return 0L;
+    }
+
+    public synchronized boolean hasFlag(String channel, String username, Flag flag) {
+        return (getFlags(channel, username) & flag.getMask()) != 0L;
     }
 
-    public boolean isSuperuser(String username) {
+    public synchronized boolean isSuperuser(String username) {
         return superUsers.contains(username);
     }
 
-    public boolean addSuperuser(String username) {
+    public synchronized boolean addSuperuser(String username) {
         if (username == null || username.isEmpty()) {
             return false;
         }
@@ -95,12 +195,12 @@ public class NetworkFlags {
         }
         else {
             superUsers.add(username);
-            serializeToFile();
+            appendToJournal("+superuser " + username);
             return true;
         }
     }
 
-    public boolean removeSuperuser(String username) {
+    public synchronized boolean removeSuperuser(String username) {
         if (username == null || username.isEmpty()) {
             return false;
         }
@@ -109,45 +209,87 @@ public class NetworkFlags {
         }
         else {
             superUsers.remove(username);
-            serializeToFile();
+            appendToJournal("-superuser " + username);
             return true;
         }
     }
 
-    private void serializeToFile() {
-        File db = new File(networkFlagsFile);
-
-        if (!db.exists()) {
-            try {
-                SimpleIO.createFile(networkFlagsFile);
-            } catch (IOException e) {
-                logger.error("Failed to create db file: " + networkFlagsFile);
-            }
+    private void appendToJournal(String line) {
+        try {
+            SimpleIO.createFile(journalFile);
+            SimpleIO.appendLineToFile(journalFile, line);
+            journalLines++;
+        } catch (IOException e) {
+            logger.error("Failed to append to flags journal: " + journalFile, e);
+            // Nothing else remembers the change, so write it all.
+            compact();
+            return;
+        }
+        if (journalLines >= COMPACT_AFTER) {
+            compact();
         }
+    }
 
-        BufferedWriter writer;
+    /**
+     * Writes everything to a new snapshot and empties the journal.
+     */
+    private void compact() {
+        File db = new File(networkFlagsFile);
+        File snapshot = new File(networkFlagsFile + SNAPSHOT_SUFFIX);
 
         try {
-            writer = new BufferedWriter(new FileWriter(db.getAbsoluteFile()));
-
-            writer.write("[superusers]");
-            writer.newLine();
-            for (String s : superUsers) {
-                writer.write(s+"=1");
+            SimpleIO.createFile(snapshot.getPath());
+            BufferedWriter writer = new BufferedWriter(new FileWriter(snapshot.getAbsoluteFile()));
+            try {
+                writer.write("[superusers]");
                 writer.newLine();
-            }
-            for (String channel : channels.keySet()) {
-                if (channels.get(channel).hasFlags()) {
-                    writer.write(String.format("[%s]", channel));
+                for (String s : superUsers) {
+                    writer.write(s+"=1");
                     writer.newLine();
-                    channels.get(channel).serializeToFile(writer);
                 }
+                for (Map.Entry<String, ChannelFlags> channel : channels.entrySet()) {
+                    if (channel.getValue().hasFlags()) {
+                        writer.write(String.format("[%s]", channel.getKey()));
+                        writer.newLine();
+                        channel.getValue().serializeToFile(writer);
+                    }
+                }
+            } finally {
+                writer.close();
             }
+        } catch (IOException e) {
+            logger.error("Failed to serialize flags to file: " + snapshot, e);
+            return;
+        }
 
-            writer.close();
+        try {
+            Files.move(snapshot.toPath(), db.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
-            logger.error("Failed to serialize flags to file: "+networkFlagsFile);
+            // The old snapshot and the journal are both still there, so nothing is lost.
+            logger.error("Failed to replace " + networkFlagsFile + " with " + snapshot, e);
+            return;
+        }
+
+        File journal = new File(journalFile);
+        if (journal.exists() && !journal.delete()) {
+            logger.error("Failed to empty flags journal: " + journalFile);
+            return;
+        }
+        journalLines = 0;
+    }
+
+    private long parseFlags(String flags) {
+        long mask = 0L;
+        for (int i = 0; i < flags.length(); i++) {
+            Flag flag = Flag.fromChar(flags.charAt(i));
+            if (flag == null) {
+                logger.error("Invalid flag recorded: " + flags.charAt(i));
+            }
+            else {
+                mask |= flag.getMask();
+            }
         }
+        return mask;
     }
 
 }
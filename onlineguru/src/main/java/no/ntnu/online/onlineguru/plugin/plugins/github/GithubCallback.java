@@ -3,14 +3,19 @@ package no.ntnu.online.onlineguru.plugin.plugins.github;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.plugins.github.listeners.AnnounceSubscription;
 import no.ntnu.online.onlineguru.plugin.plugins.github.listeners.Listeners;
 import no.ntnu.online.onlineguru.plugin.plugins.github.model.GithubPayload;
 import no.ntnu.online.onlineguru.service.services.webserver.NanoHTTPD;
 import no.ntnu.online.onlineguru.service.services.webserver.Response;
 import no.ntnu.online.onlineguru.service.services.webserver.WebserverCallback;
+import no.ntnu.online.onlineguru.utils.MessageTarget;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -68,8 +73,15 @@ public class GithubCallback implements WebserverCallback {
         logger.error(message);
     }
 
-    public void announceToIRC(String network, String channel, String output) {
-        wand.sendMessageToTarget(wand.getNetworkByAlias(network), channel, output);
+    public void announceToIRC(List<AnnounceSubscription> subscriptions, String output) {
+        List<MessageTarget> targets = new ArrayList<MessageTarget>();
+        for (AnnounceSubscription as : subscriptions) {
+            Network network = wand.getNetworkByAlias(as.getNetwork());
+            if (network != null) {
+                targets.add(new MessageTarget(network, as.getChannel()));
+            }
+        }
+        wand.sendMessageToTargets(targets, output);
     }
 
 }
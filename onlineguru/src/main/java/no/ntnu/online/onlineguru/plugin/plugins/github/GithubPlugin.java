@@ -5,8 +5,10 @@ import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.OnlineGuru;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.FlagsPlugin;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.plugin.plugins.github.listeners.AnnounceSubscription;
@@ -26,7 +28,7 @@ import java.util.regex.Pattern;
  *
  * @author Håvard Slettvold
  */
-public class GithubPlugin implements PluginWithDependencies {
+public class GithubPlugin implements PluginWithDependencies, PluginWithMessageContext {
 
     static Logger logger = Logger.getLogger(GithubPlugin.class);
 
@@ -109,23 +111,33 @@ public class GithubPlugin implements PluginWithDependencies {
     @Override
     public void incomingEvent(Event e) {
         if (e.getEventType() == EventType.PRIVMSG) {
-            PrivMsgEvent pme = (PrivMsgEvent) e;
-            String reply = handleCommand(pme);
-            if (reply != null) {
-                // Save the config. Not all calls to this method needs a save, but
-                // distinguishing each of the calls from eachother is more complicated than
-                // just saving in any case.
-                // Saving is done in framework-invoked medthods in order to separate out
-                // methods for testing and not overriding prod storage when testing.
-                storageManager.saveListeners(listeners);
-
-                wand.sendMessageToTarget(pme.getNetwork(), pme.getTarget(), "[github] " + reply);
-            }
+            incomingMessage(new MessageContext((PrivMsgEvent) e));
+        }
+    }
+
+    @Override
+    public void incomingMessage(MessageContext context) {
+        PrivMsgEvent pme = context.getEvent();
+        String reply = handleCommand(context);
+        if (reply != null) {
+            // Save the config. Not all calls to this method needs a save, but
+            // distinguishing each of the calls from eachother is more complicated than
+            // just saving in any case.
+            // Saving is done in framework-invoked medthods in order to separate out
+            // methods for testing and not overriding prod storage when testing.
+            storageManager.saveListeners(listeners);
+
+            wand.sendMessageToTarget(pme.getNetwork(), pme.getTarget(), "[github] " + reply);
         }
     }
 
     protected String handleCommand(PrivMsgEvent e) {
-        String message = e.getMessage().toLowerCase();
+        return handleCommand(new MessageContext(e));
+    }
+
+    protected String handleCommand(MessageContext context) {
+        PrivMsgEvent e = context.getEvent();
+        String message = context.getLowerCaseMessage();
         if (message.startsWith("!github ")) {
             Matcher matcher = commandPattern.matcher(e.getMessage());
 
@@ -210,7 +222,7 @@ public class GithubPlugin implements PluginWithDependencies {
 
     @Override
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, "!github");
     }
 
     @Override
@@ -18,8 +18,7 @@ public class CallbackListener {
     private List<AnnounceSubscription> announceSubscriptions = new ArrayList<AnnounceSubscription>();
 
     public void incomingPayload(GithubCallback gc, GithubPayload githubPayload) {
-        String network = "";
-        String channel = "";
+        List<AnnounceSubscription> subscribers = new ArrayList<AnnounceSubscription>();
         String output = "";
 
         // Branch deleted
@@ -27,8 +26,7 @@ public class CallbackListener {
             output = announceDelete(githubPayload);
             for (AnnounceSubscription as : announceSubscriptions) {
                 if (as.wants_branches()) {
-                    network = as.getNetwork();
-                    channel = as.getChannel();
+                    subscribers.add(as);
                 }
             }
         }
@@ -37,8 +35,7 @@ public class CallbackListener {
             output = announceCreate(githubPayload);
             for (AnnounceSubscription as : announceSubscriptions) {
                 if (as.wants_branches()) {
-                    network = as.getNetwork();
-                    channel = as.getChannel();
+                    subscribers.add(as);
                 }
             }
         }
@@ -47,8 +44,7 @@ public class CallbackListener {
             output = announceCommit(githubPayload);
             for (AnnounceSubscription as : announceSubscriptions) {
                 if (as.wants_commits()) {
-                    network = as.getNetwork();
-                    channel = as.getChannel();
+                    subscribers.add(as);
                 }
             }
         }
@@ -57,8 +53,7 @@ public class CallbackListener {
             output = announceIssue(githubPayload);
             for (AnnounceSubscription as : announceSubscriptions) {
                 if (as.wants_issues()) {
-                    network = as.getNetwork();
-                    channel = as.getChannel();
+                    subscribers.add(as);
                 }
             }
         }
@@ -67,8 +62,7 @@ public class CallbackListener {
             output = announcePullRequest(githubPayload);
             for (AnnounceSubscription as : announceSubscriptions) {
                 if (as.wants_pull_requests()) {
-                    network = as.getNetwork();
-                    channel = as.getChannel();
+                    subscribers.add(as);
                 }
             }
         }
@@ -78,8 +72,8 @@ public class CallbackListener {
             logger.debug(githubPayload.toString());
         }
 
-        if (!network.isEmpty() && !channel.isEmpty()) {
-            gc.announceToIRC(network, channel, output);
+        if (!subscribers.isEmpty()) {
+            gc.announceToIRC(subscribers, output);
         }
     }
 
@@ -42,7 +42,7 @@ public class HelpPlugin implements PluginWithDependencies {
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, "!help", "!hjelp", "??");
     }
 
     public void addWand(Wand wand) {
@@ -97,26 +97,20 @@ public class HelpPlugin implements PluginWithDependencies {
 
                 wand.sendMessageToTarget(network, sender, "Here is a list of available triggers, use !help <trigger> for more info;");
 
-                String output = "";
+                StringBuilder output = new StringBuilder();
 
                 for (HelpItem helpItem : helpItems) {
                     if (userFlags.contains(helpItem.getFlagRequired())) {
-                        if (!output.isEmpty()) {
-                            output += ", ";
-                        }
-                        output += helpItem.getTrigger();
-
-                        // If length of the current output is more than 100 chars, send it
-                        if (output.length() > 100) {
-                            wand.sendMessageToTarget(network, sender, output);
-                            output = "";
+                        if (output.length() > 0) {
+                            output.append(", ");
                         }
+                        output.append(helpItem.getTrigger());
                     }
                 }
 
-                // Send the rest if there's anything
-                if (!output.isEmpty()) {
-                    wand.sendMessageToTarget(network, sender, output);
+                // The wand splits the list into as many lines as needed
+                if (output.length() > 0) {
+                    wand.sendMessageToTarget(network, sender, output.toString());
                 }
             }
             // If there are more words, display help text for the supplied trigger
@@ -126,9 +120,7 @@ public class HelpPlugin implements PluginWithDependencies {
                 for (HelpItem helpItem : helpItems) {
                     if (helpItem.getTrigger().equals(helpTrigger)) {
                         if (userFlags.contains(helpItem.getFlagRequired())) {
-                            for (String helpText : helpItem.getHelpText()) {
-                                wand.sendMessageToTarget(network, sender, helpText);
-                            }
+                            wand.sendMessagesToTarget(network, sender, Arrays.asList(helpItem.getHelpText()));
                         }
                         else {
                             wand.sendMessageToTarget(network, sender, "You do not have the flag required to use that command.");
@@ -1,15 +1,14 @@
 package no.ntnu.online.onlineguru.plugin.plugins.history;
 
 import no.fictive.irclib.event.container.Event;
-import no.fictive.irclib.event.container.command.*;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.fictive.irclib.event.model.EventType;
-import no.fictive.irclib.model.channel.Channel;
-import no.fictive.irclib.model.nick.Nick;
 import no.ntnu.online.onlineguru.OnlineGuru;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.utils.Wand;
 import no.ntnu.online.onlineguru.service.services.history.History;
+import no.ntnu.online.onlineguru.service.services.history.HistoryRecord;
 import org.apache.log4j.Logger;
 
 
@@ -33,49 +32,32 @@ public class HistoryPlugin implements Plugin {
 
     @Override
     public void incomingEvent(Event e) {
-        switch (e.getEventType()) {
-            case JOIN:
-                JoinEvent joinEvent = (JoinEvent) e;
-                history.appendHistory(new Nick(joinEvent.getNick()), e);
-                break;
-            case PART:
-                PartEvent partEvent = (PartEvent) e;
-                history.appendHistory(new Nick(partEvent.getNick()), e);
-                break;
+        if (e.getEventType() == EventType.PRIVMSG && !((PrivMsgEvent) e).isChannelMessage()) {
+            // Private messages aren't kept.
+            return;
+        }
+
+        // One record per event, shared by every nick and channel it is kept for.
+        HistoryRecord record = history.createRecord(e);
+        if (record == null) {
+            logger.error("unknown event received, not recorded in history");
+            return;
+        }
+
+        switch (record.getType()) {
             case KICK:
-                KickEvent kickEvent = (KickEvent) e;
-                history.appendHistory(new Nick(kickEvent.getNickKicking()), e);
-                history.appendHistory(new Nick(kickEvent.getNickKicked()), e);
-                break;
-            case MODE:
-                ModeEvent modeEvent = (ModeEvent) e;
-                history.appendHistory(new Nick(modeEvent.getNick()), e);
+                history.appendHistory(record.getNick(), record);
+                history.appendHistory(record.getOther(), record);
                 break;
             case NICK:
-                NickEvent nickEvent = (NickEvent) e;
-                history.nickChangeHistory(nickEvent); // it also appends history!
-                break;
-            case TOPIC:
-                TopicEvent topicEvent = (TopicEvent) e;
-                history.appendHistory(new Nick(topicEvent.getChangedByNick()), e);
-                break;
-            case QUIT:
-                QuitEvent quitEvent = (QuitEvent) e;
-                history.appendHistory(new Nick(quitEvent.getNick()), e);
+                history.nickChangeHistory(record); // it also appends history!
                 break;
             case PRIVMSG:
-                PrivMsgEvent privMsgEvent = (PrivMsgEvent)e;
-                if (privMsgEvent.isChannelMessage()) {
-                    history.appendHistory(new Nick(privMsgEvent.getSender()), e);
-                    history.appendChannelHistory(new Channel(privMsgEvent.getChannel()), privMsgEvent);
-                }
-                break;
-            case NOTICE:
-                NoticeEvent noticeEvent = (NoticeEvent)e;
-                history.appendHistory(new Nick(noticeEvent.getSender()),e);
+                history.appendHistory(record.getNick(), record);
+                history.appendChannelHistory(record.getChannel(), record);
                 break;
             default:
-                logger.error("unknown event received, not recorded in history");
+                history.appendHistory(record.getNick(), record);
         }
     }
 
@@ -11,11 +11,12 @@ import de.umass.lastfm.Track;
 import de.umass.lastfm.User;
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.plugin.plugins.help.HelpPlugin;
 import no.ntnu.online.onlineguru.utils.SimpleIO;
@@ -23,7 +24,7 @@ import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.log4j.Logger;
 
 
-public class LastFMPlugin implements PluginWithDependencies {
+public class LastFMPlugin implements PluginWithDependencies, PluginWithMessageContext {
     static Logger logger = Logger.getLogger(LastFMPlugin.class);
 
     private String apikey = null;
@@ -63,19 +64,16 @@ public class LastFMPlugin implements PluginWithDependencies {
         }
     }
 
-    private void handleNowPlaying(Event e) {
-        PrivMsgEvent pme = (PrivMsgEvent) e;
+    private void handleNowPlaying(MessageContext context) {
+        PrivMsgEvent pme = context.getEvent();
 
-        String message = pme.getMessage();
         String target = pme.getTarget();
         String sender = pme.getSender();
         Network network = pme.getNetwork();
 
-        String[] parameters = message.split("\\s+");
-
         String lookup = sender;
-        if (parameters.length == 2) {
-            lookup = parameters[1];
+        if (context.getTokenCount() == 2) {
+            lookup = context.getToken(1);
         }
 
         if (usernameMapping.containsKey(lookup)) {
@@ -114,51 +112,43 @@ public class LastFMPlugin implements PluginWithDependencies {
         }
     }
 
-    private void handleRegisterNickname(Event e) {
-        PrivMsgEvent pme = (PrivMsgEvent) e;
-
-        String message = pme.getMessage();
-        String sender = pme.getSender();
-        String[] parameters = message.split("\\s+");
+    private void handleRegisterNickname(MessageContext context) {
+        String sender = context.getEvent().getSender();
 
-        if (parameters.length == 3) {
-            usernameMapping.put(sender, parameters[2]);
+        if (context.getTokenCount() == 3) {
+            usernameMapping.put(sender, context.getToken(2));
             try {
                 SimpleIO.saveConfig(database_file, usernameMapping);
-                wand.sendMessageToTarget(e.getNetwork(), sender, "Your nickname was registered successfully.");
+                wand.sendMessageToTarget(context.getEvent().getNetwork(), sender, "Your nickname was registered successfully.");
             } catch (IOException e1) {
                 e1.printStackTrace();
-                wand.sendMessageToTarget(e.getNetwork(), sender, "Something went wrong with registering your !np nick");
+                wand.sendMessageToTarget(context.getEvent().getNetwork(), sender, "Something went wrong with registering your !np nick");
             }
         }
     }
 
-    private void handleUnregisterNickname(Event e) {
-        PrivMsgEvent pme = (PrivMsgEvent) e;
+    private void handleUnregisterNickname(MessageContext context) {
+        String sender = context.getEvent().getSender();
 
-        String message = pme.getMessage();
-        String sender = pme.getSender();
-        String[] parameters = message.split("\\s+");
-
-        if (parameters.length == 2) {
+        if (context.getTokenCount() == 2) {
             if (usernameMapping.containsKey(sender)) {
                 usernameMapping.remove(sender);
                 try {
                     SimpleIO.saveConfig(database_file, usernameMapping);
-                    wand.sendMessageToTarget(e.getNetwork(), sender, "Your nickname has been removed.");
+                    wand.sendMessageToTarget(context.getEvent().getNetwork(), sender, "Your nickname has been removed.");
                 } catch (IOException e1) {
                     e1.printStackTrace();
-                    wand.sendMessageToTarget(e.getNetwork(), sender, "Something went wrong with unregistering your !np nick");
+                    wand.sendMessageToTarget(context.getEvent().getNetwork(), sender, "Something went wrong with unregistering your !np nick");
                 }
             }
             else {
-                wand.sendMessageToTarget(e.getNetwork(), sender, "You have not yet registered your nickname with !np");
+                wand.sendMessageToTarget(context.getEvent().getNetwork(), sender, "You have not yet registered your nickname with !np");
             }
         }
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, "!np");
 
     }
 
@@ -171,17 +161,20 @@ public class LastFMPlugin implements PluginWithDependencies {
     }
 
     public void incomingEvent(Event e) {
-        PrivMsgEvent pme = (PrivMsgEvent) e;
-        String message = pme.getMessage();
+        incomingMessage(new MessageContext((PrivMsgEvent) e));
+    }
+
+    public void incomingMessage(MessageContext context) {
+        String message = context.getMessage();
 
         if (message.startsWith("!np unregister")) {
-            handleUnregisterNickname(e);
+            handleUnregisterNickname(context);
         }
         else if (message.startsWith("!np register")) {
-            handleRegisterNickname(e);
+            handleRegisterNickname(context);
         }
         else if (message.startsWith("!np")) {
-            handleNowPlaying(e);
+            handleNowPlaying(context);
         }
     }
 
@@ -2,9 +2,9 @@ package no.ntnu.online.onlineguru.plugin.plugins.lmgtfy;
 
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.control.PluginWatchdog;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.utils.URLShortener;
 import no.ntnu.online.onlineguru.utils.Wand;
@@ -53,7 +53,7 @@ public class LmgtfyPlugin implements Plugin {
     }
 
     private void sendLmgtfyLink(final Network network, final String target, final ArrayList<String> message) {
-        new Thread(new Runnable() {
+        new Thread(PluginWatchdog.asReply(new Runnable() {
             public void run() {
                 String link = generateLmgtfyLink(message);
 
@@ -63,7 +63,7 @@ public class LmgtfyPlugin implements Plugin {
 
                 wand.sendMessageToTarget(network, target, link);
             }
-        }).start();
+        })).start();
     }
 
     public String generateLmgtfyLink(List<String> message) {
@@ -80,7 +80,7 @@ public class LmgtfyPlugin implements Plugin {
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, LMGTFYTRIGGER);
     }
 
     public void addWand(Wand wand) {
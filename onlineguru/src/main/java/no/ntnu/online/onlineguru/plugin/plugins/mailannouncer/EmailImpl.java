@@ -1,6 +1,7 @@
 package no.ntnu.online.onlineguru.plugin.plugins.mailannouncer;
 
 import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.utils.MessageTarget;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.log4j.Logger;
 
@@ -82,6 +83,7 @@ public class EmailImpl implements Email {
         if (wand != null) {
             if (announce != null) {
                 String announceText = String.format("[Mail-%s] %s - %s", (announce.getAnnounceTag() != null ? announce.getAnnounceTag() : ""), announce.getFromEmail(), announce.getSubject());
+                List<MessageTarget> targets = new ArrayList<MessageTarget>();
                 Iterator iterator = announce.getAnnounceToChannels().entrySet().iterator();
                 while (iterator.hasNext()) {
                     Map.Entry<String, List<String>> entry = (Map.Entry<String, List<String>>) iterator.next();
@@ -91,13 +93,16 @@ public class EmailImpl implements Email {
                     if (currentNetwork != null && (wand.getNetworkByAlias(currentNetwork.getServerAlias()) != null ? true : false)) {
                         for (String announceToThisChannel : entry.getValue()) {
                             if (wand.amIOnChannel(currentNetwork, announceToThisChannel)) {
-                                wand.sendMessageToTarget(currentNetwork, announceToThisChannel, announceText);
-                                logger.debug(String.format("Sending to network %s , channel: %s  with text: %s", currentNetwork.getServerAlias(), announceToThisChannel, announceText));
+                                targets.add(new MessageTarget(currentNetwork, announceToThisChannel));
                             }
                         }
                     }
 
                 }
+                if (!targets.isEmpty()) {
+                    wand.sendMessageToTargets(targets, announceText);
+                    logger.debug(String.format("Sending to %s with text: %s", targets, announceText));
+                }
                 return Boolean.TRUE;
             } else {
                 logger.warn("Unknown announce, skipping this email");
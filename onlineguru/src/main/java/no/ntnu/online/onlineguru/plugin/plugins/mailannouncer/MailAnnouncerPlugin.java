@@ -3,7 +3,6 @@ package no.ntnu.online.onlineguru.plugin.plugins.mailannouncer;
 
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.OnlineGuru;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
@@ -53,7 +52,7 @@ public class MailAnnouncerPlugin implements PluginWithDependencies {
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, TRIGGER);
     }
 
     public void addWand(Wand wand) {
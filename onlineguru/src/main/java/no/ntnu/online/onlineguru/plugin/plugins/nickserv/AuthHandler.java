@@ -1,11 +1,21 @@
 package no.ntnu.online.onlineguru.plugin.plugins.nickserv;
 
-import java.util.HashMap;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This holds the authentication usernames for nicks on a network.
- * It is used with {@link NickServPlugin}, which links a Network with an AuthHandler
+ * It is used with {@link NickServPlugin}, which links a Network with an AuthHandler.
+ * Other plugins read it from their own threads when events are dispatched through mailboxes.
+ *
+ * Nicks are compared the way the server compares them, by its CASEMAPPING, so "Foo[]" and "foo{}" are
+ * the same nick on rfc1459 servers. Usernames can also be looked up the other way, to find every nick
+ * logged in to an account. Changes are made one at a time, while reads never wait.
  *
  * @author Håvard Slettvold
  */
@@ -13,23 +23,132 @@ import java.util.Map;
 
 public class AuthHandler {
 
-    private Map<String, String> authList;
+    /**
+     * What WHO says for nicks that aren't logged in.
+     */
+    static final String NOT_REGISTERED = "0";
+
+    private final ServerSupport support;
+
+    /**
+     * Nick and username by nick in lower case.
+     */
+    private final ConcurrentHashMap<String, Auth> authList = new ConcurrentHashMap<String, Auth>();
+
+    /**
+     * Nicks in lower case by username in lower case. Also where usernames are shared from, so every nick
+     * logged in to an account refers to the same string.
+     */
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<String, Account>();
 
     public AuthHandler() {
-        authList = new HashMap<String, String>();
+        this(new ServerSupport());
     }
 
-    protected void updateNick(String oldNick, String newNick) {
-        authList.put(newNick, authList.get(oldNick));
-        authList.remove(oldNick);
+    /**
+     * @param support What the server supports, for comparing nicks like the server does.
+     */
+    public AuthHandler(ServerSupport support) {
+        this.support = support;
     }
 
-    protected void addNick(String nick, String username) {
-        authList.put(nick, username);
+    protected synchronized void updateNick(String oldNick, String newNick) {
+        String oldKey = support.toLowerCase(oldNick);
+        Auth auth = authList.remove(oldKey);
+        if (auth == null) {
+            return;
+        }
+        String newKey = support.toLowerCase(newNick);
+        Auth replaced = authList.put(newKey, new Auth(newNick, auth.username));
+        if (replaced != null && replaced.username != auth.username) {
+            unindex(newKey, replaced.username);
+        }
+
+        Account account = accountOf(auth.username);
+        if (account != null) {
+            account.nicks.remove(oldKey);
+            account.nicks.add(newKey);
+        }
     }
 
-    protected void removeNick(String nick) {
-        authList.remove(nick);
+    protected synchronized void addNick(String nick, String username) {
+        put(nick, username);
+    }
+
+    /**
+     * Adds a whole WHO reply at once.
+     *
+     * @param nicks Usernames by nick.
+     */
+    protected synchronized void addNicks(Map<String, String> nicks) {
+        for (Map.Entry<String, String> entry : nicks.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    protected synchronized void removeNick(String nick) {
+        String key = support.toLowerCase(nick);
+        Auth auth = authList.remove(key);
+        if (auth != null) {
+            unindex(key, auth.username);
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void put(String nick, String username) {
+        String key = support.toLowerCase(nick);
+        Auth current = authList.get(key);
+        if (current != null && current.username.equals(username) && current.nick.equals(nick)) {
+            return;
+        }
+
+        String shared = index(key, username);
+        authList.put(key, new Auth(nick, shared));
+        if (current != null && current.username != shared) {
+            unindex(key, current.username);
+        }
+    }
+
+    /**
+     * Adds the nick to the account. Must hold the lock.
+     *
+     * @return The username everyone logged in to the account shares.
+     */
+    private String index(String key, String username) {
+        if (username.equals(NOT_REGISTERED)) {
+            return NOT_REGISTERED;
+        }
+        String accountKey = support.toLowerCase(username);
+        Account account = accounts.get(accountKey);
+        if (account == null) {
+            account = new Account(username);
+            accounts.put(accountKey, account);
+        }
+        account.nicks.add(key);
+        return account.username;
+    }
+
+    /**
+     * Takes the nick off the account, and forgets the account when nobody uses it. Must hold the lock.
+     */
+    private void unindex(String key, String username) {
+        if (username == NOT_REGISTERED) {
+            return;
+        }
+        String accountKey = support.toLowerCase(username);
+        Account account = accounts.get(accountKey);
+        if (account != null && account.nicks.remove(key) && account.nicks.isEmpty()) {
+            accounts.remove(accountKey);
+        }
+    }
+
+    private Account accountOf(String username) {
+        if (username == NOT_REGISTERED) {
+            return null;
+        }
+        return accounts.get(support.toLowerCase(username));
     }
 
     /**
@@ -40,15 +159,7 @@ public class AuthHandler {
      * @return boolean True is authed with a service.
      */
     protected boolean isAuthed(String nick) {
-        String username = authList.get(nick);
-
-        if (username != null) {
-            if (!authList.get(nick).equals("0")) {
-                return true;
-            }
-        }
-
-        return false;
+        return getUsername(nick) != null;
     }
 
     /**
@@ -58,15 +169,50 @@ public class AuthHandler {
      * @return String - Contains username, or null if no username found.
      */
     protected String getUsername(String nick) {
-        String username = authList.get(nick);
+        Auth auth = authList.get(support.toLowerCase(nick));
+        if (auth == null || auth.username.equals(NOT_REGISTERED)) {
+            return null;
+        }
+        return auth.username;
+    }
 
-        if (username != null) {
-            if (!username.equals("0")) {
-                return username;
+    /**
+     * Finds every nick logged in to a username.
+     *
+     * @param username Username to look up, in any case.
+     * @return The nicks as last seen, empty if there are none.
+     */
+    protected Set<String> getNicks(String username) {
+        Account account = accounts.get(support.toLowerCase(username));
+        if (account == null) {
+            return Collections.emptySet();
+        }
+        Set<String> nicks = new HashSet<String>();
+        for (String key : account.nicks) {
+            Auth auth = authList.get(key);
+            if (auth != null) {
+                nicks.add(auth.nick);
             }
         }
+        return nicks;
+    }
+
+    private static class Auth {
+        private final String nick;
+        private final String username;
 
-        return null;
+        private Auth(String nick, String username) {
+            this.nick = nick;
+            this.username = username;
+        }
     }
 
+    private static class Account {
+        private final String username;
+        private final Set<String> nicks = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        private Account(String username) {
+            this.username = username;
+        }
+    }
 }
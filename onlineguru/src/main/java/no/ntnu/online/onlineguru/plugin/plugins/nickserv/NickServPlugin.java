@@ -4,40 +4,74 @@ import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.*;
 import no.fictive.irclib.event.model.EventType;
 import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.OnlineGuru;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.model.ConcurrentPlugin;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.plugin.plugins.help.HelpPlugin;
 import no.ntnu.online.onlineguru.plugin.plugins.manuallogin.ManualLoginPlugin;
+import no.ntnu.online.onlineguru.service.services.who.Who;
+import no.ntnu.online.onlineguru.service.services.who.WhoCallback;
+import no.ntnu.online.onlineguru.utils.CapabilityNegotiation;
+import no.ntnu.online.onlineguru.utils.IrcLine;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.log4j.Logger;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Keeps track of authentication usernames for nicks on Networks that the bot attends.
+ * All state is kept in concurrent maps, so events from several networks can be handled at once.
  *
  * @author Håvard Slettvold
  */
-public class NickServPlugin implements PluginWithDependencies {
+public class NickServPlugin implements PluginWithDependencies, ConcurrentPlugin, PluginWithPriority {
 
     private Wand wand;
+    private Who who;
+
+    private final WhoCallback whoCallback = new WhoCallback() {
+        public void whoReplies(ReplyBatch batch) {
+            addWhoReplies(batch, Who.ACCOUNT_FIELDS);
+        }
+    };
+
+    private final WhoCallback memberCallback = new WhoCallback() {
+        public void whoReplies(ReplyBatch batch) {
+            addWhoReplies(batch, Who.MEMBER_FIELDS);
+        }
+    };
 
     private Map<Network, AuthHandler> authHandlers;
 
     static Logger logger = Logger.getLogger(NickServPlugin.class);
 
     public NickServPlugin() {
-        authHandlers = new HashMap<Network, AuthHandler>();
+        authHandlers = new ConcurrentHashMap<Network, AuthHandler>();
     }
 
     public String getDescription() {
         return "Keeps track of all logged in nicks that share channels with OnlineGuru.";
     }
 
+    public PluginPriority getPriority() {
+        return PluginPriority.CRITICAL;
+    }
+
     public void incomingEvent(Event e) {
+        if (e.getEventType() == null) {
+            handleAccountEvent(e);
+            return;
+        }
         switch (e.getEventType()) {
             case CONNECT:
                 handleConnectEvent((ConnectEvent)e);
@@ -48,9 +82,6 @@ public class NickServPlugin implements PluginWithDependencies {
             case NICK:
                 handleNickEvent((NickEvent)e);
                 break;
-            case NUMERIC:
-                handleNumericEvent((NumericEvent)e);
-                break;
             case PART:
                 handlePartEvent((PartEvent)e);
                 break;
@@ -69,26 +100,87 @@ public class NickServPlugin implements PluginWithDependencies {
      * @param e{@link ConnectEvent} that triggered.
      */
     private void handleConnectEvent(ConnectEvent e) {
-        authHandlers.put(e.getNetwork(), new AuthHandler());
+        authHandlers.put(e.getNetwork(), new AuthHandler(wand.getServerSupport(e.getNetwork())));
     }
 
     /**
      * Someone joined a channel.
-     * If it was the bot, /who the whole channel.
-     * Otherwise /who the person that joined.
-     * This will provoke 354 {@link EventType} NUMERIC events, which contain nick and its registered username.
+     * If it was the bot, /who the whole channel, with the same fields as the WHO OnlineGuru sends so they share one query.
+     * Otherwise take the account from the JOIN when the server has extended-join or account-tag turned on,
+     * and /who the person that joined when it has neither.
+     * The queries go through the {@link Who} service, which sends each query only once however many ask
+     * for it, and asks for several nicks in one line. The 354 replies, which contain nick and its registered username,
+     * arrive here as one {@link ReplyBatch}.
      *
      * @param e {@link JoinEvent} to be investigated.
      */
     private void handleJoinEvent(JoinEvent e) {
         if (e.getNick().equals(wand.getMyNick(e.getNetwork()))) {
-            wand.sendServerMessage(e.getNetwork(), "WHO "+ e.getChannel() +" %na");
+            whoService().query(e.getNetwork(), wand.getServerSupport(e.getNetwork()), e.getChannel(), Who.MEMBER_FIELDS, memberCallback);
+            return;
+        }
+
+        String account = accountOf(IrcLine.parse(e.getRawData()), wand.getServerSupport(e.getNetwork()));
+        if (account != null) {
+            addAccount(e.getNetwork(), e.getNick(), account);
         }
         else {
-            wand.sendServerMessage(e.getNetwork(), "WHO "+ e.getNick() +" %na");
+            queryWho(e.getNetwork(), e.getNick());
+        }
+    }
+
+    /**
+     * @param line    JOIN line.
+     * @param support Capabilities of the network.
+     * @return Account of the one joining, "*" if not logged in, or null if the line doesn't say.
+     */
+    static String accountOf(IrcLine line, ServerSupport support) {
+        if (line == null) {
+            return null;
+        }
+        if (support.isEnabled(CapabilityNegotiation.ACCOUNT_TAG)) {
+            // Only lines from those who are logged in have the tag.
+            String account = line.getTag("account");
+            return account == null || account.isEmpty() ? "*" : account;
+        }
+        if (support.isEnabled(CapabilityNegotiation.EXTENDED_JOIN)) {
+            return line.getParameter(1);
+        }
+        return null;
+    }
+
+    /**
+     * With account-notify the server tells when someone logs in or out;
+     * :nick!user@host ACCOUNT &lt;account&gt;, where the account is "*" when logging out.
+     *
+     * @param e Event irclib has no type for.
+     */
+    private void handleAccountEvent(Event e) {
+        IrcLine line = IrcLine.parse(e.getRawData());
+        if (line != null && line.getCommand().equals("ACCOUNT") && line.getNick() != null && line.getParameter(0) != null) {
+            addAccount(e.getNetwork(), line.getNick(), line.getParameter(0));
         }
     }
 
+    private void addAccount(Network network, String nick, String account) {
+        AuthHandler authHandler = authHandlers.get(network);
+        if (authHandler != null) {
+            // WHO says "0" for nicks that aren't logged in, IRCv3 says "*".
+            authHandler.addNick(nick, account.equals("*") ? "0" : account);
+        }
+    }
+
+    private void queryWho(Network network, String target) {
+        whoService().query(network, wand.getServerSupport(network), target, Who.ACCOUNT_FIELDS, whoCallback);
+    }
+
+    private Who whoService() {
+        if (who == null) {
+            who = OnlineGuru.serviceLocator.getInstance(Who.class);
+        }
+        return who;
+    }
+
     /**
      * If a user changes nick, their new nick should be updated in the authList.
      *
@@ -100,20 +192,36 @@ public class NickServPlugin implements PluginWithDependencies {
     }
 
     /**
-     * Syntax on NUMERIC 354;
-     * :<server> 354 <calling nick> <nick> <nick's username>
-     *
-     * If the nick is not registered, <nick's username> will be "0"
+     * The 354 replies to a WHO for nick and account sent through the {@link Who} service, all added in one go.
      *
-     * @param e {@link NumericEvent} to be investigated.
+     * @param batch {@link ReplyBatch} of WHO replies.
      */
-    private void handleNumericEvent(NumericEvent e) {
-        if (e.getNumeric() == 354) {
-            authHandlers.get(e.getNetwork())
-                    .addNick(e.getParamaters().get(1), e.getParamaters().get(2));
+    public void incomingReplyBatch(ReplyBatch batch) {
+        addWhoReplies(batch, Who.ACCOUNT_FIELDS);
+    }
 
-            //logger.debug("Added '"+e.getParamaters().get(1)+ "' with auth; "+e.getParamaters().get(2));
+    /**
+     * @param batch  {@link ReplyBatch} of WHO replies.
+     * @param fields The WHOX fields that were asked for.
+     */
+    private void addWhoReplies(ReplyBatch batch, String fields) {
+        AuthHandler authHandler = authHandlers.get(batch.getNetwork());
+        if (authHandler == null) {
+            return;
+        }
+
+        Map<String, String> nicks = new HashMap<String, String>(batch.getReplies().size() * 2);
+        for (Event e : batch.getReplies()) {
+            if (e instanceof NumericEvent && ((NumericEvent) e).getNumeric() == 354) {
+                NumericEvent ne = (NumericEvent) e;
+                String nick = Who.field(ne, fields, 'n');
+                String account = Who.field(ne, fields, 'a');
+                if (nick != null && account != null) {
+                    nicks.put(nick, account);
+                }
+            }
         }
+        authHandler.addNicks(nicks);
     }
 
     /**
@@ -188,10 +296,10 @@ public class NickServPlugin implements PluginWithDependencies {
 
         if (message[0].equals("!refreshauth")) {
             if (message.length > 1) {
-                wand.sendServerMessage(e.getNetwork(), "WHO "+ message[1] +" %na");
+                queryWho(e.getNetwork(), message[1]);
             }
             else {
-                wand.sendServerMessage(e.getNetwork(), "WHO "+ e.getSender() +" %na");
+                queryWho(e.getNetwork(), e.getSender());
             }
 
         }
@@ -210,10 +318,10 @@ public class NickServPlugin implements PluginWithDependencies {
     public void addEventDistributor(EventDistributor eventDistributor) {
         eventDistributor.addListener(this, EventType.CONNECT);
         eventDistributor.addListener(this, EventType.JOIN);
+        eventDistributor.addCommandListener(this, "ACCOUNT");
         eventDistributor.addListener(this, EventType.NICK);
-        eventDistributor.addListener(this, EventType.NUMERIC);
         eventDistributor.addListener(this, EventType.PART);
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, "!whois", "!who", "!refreshauth");
         eventDistributor.addListener(this, EventType.QUIT);
     }
 
@@ -249,6 +357,18 @@ public class NickServPlugin implements PluginWithDependencies {
                 .getUsername(nick);
     }
 
+    /**
+     * Finds every nick logged in to a username.
+     *
+     * @param network Network to search on.
+     * @param username Username to look up, in any case.
+     * @return The nicks, empty if there are none.
+     */
+    public Set<String> getNicks(Network network, String username) {
+        return authHandlers.get(network)
+                .getNicks(username);
+    }
+
     public String[] getDependencies() {
         return new String[] {"HelpPlugin", };
     }
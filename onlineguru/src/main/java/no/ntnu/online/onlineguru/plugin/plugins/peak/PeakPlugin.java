@@ -9,7 +9,11 @@ import no.fictive.irclib.model.channel.Channel;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithReplyBatches;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.plugin.plugins.help.HelpPlugin;
 import no.ntnu.online.onlineguru.utils.SimpleIO;
@@ -24,7 +28,7 @@ import java.util.Map;
  * @author Håvard Slettvold
  */
 
-public class PeakPlugin implements PluginWithDependencies {
+public class PeakPlugin implements PluginWithDependencies, PluginWithPriority, PluginWithReplyBatches {
 
     private Wand wand;
 
@@ -88,6 +92,10 @@ public class PeakPlugin implements PluginWithDependencies {
         return "Keeps track of user counts on channels that OnlineGuru attends.";
     }
 
+    public PluginPriority getPriority() {
+        return PluginPriority.BEST_EFFORT;
+    }
+
     public void incomingEvent(Event e) {
         if (enabled) {
             switch (e.getEventType()) {
@@ -132,14 +140,32 @@ public class PeakPlugin implements PluginWithDependencies {
         // irclib uses the names list to get the number of people in a channel, so when end of names comes,
         // we should get an accurate number.
         if (ne.getNumeric() == 366) {
-            Channel channel = ne.getNetwork().getChannel(ne.getParamaters().get(1));
+            handleEndOfNames(ne.getNetwork(), ne.getParamaters().get(1));
+        }
+    }
 
-            if (updatePeakForChannel(ne.getNetwork(), channel)) {
-                try {
-                    SimpleIO.saveConfig(database_file, peaks);
-                } catch (IOException e) {
-                    logger.error("Failed to store peak after update to %s.", e.getCause());
-                }
+    /**
+     * A whole names list, so the count is only checked once per list.
+     *
+     * @param batch {@link ReplyBatch} of NAMES replies.
+     */
+    public void incomingReplyBatch(ReplyBatch batch) {
+        if (enabled && batch.isComplete()) {
+            handleEndOfNames(batch.getNetwork(), batch.getTarget());
+        }
+    }
+
+    private void handleEndOfNames(Network network, String channelName) {
+        Channel channel = network.getChannel(channelName);
+        if (channel == null) {
+            return;
+        }
+
+        if (updatePeakForChannel(network, channel)) {
+            try {
+                SimpleIO.saveConfig(database_file, peaks);
+            } catch (IOException e) {
+                logger.error("Failed to store peak after update to %s.", e.getCause());
             }
         }
     }
@@ -234,8 +260,8 @@ public class PeakPlugin implements PluginWithDependencies {
 
     public void addEventDistributor(EventDistributor eventDistributor) {
         eventDistributor.addListener(this, EventType.JOIN);
-        eventDistributor.addListener(this, EventType.NUMERIC);
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addReplyBatchListener(this, ReplyBatch.Type.NAMES);
+        eventDistributor.addTriggerListener(this, "!peak");
     }
 
     public void addWand(Wand wand) {
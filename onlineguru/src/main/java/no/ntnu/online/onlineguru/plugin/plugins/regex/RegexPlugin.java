@@ -2,8 +2,6 @@ package no.ntnu.online.onlineguru.plugin.plugins.regex;
 
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
-import no.fictive.irclib.model.channel.Channel;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
@@ -12,6 +10,7 @@ import no.ntnu.online.onlineguru.plugin.plugins.help.HelpPlugin;
 import no.ntnu.online.onlineguru.plugin.plugins.history.HistoryPlugin;
 import no.ntnu.online.onlineguru.utils.Wand;
 import no.ntnu.online.onlineguru.service.services.history.History;
+import no.ntnu.online.onlineguru.service.services.history.HistoryRecord;
 import org.apache.log4j.Logger;
 
 import java.util.List;
@@ -84,7 +83,7 @@ public class RegexPlugin implements PluginWithDependencies {
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, "s");
     }
 
     public void addWand(Wand wand) {
@@ -207,19 +206,19 @@ public class RegexPlugin implements PluginWithDependencies {
     }
 
     private String getLastMatchingLineFromHistory(PrivMsgEvent e, Pattern regex) {
-        List<PrivMsgEvent> lastLines = history.getLastChannelEvents(new Channel(e.getChannel()));
+        List<HistoryRecord> lastLines = history.getLastChannelRecords(e.getChannel());
 
         String currentMessage;
         Matcher commandMatcher;
         Matcher replacementMatcher;
 
-        for (PrivMsgEvent currentEvent : lastLines) {
+        for (HistoryRecord currentEvent : lastLines) {
             // Skip if this message doesn't belong to the nick that used sed.
-            if (!e.getSender().equals(currentEvent.getSender())) {
+            if (!e.getSender().equals(currentEvent.getNick())) {
                 continue;
             }
 
-            currentMessage = new String(currentEvent.getMessage());
+            currentMessage = currentEvent.getText();
             commandMatcher = SED_PATTERN.matcher(currentMessage);
 
             // If it matches the sed command, we will not replace in that message.
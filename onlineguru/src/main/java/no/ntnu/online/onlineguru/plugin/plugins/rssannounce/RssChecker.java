@@ -1,5 +1,6 @@
 package no.ntnu.online.onlineguru.plugin.plugins.rssannounce;
 
+import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.utils.SimpleIO;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.abdera.Abdera;
@@ -132,7 +133,10 @@ public class RssChecker implements Runnable {
      */
 
     private void publishToIRC(String message) {
-        wand.sendMessageToTarget(wand.getNetworkByAlias("efnet"), "#java.no", message);
+        Network network = wand.getNetworkByAlias("efnet");
+        if (network != null) {
+            wand.sendMessageToTarget(network, "#java.no", message);
+        }
     }
 
     public static void main(String[] args) {
@@ -1,18 +1,16 @@
 package no.ntnu.online.onlineguru.plugin.plugins.seen;
 
 import no.fictive.irclib.event.container.Event;
-import no.fictive.irclib.event.container.command.*;
-import no.fictive.irclib.event.model.EventType;
-import no.fictive.irclib.model.nick.Nick;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
 import no.ntnu.online.onlineguru.plugin.plugins.history.HistoryPlugin;
 import no.ntnu.online.onlineguru.utils.Wand;
 import no.ntnu.online.onlineguru.service.services.history.History;
+import no.ntnu.online.onlineguru.service.services.history.HistoryRecord;
 import org.apache.log4j.Logger;
 
-import java.util.Arrays;
 import java.util.List;
 
 
@@ -68,84 +66,75 @@ public class SeenPlugin implements PluginWithDependencies {
 
     protected String handleSeenQuery(PrivMsgEvent target) {
         String nick = target.getMessage().split("\\s+")[1];
-        List<Event> lastEvents = historyPlugin.getLastEvents(new Nick(nick));
-        if (lastEvents.size()>0) {
-            return generateReplyString(target, lastEvents.get(0));
+        List<HistoryRecord> lastRecords = historyPlugin.getLastRecords(nick);
+        if (lastRecords.size()>0) {
+            return generateReplyString(target, lastRecords.get(0));
         }
         else {
             return "Can't find any history on "+ nick;
         }
     }
 
-    protected String generateReplyString(PrivMsgEvent target, Event lastEvent) {
-        switch (lastEvent.getEventType()) {
+    protected String generateReplyString(PrivMsgEvent target, HistoryRecord lastEvent) {
+        switch (lastEvent.getType()) {
             case JOIN:
-                JoinEvent joinEvent = (JoinEvent) lastEvent;
-                return String.format("%s joined channel %s", joinEvent.getNick(), joinEvent.getChannel());
+                return String.format("%s joined channel %s", lastEvent.getNick(), lastEvent.getChannel());
 
             case PART:
-                PartEvent partEvent = (PartEvent) lastEvent;
-                return String.format("%s parted channel %s", partEvent.getNick(), partEvent.getChannel());
+                return String.format("%s parted channel %s", lastEvent.getNick(), lastEvent.getChannel());
 
             case KICK:
-                KickEvent kickEvent = (KickEvent) lastEvent;
                 return String.format("%s kicked %s on %s with message: %s",
-                        kickEvent.getNickKicking(),
-                        kickEvent.getNickKicking(),
-                        kickEvent.getChannel(),
-                        kickEvent.getReason()
+                        lastEvent.getNick(),
+                        lastEvent.getOther(),
+                        lastEvent.getChannel(),
+                        lastEvent.getText()
                         );
 
             case MODE:
-                ModeEvent modeEvent = (ModeEvent) lastEvent;
                 return String.format("%s sets mode %s on %s",
-                        modeEvent.getNick(),
-                        Arrays.toString(modeEvent.getModes().toArray()),
-                        modeEvent.getChannel()
+                        lastEvent.getNick(),
+                        lastEvent.getText(),
+                        lastEvent.getChannel()
                         );
 
             case NICK:
-                NickEvent nickEvent = (NickEvent) lastEvent;
                 return String.format("%s changed nick from %s",
-                        nickEvent.getNewNick(),
-                        nickEvent.getOldNick());
+                        lastEvent.getNick(),
+                        lastEvent.getOther());
 
             case TOPIC:
-                TopicEvent topicEvent = (TopicEvent) lastEvent;
                 return String.format("%s updated topic on channel %s with %s",
-                        topicEvent.getChangedByNick(),
-                        topicEvent.getChannel(),
-                        topicEvent.getTopic()
+                        lastEvent.getNick(),
+                        lastEvent.getChannel(),
+                        lastEvent.getText()
                         );
             case QUIT:
-                QuitEvent quitEvent = (QuitEvent) lastEvent;
                 return String.format("%s quit irc on network %s with message: %s",
-                        quitEvent.getNick(),
-                        quitEvent.getNetwork().getServerAlias(),
-                        quitEvent.getQuitmessage()
+                        lastEvent.getNick(),
+                        lastEvent.getNetwork(),
+                        lastEvent.getText()
                         );
             case PRIVMSG:
-                PrivMsgEvent privMsgEvent = (PrivMsgEvent)lastEvent;
                 // only channel messages should be stored in history!
-                assert(privMsgEvent.isChannelMessage());
-                if (privMsgEvent.getChannel().equals(target.getChannel())) {
+                assert(lastEvent.getChannel() != null);
+                if (lastEvent.getChannel().equals(target.getChannel())) {
                     return String.format("%s sent a message to %s and said: %s",
-                            privMsgEvent.getSender(),
-                            privMsgEvent.getChannel(),
-                            privMsgEvent.getMessage());
+                            lastEvent.getNick(),
+                            lastEvent.getChannel(),
+                            lastEvent.getText());
                 }
                 else {
                     return String.format("%s was seen talking in %s",
-                            privMsgEvent.getSender(),
-                            privMsgEvent.getChannel());
+                            lastEvent.getNick(),
+                            lastEvent.getChannel());
                 }
 
             case NOTICE:
-                NoticeEvent noticeEvent = (NoticeEvent)lastEvent;
                 return String.format("%s sent a notice to %s with message %s",
-                         noticeEvent.getSender(),
-                        noticeEvent.getTarget(),
-                        noticeEvent.getNotice()
+                        lastEvent.getNick(),
+                        lastEvent.getOther(),
+                        lastEvent.getText()
                         );
             default:
                 return "unknown event recorded .. ";
@@ -158,7 +147,7 @@ public class SeenPlugin implements PluginWithDependencies {
 
     @Override
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, TRIGGER);
     }
 
     @Override
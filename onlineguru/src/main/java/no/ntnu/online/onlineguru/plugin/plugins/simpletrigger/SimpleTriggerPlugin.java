@@ -5,19 +5,21 @@ import java.util.Map;
 
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 import no.ntnu.online.onlineguru.plugin.model.PluginWithDependencies;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.FlagsPlugin;
 import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
 import no.ntnu.online.onlineguru.utils.Wand;
 
-public class SimpleTriggerPlugin implements PluginWithDependencies {
+public class SimpleTriggerPlugin implements PluginWithDependencies, PluginWithMessageContext {
 
     private Map<String, String> triggers = new HashMap<String, String>();
     private SimpleTriggerSettings simpleTriggerSettings;
     private Wand wand;
+    private EventDistributor eventDistributor;
     private String[] dependencies = new String[]{"FlagsPlugin"};
     private FlagsPlugin flagsPlugin;
 
@@ -50,6 +52,9 @@ public class SimpleTriggerPlugin implements PluginWithDependencies {
         if (!triggers.containsKey(trigger)) {
             triggers.put(trigger, value);
             simpleTriggerSettings.saveConfig(triggers);
+            if (eventDistributor != null) {
+                eventDistributor.addTriggerListener(this, trigger);
+            }
             return "Trigger was added.";
         }
         return "That trigger already exists.";
@@ -63,17 +68,37 @@ public class SimpleTriggerPlugin implements PluginWithDependencies {
         if (triggers.containsKey(trigger)) {
             triggers.remove(trigger);
             simpleTriggerSettings.saveConfig(triggers);
+            if (eventDistributor != null && !hasTriggerIgnoreCase(trigger)) {
+                eventDistributor.removeTriggerListener(this, trigger);
+            }
             return "Trigger was deleted.";
         }
         return "Trigger does not exist.";
     }
 
+    /**
+     * The distributor knows triggers in lower case only, so "Foo" and "foo" share one registration.
+     */
+    private boolean hasTriggerIgnoreCase(String trigger) {
+        String key = trigger.toLowerCase();
+        for (String other : triggers.keySet()) {
+            if (other.toLowerCase().equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public String getDescription() {
         return "Makes it easy to create triggers with one-liner outputs.";
     }
 
     public void incomingEvent(Event e) {
-        PrivMsgEvent pme = (PrivMsgEvent) e;
+        incomingMessage(new MessageContext((PrivMsgEvent) e));
+    }
+
+    public void incomingMessage(MessageContext context) {
+        PrivMsgEvent pme = context.getEvent();
 
         String message = pme.getMessage();
         String sender = pme.getSender();
@@ -87,14 +112,14 @@ public class SimpleTriggerPlugin implements PluginWithDependencies {
                 if (triggerSplit.length >= 2) {
                     String trigger = triggerSplit[0];
                     String value = triggerLine.substring(trigger.length()).trim();
-                    wand.sendMessageToTarget(e.getNetwork(), sender, addNewTrigger(trigger, value));
+                    wand.sendMessageToTarget(pme.getNetwork(), sender, addNewTrigger(trigger, value));
                 }
                 else {
-                    wand.sendMessageToTarget(e.getNetwork(), sender, "Incorrect syntax. Correct syntax: add trigger <trigger> <value>");
+                    wand.sendMessageToTarget(pme.getNetwork(), sender, "Incorrect syntax. Correct syntax: add trigger <trigger> <value>");
                 }
             }
             else {
-                wand.sendMessageToTarget(e.getNetwork(), sender, "You do not have permission to do that.");
+                wand.sendMessageToTarget(pme.getNetwork(), sender, "You do not have permission to do that.");
             }
         }
         else if (message.startsWith(DELETE_KEYWORD) && message.length() > DELETE_KEYWORD.length() + 1) {
@@ -104,28 +129,31 @@ public class SimpleTriggerPlugin implements PluginWithDependencies {
 
                 if (triggerSplit.length == 1) {
                     String trigger = triggerSplit[0];
-                    wand.sendMessageToTarget(e.getNetwork(), sender, deleteTrigger(trigger));
+                    wand.sendMessageToTarget(pme.getNetwork(), sender, deleteTrigger(trigger));
                 }
                 else {
-                    wand.sendMessageToTarget(e.getNetwork(), sender, "Incorrect syntax. Correct syntax: delete trigger <trigger>");
+                    wand.sendMessageToTarget(pme.getNetwork(), sender, "Incorrect syntax. Correct syntax: delete trigger <trigger>");
                 }
             }
             else {
-                wand.sendMessageToTarget(e.getNetwork(), sender, "You do not have permissions to do that.");
+                wand.sendMessageToTarget(pme.getNetwork(), sender, "You do not have permissions to do that.");
             }
         }
         else {
-            String[] messageSplit = message.split("\\s+");
-            if (messageSplit.length == 1) {
-                if (triggers.containsKey(messageSplit[0])) {
-                    wand.sendMessageToTarget(e.getNetwork(), target, triggers.get(messageSplit[0]));
+            if (context.getTokenCount() == 1) {
+                String value = triggers.get(context.getTrigger());
+                if (value != null) {
+                    wand.sendMessageToTarget(pme.getNetwork(), target, value);
                 }
             }
         }
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        this.eventDistributor = eventDistributor;
+        eventDistributor.addTriggerListener(this, ADD_KEYWORD, DELETE_KEYWORD);
+        // The triggers are loaded from file before the distributor is handed to us.
+        eventDistributor.addTriggerListener(this, triggers.keySet().toArray(new String[triggers.size()]));
     }
 
     public void addWand(Wand wand) {
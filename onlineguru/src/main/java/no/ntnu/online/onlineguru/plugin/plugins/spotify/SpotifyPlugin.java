@@ -7,10 +7,13 @@ import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.model.EventType;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
-import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
 import no.ntnu.online.onlineguru.utils.Wand;
 
-public class SpotifyPlugin implements Plugin {
+public class SpotifyPlugin implements PluginWithPriority, PluginWithMessageContext {
 	
 	private Wand wand;
 	private Pattern linkPattern = Pattern.compile("((http://)?open.spotify.com/(album|artist|track)/([^\\s]+))|(spotify:(album|artist|track):[^\\s]+)");
@@ -20,30 +23,43 @@ public class SpotifyPlugin implements Plugin {
 	public String getDescription() {
 		return "Returns information about a track, artist or album from the SpotifyPlugin lookup API.";
 	}
+
+	public PluginPriority getPriority() {
+		return PluginPriority.BEST_EFFORT;
+	}
     /*
         http://open.spotify.com/track/1x6ACsKV4UdWS2FMuPFUiT
                         spotify:track:1x6ACsKV4UdWS2FMuPFUiT
     */
 	public void incomingEvent(Event e) {
-		String spotifyURI = "";
 		if (e.getEventType() == EventType.PRIVMSG) {
-			PrivMsgEvent pme = (PrivMsgEvent)e;
-			String message = pme.getMessage();
-			linkMatcher = linkPattern.matcher(message);
+			incomingMessage(new MessageContext((PrivMsgEvent)e));
+		}
+	}
+
+	public void incomingMessage(MessageContext context) {
+		String message = context.getMessage();
+		// Both link forms contain "spotify", so most messages never need the regex.
+		if (!message.contains("spotify")) {
+			return;
+		}
+
+		String spotifyURI = "";
+		PrivMsgEvent pme = context.getEvent();
+		linkMatcher = linkPattern.matcher(message);
+		
+		while (linkMatcher.find()) {
+			if (linkMatcher.group(1) != null) {
+				spotifyURI = "spotify:"+linkMatcher.group(3)+":"+linkMatcher.group(4);
+				linkCase = Types.valueOf(linkMatcher.group(3).toUpperCase());
+			}
+			else if (linkMatcher.group(5) != null) {
+				spotifyURI = linkMatcher.group(5);
+				linkCase = Types.valueOf(linkMatcher.group(6).toUpperCase());
+			}
 			
-			while (linkMatcher.find()) {
-				if (linkMatcher.group(1) != null) {
-					spotifyURI = "spotify:"+linkMatcher.group(3)+":"+linkMatcher.group(4);
-					linkCase = Types.valueOf(linkMatcher.group(3).toUpperCase());
-				}
-				else if (linkMatcher.group(5) != null) {
-					spotifyURI = linkMatcher.group(5);
-					linkCase = Types.valueOf(linkMatcher.group(6).toUpperCase());
-				}
-				
-				if (!spotifyURI.isEmpty()) {
-					new FetchURI("http://ws.spotify.com/lookup/1/?uri="+spotifyURI, wand, pme.getNetwork(), pme.getTarget(), linkCase);
-				}
+			if (!spotifyURI.isEmpty()) {
+				new FetchURI("http://ws.spotify.com/lookup/1/?uri="+spotifyURI, wand, pme.getNetwork(), pme.getTarget(), linkCase);
 			}
 		}
 	}
@@ -2,9 +2,9 @@ package no.ntnu.online.onlineguru.plugin.plugins.twitter;
 
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
-import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
-import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
 import no.ntnu.online.onlineguru.utils.SimpleIO;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.log4j.Logger;
@@ -23,7 +23,7 @@ import java.util.List;
  * Time: 10:01 PM
  * To change this template use File | Settings | File Templates.
  */
-public class TwitterPlugin implements Plugin {
+public class TwitterPlugin implements PluginWithMessageContext {
     static Logger logger = Logger.getLogger(TwitterPlugin.class);
     private final String DESCRIPTION = "Twitter plugin";
     private final String TWEETTRIGGER = "!tweet";
@@ -102,49 +102,51 @@ public class TwitterPlugin implements Plugin {
     public void incomingEvent(Event e) {
         switch (e.getEventType()) {
             case PRIVMSG: {
-            	
-                PrivMsgEvent privMsgEvent = (PrivMsgEvent) e;
-                String[] data = privMsgEvent.getMessage().split("\\s+");
-                
-                if(data.length < 2) return;
-                String trigger = data[0];
-                String message = privMsgEvent.getMessage().substring(trigger.length()).trim();
-                
-                if(trigger.equalsIgnoreCase(TWEETTRIGGER)) {
-                	if(privMsgEvent.getTarget().equalsIgnoreCase("#online.dotkom")) {
-                		if(!credentialsOK) {
-                			wand.sendMessageToTarget(e.getNetwork(), "#online.dotkom", "Credentials are incomplete. Did not even try to tweet.");
-                		}
-                		if(messageHasCorrectTwitterLength(message)) {
-                			if(tweet(message)) {
-                				wand.sendMessageToTarget(e.getNetwork(), "#online.dotkom", "Twitteret: " + message);
-                            } else {
-                                wand.sendMessageToTarget(e.getNetwork(), "#online.dotkom", "Feilet ved sendelse av kvitter på det store internett!");
-                            }
-                		}
-                	}
-                }
-                else if(trigger.equalsIgnoreCase(TWITTERTRIGGER)) {
-                	if(data.length == 2) {
-                		String screenName = data[1];
-                		List<Status> statuses = getStatuses(screenName);
-                		
-                		if(statuses.size() > 0) {
-                			Status latestStatus = statuses.get(0);
-                			wand.sendMessageToTarget(e.getNetwork(), privMsgEvent.getTarget(), "Tweeted by " + 
-                																				latestStatus.getUser().getScreenName() + ", " +
-                																				latestStatus.getCreatedAt().toGMTString() +
-                																				": " + latestStatus.getText());
-                		}
-                		else {
-                			wand.sendMessageToTarget(e.getNetwork(), privMsgEvent.getTarget(), "Screen name not found, or user has not tweeted anything.");
-                		}
-                		
-                	}
-                }
+                incomingMessage(new MessageContext((PrivMsgEvent) e));
             }
         }
     }
+
+    public void incomingMessage(MessageContext context) {
+        PrivMsgEvent privMsgEvent = context.getEvent();
+
+        if(context.getTokenCount() < 2) return;
+        String trigger = context.getTrigger();
+        String message = context.getArguments();
+
+        if(trigger.equalsIgnoreCase(TWEETTRIGGER)) {
+        	if(privMsgEvent.getTarget().equalsIgnoreCase("#online.dotkom")) {
+        		if(!credentialsOK) {
+        			wand.sendMessageToTarget(privMsgEvent.getNetwork(), "#online.dotkom", "Credentials are incomplete. Did not even try to tweet.");
+        		}
+        		if(messageHasCorrectTwitterLength(message)) {
+        			if(tweet(message)) {
+        				wand.sendMessageToTarget(privMsgEvent.getNetwork(), "#online.dotkom", "Twitteret: " + message);
+                    } else {
+                        wand.sendMessageToTarget(privMsgEvent.getNetwork(), "#online.dotkom", "Feilet ved sendelse av kvitter på det store internett!");
+                    }
+        		}
+        	}
+        }
+        else if(trigger.equalsIgnoreCase(TWITTERTRIGGER)) {
+        	if(context.getTokenCount() == 2) {
+        		String screenName = context.getToken(1);
+        		List<Status> statuses = getStatuses(screenName);
+        		
+        		if(statuses.size() > 0) {
+        			Status latestStatus = statuses.get(0);
+        			wand.sendMessageToTarget(privMsgEvent.getNetwork(), privMsgEvent.getTarget(), "Tweeted by " + 
+        																				latestStatus.getUser().getScreenName() + ", " +
+        																				latestStatus.getCreatedAt().toGMTString() +
+        																				": " + latestStatus.getText());
+        		}
+        		else {
+        			wand.sendMessageToTarget(privMsgEvent.getNetwork(), privMsgEvent.getTarget(), "Screen name not found, or user has not tweeted anything.");
+        		}
+        		
+        	}
+        }
+    }
     
     private boolean messageHasCorrectTwitterLength(String message) {
     	if(message.length() <= 140)
@@ -172,7 +174,7 @@ public class TwitterPlugin implements Plugin {
     }
 
     public void addEventDistributor(EventDistributor eventDistributor) {
-        eventDistributor.addListener(this, EventType.PRIVMSG);
+        eventDistributor.addTriggerListener(this, TWEETTRIGGER, TWITTERTRIGGER);
     }
 
     public void addWand(Wand wand) {
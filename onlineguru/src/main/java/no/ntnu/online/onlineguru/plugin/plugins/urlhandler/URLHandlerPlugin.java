@@ -1,15 +1,16 @@
 package no.ntnu.online.onlineguru.plugin.plugins.urlhandler;
 
-import java.util.Scanner;
-
 import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.fictive.irclib.event.model.EventType;
 import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
-import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.MessageContext;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithMessageContext;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
 import no.ntnu.online.onlineguru.utils.Wand;
 
-public class URLHandlerPlugin implements Plugin {
+public class URLHandlerPlugin implements PluginWithPriority, PluginWithMessageContext {
 
     private final int shorteningThreshhold = 42;
 
@@ -36,28 +37,29 @@ public class URLHandlerPlugin implements Plugin {
 		return "Returns the title from an URL. Also supplies a bit.ly shortened url, if the length is more than "+shorteningThreshhold+".";
 	}
 
+	public PluginPriority getPriority() {
+		return PluginPriority.BEST_EFFORT;
+	}
+
 	public void incomingEvent(Event e) {
-		PrivMsgEvent pme = (PrivMsgEvent)e;
+		incomingMessage(new MessageContext((PrivMsgEvent)e));
+	}
+
+	public void incomingMessage(MessageContext context) {
+		PrivMsgEvent pme = context.getEvent();
 		
 		if(pme.isChannelMessage()) {
-			String channel = pme.getTarget();
-			
-			Scanner scanner = new Scanner(pme.getMessage());
-			String word;
-			
-			while(scanner.hasNext()) {
-				word = scanner.next();
-				if(word.startsWith("http") || word.startsWith("www")) {
-					if(word.startsWith("www")) {
-						word = "http://" + word;
-					}
-					if( word.startsWith("http://open.spotify.com/track/") ||
-                        word.startsWith("http://open.spotify.com/artist/") ||
-                        word.startsWith("http://open.spotify.com/album/")) {
-						    return;
-					}
-					new Entry(wand, pme, word);
+			for(MessageContext.Span url : context.getUrls()) {
+				String word = url.getText();
+				if(word.startsWith("www")) {
+					word = "http://" + word;
+				}
+				if( word.startsWith("http://open.spotify.com/track/") ||
+                    word.startsWith("http://open.spotify.com/artist/") ||
+                    word.startsWith("http://open.spotify.com/album/")) {
+					    return;
 				}
+				new Entry(wand, pme, word);
 			}
 		}
 	}
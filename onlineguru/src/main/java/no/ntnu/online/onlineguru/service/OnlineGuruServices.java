@@ -3,7 +3,10 @@ package no.ntnu.online.onlineguru.service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Module;
 import no.ntnu.online.onlineguru.service.services.history.History;
+import no.ntnu.online.onlineguru.service.services.history.HistorySettings;
+import no.ntnu.online.onlineguru.service.services.outbound.Outbound;
 import no.ntnu.online.onlineguru.service.services.webserver.Webserver;
+import no.ntnu.online.onlineguru.service.services.who.Who;
 import no.ntnu.online.onlineguru.service.services.xmlrpcserver.StatefulXmlRpcServer;
 import no.ntnu.online.onlineguru.service.services.xmlrpcserver.XmlRpcServer;
 import org.apache.log4j.Logger;
@@ -16,7 +19,9 @@ public class OnlineGuruServices extends AbstractModule implements Module {
         try {
             bind(XmlRpcServer.class).toInstance(new StatefulXmlRpcServer());
             bind(Webserver.class).toInstance(new Webserver());
-            bind(History.class).toInstance(new History());
+            bind(History.class).toInstance(new History(HistorySettings.load()));
+            bind(Outbound.class).toInstance(new Outbound());
+            bind(Who.class).toInstance(new Who());
         } catch (Exception e) {
             logger.error(e.getMessage());
         }
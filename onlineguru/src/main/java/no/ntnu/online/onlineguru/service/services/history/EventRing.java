@@ -0,0 +1,79 @@
+package no.ntnu.online.onlineguru.service.services.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The last records of one nick or channel, in a fixed array that new records go around, overwriting the oldest.
+ * Not thread safe; {@link History} guards every ring with a lock.
+ */
+class EventRing {
+
+    private final HistoryRecord[] records;
+    private int next = 0;
+    private int size = 0;
+    private volatile long lastActivity;
+
+    EventRing(int capacity) {
+        this.records = new HistoryRecord[capacity];
+    }
+
+    /**
+     * @return 1 if the ring grew, 0 if the oldest record was overwritten.
+     */
+    int add(HistoryRecord record) {
+        records[next] = record;
+        next = (next + 1) % records.length;
+        lastActivity = record.getTimestamp();
+        if (size < records.length) {
+            size++;
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Drops records from before the cutoff.
+     *
+     * @return How many were dropped.
+     */
+    int expire(long cutoff) {
+        int dropped = 0;
+        while (size > 0) {
+            int oldest = (next - size + records.length) % records.length;
+            if (records[oldest].getTimestamp() >= cutoff) {
+                break;
+            }
+            records[oldest] = null;
+            size--;
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * @return A copy of the records from the cutoff on, newest first.
+     */
+    List<HistoryRecord> newestFirst(long cutoff) {
+        List<HistoryRecord> result = new ArrayList<HistoryRecord>(size);
+        for (int i = 1; i <= size; i++) {
+            HistoryRecord record = records[(next - i + records.length) % records.length];
+            if (record.getTimestamp() < cutoff) {
+                break;
+            }
+            result.add(record);
+        }
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return When the last record was added. Can be read without the lock.
+     */
+    long getLastActivity() {
+        return lastActivity;
+    }
+}
@@ -7,67 +7,234 @@ import no.fictive.irclib.model.channel.Channel;
 import no.fictive.irclib.model.nick.Nick;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-
+/**
+ * The last events of every nick, and the last messages in every channel, newest first. Events are kept
+ * as {@link HistoryRecord}s, which hold only what is needed to tell about them.
+ *
+ * Each nick and channel has a ring of fixed size, so adding an event never moves the others. Rings are
+ * guarded by a fixed set of locks picked by name, so events for different nicks rarely wait for each
+ * other. Reads return copies, which plugins can use while events keep coming in. The irclib types are
+ * taken only for convenience; nicks and channels are kept by name.
+ *
+ * Events older than {@link HistorySettings#getMaxAgeMillis()} are left out. When the nicks hold more than
+ * {@link HistorySettings#getMaxEvents()} events together, the nicks that have been quiet the longest are
+ * forgotten. Channels are not counted, as there are only as many as the bot has joined.
+ */
 public class History {
-    private Map<Nick, List<Event>> history;
-    private HashMap<Channel, List<PrivMsgEvent>> channelHistory;
     public static final int MAX_EVENTS_IN_HISTORY_PER_NICK = 5;
     public static final int MAX_EVENTS_IN_CHANNEL_HISOTRY = 15;
 
+    private static final int LOCKS = 16;
+
+    private final HistorySettings settings;
+    private final ConcurrentHashMap<String, EventRing> history = new ConcurrentHashMap<String, EventRing>();
+    private final ConcurrentHashMap<String, EventRing> channelHistory = new ConcurrentHashMap<String, EventRing>();
+    private final Object[] locks = new Object[LOCKS];
+
+    private final AtomicInteger nickEvents = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong evictedNicks = new AtomicLong();
 
     public History() {
-        this.history = new HashMap<Nick, List<Event>>();
-        this.channelHistory = new HashMap<Channel, List<PrivMsgEvent>>();
+        this(new HistorySettings());
+    }
+
+    public History(HistorySettings settings) {
+        this.settings = settings;
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return A record of the event, stamped with the current time, or null if events of its type aren't kept.
+     */
+    public HistoryRecord createRecord(Event event) {
+        return HistoryRecord.of(event, currentTimeMillis());
     }
 
     public void appendHistory(Nick nick, Event event) {
-        if (history.containsKey(nick)) {
-            List<Event> eventsForNick = history.get(nick);
-
-            eventsForNick.add(0, event);
-            if (eventsForNick.size() > MAX_EVENTS_IN_HISTORY_PER_NICK)
-                eventsForNick.remove(MAX_EVENTS_IN_HISTORY_PER_NICK);
-        } else {
-            history.put(nick, new ArrayList<Event>(Arrays.asList(new Event[]{event})));
+        HistoryRecord record = createRecord(event);
+        if (record != null) {
+            appendHistory(nick.getNickname(), record);
+        }
+    }
+
+    public void appendHistory(String nick, HistoryRecord record) {
+        int added;
+
+        synchronized (lockFor(nick)) {
+            EventRing events = history.get(nick);
+            if (events == null) {
+                events = new EventRing(settings.getEventsPerNick());
+                history.put(nick, events);
+            }
+            added = events.add(record) - events.expire(cutoff(record.getTimestamp()));
         }
+        nickEvents.addAndGet(added);
+        evictIdleNicks();
     }
 
     public void appendChannelHistory(Channel channel, PrivMsgEvent event) {
-        if (channelHistory.containsKey(channel)) {
-            List<PrivMsgEvent> eventsForChannel = channelHistory.get(channel);
-
-            eventsForChannel.add(0, event);
-            if (eventsForChannel.size() > MAX_EVENTS_IN_CHANNEL_HISOTRY)
-                eventsForChannel.remove(MAX_EVENTS_IN_CHANNEL_HISOTRY);
-        } else {
-            channelHistory.put(channel, new ArrayList<PrivMsgEvent>(Arrays.asList(new PrivMsgEvent[]{ event })));
+        appendChannelHistory(channel.getChannelname(), createRecord(event));
+    }
+
+    public void appendChannelHistory(String channel, HistoryRecord record) {
+        synchronized (lockFor(channel)) {
+            EventRing events = channelHistory.get(channel);
+            if (events == null) {
+                events = new EventRing(settings.getEventsPerChannel());
+                channelHistory.put(channel, events);
+            }
+            events.add(record);
+            events.expire(cutoff(record.getTimestamp()));
         }
     }
 
     public void nickChangeHistory(NickEvent nickEvent) {
-        if (history.containsKey(new Nick(nickEvent.getOldNick()))) {
-            history.put(new Nick(nickEvent.getNewNick()), history.get(new Nick(nickEvent.getOldNick())));
-            history.remove(new Nick(nickEvent.getOldNick()));
-        } else {
-            history.put(new Nick(nickEvent.getNewNick()), new ArrayList<Event>(Arrays.asList(new Event[]{ nickEvent })));
+        nickChangeHistory(createRecord(nickEvent));
+    }
+
+    /**
+     * Moves the history of the old nick to the new one, and adds the nick change to it.
+     *
+     * @param record Record of a NICK event.
+     */
+    public void nickChangeHistory(HistoryRecord record) {
+        String oldKey = record.getOther();
+        String newKey = record.getNick();
+        // Always lock in the same order, so two nick changes can't wait for each other.
+        Object first = locks[Math.min(lockIndex(oldKey), lockIndex(newKey))];
+        Object second = locks[Math.max(lockIndex(oldKey), lockIndex(newKey))];
+
+        synchronized (first) {
+            synchronized (second) {
+                EventRing events = history.remove(oldKey);
+                if (events == null) {
+                    events = new EventRing(settings.getEventsPerNick());
+                    nickEvents.addAndGet(events.add(record));
+                }
+                EventRing replaced = history.put(newKey, events);
+                if (replaced != null && replaced != events) {
+                    nickEvents.addAndGet(-replaced.size());
+                }
+            }
         }
-        appendHistory(new Nick(nickEvent.getNewNick()), nickEvent);
+        appendHistory(newKey, record);
     }
 
-    public List<Event> getLastEvents(Nick nick) {
-        if (history.containsKey(nick))
-            return history.get(nick);
-        else
-            return new ArrayList<Event>();
+    /**
+     * @return The last records of the nick, newest first. A copy.
+     */
+    public List<HistoryRecord> getLastRecords(String nick) {
+        synchronized (lockFor(nick)) {
+            EventRing events = history.get(nick);
+            if (events == null) {
+                return new ArrayList<HistoryRecord>();
+            }
+            return events.newestFirst(cutoff(currentTimeMillis()));
+        }
     }
 
-    public List<PrivMsgEvent> getLastChannelEvents(Channel channel) {
-        if (channelHistory.containsKey(channel))
-            return channelHistory.get(channel);
-        else
-            return new ArrayList<PrivMsgEvent>();
+    /**
+     * @return The last messages in the channel, newest first. A copy.
+     */
+    public List<HistoryRecord> getLastChannelRecords(String channel) {
+        synchronized (lockFor(channel)) {
+            EventRing events = channelHistory.get(channel);
+            if (events == null) {
+                return new ArrayList<HistoryRecord>();
+            }
+            return events.newestFirst(cutoff(currentTimeMillis()));
+        }
     }
 
+    /**
+     * Forgets the quietest nicks when the nicks hold too many events, until a tenth of the budget is free
+     * again, so it isn't done for every event. Only one thread does it at a time; others carry on.
+     */
+    private void evictIdleNicks() {
+        int budget = settings.getMaxEvents();
+        if (nickEvents.get() <= budget || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = budget - budget / 10;
 
+            // Activity is read once, so it doesn't change while sorting.
+            List<Idle> idle = new ArrayList<Idle>(history.size());
+            for (Map.Entry<String, EventRing> entry : history.entrySet()) {
+                idle.add(new Idle(entry.getKey(), entry.getValue()));
+            }
+            Collections.sort(idle);
+
+            for (Idle nick : idle) {
+                if (nickEvents.get() <= target) {
+                    break;
+                }
+                synchronized (lockFor(nick.key)) {
+                    if (history.remove(nick.key, nick.events)) {
+                        nickEvents.addAndGet(-nick.events.size());
+                        evictedNicks.incrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private Object lockFor(String key) {
+        return locks[lockIndex(key)];
+    }
+
+    private static int lockIndex(String key) {
+        return (String.valueOf(key).hashCode() & 0x7fffffff) % LOCKS;
+    }
+
+    private long cutoff(long now) {
+        return settings.getMaxAgeMillis() > 0 ? now - settings.getMaxAgeMillis() : Long.MIN_VALUE;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @return How many events are kept for nicks in all.
+     */
+    public int getNickEvents() {
+        return nickEvents.get();
+    }
+
+    public long getEvictedNicks() {
+        return evictedNicks.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("history: nicks=%d events=%d channels=%d evicted=%d",
+                history.size(), nickEvents.get(), channelHistory.size(), evictedNicks.get());
+    }
+
+    private static class Idle implements Comparable<Idle> {
+        private final String key;
+        private final EventRing events;
+        private final long lastActivity;
+
+        private Idle(String key, EventRing events) {
+            this.key = key;
+            this.events = events;
+            this.lastActivity = events.getLastActivity();
+        }
+
+        public int compareTo(Idle other) {
+            return lastActivity < other.lastActivity ? -1 : (lastActivity == other.lastActivity ? 0 : 1);
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package no.ntnu.online.onlineguru.service.services.history;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.*;
+import no.fictive.irclib.event.model.EventType;
+
+import java.util.Arrays;
+
+/**
+ * What {@link History} keeps of an event: enough to tell what someone did, without the raw line, the
+ * parsed packet or the network of the irclib event.
+ *
+ * Only the events that say something carry text:
+ * <ul>
+ *     <li>PRIVMSG: the message. NOTICE: the notice.</li>
+ *     <li>TOPIC: the new topic. QUIT: the quit message. KICK: the reason.</li>
+ *     <li>MODE: the modes, as they are shown by {@link no.ntnu.online.onlineguru.plugin.plugins.seen.SeenPlugin}.</li>
+ * </ul>
+ */
+public class HistoryRecord {
+
+    private final EventType type;
+    private final String network;
+    private final String nick;
+    private final String other;
+    private final String channel;
+    private final String text;
+    private final long timestamp;
+
+    HistoryRecord(EventType type, String network, String nick, String other, String channel, String text, long timestamp) {
+        this.type = type;
+        this.network = network;
+        this.nick = nick;
+        this.other = other;
+        this.channel = channel;
+        this.text = text;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @param event     Event to keep.
+     * @param timestamp When it happened, in milliseconds.
+     * @return The record, or null if events of the type aren't kept.
+     */
+    public static HistoryRecord of(Event event, long timestamp) {
+        String network = event.getNetwork() == null ? null : event.getNetwork().getServerAlias();
+
+        switch (event.getEventType()) {
+            case JOIN:
+                JoinEvent joinEvent = (JoinEvent) event;
+                return new HistoryRecord(EventType.JOIN, network, joinEvent.getNick(), null, joinEvent.getChannel(), null, timestamp);
+            case PART:
+                PartEvent partEvent = (PartEvent) event;
+                return new HistoryRecord(EventType.PART, network, partEvent.getNick(), null, partEvent.getChannel(), null, timestamp);
+            case KICK:
+                KickEvent kickEvent = (KickEvent) event;
+                return new HistoryRecord(EventType.KICK, network, kickEvent.getNickKicking(), kickEvent.getNickKicked(),
+                        kickEvent.getChannel(), kickEvent.getReason(), timestamp);
+            case MODE:
+                ModeEvent modeEvent = (ModeEvent) event;
+                return new HistoryRecord(EventType.MODE, network, modeEvent.getNick(), null, modeEvent.getChannel(),
+                        Arrays.toString(modeEvent.getModes().toArray()), timestamp);
+            case NICK:
+                NickEvent nickEvent = (NickEvent) event;
+                return new HistoryRecord(EventType.NICK, network, nickEvent.getNewNick(), nickEvent.getOldNick(), null, null, timestamp);
+            case TOPIC:
+                TopicEvent topicEvent = (TopicEvent) event;
+                return new HistoryRecord(EventType.TOPIC, network, topicEvent.getChangedByNick(), null, topicEvent.getChannel(),
+                        topicEvent.getTopic(), timestamp);
+            case QUIT:
+                QuitEvent quitEvent = (QuitEvent) event;
+                return new HistoryRecord(EventType.QUIT, network, quitEvent.getNick(), null, null, quitEvent.getQuitmessage(), timestamp);
+            case PRIVMSG:
+                PrivMsgEvent privMsgEvent = (PrivMsgEvent) event;
+                String channel = privMsgEvent.isChannelMessage() ? privMsgEvent.getChannel() : null;
+                return new HistoryRecord(EventType.PRIVMSG, network, privMsgEvent.getSender(), null, channel,
+                        privMsgEvent.getMessage(), timestamp);
+            case NOTICE:
+                NoticeEvent noticeEvent = (NoticeEvent) event;
+                return new HistoryRecord(EventType.NOTICE, network, noticeEvent.getSender(), noticeEvent.getTarget(), null,
+                        noticeEvent.getNotice(), timestamp);
+            default:
+                return null;
+        }
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    /**
+     * @return Server alias of the network it happened on.
+     */
+    public String getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return Who did it; the new nick for NICK.
+     */
+    public String getNick() {
+        return nick;
+    }
+
+    /**
+     * @return The nick kicked for KICK, the old nick for NICK, and the target for NOTICE. Otherwise null.
+     */
+    public String getOther() {
+        return other;
+    }
+
+    /**
+     * @return Channel it happened in, null for NICK, QUIT, NOTICE and private messages.
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return Message, notice, topic, quit message, kick reason or modes. Null for the other events.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return When it happened, in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
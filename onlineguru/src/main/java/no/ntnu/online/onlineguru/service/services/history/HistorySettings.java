@@ -0,0 +1,82 @@
+package no.ntnu.online.onlineguru.service.services.history;
+
+import no.ntnu.online.onlineguru.utils.settingsreader.KeyValueSettings;
+
+/**
+ * Settings for the {@link History} service, read from settings/history.conf.
+ *
+ * Each nick keeps its last events_per_nick events and each channel its last events_per_channel messages.
+ * Events older than max_age_ms are forgotten; 0 keeps them until they are pushed out. When more than
+ * max_events events are kept for nicks in all, the nicks that have been quiet the longest are forgotten.
+ *
+ * Example:
+ * events_per_nick=5
+ * events_per_channel=15
+ * max_age_ms=0
+ * max_events=50000
+ */
+public class HistorySettings {
+
+    public static final String SETTINGS_FILE = "settings/history.conf";
+
+    private int eventsPerNick = History.MAX_EVENTS_IN_HISTORY_PER_NICK;
+    private int eventsPerChannel = History.MAX_EVENTS_IN_CHANNEL_HISOTRY;
+    private long maxAgeMillis = 0;
+    private int maxEvents = 50000;
+
+    public static HistorySettings load() {
+        KeyValueSettings settings = KeyValueSettings.load(SETTINGS_FILE);
+        HistorySettings historySettings = new HistorySettings();
+
+        historySettings.setEventsPerNick(settings.getInt("events_per_nick", History.MAX_EVENTS_IN_HISTORY_PER_NICK));
+        historySettings.setEventsPerChannel(settings.getInt("events_per_channel", History.MAX_EVENTS_IN_CHANNEL_HISOTRY));
+        historySettings.setMaxAgeMillis(settings.getLong("max_age_ms", 0));
+        historySettings.setMaxEvents(settings.getInt("max_events", 50000));
+
+        return historySettings;
+    }
+
+    /**
+     * @return Most events kept per nick.
+     */
+    public int getEventsPerNick() {
+        return eventsPerNick;
+    }
+
+    public void setEventsPerNick(int eventsPerNick) {
+        this.eventsPerNick = Math.max(1, eventsPerNick);
+    }
+
+    /**
+     * @return Most messages kept per channel.
+     */
+    public int getEventsPerChannel() {
+        return eventsPerChannel;
+    }
+
+    public void setEventsPerChannel(int eventsPerChannel) {
+        this.eventsPerChannel = Math.max(1, eventsPerChannel);
+    }
+
+    /**
+     * @return How long events are kept. 0 keeps them until they are pushed out by newer ones.
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = Math.max(0, maxAgeMillis);
+    }
+
+    /**
+     * @return Most events kept for all nicks together.
+     */
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    public void setMaxEvents(int maxEvents) {
+        this.maxEvents = Math.max(1, maxEvents);
+    }
+}
@@ -0,0 +1,103 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drops PRIVMSG and NOTICE lines that were already sent to the same target on the same network a moment ago,
+ * like the same webhook delivered twice or a mail sent to several lists. Lines are remembered by a 64 bit
+ * hash of the network and the line, and only the most recent ones are kept.
+ */
+public class DuplicateFilter {
+
+    private final long windowNanos;
+    private final boolean filterReplies;
+
+    private final LinkedHashMap<Long, Long> recent;
+
+    private long checked = 0;
+    private long suppressed = 0;
+
+    public DuplicateFilter(long windowMillis, final int capacity, boolean filterReplies) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.filterReplies = filterReplies;
+        this.recent = new LinkedHashMap<Long, Long>(capacity * 4 / 3 + 1, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Remembers the line, and tells if it was seen within the window.
+     *
+     * @param network Network the line is for.
+     * @param line    Raw line to send.
+     * @param reply   Whether the line is sent while a plugin handles an event.
+     * @return true if the line should be dropped.
+     */
+    public boolean isDuplicate(Network network, String line, boolean reply) {
+        if (reply && !filterReplies) {
+            return false;
+        }
+        if (!OutboundLane.isCommand(line, "PRIVMSG") && !OutboundLane.isCommand(line, "NOTICE")) {
+            return false;
+        }
+
+        Long key = hash(network.getServerAlias(), line);
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            checked++;
+            Long sent = recent.remove(key);
+            if (sent != null && now - sent < windowNanos) {
+                // Keep the time of the first one, so a steady repeat gets through once per window.
+                recent.put(key, sent);
+                suppressed++;
+                return true;
+            }
+            recent.put(key, now);
+            return false;
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a over the characters of both strings.
+     */
+    static long hash(String serverAlias, String line) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < serverAlias.length(); i++) {
+            hash ^= serverAlias.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // A zero in between, so "ab" + "c" and "a" + "bc" hash differently.
+        hash *= 0x100000001b3L;
+        for (int i = 0; i < line.length(); i++) {
+            hash ^= line.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public synchronized long getChecked() {
+        return checked;
+    }
+
+    public synchronized long getSuppressed() {
+        return suppressed;
+    }
+
+    public synchronized int getRemembered() {
+        return recent.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("duplicates: checked=%d suppressed=%d remembered=%d window=%dms",
+                checked, suppressed, recent.size(), TimeUnit.NANOSECONDS.toMillis(windowNanos));
+    }
+}
@@ -0,0 +1,274 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds on to MODE changes for a channel for a short while, and sends them in as few lines as the server
+ * allows; "MODE #channel +ooo a b c" instead of three lines. Anything else sent about the channel, like a
+ * KICK or a message to it and other targets, sends the waiting changes first so the order is kept.
+ *
+ * Only changes where every mode is known from {@link ServerSupport} are held. List queries like
+ * "MODE #channel +b" and anything unknown go straight through.
+ */
+class ModeCoalescer {
+
+    /**
+     * Leaves room for the prefix the server adds when relaying the line.
+     */
+    private static final int MAX_LINE_LENGTH = 400;
+
+    private final OutboundWriter sink;
+    private final long windowMillis;
+    private final ScheduledExecutorService timer;
+
+    private final Map<Network, Map<String, Pending>> pending = new HashMap<Network, Map<String, Pending>>();
+
+    ModeCoalescer(OutboundWriter sink, long windowMillis) {
+        this.sink = sink;
+        this.windowMillis = windowMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setName("ModeCoalescer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param network Network the line is for.
+     * @param support What the server supports.
+     * @param line    Raw line to send.
+     * @return true if the line was held back, false if the caller should send it now.
+     */
+    boolean offer(Network network, ServerSupport support, String line) {
+        boolean mode = OutboundLane.isCommand(line, "MODE");
+        if (!mode) {
+            synchronized (this) {
+                // Most lines pass through here while nothing is waiting, don't take them apart for nothing.
+                if (!pending.containsKey(network)) {
+                    return false;
+                }
+            }
+        }
+
+        String[] parts = line.split(" ");
+        if (parts.length < 2) {
+            return false;
+        }
+        List<Change> changes = mode && isChannel(parts[1]) ? parse(parts, support) : null;
+
+        synchronized (this) {
+            if (changes == null) {
+                // Lines like "PRIVMSG #a,#b :text" are about every channel they name.
+                for (String target : parts[1].split(",")) {
+                    if (isChannel(target)) {
+                        flush(network, support.toLowerCase(target));
+                    }
+                }
+                return false;
+            }
+
+            String key = support.toLowerCase(parts[1]);
+
+            Map<String, Pending> channels = pending.get(network);
+            if (channels == null) {
+                channels = new HashMap<String, Pending>();
+                pending.put(network, channels);
+            }
+
+            Pending waiting = channels.get(key);
+            if (waiting == null) {
+                waiting = new Pending(parts[1], support);
+                channels.put(key, waiting);
+                schedule(network, key);
+            }
+            waiting.changes.addAll(changes);
+            return true;
+        }
+    }
+
+    private void schedule(final Network network, final String key) {
+        timer.schedule(new Runnable() {
+            public void run() {
+                synchronized (ModeCoalescer.this) {
+                    flush(network, key);
+                }
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(Network network, String key) {
+        Map<String, Pending> channels = pending.get(network);
+        if (channels == null) {
+            return;
+        }
+        Pending waiting = channels.remove(key);
+        if (waiting == null) {
+            return;
+        }
+        if (channels.isEmpty()) {
+            pending.remove(network);
+        }
+
+        send(network, waiting);
+    }
+
+    private void send(Network network, Pending waiting) {
+        for (String line : format(waiting.channel, waiting.changes, waiting.support.getModes())) {
+            sink.write(network, line);
+        }
+    }
+
+    /**
+     * Sends everything that is waiting for a network.
+     */
+    synchronized void flush(Network network) {
+        Map<String, Pending> channels = pending.remove(network);
+        if (channels == null) {
+            return;
+        }
+        for (Pending waiting : channels.values()) {
+            send(network, waiting);
+        }
+    }
+
+    /**
+     * Sends everything that is waiting.
+     */
+    synchronized void flushAll() {
+        Iterator<Map.Entry<Network, Map<String, Pending>>> networks = pending.entrySet().iterator();
+        while (networks.hasNext()) {
+            Map.Entry<Network, Map<String, Pending>> entry = networks.next();
+            for (Pending waiting : entry.getValue().values()) {
+                send(entry.getKey(), waiting);
+            }
+            networks.remove();
+        }
+    }
+
+    void shutdown() {
+        flushAll();
+        timer.shutdownNow();
+    }
+
+    private static boolean isChannel(String target) {
+        char first = target.isEmpty() ? ' ' : target.charAt(0);
+        return first == '#' || first == '&' || first == '!' || first == '+';
+    }
+
+    /**
+     * @return The changes in a MODE line, or null if it can't be held back.
+     */
+    static List<Change> parse(String[] parts, ServerSupport support) {
+        if (parts.length < 3) {
+            return null;
+        }
+
+        List<Change> changes = new ArrayList<Change>();
+        boolean adding = true;
+        int argument = 3;
+
+        for (char mode : parts[2].toCharArray()) {
+            if (mode == '+' || mode == '-') {
+                adding = mode == '+';
+                continue;
+            }
+
+            int parameter = support.takesParameter(mode, adding);
+            if (parameter < 0) {
+                return null;
+            }
+            if (parameter == 1) {
+                if (argument >= parts.length) {
+                    return null;
+                }
+                changes.add(new Change(adding, mode, parts[argument++]));
+            }
+            else {
+                changes.add(new Change(adding, mode, null));
+            }
+        }
+
+        if (argument != parts.length || changes.isEmpty()) {
+            return null;
+        }
+        return changes;
+    }
+
+    /**
+     * Packs changes into MODE lines with at most maxParameters parameters each.
+     */
+    static List<String> format(String channel, List<Change> changes, int maxParameters) {
+        List<String> lines = new ArrayList<String>();
+
+        StringBuilder modes = new StringBuilder();
+        StringBuilder arguments = new StringBuilder();
+        int parameters = 0;
+        Boolean sign = null;
+
+        for (Change change : changes) {
+            boolean full = change.argument != null && parameters >= maxParameters;
+            boolean tooLong = channel.length() + modes.length() + arguments.length()
+                    + (change.argument == null ? 0 : change.argument.length()) + 8 > MAX_LINE_LENGTH;
+
+            if (modes.length() > 0 && (full || tooLong)) {
+                lines.add("MODE " + channel + " " + modes + arguments);
+                modes.setLength(0);
+                arguments.setLength(0);
+                parameters = 0;
+                sign = null;
+            }
+
+            if (sign == null || sign != change.adding) {
+                modes.append(change.adding ? '+' : '-');
+                sign = change.adding;
+            }
+            modes.append(change.mode);
+            if (change.argument != null) {
+                arguments.append(' ').append(change.argument);
+                parameters++;
+            }
+        }
+
+        if (modes.length() > 0) {
+            lines.add("MODE " + channel + " " + modes + arguments);
+        }
+        return lines;
+    }
+
+    static class Change {
+        private final boolean adding;
+        private final char mode;
+        private final String argument;
+
+        Change(boolean adding, char mode, String argument) {
+            this.adding = adding;
+            this.mode = mode;
+            this.argument = argument;
+        }
+    }
+
+    private static class Pending {
+        private final String channel;
+        private final ServerSupport support;
+        private final List<Change> changes = new ArrayList<Change>();
+
+        private Pending(String channel, ServerSupport support) {
+            this.channel = channel;
+            this.support = support;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps an {@link OutboundQueue} for every network, so the bot doesn't flood itself off the server.
+ * Queues are created the first time something is sent to a network. Repeated messages are dropped by
+ * a {@link DuplicateFilter}, and MODE changes go through a {@link ModeCoalescer} first.
+ */
+public class Outbound {
+
+    private final OutboundSettings settings;
+    private final ConcurrentHashMap<Network, OutboundQueue> queues = new ConcurrentHashMap<Network, OutboundQueue>();
+    private final ModeCoalescer modeCoalescer;
+    private final DuplicateFilter duplicateFilter;
+    private volatile OutboundWriter writer;
+
+    public Outbound() {
+        this(OutboundSettings.load());
+    }
+
+    public Outbound(OutboundSettings settings) {
+        this.settings = settings;
+
+        if (settings.getModeWindowMillis() > 0) {
+            modeCoalescer = new ModeCoalescer(new OutboundWriter() {
+                public void write(Network network, String line) {
+                    enqueue(network, line, false);
+                }
+            }, settings.getModeWindowMillis());
+        }
+        else {
+            modeCoalescer = null;
+        }
+
+        if (settings.getDuplicateWindowMillis() > 0) {
+            duplicateFilter = new DuplicateFilter(settings.getDuplicateWindowMillis(), settings.getDuplicateCapacity(),
+                    settings.isDuplicateReplies());
+        }
+        else {
+            duplicateFilter = null;
+        }
+    }
+
+    /**
+     * @param writer Where lines go when it's their turn.
+     */
+    public void setWriter(OutboundWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Queues a line for a network, or sends it straight away if pacing is disabled.
+     *
+     * @param network Network to send to.
+     * @param support What the server supports, used to combine MODE changes.
+     * @param line    Raw line to send.
+     * @param reply   Whether the line is sent while a plugin handles an event.
+     * @return false if the line was dropped.
+     */
+    public boolean send(Network network, ServerSupport support, String line, boolean reply) {
+        if (duplicateFilter != null && duplicateFilter.isDuplicate(network, line, reply)) {
+            return false;
+        }
+        if (modeCoalescer != null && modeCoalescer.offer(network, support, line)) {
+            return true;
+        }
+        return enqueue(network, line, reply);
+    }
+
+    private boolean enqueue(Network network, String line, boolean reply) {
+        if (!settings.isEnabled()) {
+            writer.write(network, line);
+            return true;
+        }
+        return queueFor(network).offer(line, reply);
+    }
+
+    private OutboundQueue queueFor(Network network) {
+        OutboundQueue queue = queues.get(network);
+        if (queue == null) {
+            synchronized (queues) {
+                queue = queues.get(network);
+                if (queue == null) {
+                    queue = new OutboundQueue(network, writer, settings);
+                    queues.put(network, queue);
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * The server on this network says we're sending too fast.
+     */
+    public void penalize(Network network) {
+        OutboundQueue queue = queues.get(network);
+        if (queue != null) {
+            queue.penalize();
+        }
+    }
+
+    /**
+     * The network has (re)connected.
+     */
+    public void reset(Network network) {
+        OutboundQueue queue = queues.get(network);
+        if (queue != null) {
+            queue.reset();
+        }
+    }
+
+    /**
+     * Sends the MODE changes that are held back and waits up to quit_drain_ms for the queue to empty,
+     * so nothing is lost when disconnecting.
+     *
+     * @param network Network about to be left.
+     * @return true if everything was sent.
+     */
+    public boolean drain(Network network) {
+        if (modeCoalescer != null) {
+            modeCoalescer.flush(network);
+        }
+        OutboundQueue queue = queues.get(network);
+        return queue == null || queue.drain(settings.getQuitDrainMillis());
+    }
+
+    /**
+     * @return The filter for repeated messages, or null if it is turned off.
+     */
+    public DuplicateFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
+
+    public Collection<OutboundQueue> getQueues() {
+        return Collections.unmodifiableCollection(queues.values());
+    }
+
+    public void shutdown() {
+        if (modeCoalescer != null) {
+            modeCoalescer.shutdown();
+        }
+        for (OutboundQueue queue : queues.values()) {
+            queue.shutdown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+/**
+ * Classes of outgoing lines. Only {@link #PRIORITY} lines jump the queue. Everything else keeps the order
+ * it was sent in, except that a reply may go ahead of announcements waiting for other targets.
+ */
+public enum OutboundLane {
+    /**
+     * PING, PONG, CAP and AUTHENTICATE. Keeps the connection alive and registration going.
+     */
+    PRIORITY,
+    /**
+     * Every other command, like JOIN, PART, QUIT, MODE and KICK. Nothing sent after one of these goes
+     * out before it, and it never goes out before anything sent earlier.
+     */
+    COMMAND,
+    /**
+     * Messages sent while a plugin handles an event, or by work it handed to its own thread with
+     * {@link no.ntnu.online.onlineguru.plugin.control.PluginWatchdog#asReply(Runnable)}. These are answers to someone.
+     */
+    REPLY,
+    /**
+     * Other messages, like announcements from timers and callbacks.
+     */
+    BULK;
+
+    /**
+     * @param line  Raw line to send.
+     * @param reply Whether the line is sent while a plugin handles an event.
+     * @return Lane for the line.
+     */
+    public static OutboundLane classify(String line, boolean reply) {
+        if (isCommand(line, "PRIVMSG") || isCommand(line, "NOTICE")) {
+            return reply ? REPLY : BULK;
+        }
+        if (isCommand(line, "PONG") || isCommand(line, "PING") || isCommand(line, "CAP") || isCommand(line, "AUTHENTICATE")) {
+            return PRIORITY;
+        }
+        return COMMAND;
+    }
+
+    /**
+     * Compares the command of a line without copying it, since this runs for every line sent.
+     *
+     * @param line    Raw line to send.
+     * @param command Upper case command.
+     * @return true if the line is the command.
+     */
+    static boolean isCommand(String line, String command) {
+        int length = command.length();
+        return line.regionMatches(true, 0, command, 0, length) && (line.length() == length || line.charAt(length) == ' ');
+    }
+
+    /**
+     * @param line Raw line to send.
+     * @return Target of a PRIVMSG or NOTICE, in lower case, or null for other lines.
+     */
+    static String targetOf(String line) {
+        if (!isCommand(line, "PRIVMSG") && !isCommand(line, "NOTICE")) {
+            return null;
+        }
+        int start = line.indexOf(' ') + 1;
+        int end = line.indexOf(' ', start);
+        if (end < 0) {
+            return null;
+        }
+        return line.substring(start, end).toLowerCase();
+    }
+}
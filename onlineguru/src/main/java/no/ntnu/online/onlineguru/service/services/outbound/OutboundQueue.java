@@ -0,0 +1,471 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Paces the lines sent to one network with a token bucket.
+ *
+ * Lines wait in the order they were sent, and a writer thread sends them whenever the bucket has a token.
+ * {@link OutboundLane#PRIORITY} lines go first. A reply may go ahead of announcements, but never ahead of
+ * an earlier line to the same target or of an earlier command, so a KICK or PART always follows what
+ * was said before it. When the server complains about flooding, the refill slows down and then recovers
+ * step by step.
+ */
+public class OutboundQueue implements Runnable {
+
+    static Logger logger = Logger.getLogger(OutboundQueue.class);
+
+    private final Network network;
+    private final OutboundWriter writer;
+
+    private final int burst;
+    private final long baseIntervalNanos;
+    private final long maxIntervalNanos;
+    private final long recoverNanos;
+    private final int replyBurst;
+    private final int maxQueued;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final ArrayDeque<Line> priority = new ArrayDeque<Line>();
+    /**
+     * Everything but the priority lines, in the order they were sent.
+     */
+    private final ArrayDeque<Line> waiting = new ArrayDeque<Line>();
+    private final EnumMap<OutboundLane, Integer> counts = new EnumMap<OutboundLane, Integer>(OutboundLane.class);
+    /**
+     * Per target; direct replies waiting in the reply lane.
+     */
+    private final Map<String, Integer> pendingReplies = new HashMap<String, Integer>();
+    private int queued = 0;
+    private boolean writing = false;
+
+    private double tokens;
+    private long intervalNanos;
+    private long lastRefill;
+    private long lastPenalty;
+
+    private long sent = 0;
+    private long dropped = 0;
+    private long demoted = 0;
+    private long penalties = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+
+    private final Thread thread;
+
+    public OutboundQueue(Network network, OutboundWriter writer, OutboundSettings settings) {
+        this.network = network;
+        this.writer = writer;
+
+        String alias = network.getServerAlias();
+        this.burst = settings.getBurst(alias);
+        this.baseIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getRefillMillis(alias));
+        this.maxIntervalNanos = Math.max(baseIntervalNanos, TimeUnit.MILLISECONDS.toNanos(settings.getMaxRefillMillis()));
+        this.recoverNanos = TimeUnit.MILLISECONDS.toNanos(settings.getRecoverMillis());
+        this.replyBurst = settings.getReplyBurst();
+        this.maxQueued = settings.getMaxQueued();
+
+        for (OutboundLane lane : OutboundLane.values()) {
+            counts.put(lane, 0);
+        }
+
+        tokens = burst;
+        intervalNanos = baseIntervalNanos;
+        lastRefill = System.nanoTime();
+        lastPenalty = lastRefill;
+
+        thread = new Thread(this);
+        thread.setName("Outbound-" + alias);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a line.
+     *
+     * @param line  Raw line to send.
+     * @param reply Whether the line is sent while a plugin handles an event.
+     * @return false if the line was dropped because too many lines are waiting.
+     */
+    public boolean offer(String line, boolean reply) {
+        OutboundLane lane = OutboundLane.classify(line, reply);
+        String target = OutboundLane.targetOf(line);
+        if (target == null && lane.compareTo(OutboundLane.REPLY) >= 0) {
+            // A message without a target can't be told apart from others, so it keeps its place like a command.
+            lane = OutboundLane.COMMAND;
+        }
+
+        lock.lock();
+        try {
+            if (lane.compareTo(OutboundLane.REPLY) >= 0 && queued >= maxQueued) {
+                dropped++;
+                logger.debug(String.format("Dropped line to %s, %d lines waiting", network.getServerAlias(), queued));
+                return false;
+            }
+
+            if (lane == OutboundLane.REPLY) {
+                Integer pending = pendingReplies.get(target);
+                if (pending != null && pending >= replyBurst) {
+                    // It waits behind the replies before it anyway, so let the others go first.
+                    lane = OutboundLane.BULK;
+                    demoted++;
+                }
+                else {
+                    pendingReplies.put(target, pending == null ? 1 : pending + 1);
+                }
+            }
+
+            Line next = new Line(line, lane, target, System.nanoTime());
+            if (lane == OutboundLane.PRIORITY) {
+                priority.add(next);
+            }
+            else {
+                waiting.add(next);
+            }
+            counts.put(lane, counts.get(lane) + 1);
+            queued++;
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void run() {
+        while (true) {
+            Line next;
+
+            lock.lock();
+            try {
+                if (queued == 0) {
+                    changed.await();
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                refill(now);
+                if (tokens < 1) {
+                    // Wake up early if the queue is reset in the meantime.
+                    changed.awaitNanos((long) ((1 - tokens) * intervalNanos) + 1);
+                    continue;
+                }
+
+                tokens -= 1;
+                next = next();
+                queued--;
+                release(next);
+
+                long waited = now - next.queuedAt;
+                totalWaitNanos += waited;
+                maxWaitNanos = Math.max(maxWaitNanos, waited);
+                sent++;
+                writing = true;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writer.write(network, next.text);
+            } catch (RuntimeException e) {
+                logger.error("Failed to send to " + network.getServerAlias(), e);
+            }
+
+            lock.lock();
+            try {
+                writing = false;
+                idle.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes the line to send next: a priority line, or else the oldest line, unless that is an announcement
+     * and a reply behind it isn't held back by an earlier line to its target or by an earlier command.
+     */
+    private Line next() {
+        if (!priority.isEmpty()) {
+            return priority.poll();
+        }
+        if (waiting.peek().lane != OutboundLane.BULK) {
+            return waiting.poll();
+        }
+
+        Set<String> passed = new HashSet<String>();
+        Iterator<Line> lines = waiting.iterator();
+        while (lines.hasNext()) {
+            Line line = lines.next();
+            if (line.lane == OutboundLane.COMMAND) {
+                break;
+            }
+            if (line.lane == OutboundLane.REPLY && !isHeldBack(passed, line.targets)) {
+                lines.remove();
+                return line;
+            }
+            Collections.addAll(passed, line.targets);
+        }
+        return waiting.poll();
+    }
+
+    private static boolean isHeldBack(Set<String> passed, String[] targets) {
+        for (String target : targets) {
+            if (passed.contains(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void release(Line line) {
+        counts.put(line.lane, counts.get(line.lane) - 1);
+        if (line.lane != OutboundLane.REPLY) {
+            return;
+        }
+        int pending = pendingReplies.get(line.target) - 1;
+        if (pending == 0) {
+            pendingReplies.remove(line.target);
+        }
+        else {
+            pendingReplies.put(line.target, pending);
+        }
+    }
+
+    private void refill(long now) {
+        if (intervalNanos > baseIntervalNanos && now - lastPenalty > recoverNanos) {
+            intervalNanos = Math.max(baseIntervalNanos, intervalNanos / 2);
+            lastPenalty = now;
+        }
+        tokens = Math.min(burst, tokens + (now - lastRefill) / (double) intervalNanos);
+        lastRefill = now;
+    }
+
+    /**
+     * The server says we're sending too fast. Empties the bucket and halves the rate.
+     */
+    public void penalize() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            penalties++;
+            tokens = 0;
+            intervalNanos = Math.min(maxIntervalNanos, intervalNanos * 2);
+            lastPenalty = now;
+            logger.warn(String.format("%s says we are sending too fast, now sending one line every %dms",
+                    network.getServerAlias(), TimeUnit.NANOSECONDS.toMillis(intervalNanos)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts over with a full bucket at the configured rate, for a new connection.
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            tokens = burst;
+            intervalNanos = baseIntervalNanos;
+            lastRefill = System.nanoTime();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every line queued so far has been handed to the writer, like before disconnecting.
+     *
+     * @param timeoutMillis How long to wait at most.
+     * @return true if nothing is left.
+     */
+    public boolean drain(long timeoutMillis) {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while ((queued > 0 || writing) && remaining > 0) {
+                remaining = idle.awaitNanos(remaining);
+            }
+            return queued == 0 && !writing;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued(OutboundLane lane) {
+        lock.lock();
+        try {
+            return counts.get(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How long the oldest waiting line has waited.
+     */
+    public long getOldestWaitMillis() {
+        lock.lock();
+        try {
+            long oldest = Long.MAX_VALUE;
+            // Lines are only taken out of the middle, so the first ones are the oldest.
+            if (!priority.isEmpty()) {
+                oldest = priority.peek().queuedAt;
+            }
+            if (!waiting.isEmpty()) {
+                oldest = Math.min(oldest, waiting.peek().queuedAt);
+            }
+            return oldest == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSent() {
+        lock.lock();
+        try {
+            return sent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDemoted() {
+        lock.lock();
+        try {
+            return demoted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPenalties() {
+        lock.lock();
+        try {
+            return penalties;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAverageWaitMillis() {
+        lock.lock();
+        try {
+            return sent == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / sent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxWaitMillis() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Current time between lines once the burst is spent.
+     */
+    public long getIntervalMillis() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("%s: queued=%d (priority=%d command=%d reply=%d bulk=%d) sent=%d dropped=%d demoted=%d wait avg=%dms max=%dms oldest=%dms interval=%dms penalties=%d",
+                    network.getServerAlias(),
+                    queued,
+                    counts.get(OutboundLane.PRIORITY),
+                    counts.get(OutboundLane.COMMAND),
+                    counts.get(OutboundLane.REPLY),
+                    counts.get(OutboundLane.BULK),
+                    sent,
+                    dropped,
+                    demoted,
+                    getAverageWaitMillis(),
+                    getMaxWaitMillis(),
+                    getOldestWaitMillis(),
+                    getIntervalMillis(),
+                    penalties
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Line {
+        private final String text;
+        private final OutboundLane lane;
+        private final String target;
+        /**
+         * The target split on commas, as a message can go to several at once.
+         */
+        private final String[] targets;
+        private final long queuedAt;
+
+        private Line(String text, OutboundLane lane, String target, long queuedAt) {
+            this.text = text;
+            this.lane = lane;
+            this.target = target;
+            this.targets = target == null ? new String[0] : target.split(",");
+            this.queuedAt = queuedAt;
+        }
+    }
+}
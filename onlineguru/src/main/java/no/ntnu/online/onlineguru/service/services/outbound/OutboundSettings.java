@@ -0,0 +1,223 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.ntnu.online.onlineguru.utils.settingsreader.KeyValueSettings;
+
+import java.util.HashMap;
+
+/**
+ * Settings for the {@link Outbound} scheduler, read from settings/outbound.conf.
+ *
+ * The bucket holds up to burst lines and gets a new one every refill_ms. When the server says the bot
+ * is sending too fast (263 or 439), the refill time is doubled, up to max_refill_ms, and halved again
+ * for every recover_ms without complaints. A target with reply_burst direct replies waiting gets the
+ * rest of its lines in the bulk lane. Before the bot quits a network it waits up to quit_drain_ms for
+ * the lines still queued to go out. The rate can be overridden per network by prefixing the key
+ * with the server alias. MODE changes for a channel are held for mode_window_ms and sent in as few
+ * lines as possible, 0 sends them one by one. A message sent to the same target again within
+ * duplicate_window_ms is dropped, for announcements only unless duplicate_replies is set; 0 turns
+ * this off. The last duplicate_capacity messages are remembered.
+ *
+ * Example:
+ * enabled=true
+ * burst=5
+ * refill_ms=1500
+ * max_refill_ms=10000
+ * recover_ms=60000
+ * reply_burst=3
+ * max_queued=1000
+ * mode_window_ms=200
+ * duplicate_window_ms=30000
+ * duplicate_capacity=1024
+ * duplicate_replies=false
+ * quit_drain_ms=5000
+ * quakenet.refill_ms=2000
+ */
+public class OutboundSettings {
+
+    public static final String SETTINGS_FILE = "settings/outbound.conf";
+
+    private final KeyValueSettings settings;
+
+    private boolean enabled = true;
+    private int burst = 5;
+    private long refillMillis = 1500;
+    private long maxRefillMillis = 10000;
+    private long recoverMillis = 60000;
+    private int replyBurst = 3;
+    private int maxQueued = 1000;
+    private long modeWindowMillis = 200;
+    private long duplicateWindowMillis = 30000;
+    private int duplicateCapacity = 1024;
+    private boolean duplicateReplies = false;
+    private long quitDrainMillis = 5000;
+
+    public OutboundSettings() {
+        this(new KeyValueSettings(SETTINGS_FILE, new HashMap<String, String>()));
+    }
+
+    public OutboundSettings(KeyValueSettings settings) {
+        this.settings = settings;
+    }
+
+    public static OutboundSettings load() {
+        KeyValueSettings settings = KeyValueSettings.load(SETTINGS_FILE);
+        OutboundSettings outboundSettings = new OutboundSettings(settings);
+
+        outboundSettings.setEnabled(settings.getBoolean("enabled", true));
+        outboundSettings.setBurst(settings.getInt("burst", 5));
+        outboundSettings.setRefillMillis(settings.getLong("refill_ms", 1500));
+        outboundSettings.setMaxRefillMillis(settings.getLong("max_refill_ms", 10000));
+        outboundSettings.setRecoverMillis(settings.getLong("recover_ms", 60000));
+        outboundSettings.setReplyBurst(settings.getInt("reply_burst", 3));
+        outboundSettings.setMaxQueued(settings.getInt("max_queued", 1000));
+        outboundSettings.setModeWindowMillis(settings.getLong("mode_window_ms", 200));
+        outboundSettings.setDuplicateWindowMillis(settings.getLong("duplicate_window_ms", 30000));
+        outboundSettings.setDuplicateCapacity(settings.getInt("duplicate_capacity", 1024));
+        outboundSettings.setDuplicateReplies(settings.getBoolean("duplicate_replies", false));
+        outboundSettings.setQuitDrainMillis(settings.getLong("quit_drain_ms", 5000));
+
+        return outboundSettings;
+    }
+
+    /**
+     * @param serverAlias Network to look up.
+     * @return Number of lines that can be sent back to back on the network.
+     */
+    public int getBurst(String serverAlias) {
+        return Math.max(1, settings.getInt(serverAlias + ".burst", burst));
+    }
+
+    /**
+     * @param serverAlias Network to look up.
+     * @return Time between lines on the network, once the burst is spent.
+     */
+    public long getRefillMillis(String serverAlias) {
+        return Math.max(1, settings.getLong(serverAlias + ".refill_ms", refillMillis));
+    }
+
+    /**
+     * @return false sends every line straight away, like before.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = Math.max(1, burst);
+    }
+
+    public long getRefillMillis() {
+        return refillMillis;
+    }
+
+    public void setRefillMillis(long refillMillis) {
+        this.refillMillis = Math.max(1, refillMillis);
+    }
+
+    /**
+     * @return Slowest the refill gets while the server is complaining.
+     */
+    public long getMaxRefillMillis() {
+        return maxRefillMillis;
+    }
+
+    public void setMaxRefillMillis(long maxRefillMillis) {
+        this.maxRefillMillis = Math.max(1, maxRefillMillis);
+    }
+
+    /**
+     * @return Quiet time needed before a slowed down refill is halved again.
+     */
+    public long getRecoverMillis() {
+        return recoverMillis;
+    }
+
+    public void setRecoverMillis(long recoverMillis) {
+        this.recoverMillis = Math.max(1, recoverMillis);
+    }
+
+    /**
+     * @return Direct replies to one target that may wait in the reply lane. The rest go to the bulk lane.
+     */
+    public int getReplyBurst() {
+        return replyBurst;
+    }
+
+    public void setReplyBurst(int replyBurst) {
+        this.replyBurst = Math.max(1, replyBurst);
+    }
+
+    /**
+     * @return Most replies and bulk lines waiting per network. Beyond that they are dropped and counted.
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = Math.max(1, maxQueued);
+    }
+
+    /**
+     * @return How long MODE changes for a channel are held to be sent together. 0 doesn't hold them.
+     */
+    public long getModeWindowMillis() {
+        return modeWindowMillis;
+    }
+
+    public void setModeWindowMillis(long modeWindowMillis) {
+        this.modeWindowMillis = Math.max(0, modeWindowMillis);
+    }
+
+    /**
+     * @return How long a sent message is remembered to drop repeats. 0 doesn't drop anything.
+     */
+    public long getDuplicateWindowMillis() {
+        return duplicateWindowMillis;
+    }
+
+    public void setDuplicateWindowMillis(long duplicateWindowMillis) {
+        this.duplicateWindowMillis = Math.max(0, duplicateWindowMillis);
+    }
+
+    /**
+     * @return Most messages remembered at once.
+     */
+    public int getDuplicateCapacity() {
+        return duplicateCapacity;
+    }
+
+    public void setDuplicateCapacity(int duplicateCapacity) {
+        this.duplicateCapacity = Math.max(1, duplicateCapacity);
+    }
+
+    /**
+     * @return Whether direct replies are dropped as well, not just announcements.
+     */
+    public boolean isDuplicateReplies() {
+        return duplicateReplies;
+    }
+
+    public void setDuplicateReplies(boolean duplicateReplies) {
+        this.duplicateReplies = duplicateReplies;
+    }
+
+    /**
+     * @return How long to wait for the queue to empty before quitting a network.
+     */
+    public long getQuitDrainMillis() {
+        return quitDrainMillis;
+    }
+
+    public void setQuitDrainMillis(long quitDrainMillis) {
+        this.quitDrainMillis = Math.max(0, quitDrainMillis);
+    }
+}
@@ -0,0 +1,12 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+
+/**
+ * Writes lines to the server once the {@link Outbound} scheduler lets them through.
+ */
+public interface OutboundWriter {
+
+    void write(Network network, String line);
+
+}
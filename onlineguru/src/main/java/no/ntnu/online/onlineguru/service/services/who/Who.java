@@ -0,0 +1,502 @@
+package no.ntnu.online.onlineguru.service.services.who;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+import no.ntnu.online.onlineguru.service.services.outbound.OutboundWriter;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends WHO queries for everyone who wants one, and hands the replies to the callbacks that asked.
+ *
+ * A query can ask for WHOX fields, like {@link #ACCOUNT_FIELDS} or {@link #MEMBER_FIELDS}, or for the full
+ * 352 replies. A query for a channel or nick that is already waiting or waiting for an
+ * answer with the same fields isn't sent again, the callback is just added to it. Where the server has
+ * no WHOX every query is a full one, so they are all shared. Where it has, lookups of single nicks are
+ * held for a moment and sent together as "WHO a,b,c %na", which asks for nick and account. Servers that don't
+ * take several nicks in one WHO answer such a line with nothing, and are then asked one nick at a time.
+ * Only a few queries wait for an answer at once per network, the rest are sent as answers come in.
+ *
+ * Servers answer WHO queries in the order they were sent, so replies belong to the oldest query
+ * still waiting. The end of a WHO that wasn't sent from here throws away what was collected so far.
+ */
+public class Who {
+
+    static Logger logger = Logger.getLogger(Who.class);
+
+    /**
+     * WHOX fields for nick and account, answered with 354 RPL_WHOSPCRPL.
+     */
+    public static final String ACCOUNT_FIELDS = "na";
+
+    /**
+     * WHOX fields for everyone in a channel, with their account, so a channel the bot joins is asked
+     * for once by everyone who wants to know who is there.
+     */
+    public static final String MEMBER_FIELDS = "cuhsnfar";
+
+    /**
+     * The order 354 replies have the fields in, whatever order they were asked for in.
+     */
+    private static final String FIELD_ORDER = "tcuihsnfdlaor";
+
+    /**
+     * Leaves room for the fields and the prefix the server adds.
+     */
+    private static final int MAX_MASK_LENGTH = 400;
+
+    private final WhoSettings settings;
+    private final ConcurrentHashMap<Network, State> states = new ConcurrentHashMap<Network, State>();
+    private final ScheduledExecutorService timer;
+    private volatile OutboundWriter writer;
+
+    private final AtomicLong queried = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public Who() {
+        this(WhoSettings.load());
+    }
+
+    public Who(WhoSettings settings) {
+        this.settings = settings;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setName("Who");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param writer Where WHO lines are sent.
+     */
+    public void setWriter(OutboundWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Asks the server who is in a channel, or who a nick is.
+     *
+     * @param network  Network to ask.
+     * @param support  What the server supports.
+     * @param target   Channel or nick.
+     * @param fields   WHOX fields to ask for, or null for the full replies.
+     * @param callback Gets the replies, or null if nobody here needs them.
+     */
+    public void query(Network network, ServerSupport support, String target, String fields, WhoCallback callback) {
+        queried.incrementAndGet();
+        State state = stateFor(network);
+        List<String> lines;
+
+        synchronized (state) {
+            state.support = support;
+            String suffix = fields != null && isWhox(support) ? " %" + fields : "";
+            String key = support.toLowerCase(target) + suffix;
+
+            Query query = state.known.get(key);
+            if (query != null) {
+                query.add(key, target, callback);
+                deduplicated.incrementAndGet();
+                return;
+            }
+
+            if (canMerge(state, target, suffix)) {
+                query = state.gathering;
+                if (query != null && (!query.suffix.equals(suffix) || !query.fits(target, settings.getMaxTargets()))) {
+                    state.waiting.add(query);
+                    query = null;
+                }
+                if (query == null) {
+                    query = new Query(suffix);
+                    state.gathering = query;
+                    scheduleGathered(network, state, query);
+                }
+            }
+            else {
+                query = new Query(suffix);
+                state.waiting.add(query);
+            }
+
+            query.add(key, target, callback);
+            state.known.put(key, query);
+            lines = next(state);
+        }
+        write(network, lines);
+    }
+
+    /**
+     * Takes the replies to WHO queries; 352 RPL_WHOREPLY, 354 RPL_WHOSPCRPL and 315 RPL_ENDOFWHO.
+     * Other events are ignored.
+     *
+     * @param event Numeric from the server.
+     */
+    public void handleReply(NumericEvent event) {
+        int numeric = event.getNumeric();
+        if (numeric != 315 && numeric != 352 && numeric != 354) {
+            return;
+        }
+        Network network = event.getNetwork();
+        State state = states.get(network);
+        if (state == null) {
+            return;
+        }
+
+        List<WhoCallback> callbacks = null;
+        ReplyBatch batch = null;
+        List<String> lines = null;
+
+        synchronized (state) {
+            Query head = state.inFlight.peek();
+            if (head == null) {
+                return;
+            }
+
+            if (numeric != 315) {
+                head.replies.add(event);
+                if (head.replies.size() >= settings.getBatchLimit()) {
+                    callbacks = head.callbacks();
+                    batch = new ReplyBatch(ReplyBatch.Type.WHO, network, new ArrayList<Event>(head.replies), null);
+                    head.replies.clear();
+                    head.answered = true;
+                }
+            }
+            else {
+                List<String> parameters = event.getParamaters();
+                String mask = parameters != null && parameters.size() > 1 ? parameters.get(1) : "";
+                if (!state.support.toLowerCase(mask).equals(state.support.toLowerCase(head.mask()))) {
+                    // The end of a WHO someone else sent, the replies so far were for that one.
+                    head.replies.clear();
+                    return;
+                }
+
+                state.inFlight.poll();
+                forget(state, head);
+                completed.incrementAndGet();
+
+                boolean answered = head.answered || !head.replies.isEmpty();
+                if (head.targets.size() > 1 && !answered && state.mergeWorks == null) {
+                    // Either they're all gone, or the server doesn't take several nicks. Ask one at a time to find out.
+                    for (Map.Entry<String, Target> entry : head.targets.entrySet()) {
+                        Query single = new Query(head.suffix);
+                        single.probe = true;
+                        single.targets.put(entry.getKey(), entry.getValue());
+                        state.known.put(entry.getKey(), single);
+                        state.waiting.add(single);
+                    }
+                }
+                else {
+                    if (head.targets.size() > 1 && answered) {
+                        state.mergeWorks = Boolean.TRUE;
+                    }
+                    if (head.probe && answered && state.mergeWorks == null) {
+                        logger.info(String.format("%s doesn't answer WHO for several nicks, asking for one at a time",
+                                network.getServerAlias()));
+                        state.mergeWorks = Boolean.FALSE;
+                    }
+                    callbacks = head.callbacks();
+                    batch = new ReplyBatch(ReplyBatch.Type.WHO, network, head.replies, event);
+                }
+                lines = next(state);
+            }
+        }
+
+        deliver(callbacks, batch);
+        write(network, lines);
+    }
+
+    /**
+     * The network has (re)connected, nothing sent before will be answered.
+     */
+    public void reset(Network network) {
+        State state = states.remove(network);
+        if (state != null) {
+            synchronized (state) {
+                state.closed = true;
+            }
+        }
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private State stateFor(Network network) {
+        State state = states.get(network);
+        if (state == null) {
+            State created = new State(network);
+            state = states.putIfAbsent(network, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Only WHOX queries are merged, as a full WHO for several nicks isn't worth the risk.
+     */
+    private boolean canMerge(State state, String target, String suffix) {
+        return settings.getMergeWindowMillis() > 0 && !isChannel(target) && suffix.length() > 0
+                && state.mergeWorks != Boolean.FALSE;
+    }
+
+    private void scheduleGathered(final Network network, final State state, final Query query) {
+        timer.schedule(new Runnable() {
+            public void run() {
+                List<String> lines;
+                synchronized (state) {
+                    if (state.gathering != query) {
+                        return;
+                    }
+                    state.waiting.add(query);
+                    state.gathering = null;
+                    lines = next(state);
+                }
+                write(network, lines);
+            }
+        }, settings.getMergeWindowMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleTimeout(final Network network, final State state, final Query query) {
+        timer.schedule(new Runnable() {
+            public void run() {
+                List<String> lines;
+                synchronized (state) {
+                    if (!state.inFlight.remove(query)) {
+                        return;
+                    }
+                    forget(state, query);
+                    timedOut.incrementAndGet();
+                    logger.debug(String.format("No answer to WHO %s on %s", query.mask(), network.getServerAlias()));
+                    lines = next(state);
+                }
+                write(network, lines);
+            }
+        }, settings.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves waiting queries to in flight, as far as there is room. Called with the state locked.
+     *
+     * @return The lines to send.
+     */
+    private List<String> next(State state) {
+        if (state.closed || state.waiting.isEmpty() || state.inFlight.size() >= settings.getMaxInFlight()) {
+            return Collections.emptyList();
+        }
+
+        List<String> lines = new ArrayList<String>();
+        while (state.inFlight.size() < settings.getMaxInFlight() && !state.waiting.isEmpty()) {
+            Query query = state.waiting.poll();
+            state.inFlight.add(query);
+            lines.add("WHO " + query.mask() + query.suffix);
+
+            sent.incrementAndGet();
+            if (query.targets.size() > 1) {
+                merged.incrementAndGet();
+            }
+            scheduleTimeout(state.network, state, query);
+        }
+        return lines;
+    }
+
+    private void forget(State state, Query query) {
+        for (String key : query.targets.keySet()) {
+            if (state.known.get(key) == query) {
+                state.known.remove(key);
+            }
+        }
+    }
+
+    private void write(Network network, List<String> lines) {
+        OutboundWriter writer = this.writer;
+        if (lines == null || writer == null) {
+            return;
+        }
+        for (String line : lines) {
+            writer.write(network, line);
+        }
+    }
+
+    private static void deliver(List<WhoCallback> callbacks, ReplyBatch batch) {
+        if (callbacks == null) {
+            return;
+        }
+        for (WhoCallback callback : callbacks) {
+            try {
+                callback.whoReplies(batch);
+            } catch (RuntimeException e) {
+                logger.error("WHO callback failed", e);
+            }
+        }
+    }
+
+    /**
+     * Reads a field from a 354 reply.
+     *
+     * @param reply  354 RPL_WHOSPCRPL.
+     * @param fields The WHOX fields the query asked for.
+     * @param field  Field to read, like 'n' for nick or 'a' for account.
+     * @return The field, or null if it wasn't asked for.
+     */
+    public static String field(NumericEvent reply, String fields, char field) {
+        if (fields.indexOf(field) < 0) {
+            return null;
+        }
+        // The first parameter is our own nick.
+        int index = 1;
+        for (int i = 0; FIELD_ORDER.charAt(i) != field; i++) {
+            if (fields.indexOf(FIELD_ORDER.charAt(i)) >= 0) {
+                index++;
+            }
+        }
+        List<String> parameters = reply.getParamaters();
+        return parameters != null && index < parameters.size() ? parameters.get(index) : null;
+    }
+
+    private static boolean isWhox(ServerSupport support) {
+        return support != null && support.getToken("WHOX") != null;
+    }
+
+    private static boolean isChannel(String target) {
+        char first = target.isEmpty() ? ' ' : target.charAt(0);
+        return first == '#' || first == '&' || first == '!' || first == '+';
+    }
+
+    public long getQueried() {
+        return queried.get();
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getMerged() {
+        return merged.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("who: queried=%d deduplicated=%d sent=%d merged=%d completed=%d timed_out=%d",
+                queried.get(), deduplicated.get(), sent.get(), merged.get(), completed.get(), timedOut.get());
+    }
+
+    /**
+     * What is going on with WHO on one network. Only touched with the state locked.
+     */
+    private static class State {
+        private final Network network;
+        private ServerSupport support = new ServerSupport();
+        private final Map<String, Query> known = new HashMap<String, Query>();
+        private final ArrayDeque<Query> waiting = new ArrayDeque<Query>();
+        private final ArrayDeque<Query> inFlight = new ArrayDeque<Query>();
+        private Query gathering;
+        private Boolean mergeWorks;
+        private boolean closed;
+
+        private State(Network network) {
+            this.network = network;
+        }
+    }
+
+    /**
+     * One WHO line, for one channel or one or more nicks.
+     */
+    private static class Query {
+        /**
+         * " %" and the WHOX fields, or empty for a full WHO.
+         */
+        private final String suffix;
+        private final LinkedHashMap<String, Target> targets = new LinkedHashMap<String, Target>();
+        private final List<Event> replies = new ArrayList<Event>();
+        private int length = 0;
+        private boolean answered;
+        private boolean probe;
+
+        private Query(String suffix) {
+            this.suffix = suffix;
+        }
+
+        private void add(String key, String name, WhoCallback callback) {
+            Target target = targets.get(key);
+            if (target == null) {
+                target = new Target(name);
+                targets.put(key, target);
+                length += (length > 0 ? 1 : 0) + name.length();
+            }
+            if (callback != null && !target.callbacks.contains(callback)) {
+                target.callbacks.add(callback);
+            }
+        }
+
+        private boolean fits(String name, int maxTargets) {
+            return targets.size() < maxTargets && length + 1 + name.length() <= MAX_MASK_LENGTH;
+        }
+
+        private String mask() {
+            StringBuilder mask = new StringBuilder(length);
+            for (Target target : targets.values()) {
+                if (mask.length() > 0) {
+                    mask.append(',');
+                }
+                mask.append(target.name);
+            }
+            return mask.toString();
+        }
+
+        private List<WhoCallback> callbacks() {
+            List<WhoCallback> callbacks = new ArrayList<WhoCallback>();
+            for (Target target : targets.values()) {
+                for (WhoCallback callback : target.callbacks) {
+                    if (!callbacks.contains(callback)) {
+                        callbacks.add(callback);
+                    }
+                }
+            }
+            return callbacks;
+        }
+    }
+
+    private static class Target {
+        private final String name;
+        private final List<WhoCallback> callbacks = new ArrayList<WhoCallback>(1);
+
+        private Target(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package no.ntnu.online.onlineguru.service.services.who;
+
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+
+/**
+ * Gets the replies to a query made with {@link Who#query}.
+ *
+ * Called on the thread that reads from the server, so it should be quick.
+ */
+public interface WhoCallback {
+
+    /**
+     * @param batch The replies. A query that was merged with others gets the replies for all of them.
+     *              Long replies come in several batches, where only the last one is complete.
+     */
+    public void whoReplies(ReplyBatch batch);
+}
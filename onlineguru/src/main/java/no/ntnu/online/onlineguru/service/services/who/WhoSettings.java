@@ -0,0 +1,99 @@
+package no.ntnu.online.onlineguru.service.services.who;
+
+import no.ntnu.online.onlineguru.utils.settingsreader.KeyValueSettings;
+
+import java.util.HashMap;
+
+/**
+ * Settings for the {@link Who} service, read from settings/who.conf.
+ *
+ * Lookups of single nicks are held for merge_window_ms and sent together, up to max_targets in one
+ * "WHO a,b,c %na" line; 0 sends them one by one. At most max_in_flight queries wait for an answer
+ * per network, the rest wait their turn. A query without an answer after timeout_ms is given up.
+ * Replies are handed to the callbacks in batches of at most batch_limit.
+ *
+ * Example:
+ * merge_window_ms=500
+ * max_targets=20
+ * max_in_flight=2
+ * timeout_ms=60000
+ * batch_limit=1000
+ */
+public class WhoSettings {
+
+    public static final String SETTINGS_FILE = "settings/who.conf";
+
+    private long mergeWindowMillis = 500;
+    private int maxTargets = 20;
+    private int maxInFlight = 2;
+    private long timeoutMillis = 60000;
+    private int batchLimit = 1000;
+
+    public static WhoSettings load() {
+        KeyValueSettings settings = KeyValueSettings.load(SETTINGS_FILE);
+        WhoSettings whoSettings = new WhoSettings();
+
+        whoSettings.setMergeWindowMillis(settings.getLong("merge_window_ms", 500));
+        whoSettings.setMaxTargets(settings.getInt("max_targets", 20));
+        whoSettings.setMaxInFlight(settings.getInt("max_in_flight", 2));
+        whoSettings.setTimeoutMillis(settings.getLong("timeout_ms", 60000));
+        whoSettings.setBatchLimit(settings.getInt("batch_limit", 1000));
+
+        return whoSettings;
+    }
+
+    /**
+     * @return How long nick lookups are held to be sent together. 0 sends them one by one.
+     */
+    public long getMergeWindowMillis() {
+        return mergeWindowMillis;
+    }
+
+    public void setMergeWindowMillis(long mergeWindowMillis) {
+        this.mergeWindowMillis = Math.max(0, mergeWindowMillis);
+    }
+
+    /**
+     * @return Most nicks asked for in one line.
+     */
+    public int getMaxTargets() {
+        return maxTargets;
+    }
+
+    public void setMaxTargets(int maxTargets) {
+        this.maxTargets = Math.max(1, maxTargets);
+    }
+
+    /**
+     * @return Most queries per network waiting for an answer at once.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * @return How long to wait for the end of a reply before giving up on it.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+    }
+
+    /**
+     * @return Most replies handed to the callbacks at once.
+     */
+    public int getBatchLimit() {
+        return batchLimit;
+    }
+
+    public void setBatchLimit(int batchLimit) {
+        this.batchLimit = Math.max(1, batchLimit);
+    }
+}
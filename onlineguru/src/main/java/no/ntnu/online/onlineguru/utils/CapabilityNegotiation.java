@@ -0,0 +1,115 @@
+package no.ntnu.online.onlineguru.utils;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Asks the server for the IRCv3 capabilities the bot makes use of, and keeps track of the answers
+ * in the network's {@link ServerSupport}.
+ *
+ * With account-notify the server sends "ACCOUNT name" whenever someone logs in or out, so accounts
+ * don't have to be looked up with WHO again. extended-join adds the account and real name to every
+ * JOIN, "JOIN #channel account :Real Name", after the channel irclib reads. account-tag puts the
+ * account in an account tag on every line from someone who is logged in. Servers without them simply
+ * don't answer, or answer with CAP NAK, and the accounts are then looked up with WHO.
+ */
+public class CapabilityNegotiation {
+
+    static Logger logger = Logger.getLogger(CapabilityNegotiation.class);
+
+    public static final String ACCOUNT_NOTIFY = "account-notify";
+    public static final String EXTENDED_JOIN = "extended-join";
+    public static final String ACCOUNT_TAG = "account-tag";
+
+    private static final List<String> WANTED = Arrays.asList(ACCOUNT_NOTIFY, EXTENDED_JOIN, ACCOUNT_TAG);
+
+    /**
+     * @return Line asking the server what it offers.
+     */
+    public static String start() {
+        return "CAP LS 302";
+    }
+
+    /**
+     * Handles one CAP line from the server; "CAP &lt;nick&gt; &lt;subcommand&gt; [*] :&lt;capabilities&gt;".
+     *
+     * @param line    The line, with command CAP.
+     * @param support Where the capabilities of the network are kept.
+     * @return Lines to send in answer, usually none.
+     */
+    public static List<String> handle(IrcLine line, ServerSupport support) {
+        List<String> parameters = line.getParameters();
+        if (parameters.size() < 3) {
+            return Collections.emptyList();
+        }
+        String subcommand = parameters.get(1).toUpperCase();
+        // "CAP * LS * :..." means more lines follow.
+        boolean more = parameters.size() > 3 && parameters.get(2).equals("*");
+        String[] names = parameters.get(parameters.size() - 1).trim().split(" +");
+
+        if (subcommand.equals("LS") || subcommand.equals("NEW")) {
+            for (String name : names) {
+                if (!name.isEmpty()) {
+                    support.setOffered(nameOf(name), true);
+                }
+            }
+            if (!more) {
+                List<String> lines = request(support);
+                if (subcommand.equals("LS")) {
+                    // Ignored once registered, but lets registration finish if the server was holding it for us.
+                    lines.add("CAP END");
+                }
+                return lines;
+            }
+        }
+        else if (subcommand.equals("ACK")) {
+            for (String name : names) {
+                if (name.startsWith("-")) {
+                    support.setEnabled(nameOf(name.substring(1)), false);
+                }
+                else if (!name.isEmpty()) {
+                    support.setEnabled(nameOf(name), true);
+                    logger.info("Capability enabled: " + nameOf(name));
+                }
+            }
+        }
+        else if (subcommand.equals("DEL")) {
+            for (String name : names) {
+                support.setOffered(nameOf(name), false);
+            }
+        }
+        else if (subcommand.equals("NAK")) {
+            logger.info("Capabilities refused: " + parameters.get(parameters.size() - 1));
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<String> request(ServerSupport support) {
+        StringBuilder request = new StringBuilder();
+        for (String name : WANTED) {
+            if (support.isOffered(name) && !support.isEnabled(name)) {
+                if (request.length() > 0) {
+                    request.append(' ');
+                }
+                request.append(name);
+            }
+        }
+        List<String> lines = new ArrayList<String>(2);
+        if (request.length() > 0) {
+            lines.add("CAP REQ :" + request);
+        }
+        return lines;
+    }
+
+    /**
+     * CAP LS 302 may give values, like "sasl=PLAIN,EXTERNAL".
+     */
+    private static String nameOf(String capability) {
+        int equals = capability.indexOf('=');
+        return (equals < 0 ? capability : capability.substring(0, equals)).toLowerCase();
+    }
+}
@@ -0,0 +1,181 @@
+package no.ntnu.online.onlineguru.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A raw line from the server taken apart, for the commands irclib doesn't know, like CAP and ACCOUNT, and
+ * for message tags.
+ */
+public class IrcLine {
+
+    private final Map<String, String> tags;
+    private final String nick;
+    private final String command;
+    private final List<String> parameters;
+
+    private IrcLine(Map<String, String> tags, String nick, String command, List<String> parameters) {
+        this.tags = tags;
+        this.nick = nick;
+        this.command = command;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @param raw Line as received, without CRLF, possibly with message tags in front; "@account=name;time=...".
+     * @return The parts of the line, or null if there is no command.
+     */
+    public static IrcLine parse(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        int position = 0;
+        int length = raw.length();
+
+        Map<String, String> tags = Collections.emptyMap();
+        if (raw.startsWith("@")) {
+            int end = raw.indexOf(' ');
+            tags = parseTags(raw.substring(1, end < 0 ? length : end));
+            position = skipWord(raw, position);
+        }
+
+        String nick = null;
+        if (position < length && raw.charAt(position) == ':') {
+            int end = raw.indexOf(' ', position);
+            if (end < 0) {
+                return null;
+            }
+            String prefix = raw.substring(position + 1, end);
+            int bang = prefix.indexOf('!');
+            int at = prefix.indexOf('@');
+            nick = bang > 0 ? prefix.substring(0, bang) : at > 0 ? prefix.substring(0, at) : prefix;
+            position = skipSpaces(raw, end);
+        }
+
+        int end = raw.indexOf(' ', position);
+        String command = end < 0 ? raw.substring(position) : raw.substring(position, end);
+        if (command.isEmpty()) {
+            return null;
+        }
+
+        List<String> parameters = new ArrayList<String>();
+        position = end < 0 ? length : skipSpaces(raw, end);
+        while (position < length) {
+            if (raw.charAt(position) == ':') {
+                parameters.add(raw.substring(position + 1));
+                break;
+            }
+            end = raw.indexOf(' ', position);
+            if (end < 0) {
+                parameters.add(raw.substring(position));
+                break;
+            }
+            parameters.add(raw.substring(position, end));
+            position = skipSpaces(raw, end);
+        }
+
+        return new IrcLine(tags, nick, command.toUpperCase(), Collections.unmodifiableList(parameters));
+    }
+
+    private static Map<String, String> parseTags(String raw) {
+        Map<String, String> tags = new HashMap<String, String>();
+        for (String tag : raw.split(";")) {
+            int equals = tag.indexOf('=');
+            if (equals < 0) {
+                tags.put(tag, "");
+            }
+            else {
+                tags.put(tag.substring(0, equals), unescape(tag.substring(equals + 1)));
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Tag values escape ';', space, '\', CR and LF with a backslash.
+     */
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\') {
+                unescaped.append(c);
+                continue;
+            }
+            if (++i == value.length()) {
+                break;
+            }
+            switch (value.charAt(i)) {
+                case ':':
+                    unescaped.append(';');
+                    break;
+                case 's':
+                    unescaped.append(' ');
+                    break;
+                case 'r':
+                    unescaped.append('\r');
+                    break;
+                case 'n':
+                    unescaped.append('\n');
+                    break;
+                default:
+                    unescaped.append(value.charAt(i));
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private static int skipWord(String raw, int position) {
+        int end = raw.indexOf(' ', position);
+        return end < 0 ? raw.length() : skipSpaces(raw, end);
+    }
+
+    private static int skipSpaces(String raw, int position) {
+        while (position < raw.length() && raw.charAt(position) == ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @param name Name of the tag, like account.
+     * @return Value of the tag, empty if it has none, or null if the line doesn't have it.
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * @return Nick in the prefix, or null if the line has none.
+     */
+    public String getNick() {
+        return nick;
+    }
+
+    /**
+     * @return The command in upper case, or the numeric.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return The parameters, the trailing one last. Cannot be modified.
+     */
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return The parameter, or null if there are not that many.
+     */
+    public String getParameter(int index) {
+        return index < parameters.size() ? parameters.get(index) : null;
+    }
+}
@@ -4,13 +4,20 @@ import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.OnlineGuru;
 import no.ntnu.online.onlineguru.plugin.control.PluginManager;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class IrcWand implements Wand {
 	
 	private OnlineGuru onlineguru;
 	private PluginManager pluginManager;
-	
+
 	public IrcWand(OnlineGuru onlineguru, PluginManager pluginManager) {
 		this.onlineguru = onlineguru;
 		this.pluginManager = pluginManager;
@@ -106,8 +113,70 @@ public class IrcWand implements Wand {
 		onlineguru.sendMessageToServer(network, "TOPIC " + channel + " :" + message);
 	}
 	
+	/**
+	 * Long messages are split at spaces into as many lines as needed, see {@link MessageFormatter}.
+	 */
 	public void sendMessageToTarget(Network network, String target, String message) {
-		onlineguru.sendMessageToServer(network, "PRIVMSG " + target + " :" + message);
+		sendText(network, "PRIVMSG", target, message);
+	}
+
+	private void sendText(Network network, String command, String target, String text) {
+		int budget = MessageFormatter.textBudget(getMyNick(network), command, target);
+
+		if (MessageFormatter.fits(text, budget)) {
+			onlineguru.sendMessageToServer(network, buildLine(command, target, text));
+		}
+		else {
+			for (String line : MessageFormatter.split(text, budget)) {
+				onlineguru.sendMessageToServer(network, buildLine(command, target, line));
+			}
+		}
+	}
+
+	private static String buildLine(String command, String target, String text) {
+		return command + " " + target + " :" + text;
+	}
+
+	/**
+	 * Sends short messages together in as few lines as possible, separated by " | ".
+	 */
+	public void sendMessagesToTarget(Network network, String target, List<String> messages) {
+		for (String line : MessageFormatter.pack(messages, " | ", MessageFormatter.textBudget(getMyNick(network), "PRIVMSG", target))) {
+			onlineguru.sendMessageToServer(network, buildLine("PRIVMSG", target, line));
+		}
+	}
+	
+	/**
+	 * Sends one message to many channels. Targets on the same network share PRIVMSG lines, as many
+	 * per line as the server's TARGMAX allows.
+	 */
+	public void sendMessageToTargets(Collection<MessageTarget> targets, String message) {
+		Map<Network, Set<String>> targetsByNetwork = new LinkedHashMap<Network, Set<String>>();
+		for (MessageTarget target : new LinkedHashSet<MessageTarget>(targets)) {
+			Set<String> networkTargets = targetsByNetwork.get(target.getNetwork());
+			if (networkTargets == null) {
+				networkTargets = new LinkedHashSet<String>();
+				targetsByNetwork.put(target.getNetwork(), networkTargets);
+			}
+			networkTargets.add(target.getTarget());
+		}
+
+		for (Map.Entry<Network, Set<String>> entry : targetsByNetwork.entrySet()) {
+			Network network = entry.getKey();
+			int maxTargets = getServerSupport(network).getMaxTargets("PRIVMSG");
+
+			List<String> networkTargets = new ArrayList<String>(entry.getValue());
+			for (int i = 0; i < networkTargets.size(); i += maxTargets) {
+				StringBuilder joined = new StringBuilder();
+				for (String target : networkTargets.subList(i, Math.min(i + maxTargets, networkTargets.size()))) {
+					if (joined.length() > 0) {
+						joined.append(',');
+					}
+					joined.append(target);
+				}
+				sendMessageToTarget(network, joined.toString(), message);
+			}
+		}
 	}
 	
 	public void sendServerMessage(Network network, String message) {
@@ -115,7 +184,7 @@ public class IrcWand implements Wand {
 	}
 	
 	public void sendNoticeToTarget(Network network, String target, String message) {
-		onlineguru.sendMessageToServer(network, "NOTICE " + target + " :" + message);
+		sendText(network, "NOTICE", target, message);
 	}
 
     public void sendCTCPToTarget(Network network, String target, String command, String value) {
@@ -147,6 +216,10 @@ public class IrcWand implements Wand {
 	}
 	
 	public void quit(Network network) {
-		network.disconnect();
+		onlineguru.quit(network);
+	}
+
+	public ServerSupport getServerSupport(Network network) {
+		return onlineguru.getServerSupport(network);
 	}
 }
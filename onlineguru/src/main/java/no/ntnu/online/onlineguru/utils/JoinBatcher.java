@@ -0,0 +1,98 @@
+package no.ntnu.online.onlineguru.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines channels into as few JOIN lines as fit, like "JOIN #a,#b,#c keyA,keyB".
+ * Keys belong to the channels in the same position, so channels with a key are put first on each line.
+ */
+public class JoinBatcher {
+
+    private final Map<String, String> keyed = new LinkedHashMap<String, String>();
+    private final List<String> open = new ArrayList<String>();
+
+    /**
+     * @param entry Channel and an optional key, separated by whitespace, like "#channel key".
+     */
+    public void add(String entry) {
+        String[] parts = entry.trim().split("\\s+");
+        if (parts[0].isEmpty()) {
+            return;
+        }
+        add(parts[0], parts.length > 1 ? parts[1] : null);
+    }
+
+    /**
+     * @param channel Channel to join.
+     * @param key     Key of the channel, or null.
+     */
+    public void add(String channel, String key) {
+        if (key == null || key.isEmpty()) {
+            if (!keyed.containsKey(channel) && !open.contains(channel)) {
+                open.add(channel);
+            }
+        }
+        else {
+            open.remove(channel);
+            keyed.put(channel, key);
+        }
+    }
+
+    public boolean isEmpty() {
+        return keyed.isEmpty() && open.isEmpty();
+    }
+
+    /**
+     * @return JOIN lines for all the channels, each within {@link MessageFormatter#MAX_LINE_BYTES}.
+     */
+    public List<String> getLines() {
+        List<String> lines = new ArrayList<String>();
+
+        StringBuilder channels = new StringBuilder();
+        StringBuilder keys = new StringBuilder();
+
+        for (Map.Entry<String, String> entry : keyed.entrySet()) {
+            if (channels.length() > 0 && length(channels, keys, entry.getKey(), entry.getValue()) > MessageFormatter.MAX_LINE_BYTES) {
+                lines.add(line(channels, keys));
+            }
+            append(channels, entry.getKey());
+            append(keys, entry.getValue());
+        }
+        for (String channel : open) {
+            if (channels.length() > 0 && length(channels, keys, channel, null) > MessageFormatter.MAX_LINE_BYTES) {
+                lines.add(line(channels, keys));
+            }
+            append(channels, channel);
+        }
+        if (channels.length() > 0) {
+            lines.add(line(channels, keys));
+        }
+
+        return lines;
+    }
+
+    private static int length(StringBuilder channels, StringBuilder keys, String channel, String key) {
+        int length = "JOIN ".length() + MessageFormatter.utf8Length(channels.toString()) + 1 + MessageFormatter.utf8Length(channel);
+        if (keys.length() > 0 || key != null) {
+            length += 1 + MessageFormatter.utf8Length(keys.toString()) + (key == null ? 0 : 1 + MessageFormatter.utf8Length(key));
+        }
+        return length;
+    }
+
+    private static void append(StringBuilder list, String item) {
+        if (list.length() > 0) {
+            list.append(',');
+        }
+        list.append(item);
+    }
+
+    private static String line(StringBuilder channels, StringBuilder keys) {
+        String line = "JOIN " + channels + (keys.length() > 0 ? " " + keys : "");
+        channels.setLength(0);
+        keys.setLength(0);
+        return line;
+    }
+}
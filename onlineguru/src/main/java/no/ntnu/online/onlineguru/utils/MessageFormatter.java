@@ -0,0 +1,185 @@
+package no.ntnu.online.onlineguru.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fits message text into IRC lines. A line is at most 512 bytes including the source the server puts
+ * in front when relaying it, and anything beyond that is cut off by the server. Lengths are counted in
+ * UTF-8 bytes, and text is split at spaces where possible and never inside a character.
+ */
+public class MessageFormatter {
+
+    /**
+     * 512 minus the trailing CRLF.
+     */
+    public static final int MAX_LINE_BYTES = 510;
+
+    /**
+     * Room for "!user@host " in the source, with the longest ident and hostname servers allow.
+     */
+    private static final int USER_HOST_BYTES = 1 + 10 + 1 + 63 + 1;
+
+    /**
+     * Budget used even if the prefix is absurdly long, so a message always gets through in some form.
+     */
+    private static final int MIN_TEXT_BYTES = 64;
+
+    /**
+     * @param nick    The bot's nick, which the server puts in front of the line.
+     * @param command PRIVMSG or NOTICE.
+     * @param target  Channel or nick the message goes to.
+     * @return Number of bytes of text that fit in one line.
+     */
+    public static int textBudget(String nick, String command, String target) {
+        int prefix = 1 + utf8Length(nick) + USER_HOST_BYTES + utf8Length(command) + 1 + utf8Length(target) + 2;
+        return Math.max(MIN_TEXT_BYTES, MAX_LINE_BYTES - prefix);
+    }
+
+    /**
+     * Checks whether text can be sent as it is, without splitting. Doesn't allocate anything.
+     *
+     * @param text     Text to check.
+     * @param maxBytes Most bytes in one line.
+     * @return true if the text has no line breaks and is at most maxBytes UTF-8 bytes.
+     */
+    public static boolean fits(String text, int maxBytes) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (codePoint == '\r' || codePoint == '\n') {
+                return false;
+            }
+            bytes += utf8Length(codePoint);
+            if (bytes > maxBytes) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    /**
+     * Splits text into pieces of at most maxBytes UTF-8 bytes, at the last space if there is one.
+     * Line breaks in the text always start a new piece, and empty lines are left out.
+     *
+     * @param text     Text to split.
+     * @param maxBytes Most bytes per piece.
+     * @return The pieces, at least one.
+     */
+    public static List<String> split(String text, int maxBytes) {
+        List<String> pieces = new ArrayList<String>();
+
+        for (String line : text.split("\r?\n|\r", -1)) {
+            splitLine(line, maxBytes, pieces);
+        }
+        if (pieces.isEmpty()) {
+            pieces.add("");
+        }
+        return pieces;
+    }
+
+    private static void splitLine(String line, int maxBytes, List<String> pieces) {
+        int length = line.length();
+        int start = 0;
+
+        while (start < length) {
+            int bytes = 0;
+            int end = start;
+            int lastSpace = -1;
+
+            while (end < length) {
+                int codePoint = line.codePointAt(end);
+                int size = utf8Length(codePoint);
+                if (bytes + size > maxBytes) {
+                    break;
+                }
+                if (codePoint == ' ') {
+                    lastSpace = end;
+                }
+                bytes += size;
+                end += Character.charCount(codePoint);
+            }
+
+            if (end >= length) {
+                pieces.add(line.substring(start));
+                return;
+            }
+            if (lastSpace > start) {
+                end = lastSpace;
+            }
+
+            pieces.add(line.substring(start, end));
+            start = end;
+            while (start < length && line.charAt(start) == ' ') {
+                start++;
+            }
+        }
+    }
+
+    /**
+     * Packs short messages together, so they take fewer lines. Long messages are split first.
+     *
+     * @param messages  Messages in the order they should be read.
+     * @param separator Put between messages that share a line.
+     * @param maxBytes  Most bytes per line.
+     * @return The lines to send.
+     */
+    public static List<String> pack(List<String> messages, String separator, int maxBytes) {
+        List<String> lines = new ArrayList<String>();
+        int separatorBytes = utf8Length(separator);
+
+        StringBuilder current = new StringBuilder();
+        int currentBytes = 0;
+
+        for (String message : messages) {
+            for (String piece : split(message, maxBytes)) {
+                if (piece.isEmpty()) {
+                    continue;
+                }
+                int pieceBytes = utf8Length(piece);
+
+                if (current.length() > 0 && currentBytes + separatorBytes + pieceBytes <= maxBytes) {
+                    current.append(separator).append(piece);
+                    currentBytes += separatorBytes + pieceBytes;
+                }
+                else {
+                    if (current.length() > 0) {
+                        lines.add(current.toString());
+                    }
+                    current.setLength(0);
+                    current.append(piece);
+                    currentBytes = pieceBytes;
+                }
+            }
+        }
+
+        if (current.length() > 0) {
+            lines.add(current.toString());
+        }
+        return lines;
+    }
+
+    public static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            bytes += utf8Length(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        if (codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,47 @@
+package no.ntnu.online.onlineguru.utils;
+
+import no.fictive.irclib.model.network.Network;
+
+/**
+ * A channel or nick on a network, for sending the same message to several places with
+ * {@link Wand#sendMessageToTargets(java.util.Collection, String)}.
+ */
+public class MessageTarget {
+
+    private final Network network;
+    private final String target;
+
+    public MessageTarget(Network network, String target) {
+        this.network = network;
+        this.target = target;
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MessageTarget) {
+            MessageTarget other = (MessageTarget) o;
+            return network.equals(other.network) && target.equalsIgnoreCase(other.target);
+        }
+        else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * network.hashCode() + target.toLowerCase().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return network.getServerAlias() + "/" + target;
+    }
+}
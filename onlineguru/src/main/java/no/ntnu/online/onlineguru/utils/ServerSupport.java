@@ -0,0 +1,245 @@
+package no.ntnu.online.onlineguru.utils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a server told us about itself in its 005 (RPL_ISUPPORT) replies; how many modes fit in one MODE line,
+ * how many targets a command takes, which channel modes take a parameter and how nicks are compared.
+ * Until the server says otherwise, the defaults from RFC 1459 are used.
+ *
+ * Also keeps the IRCv3 capabilities the server offers and which of them are enabled, see
+ * {@link CapabilityNegotiation}.
+ */
+public class ServerSupport {
+
+    private volatile int modes = 3;
+    private volatile int maxTargets = 1;
+    private volatile String caseMapping = "rfc1459";
+    private volatile String prefixModes = "ov";
+    private volatile String listModes = "b";
+    private volatile String alwaysParameterModes = "k";
+    private volatile String setParameterModes = "l";
+    private volatile String flagModes = "imnpst";
+    private final Map<String, Integer> targMax = new HashMap<String, Integer>();
+    private final Map<String, String> tokens = new HashMap<String, String>();
+    private final Set<String> offeredCapabilities = new HashSet<String>();
+    private final Set<String> enabledCapabilities = new HashSet<String>();
+
+    /**
+     * Forgets everything, for a new connection. The same instance is kept, since others hold on to it.
+     */
+    public synchronized void reset() {
+        modes = 3;
+        maxTargets = 1;
+        caseMapping = "rfc1459";
+        prefixModes = "ov";
+        listModes = "b";
+        alwaysParameterModes = "k";
+        setParameterModes = "l";
+        flagModes = "imnpst";
+        targMax.clear();
+        tokens.clear();
+        offeredCapabilities.clear();
+        enabledCapabilities.clear();
+    }
+
+    /**
+     * Reads the tokens of one 005 reply. Servers send several, so this is called once for each.
+     *
+     * @param parameters Parameters of the reply, the first being our own nick and the last the trailing text.
+     */
+    public void parse(List<String> parameters) {
+        for (int i = 1; i < parameters.size(); i++) {
+            String token = parameters.get(i);
+            if (token.isEmpty() || token.indexOf(' ') >= 0) {
+                continue;
+            }
+
+            int equals = token.indexOf('=');
+            String key = (equals < 0 ? token : token.substring(0, equals)).toUpperCase(Locale.ENGLISH);
+            String value = equals < 0 ? "" : token.substring(equals + 1);
+            setToken(key, value);
+        }
+    }
+
+    private synchronized void setToken(String key, String value) {
+        tokens.put(key, value);
+
+        if (key.equals("MODES")) {
+            modes = parseInt(value, modes);
+        }
+        else if (key.equals("MAXTARGETS")) {
+            maxTargets = parseInt(value, maxTargets);
+        }
+        else if (key.equals("TARGMAX")) {
+            targMax.clear();
+            for (String entry : value.split(",")) {
+                int colon = entry.indexOf(':');
+                if (colon > 0) {
+                    targMax.put(entry.substring(0, colon).toUpperCase(Locale.ENGLISH),
+                            parseInt(entry.substring(colon + 1), Integer.MAX_VALUE));
+                }
+            }
+        }
+        else if (key.equals("CASEMAPPING")) {
+            caseMapping = value.toLowerCase(Locale.ENGLISH);
+        }
+        else if (key.equals("PREFIX")) {
+            int close = value.indexOf(')');
+            if (value.startsWith("(") && close > 0) {
+                prefixModes = value.substring(1, close);
+            }
+        }
+        else if (key.equals("CHANMODES")) {
+            String[] types = value.split(",", -1);
+            if (types.length >= 4) {
+                listModes = types[0];
+                alwaysParameterModes = types[1];
+                setParameterModes = types[2];
+                flagModes = types[3];
+            }
+        }
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return Most modes with a parameter that can be set in one MODE line.
+     */
+    public int getModes() {
+        return Math.max(1, modes);
+    }
+
+    /**
+     * @param command Command like PRIVMSG or NOTICE.
+     * @return Most comma separated targets the command accepts.
+     */
+    public synchronized int getMaxTargets(String command) {
+        Integer max = targMax.get(command.toUpperCase(Locale.ENGLISH));
+        if (max != null) {
+            return Math.max(1, max);
+        }
+        return tokens.containsKey("TARGMAX") ? 1 : Math.max(1, maxTargets);
+    }
+
+    /**
+     * @return The casemapping the server compares nicks and channels with; ascii, rfc1459 or strict-rfc1459.
+     */
+    public String getCaseMapping() {
+        return caseMapping;
+    }
+
+    /**
+     * Lower cases a nick or channel name the way the server does, so "Nick[a]" and "nick{a}" are the same on rfc1459.
+     *
+     * @param name Nick or channel name.
+     * @return Name in lower case.
+     */
+    public String toLowerCase(String name) {
+        String mapping = caseMapping;
+        boolean rfc1459 = mapping.equals("rfc1459");
+        boolean strict = mapping.equals("strict-rfc1459");
+
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            if (c >= 'A' && c <= 'Z') {
+                chars[i] = (char) (c + 32);
+            }
+            else if ((rfc1459 || strict) && (c == '[' || c == ']' || c == '\\')) {
+                chars[i] = (char) (c + 32);
+            }
+            else if (rfc1459 && c == '~') {
+                chars[i] = '^';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param mode    Channel mode letter.
+     * @param adding  Whether the mode is set (+) or removed (-).
+     * @return 1 if the mode takes a parameter, 0 if not, -1 if the mode is unknown.
+     */
+    public int takesParameter(char mode, boolean adding) {
+        if (prefixModes.indexOf(mode) >= 0 || listModes.indexOf(mode) >= 0 || alwaysParameterModes.indexOf(mode) >= 0) {
+            return 1;
+        }
+        if (setParameterModes.indexOf(mode) >= 0) {
+            return adding ? 1 : 0;
+        }
+        if (flagModes.indexOf(mode) >= 0) {
+            return 0;
+        }
+        return -1;
+    }
+
+    /**
+     * @param mode Channel mode letter.
+     * @return true for list modes like b, where a MODE without parameter asks for the list.
+     */
+    public boolean isListMode(char mode) {
+        return listModes.indexOf(mode) >= 0;
+    }
+
+    /**
+     * @param key 005 token, like NETWORK.
+     * @return The value of the token, "" if it had none, or null if the server didn't send it.
+     */
+    public synchronized String getToken(String key) {
+        return tokens.get(key.toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @param name    Capability, like account-notify.
+     * @param offered Whether the server offers it, from CAP LS and CAP NEW, or took it back with CAP DEL.
+     */
+    public synchronized void setOffered(String name, boolean offered) {
+        if (offered) {
+            offeredCapabilities.add(name);
+        }
+        else {
+            offeredCapabilities.remove(name);
+            enabledCapabilities.remove(name);
+        }
+    }
+
+    public synchronized boolean isOffered(String name) {
+        return offeredCapabilities.contains(name);
+    }
+
+    /**
+     * @param name    Capability, like account-notify.
+     * @param enabled Whether the server acknowledged it with CAP ACK.
+     */
+    public synchronized void setEnabled(String name, boolean enabled) {
+        if (enabled) {
+            enabledCapabilities.add(name);
+        }
+        else {
+            enabledCapabilities.remove(name);
+        }
+    }
+
+    /**
+     * @param name Capability, like account-notify.
+     * @return true if the server has turned the capability on for this connection.
+     */
+    public synchronized boolean isEnabled(String name) {
+        return enabledCapabilities.contains(name);
+    }
+}
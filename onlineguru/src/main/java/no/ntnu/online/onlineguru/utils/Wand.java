@@ -3,7 +3,9 @@ package no.ntnu.online.onlineguru.utils;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
 
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 
 /**
  * Created by IntelliJ IDEA.
@@ -57,6 +59,10 @@ public interface Wand {
 
     void sendMessageToTarget(Network network, String target, String message);
 
+    void sendMessagesToTarget(Network network, String target, List<String> messages);
+
+    void sendMessageToTargets(Collection<MessageTarget> targets, String message);
+
     void sendServerMessage(Network network, String message);
 
     void sendNoticeToTarget(Network network, String target, String message);
@@ -76,4 +82,6 @@ public interface Wand {
     boolean isUserVisible(Network network, String nickname);
 
     void quit(Network network);
+
+    ServerSupport getServerSupport(Network network);
 }
@@ -0,0 +1,32 @@
+package no.ntnu.online.onlineguru.utils.journal;
+
+/**
+ * One line read back from a journal.
+ */
+public class JournalEntry {
+
+    private final String serverAlias;
+    private final long timestampNanos;
+    private final String line;
+
+    public JournalEntry(String serverAlias, long timestampNanos, String line) {
+        this.serverAlias = serverAlias;
+        this.timestampNanos = timestampNanos;
+        this.line = line;
+    }
+
+    public String getServerAlias() {
+        return serverAlias;
+    }
+
+    /**
+     * @return When the line was received, in nanoseconds. Only meaningful compared to other entries.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public String getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,90 @@
+package no.ntnu.online.onlineguru.utils.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the lines in a journal written by {@link JournalWriter} back, oldest first, across all its segments.
+ */
+public class JournalReader {
+
+    private final File directory;
+    private final String[] segments;
+    private final Map<Integer, String> aliases = new HashMap<Integer, String>();
+
+    private int nextSegment;
+    private MappedByteBuffer segment;
+    private long segmentEpochNanos;
+
+    public JournalReader(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException(directory + " is not a directory");
+        }
+        this.directory = directory;
+        this.segments = JournalWriter.listSegments(directory);
+    }
+
+    /**
+     * @return The next line, or null when the whole journal has been read.
+     */
+    public JournalEntry next() throws IOException {
+        while (true) {
+            if (segment == null && !openNextSegment()) {
+                return null;
+            }
+
+            byte type = segment.remaining() > 0 ? segment.get() : JournalWriter.RECORD_END;
+            switch (type) {
+                case JournalWriter.RECORD_ALIAS: {
+                    int id = segment.get() & 0xFF;
+                    byte[] bytes = new byte[segment.getShort()];
+                    segment.get(bytes);
+                    aliases.put(id, new String(bytes, JournalWriter.UTF8));
+                    break;
+                }
+                case JournalWriter.RECORD_LINE: {
+                    int id = segment.get() & 0xFF;
+                    long offset = segment.getLong();
+                    byte[] bytes = new byte[segment.getInt()];
+                    segment.get(bytes);
+                    return new JournalEntry(aliases.get(id), segmentEpochNanos + offset, new String(bytes, JournalWriter.UTF8));
+                }
+                case JournalWriter.RECORD_END:
+                    segment = null;
+                    break;
+                default:
+                    throw new IOException(String.format("Corrupt journal segment %s at %d",
+                            segments[nextSegment - 1], segment.position() - 1));
+            }
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        if (nextSegment >= segments.length) {
+            return false;
+        }
+        File file = new File(directory, segments[nextSegment++]);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+
+        if (segment.remaining() < JournalWriter.HEADER_SIZE || segment.getInt() != JournalWriter.MAGIC) {
+            throw new IOException(file + " is not a journal segment");
+        }
+        long wallClockMillis = segment.getLong();
+        segment.getLong();
+        // Segments from different runs only share the wall clock, so place each segment by it.
+        segmentEpochNanos = wallClockMillis * 1000000L;
+        aliases.clear();
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package no.ntnu.online.onlineguru.utils.journal;
+
+import no.fictive.irclib.control.IRCEventPacket;
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.JoinEvent;
+import no.fictive.irclib.event.container.command.NickEvent;
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.event.container.command.PartEvent;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.fictive.irclib.event.container.command.QuitEvent;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.control.EventDistributor;
+import no.ntnu.online.onlineguru.plugin.control.PluginStats;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a journal back through the {@link EventDistributor}, either with the delays it was recorded with,
+ * or as fast as the plugins can take it.
+ *
+ * The lines are turned into events here, not by irclib, so irclib's own channel and nick state is not
+ * rebuilt during a replay. Only PRIVMSG, JOIN, PART, QUIT, NICK and numerics are replayed; other lines
+ * are counted as skipped.
+ */
+public class JournalReplay {
+
+    static Logger logger = Logger.getLogger(JournalReplay.class);
+
+    private final JournalReader reader;
+    private final EventDistributor eventDistributor;
+    private final ConcurrentHashMap<String, Network> networks;
+    private final boolean maxSpeed;
+
+    private long replayed;
+    private long skipped;
+
+    /**
+     * @param reader           Journal to replay.
+     * @param eventDistributor Distributor to hand the events to.
+     * @param networks         Networks by server alias. Networks missing from it are created.
+     * @param maxSpeed         Ignore the recorded delays between lines.
+     */
+    public JournalReplay(JournalReader reader, EventDistributor eventDistributor, ConcurrentHashMap<String, Network> networks, boolean maxSpeed) {
+        this.reader = reader;
+        this.eventDistributor = eventDistributor;
+        this.networks = networks;
+        this.maxSpeed = maxSpeed;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        long firstTimestamp = -1;
+
+        JournalEntry entry;
+        while ((entry = reader.next()) != null) {
+            if (!maxSpeed) {
+                if (firstTimestamp < 0) {
+                    firstTimestamp = entry.getTimestampNanos();
+                }
+                long delay = (entry.getTimestampNanos() - firstTimestamp) - (System.nanoTime() - started);
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+            }
+
+            Event event = toEvent(entry.getLine(), networkFor(entry.getServerAlias()));
+            if (event == null) {
+                skipped++;
+                continue;
+            }
+            eventDistributor.handleEvent(event);
+            replayed++;
+        }
+
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        logger.info(String.format("Replayed %d events in %d ms (%d events/s), skipped %d lines",
+                replayed, elapsedMillis, replayed * 1000 / elapsedMillis, skipped));
+        for (PluginStats stats : eventDistributor.getPluginStats()) {
+            logger.info(stats.toString());
+        }
+    }
+
+    public long getReplayed() {
+        return replayed;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    private Network networkFor(String serverAlias) {
+        Network network = networks.get(serverAlias);
+        if (network == null) {
+            network = new Network();
+            network.setServerAlias(serverAlias);
+            Network existing = networks.putIfAbsent(serverAlias, network);
+            if (existing != null) {
+                network = existing;
+            }
+        }
+        return network;
+    }
+
+    /**
+     * @param line    Raw line as received from the server.
+     * @param network Network it was received on.
+     * @return The event for the line, or null if it is of a kind that isn't replayed.
+     */
+    static Event toEvent(String line, Network network) {
+        String command = commandOf(line);
+        if (command == null) {
+            return null;
+        }
+
+        if (command.equals("PRIVMSG")) {
+            return new PrivMsgEvent(new IRCEventPacket(line), network);
+        }
+        if (command.equals("JOIN")) {
+            return new JoinEvent(new IRCEventPacket(line), network);
+        }
+        if (command.equals("PART")) {
+            return new PartEvent(new IRCEventPacket(line), network);
+        }
+        if (command.equals("QUIT")) {
+            return new QuitEvent(new IRCEventPacket(line), network);
+        }
+        if (command.equals("NICK")) {
+            return new NickEvent(new IRCEventPacket(line), network);
+        }
+        if (command.length() == 3 && Character.isDigit(command.charAt(0))
+                && Character.isDigit(command.charAt(1)) && Character.isDigit(command.charAt(2))) {
+            return new NumericEvent(new IRCEventPacket(line), network);
+        }
+        return null;
+    }
+
+    /**
+     * @return The command of a raw line, after the optional prefix, or null if there is none.
+     */
+    static String commandOf(String line) {
+        int start = 0;
+        if (line.startsWith(":")) {
+            start = line.indexOf(' ');
+            if (start < 0) {
+                return null;
+            }
+        }
+        while (start < line.length() && line.charAt(start) == ' ') {
+            start++;
+        }
+        int end = line.indexOf(' ', start);
+        if (end < 0) {
+            end = line.length();
+        }
+        return start < end ? line.substring(start, end).toUpperCase() : null;
+    }
+}
@@ -0,0 +1,75 @@
+package no.ntnu.online.onlineguru.utils.journal;
+
+import no.ntnu.online.onlineguru.utils.settingsreader.KeyValueSettings;
+
+/**
+ * Settings for capturing a {@link JournalWriter}, read from settings/journal.conf.
+ *
+ * Example:
+ * enabled=false
+ * directory=journal
+ * segment_size_mb=64
+ * keep_segments=0
+ */
+public class JournalSettings {
+
+    public static final String SETTINGS_FILE = "settings/journal.conf";
+
+    private boolean enabled = false;
+    private String directory = "journal";
+    private int segmentSize = 64 * 1024 * 1024;
+    private int keepSegments = 0;
+
+    public static JournalSettings load() {
+        KeyValueSettings settings = KeyValueSettings.load(SETTINGS_FILE);
+        JournalSettings journalSettings = new JournalSettings();
+
+        journalSettings.setEnabled(settings.getBoolean("enabled", false));
+        journalSettings.setDirectory(settings.getString("directory", "journal"));
+        journalSettings.setSegmentSize(settings.getInt("segment_size_mb", 64) * 1024 * 1024);
+        journalSettings.setKeepSegments(settings.getInt("keep_segments", 0));
+
+        return journalSettings;
+    }
+
+    /**
+     * @return Whether every inbound line should be captured to the journal.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return Size in bytes of each memory mapped segment file.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = Math.max(64 * 1024, segmentSize);
+    }
+
+    /**
+     * @return Number of segments to keep, removing the oldest. 0 keeps them all.
+     */
+    public int getKeepSegments() {
+        return keepSegments;
+    }
+
+    public void setKeepSegments(int keepSegments) {
+        this.keepSegments = Math.max(0, keepSegments);
+    }
+}
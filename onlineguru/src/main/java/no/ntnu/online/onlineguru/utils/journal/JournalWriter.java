@@ -0,0 +1,191 @@
+package no.ntnu.online.onlineguru.utils.journal;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends raw lines to a binary journal, made of memory mapped segment files of a fixed size.
+ *
+ * A segment starts with a header: the magic number, the wall clock time in milliseconds and
+ * {@link System#nanoTime()} when it was opened. Then follow records, each starting with its type:
+ * <ul>
+ *     <li>ALIAS: type, alias id, length as a short, the server alias in UTF-8.</li>
+ *     <li>LINE: type, alias id, nanoseconds since the segment was opened, length as an int, the line in UTF-8.</li>
+ * </ul>
+ * A zero where the next type should be marks the end of the segment. Aliases are numbered per segment,
+ * so every segment can be read on its own. When a record doesn't fit, the next segment is started.
+ *
+ * Appending copies the line straight into the mapped file; there is no write call and no flush.
+ */
+public class JournalWriter {
+
+    static Logger logger = Logger.getLogger(JournalWriter.class);
+
+    static final int MAGIC = 0x4F474A31;
+    static final int HEADER_SIZE = 4 + 8 + 8;
+    static final byte RECORD_END = 0;
+    static final byte RECORD_ALIAS = 1;
+    static final byte RECORD_LINE = 2;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int LINE_HEADER_SIZE = 1 + 1 + 8 + 4;
+    private static final int MAX_ALIASES = 255;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int keepSegments;
+    private final CharsetEncoder encoder = UTF8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final Map<String, Integer> aliasIds = new HashMap<String, Integer>();
+    private int segmentNumber;
+    private MappedByteBuffer segment;
+    private long segmentStartNanos;
+    private boolean closed;
+
+    public JournalWriter(JournalSettings settings) throws IOException {
+        this(new File(settings.getDirectory()), settings.getSegmentSize(), settings.getKeepSegments());
+    }
+
+    public JournalWriter(File directory, int segmentSize, int keepSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.keepSegments = keepSegments;
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        // Continue after any journal already in the directory, so it can be replayed as one.
+        String[] existing = listSegments(directory);
+        segmentNumber = existing.length == 0 ? 0 : segmentNumberOf(existing[existing.length - 1]);
+        openSegment();
+    }
+
+    /**
+     * @param serverAlias Network the line was received on.
+     * @param nanos       {@link System#nanoTime()} when it was received.
+     * @param line        The raw line.
+     */
+    public synchronized void append(String serverAlias, long nanos, String line) throws IOException {
+        if (closed) {
+            return;
+        }
+        String alias = String.valueOf(serverAlias);
+
+        // Worst case for UTF-8 is three bytes per char.
+        int needed = LINE_HEADER_SIZE + line.length() * 3 + 4 + alias.length() * 3;
+        if (needed > segmentSize - HEADER_SIZE - 1) {
+            logger.warn(String.format("Line of %d chars is too long for the journal, skipping it.", line.length()));
+            return;
+        }
+        if (segment.remaining() < needed + 1 || (!aliasIds.containsKey(alias) && aliasIds.size() == MAX_ALIASES)) {
+            openSegment();
+        }
+
+        Integer aliasId = aliasIds.get(alias);
+        if (aliasId == null) {
+            aliasId = aliasIds.size() + 1;
+            aliasIds.put(alias, aliasId);
+            byte[] bytes = alias.getBytes(UTF8);
+            segment.put(RECORD_ALIAS);
+            segment.put(aliasId.byteValue());
+            segment.putShort((short) bytes.length);
+            segment.put(bytes);
+        }
+
+        segment.put(RECORD_LINE);
+        segment.put(aliasId.byteValue());
+        segment.putLong(nanos - segmentStartNanos);
+        int lengthPosition = segment.position();
+        segment.putInt(0);
+        int start = segment.position();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(line), segment, true);
+        encoder.flush(segment);
+        segment.putInt(lengthPosition, segment.position() - start);
+    }
+
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            segment.force();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        segmentNumber++;
+        File file = new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(segmentSize);
+            // The mapping stays valid after the channel is closed.
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            raf.close();
+        }
+
+        aliasIds.clear();
+        segmentStartNanos = System.nanoTime();
+        segment.putInt(MAGIC);
+        segment.putLong(System.currentTimeMillis());
+        segment.putLong(segmentStartNanos);
+
+        removeOldSegments();
+    }
+
+    private void removeOldSegments() {
+        if (keepSegments <= 0) {
+            return;
+        }
+        String[] segments = listSegments(directory);
+        for (int i = 0; i < segments.length - keepSegments; i++) {
+            if (!new File(directory, segments[i]).delete()) {
+                logger.warn("Could not delete old journal segment " + segments[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The segment file names in the directory, oldest first.
+     */
+    static String[] listSegments(File directory) {
+        String[] names = directory.list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (names == null) {
+            return new String[0];
+        }
+        Arrays.sort(names);
+        return names;
+    }
+
+    private static int segmentNumberOf(String name) {
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package no.ntnu.online.onlineguru.utils.rawlog;
+
+import no.ntnu.online.onlineguru.utils.settingsreader.KeyValueSettings;
+
+import java.util.HashMap;
+
+/**
+ * Settings for the {@link RawTrafficLog}, read from settings/rawlog.conf.
+ *
+ * Which lines are logged can be set for all networks, and overridden per network by prefixing
+ * the key with the server alias. A sample of N logs every Nth line.
+ *
+ * Example:
+ * enabled=true
+ * file=logs/raw.log
+ * buffer_size=8192
+ * flush_ms=500
+ * max_file_size_mb=10
+ * rotate_hours=24
+ * keep_files=14
+ * level=all
+ * sample=1
+ * freenode.level=outbound
+ * quakenet.sample=10
+ */
+public class RawLogSettings {
+
+    public static final String SETTINGS_FILE = "settings/rawlog.conf";
+
+    public enum Level {
+        OFF, INBOUND, OUTBOUND, ALL;
+
+        public static Level fromString(String level) {
+            for (Level value : values()) {
+                if (value.name().equalsIgnoreCase(level)) {
+                    return value;
+                }
+            }
+            return ALL;
+        }
+
+        public boolean allows(boolean outbound) {
+            return this == ALL || (outbound ? this == OUTBOUND : this == INBOUND);
+        }
+    }
+
+    private final KeyValueSettings settings;
+
+    private boolean enabled = true;
+    private String file = "logs/raw.log";
+    private int bufferSize = 8192;
+    private long flushMillis = 500;
+    private long maxFileBytes = 10L * 1024 * 1024;
+    private long rotateMillis = 24L * 60 * 60 * 1000;
+    private int keepFiles = 14;
+
+    public RawLogSettings() {
+        this(new KeyValueSettings(SETTINGS_FILE, new HashMap<String, String>()));
+    }
+
+    public RawLogSettings(KeyValueSettings settings) {
+        this.settings = settings;
+    }
+
+    public static RawLogSettings load() {
+        KeyValueSettings settings = KeyValueSettings.load(SETTINGS_FILE);
+        RawLogSettings rawLogSettings = new RawLogSettings(settings);
+
+        rawLogSettings.setEnabled(settings.getBoolean("enabled", true));
+        rawLogSettings.setFile(settings.getString("file", "logs/raw.log"));
+        rawLogSettings.setBufferSize(settings.getInt("buffer_size", 8192));
+        rawLogSettings.setFlushMillis(settings.getLong("flush_ms", 500));
+        rawLogSettings.setMaxFileBytes(settings.getLong("max_file_size_mb", 10) * 1024 * 1024);
+        rawLogSettings.setRotateMillis(settings.getLong("rotate_hours", 24) * 60 * 60 * 1000);
+        rawLogSettings.setKeepFiles(settings.getInt("keep_files", 14));
+
+        return rawLogSettings;
+    }
+
+    /**
+     * @param serverAlias Network to look up.
+     * @return Which directions are logged for the network.
+     */
+    public Level getLevel(String serverAlias) {
+        return Level.fromString(settings.getString(serverAlias + ".level", settings.getString("level", "all")));
+    }
+
+    /**
+     * @param serverAlias Network to look up.
+     * @return Log every Nth line for the network, 1 logs everything.
+     */
+    public int getSample(String serverAlias) {
+        return Math.max(1, settings.getInt(serverAlias + ".sample", settings.getInt("sample", 1)));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * @return Number of lines that can wait for the writer. Lines beyond that are dropped and counted.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(16, bufferSize);
+    }
+
+    /**
+     * @return Longest a line waits before the writer picks it up.
+     */
+    public long getFlushMillis() {
+        return flushMillis;
+    }
+
+    public void setFlushMillis(long flushMillis) {
+        this.flushMillis = Math.max(10, flushMillis);
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public void setMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = Math.max(1024, maxFileBytes);
+    }
+
+    public long getRotateMillis() {
+        return rotateMillis;
+    }
+
+    public void setRotateMillis(long rotateMillis) {
+        this.rotateMillis = Math.max(60 * 1000, rotateMillis);
+    }
+
+    /**
+     * @return Number of compressed old files to keep. 0 keeps them all.
+     */
+    public int getKeepFiles() {
+        return keepFiles;
+    }
+
+    public void setKeepFiles(int keepFiles) {
+        this.keepFiles = Math.max(0, keepFiles);
+    }
+}
@@ -0,0 +1,245 @@
+package no.ntnu.online.onlineguru.utils.rawlog;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs every raw line to and from the IRC servers, without holding up the threads that read and send them.
+ *
+ * Logging a line only stores references to it in a fixed size ring buffer. Nothing is formatted or
+ * allocated until a writer thread picks the lines up, at the latest after flush_ms. If the writer falls
+ * behind and the buffer is full, lines are dropped and the number dropped is written to the log instead.
+ * Which lines are logged can be limited per network, see {@link RawLogSettings}.
+ */
+public class RawTrafficLog implements Runnable {
+
+    static Logger logger = Logger.getLogger(RawTrafficLog.class);
+
+    private final RawLogSettings settings;
+    private final boolean enabled;
+    private final ConcurrentHashMap<String, Gate> gates = new ConcurrentHashMap<String, Gate>();
+
+    // The ring buffer, guarded by this.
+    private final int capacity;
+    private final long[] times;
+    private final boolean[] outbound;
+    private final String[] aliases;
+    private final String[] lines;
+    private int head;
+    private int size;
+    private long dropped;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public RawTrafficLog(RawLogSettings settings) {
+        this.settings = settings;
+        this.enabled = settings.isEnabled();
+        this.capacity = settings.getBufferSize();
+        this.times = new long[capacity];
+        this.outbound = new boolean[capacity];
+        this.aliases = new String[capacity];
+        this.lines = new String[capacity];
+
+        if (enabled) {
+            writer = new Thread(this);
+            writer.setName("RawTrafficLog");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        else {
+            writer = null;
+        }
+    }
+
+    /**
+     * @param serverAlias Network the line came from.
+     * @param line        The line as received.
+     */
+    public void inbound(String serverAlias, String line) {
+        append(false, serverAlias, line);
+    }
+
+    /**
+     * @param serverAlias Network the line is sent to.
+     * @param line        The line as sent.
+     */
+    public void outbound(String serverAlias, String line) {
+        append(true, serverAlias, line);
+    }
+
+    private void append(boolean out, String serverAlias, String line) {
+        if (!enabled || !gateFor(serverAlias).allows(out)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            if (size == capacity) {
+                dropped++;
+                return;
+            }
+            int slot = head + size;
+            if (slot >= capacity) {
+                slot -= capacity;
+            }
+            times[slot] = now;
+            outbound[slot] = out;
+            aliases[slot] = serverAlias;
+            lines[slot] = line;
+            size++;
+
+            // Don't wait for the timer when the buffer is filling up.
+            if (size == capacity / 2) {
+                notify();
+            }
+        }
+    }
+
+    private Gate gateFor(String serverAlias) {
+        String key = String.valueOf(serverAlias);
+        Gate gate = gates.get(key);
+        if (gate == null) {
+            gate = new Gate(settings.getLevel(key), settings.getSample(key));
+            Gate existing = gates.putIfAbsent(key, gate);
+            if (existing != null) {
+                gate = existing;
+            }
+        }
+        return gate;
+    }
+
+    public void run() {
+        RotatingLogFile file = new RotatingLogFile(new File(settings.getFile()), settings.getMaxFileBytes(),
+                settings.getRotateMillis(), settings.getKeepFiles());
+
+        // The writer's own copy of the buffer, so formatting and writing happens outside the lock.
+        long[] batchTimes = new long[capacity];
+        boolean[] batchOutbound = new boolean[capacity];
+        String[] batchAliases = new String[capacity];
+        String[] batchLines = new String[capacity];
+
+        StringBuilder builder = new StringBuilder(512);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        long formattedSecond = -1;
+        String timestamp = "";
+
+        boolean stopping = false;
+        while (!stopping) {
+            int count;
+            long lost;
+            synchronized (this) {
+                if (size == 0 && running) {
+                    try {
+                        wait(settings.getFlushMillis());
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                stopping = !running;
+
+                count = size;
+                for (int i = 0; i < count; i++) {
+                    int slot = (head + i) % capacity;
+                    batchTimes[i] = times[slot];
+                    batchOutbound[i] = outbound[slot];
+                    batchAliases[i] = aliases[slot];
+                    batchLines[i] = lines[slot];
+                    aliases[slot] = null;
+                    lines[slot] = null;
+                }
+                head = (head + count) % capacity;
+                size = 0;
+                lost = dropped;
+                dropped = 0;
+            }
+
+            try {
+                if (lost > 0) {
+                    file.write("-- " + lost + " lines dropped, the raw log could not keep up --\n");
+                }
+                for (int i = 0; i < count; i++) {
+                    long second = batchTimes[i] / 1000;
+                    if (second != formattedSecond) {
+                        timestamp = dateFormat.format(new Date(batchTimes[i]));
+                        formattedSecond = second;
+                    }
+
+                    builder.setLength(0);
+                    builder.append(timestamp).append('.');
+                    int millis = (int) (batchTimes[i] % 1000);
+                    if (millis < 100) {
+                        builder.append('0');
+                    }
+                    if (millis < 10) {
+                        builder.append('0');
+                    }
+                    builder.append(millis)
+                            .append(batchOutbound[i] ? " -> " : " <- ")
+                            .append(batchAliases[i]).append(": ")
+                            .append(batchLines[i]).append('\n');
+                    file.write(builder);
+
+                    batchAliases[i] = null;
+                    batchLines[i] = null;
+                }
+                if (count > 0 || lost > 0) {
+                    file.flush();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to write the raw log", e);
+            }
+        }
+
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.error("Failed to close the raw log", e);
+        }
+    }
+
+    /**
+     * Writes what is left in the buffer and stops the writer.
+     */
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        synchronized (this) {
+            running = false;
+            notify();
+        }
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Which lines to log for one network.
+     */
+    private static class Gate {
+        private final RawLogSettings.Level level;
+        private final int sample;
+        private final AtomicLong seen = new AtomicLong();
+
+        private Gate(RawLogSettings.Level level, int sample) {
+            this.level = level;
+            this.sample = sample;
+        }
+
+        private boolean allows(boolean outbound) {
+            if (!level.allows(outbound)) {
+                return false;
+            }
+            return sample == 1 || seen.getAndIncrement() % sample == 0;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package no.ntnu.online.onlineguru.utils.rawlog;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log file that is rotated when it grows too big or too old. The old file is gzipped next to it,
+ * as raw-20130101-120000.log.gz for raw.log, and the oldest compressed files are removed.
+ *
+ * Not thread safe; only the {@link RawTrafficLog} writer thread uses it.
+ */
+class RotatingLogFile {
+
+    static Logger logger = Logger.getLogger(RotatingLogFile.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final int keepFiles;
+    private final SimpleDateFormat suffixFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+
+    private Writer out;
+    private long written;
+    private long opened;
+
+    RotatingLogFile(File file, long maxBytes, long maxAgeMillis, int keepFiles) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.keepFiles = keepFiles;
+    }
+
+    void write(CharSequence line) throws IOException {
+        if (out == null) {
+            open();
+        }
+        else if (written >= maxBytes || System.currentTimeMillis() - opened >= maxAgeMillis) {
+            rotate();
+        }
+        out.append(line);
+        // Close enough for deciding when to rotate, without encoding twice.
+        written += line.length();
+    }
+
+    void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void open() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF8), 64 * 1024);
+        written = file.length();
+        opened = System.currentTimeMillis();
+    }
+
+    private void rotate() throws IOException {
+        close();
+
+        String stamp = baseName() + "-" + suffixFormat.format(new Date());
+        File rotated = new File(file.getParentFile(), stamp + extension());
+        for (int i = 1; rotated.exists() || new File(rotated.getPath() + ".gz").exists(); i++) {
+            // Rotated more than once within a second.
+            rotated = new File(file.getParentFile(), stamp + "-" + i + extension());
+        }
+        if (file.renameTo(rotated)) {
+            compress(rotated);
+            prune();
+        }
+        else {
+            logger.error("Could not rotate " + file + ", appending to it instead.");
+        }
+
+        open();
+    }
+
+    private void compress(File rotated) {
+        File compressed = new File(rotated.getPath() + ".gz");
+        InputStream in = null;
+        OutputStream gz = null;
+        try {
+            in = new FileInputStream(rotated);
+            gz = new GZIPOutputStream(new FileOutputStream(compressed));
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                gz.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to compress " + rotated, e);
+            return;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(gz);
+        }
+        if (!rotated.delete()) {
+            logger.warn("Could not delete " + rotated + " after compressing it.");
+        }
+    }
+
+    /**
+     * Removes the oldest compressed files beyond the number to keep. The timestamp in the name makes them sort by age.
+     */
+    private void prune() {
+        if (keepFiles <= 0) {
+            return;
+        }
+        File directory = file.getAbsoluteFile().getParentFile();
+        final String prefix = baseName() + "-";
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+
+        int count = 0;
+        String[] archives = new String[names.length];
+        for (String name : names) {
+            if (name.startsWith(prefix) && name.endsWith(".gz")) {
+                archives[count++] = name;
+            }
+        }
+        Arrays.sort(archives, 0, count);
+        for (int i = 0; i < count - keepFiles; i++) {
+            if (!new File(directory, archives[i]).delete()) {
+                logger.warn("Could not delete old raw log " + archives[i]);
+            }
+        }
+    }
+
+    private String baseName() {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private String extension() {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close stream", e);
+            }
+        }
+    }
+}
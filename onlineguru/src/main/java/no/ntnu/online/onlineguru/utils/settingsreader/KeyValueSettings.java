@@ -0,0 +1,85 @@
+package no.ntnu.online.onlineguru.utils.settingsreader;
+
+import no.ntnu.online.onlineguru.utils.SimpleIO;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thin wrapper around a key=value settings file, as read by {@link SimpleIO#loadConfig(String)}.
+ * Every getter takes a default, so a missing or empty file simply means "use the defaults".
+ */
+public class KeyValueSettings {
+
+    static Logger logger = Logger.getLogger(KeyValueSettings.class);
+
+    private final String filename;
+    private final Map<String, String> settings;
+
+    public KeyValueSettings(String filename, Map<String, String> settings) {
+        this.filename = filename;
+        this.settings = settings;
+    }
+
+    /**
+     * Loads a settings file, creating it empty if it does not exist.
+     *
+     * @param filename Path to the settings file.
+     * @return KeyValueSettings, empty if the file could not be read.
+     */
+    public static KeyValueSettings load(String filename) {
+        Map<String, String> settings = new HashMap<String, String>();
+        try {
+            SimpleIO.createFile(filename);
+            settings = SimpleIO.loadConfig(filename);
+        } catch (IOException e) {
+            logger.error(String.format("Failed to read %s, using defaults.", filename), e.getCause());
+        }
+        return new KeyValueSettings(filename, settings);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = settings.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.error(String.format("Invalid number '%s' for '%s' in %s, using %d.", value, key, filename, defaultValue));
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.error(String.format("Invalid number '%s' for '%s' in %s, using %d.", value, key, filename, defaultValue));
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+}
@@ -0,0 +1,143 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.event.model.EventType;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.helpers.EventFactory;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventDistributorTest {
+
+    private Network network;
+    private DispatchSettings settings;
+    private EventDistributor eventDistributor;
+
+    @Before
+    public void setUp() {
+        network = new Network();
+        network.setServerAlias("freenode");
+
+        settings = new DispatchSettings();
+        settings.setMode(DispatchMode.SYNCHRONOUS);
+        settings.setTimeBudgetMillis(60000);
+        settings.setErrorThreshold(2);
+        eventDistributor = new EventDistributor(settings);
+    }
+
+    private void send(String message) {
+        eventDistributor.handleEvent(EventFactory.createPrivMsgEvent(network, "nick", "#channel", message));
+    }
+
+    @Test
+    public void testSubscribeDuringDispatch() {
+        final RecordingPlugin late = new RecordingPlugin(PluginPriority.NORMAL);
+        RecordingPlugin early = new RecordingPlugin(PluginPriority.NORMAL) {
+            protected void received(String message) {
+                super.received(message);
+                eventDistributor.addListener(late, EventType.PRIVMSG);
+                eventDistributor.removeListener(this, EventType.PRIVMSG);
+            }
+        };
+        eventDistributor.addListener(early, EventType.PRIVMSG);
+
+        // The event already on its way keeps the listeners it started with.
+        send("first");
+        assertEquals(Arrays.asList("first"), early.getMessages());
+        assertTrue(late.getMessages().isEmpty());
+
+        send("second");
+        assertEquals(Arrays.asList("first"), early.getMessages());
+        assertEquals(Arrays.asList("second"), late.getMessages());
+    }
+
+    @Test
+    public void testUnsubscribeDuringDispatch() {
+        final RecordingPlugin second = new RecordingPlugin(PluginPriority.NORMAL);
+        RecordingPlugin first = new RecordingPlugin(PluginPriority.NORMAL) {
+            protected void received(String message) {
+                super.received(message);
+                eventDistributor.removeListener(second, EventType.PRIVMSG);
+            }
+        };
+        eventDistributor.addListener(first, EventType.PRIVMSG);
+        eventDistributor.addListener(second, EventType.PRIVMSG);
+
+        send("first");
+        assertEquals(Arrays.asList("first"), second.getMessages());
+        assertEquals(1, eventDistributor.getListeners(EventType.PRIVMSG).length);
+
+        send("second");
+        assertEquals(Arrays.asList("first", "second"), first.getMessages());
+        assertEquals(Arrays.asList("first"), second.getMessages());
+    }
+
+    @Test
+    public void testRemovedPluginGetsNothingMore() {
+        final RecordingPlugin second = new RecordingPlugin(PluginPriority.NORMAL);
+        RecordingPlugin first = new RecordingPlugin(PluginPriority.NORMAL) {
+            protected void received(String message) {
+                super.received(message);
+                eventDistributor.removeAllListeners(second);
+            }
+        };
+        eventDistributor.addListener(first, EventType.PRIVMSG);
+        eventDistributor.addListener(second, EventType.PRIVMSG);
+
+        // Removed altogether, it doesn't even get the event that was on its way.
+        send("first");
+        assertEquals(Arrays.asList("first"), first.getMessages());
+        assertTrue(second.getMessages().isEmpty());
+    }
+
+    @Test
+    public void testListenersAreCalledByPriority() {
+        final List<PluginPriority> calls = Collections.synchronizedList(new ArrayList<PluginPriority>());
+        for (PluginPriority priority : new PluginPriority[]{PluginPriority.BEST_EFFORT, PluginPriority.NORMAL, PluginPriority.CRITICAL}) {
+            eventDistributor.addListener(new RecordingPlugin(priority) {
+                protected void received(String message) {
+                    calls.add(getPriority());
+                }
+            }, EventType.PRIVMSG);
+        }
+
+        send("message");
+        assertEquals(Arrays.asList(PluginPriority.CRITICAL, PluginPriority.NORMAL, PluginPriority.BEST_EFFORT), calls);
+    }
+
+    @Test
+    public void testQuarantinedPluginIsReleased() {
+        RecordingPlugin failing = new RecordingPlugin(PluginPriority.NORMAL) {
+            protected void received(String message) {
+                super.received(message);
+                throw new IllegalStateException("Failing on purpose");
+            }
+        };
+        eventDistributor.addListener(failing, EventType.PRIVMSG);
+        PluginStats stats = eventDistributor.getPluginStats().iterator().next();
+
+        send("first");
+        send("second");
+        assertTrue(stats.isQuarantined());
+
+        send("skipped");
+        assertEquals(Arrays.asList("first", "second"), failing.getMessages());
+        assertEquals(1, stats.getDropped());
+
+        assertFalse(eventDistributor.releasePlugin("NoSuchPlugin"));
+        assertTrue(eventDistributor.releasePlugin(stats.getPluginName()));
+        assertFalse(stats.isQuarantined());
+
+        send("third");
+        assertEquals(Arrays.asList("first", "second", "third"), failing.getMessages());
+    }
+}
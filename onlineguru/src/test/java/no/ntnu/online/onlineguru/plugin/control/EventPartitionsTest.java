@@ -0,0 +1,111 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.event.model.EventType;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.helpers.EventFactory;
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventPartitionsTest {
+
+    private static final String[] CHANNELS = {"#a", "#b", "#c", "#d", "#e"};
+
+    private Network network;
+    private DispatchSettings settings;
+    private EventDistributor eventDistributor;
+    private EventPartition partition;
+
+    @Before
+    public void setUp() {
+        network = new Network();
+        network.setServerAlias("freenode");
+
+        settings = new DispatchSettings();
+        settings.setMode(DispatchMode.PARTITIONED);
+        settings.setChannelPartitions(4);
+        settings.setTimeBudgetMillis(60000);
+        eventDistributor = new EventDistributor(settings);
+    }
+
+    @After
+    public void tearDown() {
+        for (EventPartition running : eventDistributor.getPartitions()) {
+            running.shutdown();
+        }
+        if (partition != null) {
+            partition.shutdown();
+        }
+    }
+
+    private DispatchedEvent message(String channel, String message) {
+        return new DispatchedEvent(EventFactory.createPrivMsgEvent(network, "nick", channel, message));
+    }
+
+    @Test
+    public void testChannelsKeepTheirOrder() throws InterruptedException {
+        RecordingPlugin plugin = new RecordingPlugin(PluginPriority.NORMAL);
+        eventDistributor.addListener(plugin, EventType.PRIVMSG);
+
+        for (int i = 0; i < 100; i++) {
+            String channel = CHANNELS[i % CHANNELS.length];
+            eventDistributor.handleEvent(EventFactory.createPrivMsgEvent(network, "nick", channel, channel + " " + i));
+        }
+
+        Map<String, Integer> last = new HashMap<String, Integer>();
+        for (String message : plugin.awaitMessages(100)) {
+            String[] parts = message.split(" ");
+            int number = Integer.parseInt(parts[1]);
+            Integer previous = last.put(parts[0], number);
+            if (previous != null && previous > number) {
+                throw new AssertionError(message + " was handled after " + previous + " in " + parts[0]);
+            }
+        }
+        assertEquals(CHANNELS.length, last.size());
+    }
+
+    @Test
+    public void testSameChannelSamePartition() {
+        assertEquals(EventPartitions.partitionIndex("#Channel", 4), EventPartitions.partitionIndex("#channel", 4));
+        assertEquals(0, EventPartitions.partitionIndex(null, 4));
+        assertEquals("#channel", EventPartitions.getChannel(EventFactory.createPrivMsgEvent(network, "nick", "#channel", "hi")));
+        assertNull(EventPartitions.getChannel(EventFactory.createPrivMsgEvent(network, "nick", "OnlineGuru", "hi")));
+    }
+
+    @Test
+    public void testBestEffortIsShedWhenBacklogged() throws InterruptedException {
+        RecordingPlugin normal = new RecordingPlugin(PluginPriority.NORMAL).hold();
+        RecordingPlugin bestEffort = new RecordingPlugin(PluginPriority.BEST_EFFORT);
+        eventDistributor.addListener(normal, EventType.PRIVMSG);
+        eventDistributor.addListener(bestEffort, EventType.PRIVMSG);
+        Plugin[] listeners = eventDistributor.getListeners(EventType.PRIVMSG);
+
+        partition = new EventPartition("test", eventDistributor, 2);
+        partition.offer(message("#channel", "first"), listeners);
+        normal.awaitStarted();
+
+        // The best effort delivery of the first message is still waiting, the rest come on top of it.
+        partition.offer(message("#channel", "second"), listeners);
+        partition.offer(message("#channel", "third"), listeners);
+
+        normal.release();
+        assertEquals(Arrays.asList("first", "second", "third"), normal.awaitMessages(3));
+        assertEquals(Arrays.asList("first"), bestEffort.awaitMessages(1));
+
+        long shed = 0;
+        for (PluginStats stats : eventDistributor.getPluginStats()) {
+            shed += stats.getShed();
+        }
+        assertEquals(2, shed);
+    }
+}
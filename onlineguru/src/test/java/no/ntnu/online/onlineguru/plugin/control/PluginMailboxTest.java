@@ -0,0 +1,116 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.helpers.EventFactory;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PluginMailboxTest {
+
+    private Network network;
+    private PluginWatchdog watchdog;
+    private PluginMailbox mailbox;
+
+    @Before
+    public void setUp() {
+        network = new Network();
+        network.setServerAlias("freenode");
+
+        DispatchSettings settings = new DispatchSettings();
+        settings.setTimeBudgetMillis(60000);
+        watchdog = new PluginWatchdog(settings);
+    }
+
+    @After
+    public void tearDown() {
+        if (mailbox != null) {
+            mailbox.shutdown();
+        }
+        watchdog.shutdown();
+    }
+
+    private boolean offer(String message) {
+        return mailbox.offer(new DispatchedEvent(EventFactory.createPrivMsgEvent(network, "nick", "#channel", message)));
+    }
+
+    @Test
+    public void testEventsAreDeliveredInOrder() throws InterruptedException {
+        RecordingPlugin plugin = new RecordingPlugin(PluginPriority.NORMAL);
+        mailbox = new PluginMailbox(plugin, new PluginStats("RecordingPlugin"), watchdog, 100, 100);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(offer(String.valueOf(i)));
+        }
+
+        List<String> messages = plugin.awaitMessages(50);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(String.valueOf(i), messages.get(i));
+        }
+    }
+
+    @Test
+    public void testFullMailboxDropsNewEvents() throws InterruptedException {
+        RecordingPlugin plugin = new RecordingPlugin(PluginPriority.NORMAL).hold();
+        PluginStats stats = new PluginStats("RecordingPlugin");
+        mailbox = new PluginMailbox(plugin, stats, watchdog, 2, 100);
+
+        assertTrue(offer("busy"));
+        plugin.awaitStarted();
+
+        assertTrue(offer("first"));
+        assertTrue(offer("second"));
+        assertFalse(offer("dropped"));
+        assertEquals(1, stats.getDropped());
+        assertEquals(0, stats.getShed());
+
+        plugin.release();
+        assertEquals(Arrays.asList("busy", "first", "second"), plugin.awaitMessages(3));
+    }
+
+    @Test
+    public void testBestEffortEventsAreShed() throws InterruptedException {
+        RecordingPlugin plugin = new RecordingPlugin(PluginPriority.BEST_EFFORT).hold();
+        PluginStats stats = new PluginStats("RecordingPlugin");
+        mailbox = new PluginMailbox(plugin, stats, watchdog, 10, 2);
+
+        assertTrue(offer("busy"));
+        plugin.awaitStarted();
+
+        assertTrue(offer("first"));
+        assertTrue(offer("second"));
+        // Far from full, but past the shed threshold.
+        assertFalse(offer("shed"));
+        assertEquals(1, stats.getShed());
+        assertEquals(0, stats.getDropped());
+
+        plugin.release();
+        assertEquals(Arrays.asList("busy", "first", "second"), plugin.awaitMessages(3));
+    }
+
+    @Test
+    public void testCriticalEventsAreNeverDropped() throws InterruptedException {
+        RecordingPlugin plugin = new RecordingPlugin(PluginPriority.CRITICAL).hold();
+        PluginStats stats = new PluginStats("RecordingPlugin");
+        mailbox = new PluginMailbox(plugin, stats, watchdog, 1, 0);
+
+        assertTrue(offer("busy"));
+        plugin.awaitStarted();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(offer(String.valueOf(i)));
+        }
+        assertEquals(0, stats.getDropped());
+        assertEquals(0, stats.getShed());
+
+        plugin.release();
+        assertEquals(21, plugin.awaitMessages(21).size());
+    }
+}
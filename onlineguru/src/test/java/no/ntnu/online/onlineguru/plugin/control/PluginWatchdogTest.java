@@ -0,0 +1,209 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.control.IRCEventPacket;
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
+import no.ntnu.online.onlineguru.utils.Wand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PluginWatchdogTest {
+
+    private DispatchSettings settings;
+    private PluginWatchdog watchdog;
+    private DispatchedEvent event;
+
+    @Before
+    public void setUp() {
+        settings = new DispatchSettings();
+        settings.setErrorThreshold(3);
+        settings.setTimeBudgetMillis(60000);
+
+        Network network = new Network();
+        network.setServerAlias("freenode");
+        event = new DispatchedEvent(new NumericEvent(new IRCEventPacket(":server 001 OnlineGuru :Welcome"), network));
+    }
+
+    @After
+    public void tearDown() {
+        if (watchdog != null) {
+            watchdog.shutdown();
+        }
+    }
+
+    private void invoke(FailingPlugin plugin, PluginStats stats, int times) {
+        for (int i = 0; i < times; i++) {
+            watchdog.invoke(plugin, stats, event, false);
+        }
+    }
+
+    @Test
+    public void testFailingPluginIsQuarantinedAndReleased() {
+        watchdog = new PluginWatchdog(settings);
+        FailingPlugin plugin = new FailingPlugin(PluginPriority.NORMAL);
+        PluginStats stats = new PluginStats("FailingPlugin");
+
+        invoke(plugin, stats, 3);
+        assertTrue(stats.isQuarantined());
+        assertEquals(3, stats.getErrors());
+
+        // A quarantined plugin isn't called at all.
+        invoke(plugin, stats, 1);
+        assertEquals(3, plugin.calls);
+        assertEquals(1, stats.getDropped());
+
+        // Released, it starts over with no strikes.
+        stats.setQuarantined(false);
+        invoke(plugin, stats, 2);
+        assertFalse(stats.isQuarantined());
+        assertEquals(5, plugin.calls);
+    }
+
+    @Test
+    public void testCriticalPluginIsNeverQuarantined() {
+        watchdog = new PluginWatchdog(settings);
+        FailingPlugin plugin = new FailingPlugin(PluginPriority.CRITICAL);
+        PluginStats stats = new PluginStats("NickServPlugin");
+
+        invoke(plugin, stats, 10);
+        assertFalse(stats.isQuarantined());
+        assertEquals(10, stats.getErrors());
+        assertEquals(10, plugin.calls);
+    }
+
+    @Test
+    public void testStrikesAreForgottenAfterTheWindow() throws InterruptedException {
+        settings.setStrikeWindowMillis(50);
+        watchdog = new PluginWatchdog(settings);
+        FailingPlugin plugin = new FailingPlugin(PluginPriority.NORMAL);
+        PluginStats stats = new PluginStats("FailingPlugin");
+
+        invoke(plugin, stats, 2);
+        Thread.sleep(100);
+        invoke(plugin, stats, 2);
+        assertFalse(stats.isQuarantined());
+        assertEquals(4, stats.getErrors());
+
+        // Within one window the threshold is still reached.
+        invoke(plugin, stats, 1);
+        assertTrue(stats.isQuarantined());
+    }
+
+    @Test
+    public void testSlowPluginIsInterruptedOnce() {
+        settings.setTimeBudgetMillis(100);
+        settings.setOverrunThreshold(0);
+        watchdog = new PluginWatchdog(settings);
+        SlowPlugin slow = new SlowPlugin();
+        PluginStats stats = new PluginStats("SlowPlugin");
+
+        watchdog.invoke(slow, stats, event, true);
+        assertTrue(slow.interrupted);
+        assertEquals(1, stats.getOverruns());
+
+        // The next call on the same thread starts without the interrupt.
+        slow.sleepMillis = 0;
+        watchdog.invoke(slow, stats, event, true);
+        assertFalse(slow.interrupted);
+        assertEquals(1, stats.getOverruns());
+    }
+
+    @Test
+    public void testRepliesFromPluginThreads() throws InterruptedException {
+        watchdog = new PluginWatchdog(settings);
+        final boolean[] replying = new boolean[2];
+        final Runnable[] tasks = new Runnable[2];
+        Plugin plugin = new SlowPlugin() {
+            public void incomingEvent(Event e) {
+                tasks[0] = PluginWatchdog.asReply(new Runnable() {
+                    public void run() {
+                        replying[0] = PluginWatchdog.isDeliveringEvent();
+                    }
+                });
+                tasks[1] = new Runnable() {
+                    public void run() {
+                        replying[1] = PluginWatchdog.isDeliveringEvent();
+                    }
+                };
+            }
+        };
+        watchdog.invoke(plugin, new PluginStats("SlowPlugin"), event, false);
+        assertFalse(PluginWatchdog.isDeliveringEvent());
+
+        for (Runnable task : tasks) {
+            Thread thread = new Thread(task);
+            thread.start();
+            thread.join();
+        }
+        assertTrue(replying[0]);
+        assertFalse(replying[1]);
+
+        // Outside an event nothing changes.
+        Runnable task = new Runnable() {
+            public void run() {
+            }
+        };
+        assertTrue(task == PluginWatchdog.asReply(task));
+    }
+
+    private static class SlowPlugin implements Plugin {
+        private volatile long sleepMillis = 5000;
+        private volatile boolean interrupted;
+
+        public String getDescription() {
+            return "Sleeps on every event";
+        }
+
+        public void incomingEvent(Event e) {
+            interrupted = Thread.currentThread().isInterrupted();
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+
+        public void addEventDistributor(EventDistributor eventDistributor) {
+        }
+
+        public void addWand(Wand wand) {
+        }
+    }
+
+    private static class FailingPlugin implements PluginWithPriority {
+        private final PluginPriority priority;
+        private int calls = 0;
+
+        private FailingPlugin(PluginPriority priority) {
+            this.priority = priority;
+        }
+
+        public PluginPriority getPriority() {
+            return priority;
+        }
+
+        public String getDescription() {
+            return "Fails on every event";
+        }
+
+        public void incomingEvent(Event e) {
+            calls++;
+            throw new IllegalStateException("Failing on purpose");
+        }
+
+        public void addEventDistributor(EventDistributor eventDistributor) {
+        }
+
+        public void addWand(Wand wand) {
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.event.container.Event;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.ntnu.online.onlineguru.plugin.model.PluginPriority;
+import no.ntnu.online.onlineguru.plugin.model.PluginWithPriority;
+import no.ntnu.online.onlineguru.utils.Wand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the messages it gets, in order. It can be held on its first event, to build up a backlog behind it.
+ */
+class RecordingPlugin implements PluginWithPriority {
+
+    private final PluginPriority priority;
+    private final List<String> messages = new ArrayList<String>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private CountDownLatch gate = new CountDownLatch(0);
+
+    RecordingPlugin(PluginPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Makes the plugin wait on its first event until {@link #release()} is called.
+     */
+    RecordingPlugin hold() {
+        gate = new CountDownLatch(1);
+        return this;
+    }
+
+    void release() {
+        gate.countDown();
+    }
+
+    /**
+     * Waits until the plugin is busy with its first event.
+     */
+    void awaitStarted() throws InterruptedException {
+        if (!started.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("The plugin never got an event");
+        }
+    }
+
+    /**
+     * @param count Number of messages to wait for.
+     * @return A copy of the messages received so far.
+     */
+    List<String> awaitMessages(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        synchronized (messages) {
+            while (messages.size() < count) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw new AssertionError("Got " + messages.size() + " of " + count + " messages");
+                }
+                messages.wait(left);
+            }
+            return new ArrayList<String>(messages);
+        }
+    }
+
+    List<String> getMessages() {
+        synchronized (messages) {
+            return new ArrayList<String>(messages);
+        }
+    }
+
+    public PluginPriority getPriority() {
+        return priority;
+    }
+
+    public String getDescription() {
+        return "Records the messages it gets";
+    }
+
+    public void incomingEvent(Event e) {
+        started.countDown();
+        try {
+            gate.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        received(((PrivMsgEvent) e).getMessage());
+    }
+
+    protected void received(String message) {
+        synchronized (messages) {
+            messages.add(message);
+            messages.notifyAll();
+        }
+    }
+
+    public void addEventDistributor(EventDistributor eventDistributor) {
+    }
+
+    public void addWand(Wand wand) {
+    }
+}
@@ -0,0 +1,95 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.control.IRCEventPacket;
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReplyBatcherTest {
+
+    private Network network;
+    private ReplyBatcher batcher;
+
+    @Before
+    public void setUp() {
+        network = new Network();
+        network.setServerAlias("freenode");
+        batcher = new ReplyBatcher(3);
+    }
+
+    private NumericEvent numeric(String rawline) {
+        return new NumericEvent(new IRCEventPacket(rawline), network);
+    }
+
+    private ReplyBatch collect(String rawline) {
+        NumericEvent event = numeric(rawline);
+        return batcher.collect(ReplyBatcher.typeOf(event), event);
+    }
+
+    @Test
+    public void testTypeOf() {
+        assertEquals(ReplyBatch.Type.WHO, ReplyBatcher.typeOf(numeric(":server 354 OnlineGuru nick account")));
+        assertEquals(ReplyBatch.Type.WHO, ReplyBatcher.typeOf(numeric(":server 315 OnlineGuru #online :End of /WHO list.")));
+        assertEquals(ReplyBatch.Type.NAMES, ReplyBatcher.typeOf(numeric(":server 353 OnlineGuru = #online :a b c")));
+        assertEquals(ReplyBatch.Type.NAMES, ReplyBatcher.typeOf(numeric(":server 366 OnlineGuru #online :End of /NAMES list.")));
+        assertNull(ReplyBatcher.typeOf(numeric(":server 001 OnlineGuru :Welcome")));
+    }
+
+    @Test
+    public void testBatchEndsAtEndNumeric() {
+        assertNull(collect(":server 354 OnlineGuru first account"));
+        assertNull(collect(":server 354 OnlineGuru second 0"));
+        ReplyBatch batch = collect(":server 315 OnlineGuru #online :End of /WHO list.");
+
+        assertTrue(batch.isComplete());
+        assertEquals(ReplyBatch.Type.WHO, batch.getType());
+        assertEquals(2, batch.getReplies().size());
+        assertEquals("#online", batch.getTarget());
+        assertEquals(network, batch.getNetwork());
+    }
+
+    @Test
+    public void testInterleavedTypes() {
+        assertNull(collect(":server 353 OnlineGuru = #online :a b c"));
+        assertNull(collect(":server 354 OnlineGuru first account"));
+        ReplyBatch names = collect(":server 366 OnlineGuru #online :End of /NAMES list.");
+        ReplyBatch who = collect(":server 315 OnlineGuru #online :End of /WHO list.");
+
+        assertEquals(ReplyBatch.Type.NAMES, names.getType());
+        assertEquals(1, names.getReplies().size());
+        assertEquals(ReplyBatch.Type.WHO, who.getType());
+        assertEquals(1, who.getReplies().size());
+    }
+
+    @Test
+    public void testLongListIsSplitAtLimit() {
+        assertNull(collect(":server 354 OnlineGuru a 0"));
+        assertNull(collect(":server 354 OnlineGuru b 0"));
+        ReplyBatch full = collect(":server 354 OnlineGuru c 0");
+
+        assertFalse(full.isComplete());
+        assertNull(full.getTarget());
+        assertEquals(3, full.getReplies().size());
+
+        ReplyBatch rest = collect(":server 315 OnlineGuru #online :End of /WHO list.");
+        assertTrue(rest.isComplete());
+        assertEquals(0, rest.getReplies().size());
+    }
+
+    @Test
+    public void testResetDropsOpenLists() {
+        assertNull(collect(":server 354 OnlineGuru a 0"));
+        batcher.reset(network);
+        ReplyBatch batch = collect(":server 315 OnlineGuru #online :End of /WHO list.");
+
+        assertEquals(0, batch.getReplies().size());
+    }
+
+}
@@ -0,0 +1,83 @@
+package no.ntnu.online.onlineguru.plugin.control;
+
+import no.fictive.irclib.event.container.Event;
+import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.utils.Wand;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TriggerIndexTest {
+
+    private Plugin peak = new DummyPlugin();
+    private Plugin help = new DummyPlugin();
+    private Plugin sed = new DummyPlugin();
+
+    private TriggerIndex index;
+
+    @Before
+    public void setUp() {
+        Map<String, List<Plugin>> triggers = new LinkedHashMap<String, List<Plugin>>();
+        triggers.put("!peak", Arrays.asList(peak));
+        triggers.put("!help", Arrays.asList(help));
+        triggers.put("??", Arrays.asList(help));
+        triggers.put("s", Arrays.asList(sed));
+        index = new TriggerIndex(triggers);
+    }
+
+    @Test
+    public void testMatchesTriggerAndPrefix() {
+        assertEquals(Arrays.asList(peak), Arrays.asList(index.match("!peak #online")));
+        assertEquals(Arrays.asList(peak), Arrays.asList(index.match("!peakish")));
+        assertEquals(Arrays.asList(help), Arrays.asList(index.match("??")));
+        assertEquals(Arrays.asList(sed), Arrays.asList(index.match("s/foo/bar/")));
+    }
+
+    @Test
+    public void testIgnoresCase() {
+        assertEquals(Arrays.asList(peak), Arrays.asList(index.match("!PEAK")));
+        assertEquals(Arrays.asList(sed), Arrays.asList(index.match("Something")));
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertEquals(0, index.match("hello there").length);
+        assertEquals(0, index.match("!pea").length);
+        assertEquals(0, index.match("").length);
+        assertEquals(0, new TriggerIndex().match("!peak").length);
+    }
+
+    @Test
+    public void testNestedTriggersReturnPluginOnce() {
+        Map<String, List<Plugin>> triggers = new LinkedHashMap<String, List<Plugin>>();
+        triggers.put("!who", Arrays.asList(help));
+        triggers.put("!whois", Arrays.asList(help));
+        triggers.put("!w", new ArrayList<Plugin>(Arrays.asList(peak)));
+        TriggerIndex nested = new TriggerIndex(triggers);
+
+        assertEquals(Arrays.asList(peak, help), Arrays.asList(nested.match("!whois nick")));
+        assertEquals(3, nested.size());
+    }
+
+    private static class DummyPlugin implements Plugin {
+        public String getDescription() {
+            return "Dummy";
+        }
+
+        public void incomingEvent(Event e) {
+        }
+
+        public void addEventDistributor(EventDistributor eventDistributor) {
+        }
+
+        public void addWand(Wand wand) {
+        }
+    }
+}
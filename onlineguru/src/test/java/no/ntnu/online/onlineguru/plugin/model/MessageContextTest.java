@@ -0,0 +1,88 @@
+package no.ntnu.online.onlineguru.plugin.model;
+
+import no.fictive.irclib.model.network.Network;
+import no.fictive.irclib.model.user.Profile;
+import no.ntnu.online.onlineguru.helpers.EventFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageContextTest {
+
+    private Network network;
+
+    @Before
+    public void setUp() {
+        Profile profile = new Profile("OnlineGuru", "OnlineGuru_", "Online Guru", "guru", "guru@example.com");
+        network = new Network("irc.example.com", 6667, null, "example", profile);
+    }
+
+    private MessageContext makeContext(String target, String message) {
+        return new MessageContext(EventFactory.createPrivMsgEvent(network, "melwil", target, message));
+    }
+
+    @Test
+    public void testTokens() {
+        MessageContext context = makeContext("#channel", "  !np   register  melwil ");
+
+        assertEquals(Arrays.asList("!np", "register", "melwil"), context.getTokens());
+        assertEquals(3, context.getTokenCount());
+        assertEquals("register", context.getToken(1));
+        assertNull(context.getToken(3));
+        assertEquals("!np", context.getTrigger());
+        assertEquals("register  melwil", context.getArguments());
+    }
+
+    @Test
+    public void testEmptyMessage() {
+        MessageContext context = makeContext("#channel", "");
+
+        assertEquals(0, context.getTokenCount());
+        assertEquals("", context.getTrigger());
+        assertEquals("", context.getArguments());
+        assertTrue(context.getUrls().isEmpty());
+    }
+
+    @Test
+    public void testValuesAreOnlyComputedOnce() {
+        MessageContext context = makeContext("#channel", "!Peak #Online");
+
+        assertEquals("!peak #online", context.getLowerCaseMessage());
+        assertSame(context.getLowerCaseMessage(), context.getLowerCaseMessage());
+        assertSame(context.getTokens(), context.getTokens());
+        assertSame(context.getUrls(), context.getUrls());
+    }
+
+    @Test
+    public void testUrls() {
+        MessageContext context = makeContext("#channel", "see http://online.ntnu.no and www.example.com/page please");
+        List<MessageContext.Span> urls = context.getUrls();
+
+        assertEquals(2, urls.size());
+        assertEquals("http://online.ntnu.no", urls.get(0).getText());
+        assertEquals(4, urls.get(0).getStart());
+        assertEquals("www.example.com/page", urls.get(1).getText());
+        assertEquals("www.example.com/page",
+                context.getMessage().substring(urls.get(1).getStart(), urls.get(1).getEnd()));
+    }
+
+    @Test
+    public void testAddressedToBot() {
+        assertTrue(makeContext("#channel", "OnlineGuru: hello").isAddressedToBot());
+        assertTrue(makeContext("#channel", "onlineguru, hello").isAddressedToBot());
+        assertTrue(makeContext("#channel", "OnlineGuru").isAddressedToBot());
+        assertTrue(makeContext("OnlineGuru", "hello").isAddressedToBot());
+
+        assertFalse(makeContext("#channel", "OnlineGurus are great").isAddressedToBot());
+        assertFalse(makeContext("#channel", "hello OnlineGuru").isAddressedToBot());
+    }
+
+}
@@ -0,0 +1,68 @@
+package no.ntnu.online.onlineguru.plugin.plugins.flags;
+
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FlagCacheTest {
+
+    private FlagCache cache;
+    private Network network;
+    private Set<Flag> flags = Collections.unmodifiableSet(EnumSet.of(Flag.o, Flag.v));
+
+    @Before
+    public void setUp() {
+        cache = new FlagCache();
+        network = new Network();
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        assertNull(cache.get(network, "#channel", "account"));
+        cache.put(network, "#channel", "account", flags, cache.getGeneration());
+
+        assertSame(flags, cache.get(network, "#channel", "account"));
+        assertNull(cache.get(network, "#other", "account"));
+        assertNull(cache.get(new Network(), "#channel", "account"));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.put(network, "#channel", "account", flags, cache.getGeneration());
+        cache.put(network, "#other", "account", flags, cache.getGeneration());
+        cache.put(network, FlagCache.NO_CHANNEL, "account", flags, cache.getGeneration());
+
+        cache.invalidate(network, "#channel", "account");
+        assertNull(cache.get(network, "#channel", "account"));
+        assertSame(flags, cache.get(network, "#other", "account"));
+
+        // Superusers count everywhere.
+        cache.invalidate(network, "account");
+        assertNull(cache.get(network, "#other", "account"));
+        assertNull(cache.get(network, FlagCache.NO_CHANNEL, "account"));
+        assertEquals(2, cache.getInvalidations());
+    }
+
+    @Test
+    public void testStalePutIsDropped() {
+        long generation = cache.getGeneration();
+        // Flags are saved while they are being read.
+        cache.invalidate(network, "#channel", "account");
+        cache.put(network, "#channel", "account", flags, generation);
+        assertNull(cache.get(network, "#channel", "account"));
+
+        cache.put(network, "#channel", "account", flags, cache.getGeneration());
+        assertSame(flags, cache.get(network, "#channel", "account"));
+    }
+}
@@ -0,0 +1,116 @@
+package no.ntnu.online.onlineguru.plugin.plugins.flags.storage;
+
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.plugins.flags.model.Flag;
+import no.ntnu.online.onlineguru.utils.SimpleIO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkFlagsTest {
+
+    private File directory;
+    private String db;
+    private Network network;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("flags", "");
+        directory.delete();
+        directory.mkdirs();
+        db = new File(directory, "network.db").getPath();
+        network = new Network();
+        network.setServerAlias("network");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testMask() {
+        long mask = Flag.toMask(EnumSet.of(Flag.ANYONE, Flag.K, Flag.o));
+        assertEquals(EnumSet.of(Flag.K, Flag.o), Flag.fromMask(mask));
+        assertEquals("Ko", Flag.toString(mask));
+        assertEquals(0L, Flag.ANYONE.getMask());
+    }
+
+    @Test
+    public void testChangesAreJournaled() throws IOException {
+        NetworkFlags flags = new NetworkFlags(network, db, "root");
+        flags.addChannel("#channel");
+        long mask = Flag.toMask(EnumSet.of(Flag.o, Flag.v));
+        assertTrue(flags.saveFlags("#channel", "account", mask));
+        assertFalse(flags.saveFlags("#unknown", "account", mask));
+        assertTrue(flags.addSuperuser("admin"));
+        assertTrue(flags.hasFlag("#channel", "account", Flag.v));
+        assertFalse(flags.hasFlag("#channel", "account", Flag.K));
+
+        assertEquals(2, SimpleIO.readFileAsList(db + NetworkFlags.JOURNAL_SUFFIX).size());
+
+        // Loading again replays the journal into a new snapshot.
+        NetworkFlags loaded = new NetworkFlags(network, db, "root");
+        assertEquals(mask, loaded.getFlags("#channel", "account"));
+        assertTrue(loaded.isSuperuser("admin"));
+        assertTrue(loaded.isSuperuser("root"));
+        assertFalse(new File(db + NetworkFlags.JOURNAL_SUFFIX).exists());
+        assertFalse(new File(db + NetworkFlags.SNAPSHOT_SUFFIX).exists());
+
+        assertTrue(loaded.saveFlags("#channel", "account", 0L));
+        assertTrue(loaded.removeSuperuser("admin"));
+        loaded = new NetworkFlags(network, db, "root");
+        assertEquals(0L, loaded.getFlags("#channel", "account"));
+        assertFalse(loaded.isSuperuser("admin"));
+    }
+
+    @Test
+    public void testCompaction() {
+        NetworkFlags flags = new NetworkFlags(network, db, "root");
+        flags.addChannel("#channel");
+        for (int i = 0; i < NetworkFlags.COMPACT_AFTER; i++) {
+            flags.saveFlags("#channel", "account", i % 2 == 0 ? Flag.K.getMask() : Flag.o.getMask());
+        }
+        assertFalse(new File(db + NetworkFlags.JOURNAL_SUFFIX).exists());
+
+        NetworkFlags loaded = new NetworkFlags(network, db, "root");
+        assertTrue(loaded.hasFlag("#channel", "account", Flag.o));
+        assertFalse(loaded.hasFlag("#channel", "account", Flag.K));
+    }
+
+    @Test
+    public void testTruncatedJournalLine() throws IOException {
+        SimpleIO.writeToFile(db + NetworkFlags.JOURNAL_SUFFIX, "+superuser admin\r\nflags #chan");
+        NetworkFlags flags = new NetworkFlags(network, db, "root");
+        assertTrue(flags.isSuperuser("admin"));
+        assertEquals(0L, flags.getFlags("#chan", "account"));
+    }
+
+    @Test
+    public void testUnfinishedLastLineIsSkipped() throws IOException {
+        // "flags #chan account Kov" cut short still looks like a change.
+        SimpleIO.writeToFile(db + NetworkFlags.JOURNAL_SUFFIX, "flags #chan account o\r\nflags #chan account K");
+        NetworkFlags flags = new NetworkFlags(network, db, "root");
+        assertEquals(Flag.o.getMask(), flags.getFlags("#chan", "account"));
+        assertFalse(new File(db + NetworkFlags.JOURNAL_SUFFIX).exists());
+
+        // Compacted away, so a new change isn't appended to the unfinished line.
+        SimpleIO.writeToFile(db + NetworkFlags.JOURNAL_SUFFIX, "flags #chan account K");
+        flags = new NetworkFlags(network, db, "root");
+        assertTrue(flags.addSuperuser("admin"));
+        flags = new NetworkFlags(network, db, "root");
+        assertTrue(flags.isSuperuser("admin"));
+        assertEquals(Flag.o.getMask(), flags.getFlags("#chan", "account"));
+    }
+}
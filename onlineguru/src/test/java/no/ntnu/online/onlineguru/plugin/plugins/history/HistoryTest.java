@@ -1,12 +1,10 @@
 package no.ntnu.online.onlineguru.plugin.plugins.history;
 
-import no.fictive.irclib.event.container.Event;
-import no.fictive.irclib.event.container.command.JoinEvent;
-import no.fictive.irclib.event.container.command.PartEvent;
-import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.fictive.irclib.event.model.EventType;
 import no.fictive.irclib.model.channel.Channel;
 import no.fictive.irclib.model.nick.Nick;
 import no.ntnu.online.onlineguru.service.services.history.History;
+import no.ntnu.online.onlineguru.service.services.history.HistoryRecord;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -15,7 +13,6 @@ import java.util.List;
 
 import static no.fictive.irclib.HelperFactory.*;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
 
 /**
  * @author Roy Sindre Norangshol
@@ -61,12 +58,11 @@ public class HistoryTest {
 
     @Test
     public void testLastActionByRockj() {
-        Event event = history.getLastEvents(rockj).get(0);
-        assertEquals((PrivMsgEvent)event, event);
-        PrivMsgEvent privMsgEvent = (PrivMsgEvent)event;
+        HistoryRecord record = history.getLastRecords(rockj.getNickname()).get(0);
+        assertEquals(EventType.PRIVMSG, record.getType());
 
-        assertEquals("This is a trolling message, what's up?!", privMsgEvent.getMessage());
-        assertEquals(2, history.getLastEvents(rockj).size());
+        assertEquals("This is a trolling message, what's up?!", record.getText());
+        assertEquals(2, history.getLastRecords(rockj.getNickname()).size());
     }
 
     @Test
@@ -74,43 +70,43 @@ public class HistoryTest {
         Nick copyOfFictive = new Nick(fictive.getNickname());
         copyOfFictive.setNickname("fictive");
 
-        assertEquals(0, history.getLastEvents(copyOfFictive).size());
-        assertEquals(2, history.getLastEvents(fictive).size());
+        assertEquals(0, history.getLastRecords(copyOfFictive.getNickname()).size());
+        assertEquals(2, history.getLastRecords(fictive.getNickname()).size());
     }
 
     @Test
     public void testIfHistoryDoesntHoldMoreEventsThenMaxConstant() {
-        assertEquals(4, history.getLastEvents(melwil).size());
+        assertEquals(4, history.getLastRecords(melwil.getNickname()).size());
         history.appendHistory(melwil, createPrivMsgEvent("freenode", melwil.getNickname(), "#test", "hoho now at max"));
 
-        List<Event> melwilsHistoryAfter5Changes = history.getLastEvents(melwil);
+        List<HistoryRecord> melwilsHistoryAfter5Changes = history.getLastRecords(melwil.getNickname());
         System.out.println(Arrays.toString(melwilsHistoryAfter5Changes.toArray()));
         assertEquals(History.MAX_EVENTS_IN_HISTORY_PER_NICK, melwilsHistoryAfter5Changes.size());
-        assertEquals("hoho now at max", ((PrivMsgEvent)melwilsHistoryAfter5Changes.get(0)).getMessage());
-        assertTrue(melwilsHistoryAfter5Changes.get(History.MAX_EVENTS_IN_HISTORY_PER_NICK-1) instanceof JoinEvent);
-        assertEquals("#test", ((JoinEvent) melwilsHistoryAfter5Changes.get(History.MAX_EVENTS_IN_HISTORY_PER_NICK-1)).getChannel());
+        assertEquals("hoho now at max", melwilsHistoryAfter5Changes.get(0).getText());
+        assertEquals(EventType.JOIN, melwilsHistoryAfter5Changes.get(History.MAX_EVENTS_IN_HISTORY_PER_NICK-1).getType());
+        assertEquals("#test", melwilsHistoryAfter5Changes.get(History.MAX_EVENTS_IN_HISTORY_PER_NICK-1).getChannel());
 
         history.appendHistory(melwil, createPartEvent("freenode", "#test", melwil.getNickname(), "troll"));
-        assertEquals(History.MAX_EVENTS_IN_HISTORY_PER_NICK, history.getLastEvents(melwil).size());
-        assertEquals("hoho now at max", ((PrivMsgEvent)history.getLastEvents(melwil).get(1)).getMessage());
-        assertTrue(history.getLastEvents(melwil).get(0) instanceof PartEvent);
-        assertEquals("#test", ((PartEvent) history.getLastEvents(melwil).get(0)).getChannel());
+        assertEquals(History.MAX_EVENTS_IN_HISTORY_PER_NICK, history.getLastRecords(melwil.getNickname()).size());
+        assertEquals("hoho now at max", history.getLastRecords(melwil.getNickname()).get(1).getText());
+        assertEquals(EventType.PART, history.getLastRecords(melwil.getNickname()).get(0).getType());
+        assertEquals("#test", history.getLastRecords(melwil.getNickname()).get(0).getChannel());
     }
 
     @Test
     public void testIfHistoryChannelMaxLimit() {
-        assertEquals(7, history.getLastChannelEvents(channel).size());
-        assertEquals("Message 1", history.getLastChannelEvents(channel).get(history.getLastChannelEvents(channel).size()-1).getMessage());
+        assertEquals(7, history.getLastChannelRecords(channel.getChannelname()).size());
+        assertEquals("Message 1", history.getLastChannelRecords(channel.getChannelname()).get(history.getLastChannelRecords(channel.getChannelname()).size()-1).getText());
 
-        for (int i=history.getLastChannelEvents(channel).size(); i < History.MAX_EVENTS_IN_CHANNEL_HISOTRY; i++) {
+        for (int i=history.getLastChannelRecords(channel.getChannelname()).size(); i < History.MAX_EVENTS_IN_CHANNEL_HISOTRY; i++) {
             history.appendChannelHistory(channel, createPrivMsgEvent("freenode", melwil.getNickname(), channel.getChannelname(), "Flood "+i));
         }
 
-        assertEquals(History.MAX_EVENTS_IN_CHANNEL_HISOTRY, history.getLastChannelEvents(channel).size());
-        assertEquals("Message 1", history.getLastChannelEvents(channel).get(history.getLastChannelEvents(channel).size()-1).getMessage());
+        assertEquals(History.MAX_EVENTS_IN_CHANNEL_HISOTRY, history.getLastChannelRecords(channel.getChannelname()).size());
+        assertEquals("Message 1", history.getLastChannelRecords(channel.getChannelname()).get(history.getLastChannelRecords(channel.getChannelname()).size()-1).getText());
         history.appendChannelHistory(channel, createPrivMsgEvent("freenode", melwil.getNickname(), channel.getChannelname(), "newLineAtTop"));
-        assertEquals(History.MAX_EVENTS_IN_CHANNEL_HISOTRY, history.getLastChannelEvents(channel).size());
-        assertEquals("Message 2", history.getLastChannelEvents(channel).get(history.getLastChannelEvents(channel).size()-1).getMessage());
-        assertEquals("newLineAtTop", history.getLastChannelEvents(channel).get(0).getMessage());
+        assertEquals(History.MAX_EVENTS_IN_CHANNEL_HISOTRY, history.getLastChannelRecords(channel.getChannelname()).size());
+        assertEquals("Message 2", history.getLastChannelRecords(channel.getChannelname()).get(history.getLastChannelRecords(channel.getChannelname()).size()-1).getText());
+        assertEquals("newLineAtTop", history.getLastChannelRecords(channel.getChannelname()).get(0).getText());
     }
 }
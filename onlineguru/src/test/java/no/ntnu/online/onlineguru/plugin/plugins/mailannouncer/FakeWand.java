@@ -3,10 +3,14 @@ package no.ntnu.online.onlineguru.plugin.plugins.mailannouncer;
 import no.fictive.irclib.model.channel.Channel;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.utils.MessageTarget;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.commons.lang.NotImplementedException;
 
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -111,6 +115,14 @@ public class FakeWand implements Wand {
         // ignore
     }
 
+    public void sendMessagesToTarget(Network network, String target, List<String> messages) {
+        // ignore
+    }
+
+    public void sendMessageToTargets(Collection<MessageTarget> targets, String message) {
+        // ignore
+    }
+
     public void sendServerMessage(Network network, String message) {
         // ignore
     }
@@ -153,4 +165,8 @@ public class FakeWand implements Wand {
     public void quit(Network network) {
         // ignore
     }
+
+    public ServerSupport getServerSupport(Network network) {
+        return new ServerSupport();
+    }
 }
@@ -0,0 +1,74 @@
+package no.ntnu.online.onlineguru.plugin.plugins.nickserv;
+
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AuthHandlerTest {
+
+    @Test
+    public void testNicksFollowCaseMapping() {
+        AuthHandler rfc1459 = new AuthHandler();
+        rfc1459.addNick("Foo[]", "account");
+        assertEquals("account", rfc1459.getUsername("foo{}"));
+        assertTrue(rfc1459.isAuthed("FOO[]"));
+
+        ServerSupport support = new ServerSupport();
+        support.parse(Arrays.asList("OnlineGuru", "CASEMAPPING=ascii", "are supported by this server"));
+        AuthHandler ascii = new AuthHandler(support);
+        ascii.addNick("Foo[]", "account");
+        assertEquals("account", ascii.getUsername("FOO[]"));
+        assertNull(ascii.getUsername("foo{}"));
+    }
+
+    @Test
+    public void testReverseLookup() {
+        AuthHandler authHandler = new AuthHandler();
+        authHandler.addNick("Foo", "Account");
+        authHandler.addNick("Foo_away", "account");
+        authHandler.addNick("Bar", AuthHandler.NOT_REGISTERED);
+
+        assertEquals(new HashSet<String>(Arrays.asList("Foo", "Foo_away")), authHandler.getNicks("ACCOUNT"));
+        // Both nicks share the username first seen.
+        assertSame(authHandler.getUsername("Foo"), authHandler.getUsername("foo_away"));
+        assertEquals("Account", authHandler.getUsername("foo_away"));
+        assertFalse(authHandler.isAuthed("Bar"));
+        assertEquals(Collections.<String>emptySet(), authHandler.getNicks(AuthHandler.NOT_REGISTERED));
+
+        authHandler.removeNick("foo");
+        assertEquals(Collections.singleton("Foo_away"), authHandler.getNicks("account"));
+        authHandler.addNick("foo_away", "other");
+        assertEquals(Collections.<String>emptySet(), authHandler.getNicks("account"));
+        assertEquals(Collections.singleton("foo_away"), authHandler.getNicks("other"));
+    }
+
+    @Test
+    public void testNickChange() {
+        AuthHandler authHandler = new AuthHandler();
+        Map<String, String> who = new HashMap<String, String>();
+        who.put("Foo", "account");
+        who.put("Bar", "0");
+        authHandler.addNicks(who);
+
+        authHandler.updateNick("foo", "Baz");
+        assertNull(authHandler.getUsername("Foo"));
+        assertEquals("account", authHandler.getUsername("baz"));
+        assertEquals(Collections.singleton("Baz"), authHandler.getNicks("account"));
+
+        // Changing to a nick that is known takes its place.
+        authHandler.updateNick("Bar", "BAZ");
+        assertFalse(authHandler.isAuthed("baz"));
+        assertEquals(Collections.<String>emptySet(), authHandler.getNicks("account"));
+    }
+}
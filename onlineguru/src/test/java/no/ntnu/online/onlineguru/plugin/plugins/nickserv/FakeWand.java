@@ -3,10 +3,14 @@ package no.ntnu.online.onlineguru.plugin.plugins.nickserv;
 import no.fictive.irclib.model.channel.Channel;
 import no.fictive.irclib.model.network.Network;
 import no.ntnu.online.onlineguru.plugin.model.Plugin;
+import no.ntnu.online.onlineguru.utils.MessageTarget;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.apache.commons.lang.NotImplementedException;
 
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -17,6 +21,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class FakeWand implements Wand {
     private ConcurrentHashMap<String, Network> networks = new ConcurrentHashMap<String, Network>();
     private ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<String, Channel>();
+    private ServerSupport support = new ServerSupport();
 
     public FakeWand(ConcurrentHashMap<String, Network> networks, ConcurrentHashMap<String, Channel> channels) {
         this.networks = networks;
@@ -111,6 +116,14 @@ public class FakeWand implements Wand {
         // ignore
     }
 
+    public void sendMessagesToTarget(Network network, String target, List<String> messages) {
+        // ignore
+    }
+
+    public void sendMessageToTargets(Collection<MessageTarget> targets, String message) {
+        // ignore
+    }
+
     public void sendServerMessage(Network network, String message) {
         // ignore
     }
@@ -159,6 +172,10 @@ public class FakeWand implements Wand {
         // ignore
     }
 
+    public ServerSupport getServerSupport(Network network) {
+        return support;
+    }
+
 
     /*
         Test specific methods
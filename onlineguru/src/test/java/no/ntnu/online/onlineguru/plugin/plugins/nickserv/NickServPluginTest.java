@@ -1,15 +1,23 @@
 package no.ntnu.online.onlineguru.plugin.plugins.nickserv;
 
 import no.fictive.irclib.control.IRCEventPacket;
+import no.fictive.irclib.event.container.Event;
 import no.fictive.irclib.event.container.command.ConnectEvent;
+import no.fictive.irclib.event.container.command.JoinEvent;
 import no.fictive.irclib.event.container.command.NickEvent;
 import no.fictive.irclib.event.container.command.NumericEvent;
 import no.fictive.irclib.event.container.command.QuitEvent;
 import no.fictive.irclib.model.channel.Channel;
 import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+import no.ntnu.online.onlineguru.utils.CapabilityNegotiation;
+import no.ntnu.online.onlineguru.utils.IrcLine;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
 import no.ntnu.online.onlineguru.utils.Wand;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.*;
@@ -24,6 +32,7 @@ public class NickServPluginTest {
     String myNick = "OnlineGuru";
 
     NickServPlugin ns;
+    Wand wand;
     Network network;
     IRCEventPacket testPackage;
 
@@ -49,11 +58,11 @@ public class NickServPluginTest {
         ConcurrentHashMap<String, Network> networks = new ConcurrentHashMap<String, Network>();
         ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<String, Channel>();
 
-        Wand fakeWand = new FakeWand(networks, channels);
+        wand = new FakeWand(networks, channels);
 
         // Make NickServPlugin and a Network instance
         ns = new NickServPlugin();
-        ns.addWand(fakeWand);
+        ns.addWand(wand);
 
         // Simulate a connect to a server. This will make an AuthHandler.
         ns.incomingEvent(new ConnectEvent(network));
@@ -62,7 +71,14 @@ public class NickServPluginTest {
     private void simulateAuthedJoin() {
         // Fake a packet for NUMERIC 354
         testPackage = makePacket(":server 354 test Authed Yes");
-        ns.incomingEvent(new NumericEvent(testPackage, network));
+        simulateWhoReply(new NumericEvent(testPackage, network));
+    }
+
+    private void simulateWhoReply(NumericEvent reply) {
+        List<Event> replies = new ArrayList<Event>();
+        replies.add(reply);
+        NumericEvent end = new NumericEvent(makePacket(":server 315 test Authed :End of /WHO list."), network);
+        ns.incomingReplyBatch(new ReplyBatch(ReplyBatch.Type.WHO, network, replies, end));
     }
 
     @Test
@@ -76,7 +92,7 @@ public class NickServPluginTest {
 
     private void simulateNonAuthedJoin() {
         testPackage = makePacket(":server 354 test NonAuthed 0");
-        ns.incomingEvent(new NumericEvent(testPackage, network));
+        simulateWhoReply(new NumericEvent(testPackage, network));
     }
 
     @Test
@@ -109,4 +125,52 @@ public class NickServPluginTest {
         testPackage = makePacket(":Authed!ident@hostname.com QUIT :Some reason");
         ns.incomingEvent(new QuitEvent(testPackage, network));
     }
+
+    @Test
+    public void checkExtendedJoin() {
+        simulateSetUp();
+        wand.getServerSupport(network).setEnabled(CapabilityNegotiation.EXTENDED_JOIN, true);
+
+        // No WHO is needed, the account is in the JOIN.
+        ns.incomingEvent(new JoinEvent(makePacket(":Authed!ident@hostname.com JOIN #channel Yes :Real Name"), network));
+        ns.incomingEvent(new JoinEvent(makePacket(":NonAuthed!ident@hostname.com JOIN #channel * :Real Name"), network));
+
+        assertEquals("Yes", ns.getUsername(network, "Authed"));
+        assertFalse(ns.isAuthed(network, "NonAuthed"));
+        assertNull(ns.getUsername(network, "NonAuthed"));
+    }
+
+    @Test
+    public void checkAccountOfJoin() {
+        ServerSupport support = new ServerSupport();
+        IrcLine extended = IrcLine.parse(":Authed!ident@hostname.com JOIN #channel Yes :Real Name");
+        IrcLine tagged = IrcLine.parse("@account=Yes :Authed!ident@hostname.com JOIN #channel");
+        IrcLine plain = IrcLine.parse(":NonAuthed!ident@hostname.com JOIN #channel");
+
+        // Without the capabilities the JOIN says nothing, and WHO has to be asked.
+        assertNull(NickServPlugin.accountOf(extended, support));
+        assertNull(NickServPlugin.accountOf(tagged, support));
+
+        support.setEnabled(CapabilityNegotiation.EXTENDED_JOIN, true);
+        assertEquals("Yes", NickServPlugin.accountOf(extended, support));
+
+        support.setEnabled(CapabilityNegotiation.ACCOUNT_TAG, true);
+        assertEquals("Yes", NickServPlugin.accountOf(tagged, support));
+        assertEquals("*", NickServPlugin.accountOf(plain, support));
+    }
+
+    @Test
+    public void checkWhoReplyBatch() {
+        simulateSetUp();
+
+        List<Event> replies = new ArrayList<Event>();
+        replies.add(new NumericEvent(makePacket(":server 354 test Authed Yes"), network));
+        replies.add(new NumericEvent(makePacket(":server 354 test NonAuthed 0"), network));
+        NumericEvent end = new NumericEvent(makePacket(":server 315 test #channel :End of /WHO list."), network);
+        ns.incomingReplyBatch(new ReplyBatch(ReplyBatch.Type.WHO, network, replies, end));
+
+        assertTrue(ns.isAuthed(network, "Authed"));
+        assertEquals(ns.getUsername(network, "Authed"), "Yes");
+        assertFalse(ns.isAuthed(network, "NonAuthed"));
+    }
 }
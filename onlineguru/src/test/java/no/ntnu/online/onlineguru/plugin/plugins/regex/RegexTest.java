@@ -42,7 +42,7 @@ public class RegexTest {
 
     @Test
     public void testSimpleRegexReplacement() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "Rockj", "#test", "o_O");
         PrivMsgEvent event2 = createPrivMsgEvent("freenode", "Rockj", "#test", "Du er en superhelt");
         PrivMsgEvent event3 = createPrivMsgEvent("freenode", "Rockj", "#test", "s/superhelt/idiot/");
@@ -72,7 +72,7 @@ public class RegexTest {
 
     @Test
     public void testEscapedSeparator() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "melwil", "#test", "Dette Er eN Te/st fo/r escaped# separator.");
         PrivMsgEvent event2 = createPrivMsgEvent("freenode", "melwil", "#test", "Nå bare tes\\ter vi.");
 
@@ -91,7 +91,7 @@ public class RegexTest {
 
     @Test
     public void testIgnoreCaseFlag() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "melwil", "#test", "Dette Er eN Test for ignore case flag.");
 
         history.appendChannelHistory(channel, event1);
@@ -116,7 +116,7 @@ public class RegexTest {
 
     @Test
     public void testReplaceAllFlag() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "melwil", "#test", "tester tester tester replace all.");
 
         history.appendChannelHistory(channel, event1);
@@ -133,7 +133,7 @@ public class RegexTest {
 
     @Test
     public void testNthReplace() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "melwil", "#test", "tekst foran 1dog 2dog 3dog 4dog 5dog 6dog noe text blabla");
 
         history.appendChannelHistory(channel, event1);
@@ -150,7 +150,7 @@ public class RegexTest {
 
     @Test
     public void testTooLongReplacement() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "melwil", "#test", "1234567890");
         PrivMsgEvent event2 = createPrivMsgEvent("freenode", "melwil", "#test", "12345678901");
 
@@ -176,7 +176,7 @@ public class RegexTest {
 
     @Test
     public void testMatchingGroupsReplace() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "melwil", "#test", "her er en enkel to test");
 
         history.appendChannelHistory(channel, event1);
@@ -202,7 +202,7 @@ public class RegexTest {
 
     @Test
     public void testVerboseFlag() {
-        assertEquals(0, history.getLastChannelEvents(channel).size());
+        assertEquals(0, history.getLastChannelRecords(channel.getChannelname()).size());
         PrivMsgEvent event1 = createPrivMsgEvent("freenode", "melwil", "#test", "her er en enkel to test");
         PrivMsgEvent event2 = createPrivMsgEvent("freenode", "melwil", "#test", "12345678901");
 
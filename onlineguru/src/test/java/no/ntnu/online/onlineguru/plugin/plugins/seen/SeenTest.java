@@ -1,7 +1,5 @@
 package no.ntnu.online.onlineguru.plugin.plugins.seen;
 
-import no.fictive.irclib.event.container.command.NickEvent;
-import no.fictive.irclib.event.container.command.PrivMsgEvent;
 import no.fictive.irclib.model.channel.Channel;
 import no.fictive.irclib.model.network.Network;
 import no.fictive.irclib.model.nick.Nick;
@@ -62,9 +60,9 @@ public class SeenTest {
 
     @Test
     public void testLastActionByNicks() {
-        assertEquals("This is a trolling message, what's up?!", ((PrivMsgEvent) history.getLastEvents(rockj).get(0)).getMessage());
-        assertEquals("fictiveLulz", ((NickEvent) history.getLastEvents(fictive).get(0)).getNewNick());
-        assertEquals("Flood 2!", ((PrivMsgEvent) history.getLastEvents(melwil).get(0)).getMessage());
+        assertEquals("This is a trolling message, what's up?!", history.getLastRecords(rockj.getNickname()).get(0).getText());
+        assertEquals("fictiveLulz", history.getLastRecords(fictive.getNickname()).get(0).getNick());
+        assertEquals("Flood 2!", history.getLastRecords(melwil.getNickname()).get(0).getText());
     }
 
     @Test
@@ -0,0 +1,109 @@
+package no.ntnu.online.onlineguru.service.services.history;
+
+import no.fictive.irclib.model.channel.Channel;
+import no.fictive.irclib.model.nick.Nick;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static no.fictive.irclib.HelperFactory.createNickEvent;
+import static no.fictive.irclib.HelperFactory.createPrivMsgEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HistoryRetentionTest {
+
+    private long now;
+    private HistorySettings settings;
+
+    @Before
+    public void setUp() {
+        now = 1000000;
+        settings = new HistorySettings();
+    }
+
+    private History history() {
+        return new History(settings) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testReadsAreCopies() {
+        History history = history();
+        Channel channel = new Channel("#test");
+        history.appendChannelHistory(channel, createPrivMsgEvent("freenode", "Rockj", "#test", "first"));
+
+        List<HistoryRecord> before = history.getLastChannelRecords(channel.getChannelname());
+        history.appendChannelHistory(channel, createPrivMsgEvent("freenode", "Rockj", "#test", "second"));
+
+        assertEquals(1, before.size());
+        assertEquals("second", history.getLastChannelRecords(channel.getChannelname()).get(0).getText());
+    }
+
+    @Test
+    public void testOnlyChannelMessagesHaveAChannel() {
+        History history = history();
+
+        assertEquals("#test", history.createRecord(createPrivMsgEvent("freenode", "melwil", "#test", "hi")).getChannel());
+        assertNull(history.createRecord(createPrivMsgEvent("freenode", "melwil", "OnlineGuru", "hi")).getChannel());
+    }
+
+    @Test
+    public void testOldEventsAreLeftOut() {
+        settings.setMaxAgeMillis(60000);
+        History history = history();
+        Nick nick = new Nick("melwil");
+
+        history.appendHistory(nick, createPrivMsgEvent("freenode", "melwil", "#test", "old"));
+        now += 30000;
+        history.appendHistory(nick, createPrivMsgEvent("freenode", "melwil", "#test", "new"));
+        now += 40000;
+
+        List<HistoryRecord> events = history.getLastRecords(nick.getNickname());
+        assertEquals(1, events.size());
+        assertEquals("new", events.get(0).getText());
+
+        now += 60000;
+        assertEquals(0, history.getLastRecords(nick.getNickname()).size());
+    }
+
+    @Test
+    public void testQuietNicksAreEvicted() {
+        settings.setEventsPerNick(2);
+        settings.setMaxEvents(10);
+        History history = history();
+
+        for (int i = 0; i < 10; i++) {
+            history.appendHistory(new Nick("nick" + i), createPrivMsgEvent("freenode", "nick" + i, "#test", "hi"));
+            now++;
+        }
+        // nick0 talks again, so it is no longer the quietest.
+        history.appendHistory(new Nick("nick0"), createPrivMsgEvent("freenode", "nick0", "#test", "again"));
+        now++;
+        history.appendHistory(new Nick("nick10"), createPrivMsgEvent("freenode", "nick10", "#test", "hi"));
+
+        assertEquals(2, history.getLastRecords("nick0").size());
+        assertEquals(0, history.getLastRecords("nick1").size());
+        assertEquals(0, history.getLastRecords("nick2").size());
+        assertEquals(1, history.getLastRecords("nick10").size());
+        assertEquals(10, history.getNickEvents());
+        assertEquals(2, history.getEvictedNicks());
+    }
+
+    @Test
+    public void testNickChangeReplacesCount() {
+        History history = history();
+        history.appendHistory(new Nick("a"), createPrivMsgEvent("freenode", "a", "#test", "hi"));
+        history.appendHistory(new Nick("b"), createPrivMsgEvent("freenode", "b", "#test", "hi"));
+        history.nickChangeHistory(createNickEvent("freenode", "a", "b"));
+
+        assertEquals(0, history.getLastRecords("a").size());
+        assertEquals(2, history.getLastRecords("b").size());
+        assertEquals(2, history.getNickEvents());
+    }
+}
@@ -0,0 +1,68 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateFilterTest {
+
+    private Network freenode;
+    private Network efnet;
+
+    @Before
+    public void setUp() {
+        freenode = new Network();
+        freenode.setServerAlias("freenode");
+        efnet = new Network();
+        efnet.setServerAlias("efnet");
+    }
+
+    @Test
+    public void testRepeatIsDropped() {
+        DuplicateFilter filter = new DuplicateFilter(60000, 16, false);
+
+        assertFalse(filter.isDuplicate(freenode, "PRIVMSG #online :[github] pushed", false));
+        assertTrue(filter.isDuplicate(freenode, "PRIVMSG #online :[github] pushed", false));
+        assertFalse(filter.isDuplicate(freenode, "PRIVMSG #other :[github] pushed", false));
+        assertFalse(filter.isDuplicate(efnet, "PRIVMSG #online :[github] pushed", false));
+        assertEquals(4, filter.getChecked());
+        assertEquals(1, filter.getSuppressed());
+    }
+
+    @Test
+    public void testWindowExpires() throws InterruptedException {
+        DuplicateFilter filter = new DuplicateFilter(20, 16, false);
+
+        assertFalse(filter.isDuplicate(freenode, "PRIVMSG #online :hei", false));
+        Thread.sleep(40);
+        assertFalse(filter.isDuplicate(freenode, "PRIVMSG #online :hei", false));
+    }
+
+    @Test
+    public void testOnlyMessagesAndAnnouncements() {
+        DuplicateFilter filter = new DuplicateFilter(60000, 16, false);
+
+        assertFalse(filter.isDuplicate(freenode, "PRIVMSG #online :hei", true));
+        assertFalse(filter.isDuplicate(freenode, "PRIVMSG #online :hei", true));
+        assertFalse(filter.isDuplicate(freenode, "WHO #online %na", false));
+        assertFalse(filter.isDuplicate(freenode, "WHO #online %na", false));
+        assertEquals(0, filter.getChecked());
+    }
+
+    @Test
+    public void testCapacityIsBounded() {
+        DuplicateFilter filter = new DuplicateFilter(60000, 2, true);
+
+        filter.isDuplicate(freenode, "PRIVMSG #online :1", false);
+        filter.isDuplicate(freenode, "PRIVMSG #online :2", false);
+        filter.isDuplicate(freenode, "PRIVMSG #online :3", false);
+
+        assertEquals(2, filter.getRemembered());
+        assertFalse(filter.isDuplicate(freenode, "PRIVMSG #online :1", false));
+    }
+
+}
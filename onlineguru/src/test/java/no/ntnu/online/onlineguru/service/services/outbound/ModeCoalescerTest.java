@@ -0,0 +1,106 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ModeCoalescerTest {
+
+    private Network network;
+    private ServerSupport support;
+    private List<String> lines;
+    private ModeCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        network = new Network();
+        network.setServerAlias("freenode");
+        support = new ServerSupport();
+        lines = new ArrayList<String>();
+        coalescer = new ModeCoalescer(new OutboundWriter() {
+            public void write(Network network, String line) {
+                lines.add(line);
+            }
+        }, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void testChangesAreCombined() {
+        assertTrue(coalescer.offer(network, support, "MODE #online +o a"));
+        assertTrue(coalescer.offer(network, support, "MODE #online +o b"));
+        assertTrue(coalescer.offer(network, support, "MODE #online -v c"));
+        assertTrue(coalescer.offer(network, support, "MODE #online +m"));
+        assertTrue(lines.isEmpty());
+
+        coalescer.flushAll();
+        assertEquals(Arrays.asList("MODE #online +oo-v+m a b c"), lines);
+    }
+
+    @Test
+    public void testModesLimitIsRespected() {
+        support.parse(Arrays.asList("OnlineGuru", "MODES=2", "are supported by this server"));
+        for (String nick : new String[]{"a", "b", "c", "d", "e"}) {
+            coalescer.offer(network, support, "MODE #online +o " + nick);
+        }
+
+        coalescer.flushAll();
+        assertEquals(Arrays.asList(
+                "MODE #online +oo a b",
+                "MODE #online +oo c d",
+                "MODE #online +o e"
+        ), lines);
+    }
+
+    @Test
+    public void testKickSendsWaitingModesFirst() {
+        coalescer.offer(network, support, "MODE #Online +b *!*@host");
+        assertFalse(coalescer.offer(network, support, "KICK #online nick :bye"));
+        assertEquals(Arrays.asList("MODE #Online +b *!*@host"), lines);
+    }
+
+    @Test
+    public void testChannelsAreKeptApart() {
+        coalescer.offer(network, support, "MODE #online +o a");
+        coalescer.offer(network, support, "MODE #other +o a");
+        coalescer.offer(network, support, "PRIVMSG #online :hei");
+
+        assertEquals(Arrays.asList("MODE #online +o a"), lines);
+    }
+
+    @Test
+    public void testEveryTargetOfALineSendsWaitingModes() {
+        coalescer.offer(network, support, "MODE #online +o a");
+        coalescer.offer(network, support, "MODE #other +o a");
+        coalescer.offer(network, support, "MODE #third +o a");
+        assertFalse(coalescer.offer(network, support, "PRIVMSG #Other,melwil,#online :hei"));
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains("MODE #online +o a"));
+        assertTrue(lines.contains("MODE #other +o a"));
+    }
+
+    @Test
+    public void testOtherLinesPassThrough() {
+        assertFalse(coalescer.offer(network, support, "MODE #online +b"));
+        assertFalse(coalescer.offer(network, support, "MODE #online +X arg"));
+        assertFalse(coalescer.offer(network, support, "MODE OnlineGuru +i"));
+        assertFalse(coalescer.offer(network, support, "PRIVMSG melwil :hei"));
+        assertTrue(lines.isEmpty());
+    }
+
+}
@@ -0,0 +1,254 @@
+package no.ntnu.online.onlineguru.service.services.outbound;
+
+import no.fictive.irclib.model.network.Network;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutboundQueueTest {
+
+    private Network network;
+    private OutboundSettings settings;
+    private RecordingWriter writer;
+    private OutboundQueue queue;
+
+    @Before
+    public void setUp() {
+        network = new Network();
+        network.setServerAlias("freenode");
+        settings = new OutboundSettings();
+        writer = new RecordingWriter();
+    }
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testClassify() {
+        assertEquals(OutboundLane.PRIORITY, OutboundLane.classify("PONG :server", false));
+        assertEquals(OutboundLane.PRIORITY, OutboundLane.classify("cap req :multi-prefix", true));
+        assertEquals(OutboundLane.COMMAND, OutboundLane.classify("join #online", true));
+        assertEquals(OutboundLane.COMMAND, OutboundLane.classify("MODE #online +o melwil", true));
+        assertEquals(OutboundLane.COMMAND, OutboundLane.classify("KICK #online melwil", false));
+        assertEquals(OutboundLane.REPLY, OutboundLane.classify("PRIVMSG #online :hei", true));
+        assertEquals(OutboundLane.BULK, OutboundLane.classify("PRIVMSG #online :hei", false));
+        assertEquals(OutboundLane.COMMAND, OutboundLane.classify("PONGED", false));
+        assertEquals("#online", OutboundLane.targetOf("PRIVMSG #Online :hei"));
+        assertNull(OutboundLane.targetOf("MODE #online +m"));
+    }
+
+    @Test
+    public void testBurstIsSentStraightAway() throws InterruptedException {
+        settings.setBurst(3);
+        settings.setRefillMillis(60000);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.offer("PRIVMSG #online :1", true);
+        queue.offer("PRIVMSG #online :2", true);
+        queue.offer("PRIVMSG #online :3", true);
+        queue.offer("PRIVMSG #online :4", true);
+
+        writer.await(3);
+        Thread.sleep(50);
+        assertEquals(3, writer.lines().size());
+        assertEquals(1, queue.getQueued());
+    }
+
+    @Test
+    public void testPriorityAndRepliesGoFirst() throws InterruptedException {
+        settings.setBurst(1);
+        settings.setRefillMillis(100);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.offer("PRIVMSG #online :first", false);
+        writer.await(1);
+
+        queue.offer("PRIVMSG #online :announcement", false);
+        queue.offer("PRIVMSG melwil :reply", true);
+        queue.offer("MODE #online +o melwil", true);
+        queue.offer("PONG :server", false);
+
+        writer.await(5);
+        assertEquals(Arrays.asList(
+                "PRIVMSG #online :first",
+                "PONG :server",
+                "PRIVMSG melwil :reply",
+                "PRIVMSG #online :announcement",
+                "MODE #online +o melwil"
+        ), writer.lines());
+    }
+
+    @Test
+    public void testCommandsKeepTheirPlace() throws InterruptedException {
+        settings.setBurst(1);
+        settings.setRefillMillis(50);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.offer("PRIVMSG #online :block", false);
+        writer.await(1);
+
+        queue.offer("PRIVMSG #online :announcement", false);
+        queue.offer("PRIVMSG melwil :You are being kicked", true);
+        queue.offer("KICK #online melwil", true);
+        queue.offer("PART #online", false);
+        queue.offer("PRIVMSG rockj :reply", true);
+
+        writer.await(6);
+        assertEquals(Arrays.asList(
+                "PRIVMSG #online :block",
+                "PRIVMSG melwil :You are being kicked",
+                "PRIVMSG #online :announcement",
+                "KICK #online melwil",
+                "PART #online",
+                "PRIVMSG rockj :reply"
+        ), writer.lines());
+    }
+
+    @Test
+    public void testReplyStaysBehindMessageToSeveralTargets() throws InterruptedException {
+        settings.setBurst(1);
+        settings.setRefillMillis(50);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.offer("PRIVMSG #online :block", false);
+        writer.await(1);
+
+        queue.offer("PRIVMSG #online,#help :announcement", false);
+        queue.offer("PRIVMSG #help :reply", true);
+
+        writer.await(3);
+        assertEquals(Arrays.asList(
+                "PRIVMSG #online :block",
+                "PRIVMSG #online,#help :announcement",
+                "PRIVMSG #help :reply"
+        ), writer.lines());
+    }
+
+    @Test
+    public void testDrainWaitsForQueuedLines() {
+        settings.setBurst(1);
+        settings.setRefillMillis(50);
+        queue = new OutboundQueue(network, writer, settings);
+
+        for (int i = 0; i < 4; i++) {
+            queue.offer("PRIVMSG #online :" + i, false);
+        }
+
+        assertTrue(queue.drain(5000));
+        assertEquals(4, writer.lines().size());
+        assertEquals(0, queue.getQueued());
+    }
+
+    @Test
+    public void testDrainGivesUp() {
+        settings.setBurst(1);
+        settings.setRefillMillis(60000);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.offer("PRIVMSG #online :1", false);
+        queue.offer("PRIVMSG #online :2", false);
+
+        assertFalse(queue.drain(100));
+        assertEquals(1, queue.getQueued());
+    }
+
+    @Test
+    public void testLongReplyIsDemotedInOrder() throws InterruptedException {
+        settings.setBurst(1);
+        settings.setRefillMillis(50);
+        settings.setReplyBurst(2);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.offer("PRIVMSG #online :block", false);
+        writer.await(1);
+
+        for (int i = 0; i < 5; i++) {
+            queue.offer("PRIVMSG #help :" + i, true);
+        }
+        queue.offer("PRIVMSG melwil :other", true);
+
+        writer.await(7);
+        assertEquals(3, queue.getDemoted());
+        assertEquals(Arrays.asList(
+                "PRIVMSG #online :block",
+                "PRIVMSG #help :0",
+                "PRIVMSG #help :1",
+                "PRIVMSG melwil :other",
+                "PRIVMSG #help :2",
+                "PRIVMSG #help :3",
+                "PRIVMSG #help :4"
+        ), writer.lines());
+    }
+
+    @Test
+    public void testPenaltySlowsDownAndResetRestores() {
+        settings.setRefillMillis(100);
+        settings.setMaxRefillMillis(300);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.penalize();
+        assertEquals(200, queue.getIntervalMillis());
+        queue.penalize();
+        queue.penalize();
+        assertEquals(300, queue.getIntervalMillis());
+        assertEquals(3, queue.getPenalties());
+
+        queue.reset();
+        assertEquals(100, queue.getIntervalMillis());
+    }
+
+    @Test
+    public void testBulkIsDroppedWhenFull() {
+        settings.setBurst(1);
+        settings.setRefillMillis(60000);
+        settings.setMaxQueued(2);
+        queue = new OutboundQueue(network, writer, settings);
+
+        queue.offer("PRIVMSG #online :sent", false);
+        writer.await(1);
+
+        assertTrue(queue.offer("PRIVMSG #online :1", false));
+        assertTrue(queue.offer("PRIVMSG #online :2", false));
+        assertFalse(queue.offer("PRIVMSG #online :3", false));
+        assertTrue(queue.offer("PONG :server", false));
+        assertEquals(1, queue.getDropped());
+        assertEquals(3, queue.getQueued());
+    }
+
+    private static class RecordingWriter implements OutboundWriter {
+        private final List<String> lines = new ArrayList<String>();
+
+        public synchronized void write(Network network, String line) {
+            lines.add(line);
+            notifyAll();
+        }
+
+        synchronized List<String> lines() {
+            return new ArrayList<String>(lines);
+        }
+
+        synchronized void await(int count) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (lines.size() < count && System.currentTimeMillis() < deadline) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
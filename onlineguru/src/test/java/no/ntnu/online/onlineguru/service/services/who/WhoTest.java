@@ -0,0 +1,199 @@
+package no.ntnu.online.onlineguru.service.services.who;
+
+import no.fictive.irclib.control.IRCEventPacket;
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.model.network.Network;
+import no.ntnu.online.onlineguru.plugin.model.ReplyBatch;
+import no.ntnu.online.onlineguru.service.services.outbound.OutboundWriter;
+import no.ntnu.online.onlineguru.utils.ServerSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WhoTest {
+
+    private Network network;
+    private ServerSupport support;
+    private List<String> lines;
+    private List<ReplyBatch> batches;
+    private WhoCallback callback;
+    private Who who;
+
+    @Before
+    public void setUp() {
+        network = new Network();
+        network.setServerAlias("quakenet");
+        support = new ServerSupport();
+        lines = new ArrayList<String>();
+        batches = new ArrayList<ReplyBatch>();
+        callback = new WhoCallback() {
+            public void whoReplies(ReplyBatch batch) {
+                batches.add(batch);
+            }
+        };
+
+        WhoSettings settings = new WhoSettings();
+        settings.setMergeWindowMillis(60000);
+        settings.setMaxTargets(3);
+        settings.setMaxInFlight(1);
+        who = new Who(settings);
+        who.setWriter(new OutboundWriter() {
+            public void write(Network network, String line) {
+                lines.add(line);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        who.shutdown();
+    }
+
+    private void reply(String line) {
+        who.handleReply(new NumericEvent(new IRCEventPacket(line), network));
+    }
+
+    private void supportWhox() {
+        support.parse(Arrays.asList("OnlineGuru", "WHOX", "are supported by this server"));
+    }
+
+    @Test
+    public void testChannelIsAskedForOnce() {
+        supportWhox();
+        who.query(network, support, "#online", Who.ACCOUNT_FIELDS, null);
+        who.query(network, support, "#Online", Who.ACCOUNT_FIELDS, callback);
+        assertEquals(Arrays.asList("WHO #online %na"), lines);
+        assertEquals(1, who.getDeduplicated());
+
+        reply(":server 354 OnlineGuru Authed Yes");
+        reply(":server 354 OnlineGuru NonAuthed 0");
+        reply(":server 315 OnlineGuru #online :End of /WHO list.");
+
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).getReplies().size());
+        assertTrue(batches.get(0).isComplete());
+
+        // Answered, so asking again sends a new query.
+        who.query(network, support, "#online", Who.ACCOUNT_FIELDS, callback);
+        assertEquals(2, lines.size());
+    }
+
+    @Test
+    public void testFullWhoIsKeptApartFromWhox() {
+        supportWhox();
+        who.query(network, support, "#online", null, null);
+        who.query(network, support, "#online", Who.ACCOUNT_FIELDS, callback);
+        who.query(network, support, "#Online", null, null);
+        assertEquals(Arrays.asList("WHO #online"), lines);
+        assertEquals(1, who.getDeduplicated());
+
+        reply(":server 352 OnlineGuru #online ident host server someone H :0 Real Name");
+        reply(":server 315 OnlineGuru #online :End of /WHO list.");
+        assertEquals(Arrays.asList("WHO #online", "WHO #online %na"), lines);
+        assertTrue(batches.isEmpty());
+
+        reply(":server 354 OnlineGuru someone Yes");
+        reply(":server 315 OnlineGuru #online :End of /WHO list.");
+        assertEquals(1, batches.size());
+        assertEquals(1, batches.get(0).getReplies().size());
+    }
+
+    @Test
+    public void testJoinedChannelIsAskedForOnce() {
+        supportWhox();
+        // OnlineGuru and NickServPlugin both ask when the bot joins.
+        who.query(network, support, "#online", Who.MEMBER_FIELDS, null);
+        who.query(network, support, "#online", Who.MEMBER_FIELDS, callback);
+        assertEquals(Arrays.asList("WHO #online %cuhsnfar"), lines);
+
+        reply(":server 354 OnlineGuru #online ident host server someone H Yes :Real Name");
+        reply(":server 315 OnlineGuru #online :End of /WHO list.");
+        assertEquals(1, batches.size());
+
+        NumericEvent member = (NumericEvent) batches.get(0).getReplies().get(0);
+        assertEquals("someone", Who.field(member, Who.MEMBER_FIELDS, 'n'));
+        assertEquals("Yes", Who.field(member, Who.MEMBER_FIELDS, 'a'));
+        assertEquals("Real Name", Who.field(member, Who.MEMBER_FIELDS, 'r'));
+        assertNull(Who.field(member, Who.MEMBER_FIELDS, 'i'));
+    }
+
+    @Test
+    public void testFieldsAreInServerOrder() {
+        NumericEvent reply = new NumericEvent(new IRCEventPacket(":server 354 OnlineGuru someone Yes"), network);
+        assertEquals("someone", Who.field(reply, "an", 'n'));
+        assertEquals("Yes", Who.field(reply, Who.ACCOUNT_FIELDS, 'a'));
+    }
+
+    @Test
+    public void testWithoutWhoxEveryQueryIsShared() {
+        who.query(network, support, "#online", null, null);
+        who.query(network, support, "#online", Who.ACCOUNT_FIELDS, callback);
+        assertEquals(Arrays.asList("WHO #online"), lines);
+        assertEquals(1, who.getDeduplicated());
+    }
+
+    @Test
+    public void testNicksAreMerged() {
+        supportWhox();
+        for (String nick : new String[]{"a", "b", "c", "B", "d"}) {
+            who.query(network, support, nick, Who.ACCOUNT_FIELDS, callback);
+        }
+        assertEquals(Arrays.asList("WHO a,b,c %na"), lines);
+
+        reply(":server 354 OnlineGuru a Yes");
+        reply(":server 315 OnlineGuru a,b,c :End of /WHO list.");
+        assertEquals(1, batches.size());
+        assertEquals(1, who.getMerged());
+    }
+
+    @Test
+    public void testQueriesWaitForAnswers() {
+        who.query(network, support, "#a", null, null);
+        who.query(network, support, "#b", Who.ACCOUNT_FIELDS, callback);
+        who.query(network, support, "nick", Who.ACCOUNT_FIELDS, callback);
+        assertEquals(Arrays.asList("WHO #a"), lines);
+
+        // Not ours, doesn't end the query.
+        reply(":server 315 OnlineGuru #other :End of /WHO list.");
+        assertEquals(1, lines.size());
+
+        reply(":server 352 OnlineGuru #a ident host server someone H :0 Real Name");
+        reply(":server 315 OnlineGuru #a :End of /WHO list.");
+        assertEquals(Arrays.asList("WHO #a", "WHO #b"), lines);
+        assertTrue(batches.isEmpty());
+
+        reply(":server 315 OnlineGuru #b :End of /WHO list.");
+        assertEquals(Arrays.asList("WHO #a", "WHO #b", "WHO nick"), lines);
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void testFallsBackToSingleNicks() {
+        supportWhox();
+        for (String nick : new String[]{"a", "b", "c", "d"}) {
+            who.query(network, support, nick, Who.ACCOUNT_FIELDS, callback);
+        }
+        reply(":server 315 OnlineGuru a,b,c :End of /WHO list.");
+        assertEquals(Arrays.asList("WHO a,b,c %na", "WHO a %na"), lines);
+
+        reply(":server 354 OnlineGuru a Yes");
+        reply(":server 315 OnlineGuru a :End of /WHO list.");
+        reply(":server 315 OnlineGuru b :End of /WHO list.");
+        reply(":server 315 OnlineGuru c :End of /WHO list.");
+        assertEquals(Arrays.asList("WHO a,b,c %na", "WHO a %na", "WHO b %na", "WHO c %na"), lines);
+        assertEquals(3, batches.size());
+
+        // Merging doesn't work here, so new nicks are asked for one at a time.
+        who.query(network, support, "e", Who.ACCOUNT_FIELDS, callback);
+        who.query(network, support, "f", Who.ACCOUNT_FIELDS, callback);
+        assertEquals("WHO e %na", lines.get(lines.size() - 1));
+    }
+}
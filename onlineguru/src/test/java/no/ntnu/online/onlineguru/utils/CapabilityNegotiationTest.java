@@ -0,0 +1,73 @@
+package no.ntnu.online.onlineguru.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CapabilityNegotiationTest {
+
+    @Test
+    public void testParseLine() {
+        IrcLine line = IrcLine.parse("@time=2013-01-01T00:00:00Z :nick!user@host.com JOIN #online account :Real Name");
+        assertEquals("nick", line.getNick());
+        assertEquals("JOIN", line.getCommand());
+        assertEquals(Arrays.asList("#online", "account", "Real Name"), line.getParameters());
+        assertNull(line.getParameter(3));
+
+        line = IrcLine.parse("CAP * LS :sasl");
+        assertNull(line.getNick());
+        assertEquals(Arrays.asList("*", "LS", "sasl"), line.getParameters());
+
+        assertNull(IrcLine.parse(""));
+    }
+
+    @Test
+    public void testParseTags() {
+        IrcLine line = IrcLine.parse("@account=hal;msgid=a\\sb\\:c;draft/bot :nick!user@host.com PRIVMSG #online :hi");
+        assertEquals("hal", line.getTag("account"));
+        assertEquals("a b;c", line.getTag("msgid"));
+        assertEquals("", line.getTag("draft/bot"));
+        assertNull(line.getTag("time"));
+        assertEquals("PRIVMSG", line.getCommand());
+
+        assertNull(IrcLine.parse(":nick!user@host.com JOIN #online").getTag("account"));
+    }
+
+    @Test
+    public void testRequestsWhatIsOffered() {
+        ServerSupport support = new ServerSupport();
+
+        assertEquals(Collections.emptyList(), CapabilityNegotiation.handle(
+                IrcLine.parse(":server CAP OnlineGuru LS * :multi-prefix sasl=PLAIN,EXTERNAL extended-join"), support));
+        assertEquals(Arrays.asList("CAP REQ :account-notify extended-join", "CAP END"), CapabilityNegotiation.handle(
+                IrcLine.parse(":server CAP OnlineGuru LS :account-notify away-notify"), support));
+        assertFalse(support.isEnabled(CapabilityNegotiation.ACCOUNT_NOTIFY));
+
+        CapabilityNegotiation.handle(IrcLine.parse(":server CAP OnlineGuru ACK :account-notify extended-join "), support);
+        assertTrue(support.isEnabled(CapabilityNegotiation.ACCOUNT_NOTIFY));
+        assertTrue(support.isEnabled(CapabilityNegotiation.EXTENDED_JOIN));
+        assertFalse(support.isEnabled(CapabilityNegotiation.ACCOUNT_TAG));
+
+        CapabilityNegotiation.handle(IrcLine.parse(":server CAP OnlineGuru DEL :account-notify"), support);
+        assertFalse(support.isEnabled(CapabilityNegotiation.ACCOUNT_NOTIFY));
+
+        assertEquals(Arrays.asList("CAP REQ :account-notify account-tag"), CapabilityNegotiation.handle(
+                IrcLine.parse(":server CAP OnlineGuru NEW :account-notify account-tag"), support));
+    }
+
+    @Test
+    public void testNothingToRequest() {
+        ServerSupport support = new ServerSupport();
+
+        assertEquals(Arrays.asList("CAP END"), CapabilityNegotiation.handle(
+                IrcLine.parse(":server CAP * LS :multi-prefix"), support));
+        CapabilityNegotiation.handle(IrcLine.parse(":server CAP * NAK :account-notify"), support);
+        assertFalse(support.isEnabled(CapabilityNegotiation.ACCOUNT_NOTIFY));
+    }
+}
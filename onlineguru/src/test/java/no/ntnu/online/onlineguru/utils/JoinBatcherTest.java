@@ -0,0 +1,76 @@
+package no.ntnu.online.onlineguru.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JoinBatcherTest {
+
+    @Test
+    public void testChannelsShareOneLine() {
+        JoinBatcher joins = new JoinBatcher();
+        joins.add("#a");
+        joins.add(" #b");
+        joins.add("#c ");
+
+        assertEquals(Arrays.asList("JOIN #a,#b,#c"), joins.getLines());
+    }
+
+    @Test
+    public void testKeyedChannelsGoFirst() {
+        JoinBatcher joins = new JoinBatcher();
+        joins.add("#open");
+        joins.add(" #secret keyA");
+        joins.add("#other");
+        joins.add("#hidden   keyB");
+
+        assertEquals(Arrays.asList("JOIN #secret,#hidden,#open,#other keyA,keyB"), joins.getLines());
+    }
+
+    @Test
+    public void testDuplicatesAreJoinedOnce() {
+        JoinBatcher joins = new JoinBatcher();
+        joins.add("#a");
+        joins.add("#a key");
+        joins.add("#a");
+        joins.add("  ");
+
+        assertEquals(Arrays.asList("JOIN #a key"), joins.getLines());
+    }
+
+    @Test
+    public void testLinesStayWithinLimit() {
+        JoinBatcher joins = new JoinBatcher();
+        for (int i = 0; i < 100; i++) {
+            joins.add("#channel-number-" + i, i % 3 == 0 ? "key" + i : null);
+        }
+
+        List<String> lines = joins.getLines();
+        assertTrue(lines.size() > 1);
+
+        int channels = 0;
+        for (String line : lines) {
+            assertTrue(MessageFormatter.utf8Length(line) <= MessageFormatter.MAX_LINE_BYTES);
+            String[] parts = line.split(" ");
+            channels += parts[1].split(",").length;
+            if (parts.length > 2) {
+                // Every key has its channel in front of it.
+                for (String key : parts[2].split(",")) {
+                    assertTrue(parts[1].contains("#channel-number-" + key.substring(3)));
+                }
+            }
+        }
+        assertEquals(100, channels);
+    }
+
+    @Test
+    public void testNothingToJoin() {
+        JoinBatcher joins = new JoinBatcher();
+        assertTrue(joins.isEmpty());
+        assertTrue(joins.getLines().isEmpty());
+    }
+}
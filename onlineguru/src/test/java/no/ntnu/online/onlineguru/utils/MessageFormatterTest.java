@@ -0,0 +1,71 @@
+package no.ntnu.online.onlineguru.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageFormatterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testShortMessageIsUntouched() {
+        assertEquals(Arrays.asList("hei på deg"), MessageFormatter.split("hei på deg", 100));
+        assertEquals(Arrays.asList(""), MessageFormatter.split("", 100));
+    }
+
+    @Test
+    public void testSplitsAtSpaces() {
+        assertEquals(Arrays.asList("one two", "three four"), MessageFormatter.split("one two three four", 10));
+        assertEquals(Arrays.asList("abcdefghij", "klm"), MessageFormatter.split("abcdefghijklm", 10));
+    }
+
+    @Test
+    public void testSplitsOnBytesNotCharacters() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("æøå😀");
+        }
+
+        List<String> pieces = MessageFormatter.split(text.toString(), 31);
+        StringBuilder joined = new StringBuilder();
+        for (String piece : pieces) {
+            assertTrue(piece.getBytes(UTF8).length <= 31);
+            joined.append(piece);
+        }
+        assertEquals(text.toString(), joined.toString());
+    }
+
+    @Test
+    public void testLineBreaksStartNewPieces() {
+        assertEquals(Arrays.asList("first", "second"), MessageFormatter.split("first\r\nsecond\n", 100));
+    }
+
+    @Test
+    public void testFits() {
+        assertTrue(MessageFormatter.fits("hei på deg", 11));
+        assertFalse(MessageFormatter.fits("hei på deg", 10));
+        assertFalse(MessageFormatter.fits("two\nlines", 100));
+        assertTrue(MessageFormatter.fits("", 0));
+    }
+
+    @Test
+    public void testPack() {
+        List<String> lines = MessageFormatter.pack(Arrays.asList("a b", "c", "", "a longer one"), " | ", 12);
+        assertEquals(Arrays.asList("a b | c", "a longer one"), lines);
+    }
+
+    @Test
+    public void testTextBudget() {
+        int budget = MessageFormatter.textBudget("OnlineGuru", "PRIVMSG", "#online");
+        String line = ":OnlineGuru!" + "1234567890" + "@" + new String(new char[63]).replace('\0', 'h') + " PRIVMSG #online :";
+        assertEquals(MessageFormatter.MAX_LINE_BYTES, line.length() + budget);
+    }
+
+}
@@ -0,0 +1,56 @@
+package no.ntnu.online.onlineguru.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ServerSupportTest {
+
+    @Test
+    public void testDefaults() {
+        ServerSupport support = new ServerSupport();
+
+        assertEquals(3, support.getModes());
+        assertEquals(1, support.getMaxTargets("PRIVMSG"));
+        assertEquals(1, support.takesParameter('o', false));
+        assertEquals(0, support.takesParameter('l', false));
+        assertEquals(-1, support.takesParameter('X', true));
+        assertNull(support.getToken("NETWORK"));
+    }
+
+    @Test
+    public void testParse() {
+        ServerSupport support = new ServerSupport();
+        support.parse(Arrays.asList("OnlineGuru", "MODES=6", "CHANMODES=eIbq,k,flj,CFLMPQcgimnprstz",
+                "PREFIX=(qaohv)~&@%+", "NETWORK=freenode", "are supported by this server"));
+        support.parse(Arrays.asList("OnlineGuru", "TARGMAX=NAMES:1,PRIVMSG:4,NOTICE:4,KICK:", "CASEMAPPING=ascii",
+                "are supported by this server"));
+
+        assertEquals(6, support.getModes());
+        assertEquals(4, support.getMaxTargets("privmsg"));
+        assertEquals(Integer.MAX_VALUE, support.getMaxTargets("KICK"));
+        assertEquals(1, support.getMaxTargets("WHOIS"));
+        assertEquals(1, support.takesParameter('h', false));
+        assertEquals(1, support.takesParameter('q', true));
+        assertEquals(1, support.takesParameter('j', true));
+        assertEquals(0, support.takesParameter('z', true));
+        assertEquals("freenode", support.getToken("network"));
+        assertEquals("ascii", support.getCaseMapping());
+    }
+
+    @Test
+    public void testCaseMapping() {
+        ServerSupport support = new ServerSupport();
+        assertEquals("nick{a}|^", support.toLowerCase("NICK[A]\\~"));
+
+        support.parse(Arrays.asList("OnlineGuru", "CASEMAPPING=strict-rfc1459"));
+        assertEquals("nick{a}|~", support.toLowerCase("NICK[A]\\~"));
+
+        support.parse(Arrays.asList("OnlineGuru", "CASEMAPPING=ascii"));
+        assertEquals("nick[a]\\~", support.toLowerCase("NICK[A]\\~"));
+    }
+
+}
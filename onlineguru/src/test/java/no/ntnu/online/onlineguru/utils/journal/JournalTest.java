@@ -0,0 +1,102 @@
+package no.ntnu.online.onlineguru.utils.journal;
+
+import no.fictive.irclib.event.container.command.NumericEvent;
+import no.fictive.irclib.event.container.command.PrivMsgEvent;
+import no.fictive.irclib.model.network.Network;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JournalTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(System.getProperty("java.io.tmpdir"), "journaltest-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testLinesAreReadBackInOrder() throws IOException {
+        JournalWriter writer = new JournalWriter(directory, 64 * 1024, 0);
+        long start = System.nanoTime();
+        writer.append("freenode", start, ":nick!user@host PRIVMSG #online :hei på deg");
+        writer.append("quakenet", start + 1000000, ":server 354 OnlineGuru nick account");
+        writer.append("freenode", start + 2000000, "PING :server");
+        writer.close();
+
+        JournalReader reader = new JournalReader(directory);
+        JournalEntry first = reader.next();
+        JournalEntry second = reader.next();
+        JournalEntry third = reader.next();
+
+        assertEquals("freenode", first.getServerAlias());
+        assertEquals(":nick!user@host PRIVMSG #online :hei på deg", first.getLine());
+        assertEquals("quakenet", second.getServerAlias());
+        assertEquals("PING :server", third.getLine());
+        assertEquals(1000000, second.getTimestampNanos() - first.getTimestampNanos());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testRollsOverToNewSegments() throws IOException {
+        JournalWriter writer = new JournalWriter(directory, 64 * 1024, 0);
+        for (int i = 0; i < 2000; i++) {
+            writer.append(i % 2 == 0 ? "freenode" : "quakenet", System.nanoTime(), ":nick!user@host PRIVMSG #online :line number " + i);
+        }
+        writer.close();
+
+        assertTrue(JournalWriter.listSegments(directory).length > 1);
+
+        JournalReader reader = new JournalReader(directory);
+        for (int i = 0; i < 2000; i++) {
+            JournalEntry entry = reader.next();
+            assertEquals(i % 2 == 0 ? "freenode" : "quakenet", entry.getServerAlias());
+            assertTrue(entry.getLine().endsWith("line number " + i));
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testKeepsOnlyNewestSegments() throws IOException {
+        JournalWriter writer = new JournalWriter(directory, 64 * 1024, 2);
+        for (int i = 0; i < 5000; i++) {
+            writer.append("freenode", System.nanoTime(), ":nick!user@host PRIVMSG #online :line number " + i);
+        }
+        writer.close();
+
+        assertEquals(2, JournalWriter.listSegments(directory).length);
+    }
+
+    @Test
+    public void testToEvent() {
+        Network network = new Network();
+        network.setServerAlias("freenode");
+
+        assertTrue(JournalReplay.toEvent(":nick!user@host PRIVMSG #online :hei", network) instanceof PrivMsgEvent);
+        assertTrue(JournalReplay.toEvent(":server 366 OnlineGuru #online :End of /NAMES list.", network) instanceof NumericEvent);
+        assertNull(JournalReplay.toEvent("PING :server", network));
+        assertEquals("PING", JournalReplay.commandOf("PING :server"));
+        assertEquals("PRIVMSG", JournalReplay.commandOf(":nick!user@host privmsg #online :hei"));
+        assertNull(JournalReplay.commandOf(":prefixonly"));
+    }
+
+}
@@ -0,0 +1,123 @@
+package no.ntnu.online.onlineguru.utils.rawlog;
+
+import no.ntnu.online.onlineguru.utils.settingsreader.KeyValueSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RawTrafficLogTest {
+
+    private File directory;
+    private File logFile;
+
+    @Before
+    public void setUp() {
+        directory = new File(System.getProperty("java.io.tmpdir"), "rawlogtest-" + System.nanoTime());
+        logFile = new File(directory, "raw.log");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private RawLogSettings makeSettings(Map<String, String> values) {
+        RawLogSettings settings = new RawLogSettings(new KeyValueSettings("rawlog.conf", values));
+        settings.setFile(logFile.getPath());
+        settings.setFlushMillis(10);
+        return settings;
+    }
+
+    private List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void testWritesLinesInOrder() throws IOException {
+        RawTrafficLog log = new RawTrafficLog(makeSettings(new HashMap<String, String>()));
+        log.inbound("freenode", ":server 001 OnlineGuru :Welcome");
+        log.outbound("freenode", "JOIN #online");
+        log.shutdown();
+
+        List<String> lines = readLines(logFile);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(" <- freenode: :server 001 OnlineGuru :Welcome"));
+        assertTrue(lines.get(1).endsWith(" -> freenode: JOIN #online"));
+    }
+
+    @Test
+    public void testLevelAndSamplePerNetwork() throws IOException {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("freenode.level", "outbound");
+        values.put("quakenet.sample", "2");
+        RawTrafficLog log = new RawTrafficLog(makeSettings(values));
+
+        log.inbound("freenode", "PING :server");
+        log.outbound("freenode", "PONG :server");
+        for (int i = 0; i < 4; i++) {
+            log.inbound("quakenet", "line " + i);
+        }
+        log.shutdown();
+
+        List<String> lines = readLines(logFile);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).endsWith("-> freenode: PONG :server"));
+        assertTrue(lines.get(1).endsWith("<- quakenet: line 0"));
+        assertTrue(lines.get(2).endsWith("<- quakenet: line 2"));
+    }
+
+    @Test
+    public void testRotatesAndCompresses() throws IOException {
+        RawLogSettings settings = makeSettings(new HashMap<String, String>());
+        settings.setMaxFileBytes(1024);
+        RawTrafficLog log = new RawTrafficLog(settings);
+
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            line.append('x');
+        }
+        for (int i = 0; i < 30; i++) {
+            log.inbound("freenode", line.toString());
+        }
+        log.shutdown();
+
+        int compressed = 0;
+        for (String name : directory.list()) {
+            if (name.startsWith("raw-") && name.endsWith(".log.gz")) {
+                compressed++;
+            }
+        }
+        assertTrue(compressed > 0);
+        assertTrue(readLines(logFile).size() < 30);
+    }
+
+}